@@ -14,11 +14,19 @@ Environment Variables:
 """
 
 import argparse
+import hashlib
+import hmac
 import os
+import queue
+import secrets
+import socket
+import struct
+import threading
 import time
 import shutil
 import subprocess
 import sys
+from collections import deque
 from urllib.parse import urlparse
 from pathlib import Path
 
@@ -290,6 +298,9 @@ Examples:
 
     # List supported apps
     python main.py --list-apps
+
+    # Serve the controller over files and its socket transport
+    python main.py --android-mode --socket-port 18765
         """,
     )
 
@@ -407,6 +418,14 @@ Examples:
         help="Polling interval in seconds for checking command.txt (default: 0.5)",
     )
 
+    parser.add_argument(
+        "--socket-port",
+        type=int,
+        metavar="PORT",
+        help="Also accept commands from the controller's socket transport on this loopback port "
+             "(e.g. 18765); a fresh socket.token is written to --shared-dir on start",
+    )
+
     return parser.parse_args()
 
 
@@ -479,18 +498,201 @@ def handle_device_commands(args) -> bool:
 
     return False
 
+# Status protocol version; 2 adds command IDs echoed back in status updates,
+# 3 adds held (speculative) commands that act only once confirmed
+PROTOCOL_VERSION = 3
+COMMAND_ID_HEADER = "ID: "
+# Header that may follow the ID line of a command
+HOLD_HEADER = "HOLD: "
+# Single-line messages deciding a held command; CANCEL also stops a running one
+CONFIRM_HEADER = "CONFIRM: "
+CANCEL_HEADER = "CANCEL: "
+# A held command that gets no decision within this time is dropped
+HOLD_TIMEOUT = 10.0
+HOLD_POLL_INTERVAL = 0.05
+
+
+def parse_command(text: str) -> tuple:
+    """
+    Split a message from command.txt into its parts.
+
+    Returns:
+        (command_id, command, headers) tuple; headers maps header names such
+        as "HOLD", "CONFIRM" or "CANCEL" to their values
+    """
+    headers = {}
+    for header in (CONFIRM_HEADER, CANCEL_HEADER):
+        if text.startswith(header) and "\n" not in text:
+            headers[header[:-2]] = text[len(header):].strip()
+            return None, "", headers
+
+    command_id = None
+    if text.startswith(COMMAND_ID_HEADER):
+        header, _, text = text.partition("\n")
+        command_id = header[len(COMMAND_ID_HEADER):].strip()
+        while text.startswith(HOLD_HEADER):
+            header, _, text = text.partition("\n")
+            name, _, value = header.partition(": ")
+            headers[name] = value.strip()
+        text = text.strip()
+    return command_id, text, headers
+
+# Loopback socket transport (controller: SocketTransport); frames are
+# length (4 bytes, big-endian) + type (1 byte) + UTF-8 payload
+SOCKET_TOKEN_FILE = "socket.token"
+SOCKET_HEADER = "SOCKET: "
+FRAME_COMMAND = 1
+FRAME_STATUS = 2
+FRAME_HELLO = 3
+MAX_FRAME_SIZE = 256 * 1024
+HANDSHAKE_TIMEOUT = 2.0
+# The controller resends commands it has not seen acknowledged after a
+# reconnect; this many recent IDs are remembered so they run only once
+RECENT_ID_LIMIT = 64
+
+
+def send_frame(conn: socket.socket, frame_type: int, payload: str):
+    data = payload.encode("utf-8")
+    conn.sendall(struct.pack(">iB", len(data), frame_type) + data)
+
+
+def recv_frame(conn: socket.socket) -> tuple:
+    """Read one frame; raises ConnectionError when the peer goes away."""
+    length, frame_type = struct.unpack(">iB", recv_exact(conn, 5))
+    if length < 0 or length > MAX_FRAME_SIZE:
+        raise ConnectionError(f"bad frame length: {length}")
+    return frame_type, recv_exact(conn, length).decode("utf-8")
+
+
+def recv_exact(conn: socket.socket, size: int) -> bytes:
+    data = b""
+    while len(data) < size:
+        chunk = conn.recv(size - len(data))
+        if not chunk:
+            raise ConnectionError("connection closed")
+        data += chunk
+    return data
+
+
+def sign(token: bytes, message: str) -> str:
+    return hmac.new(token, message.encode("utf-8"), hashlib.sha256).hexdigest()
+
+
+class SocketListener:
+    """
+    Serves the controller's socket transport on a loopback port.
+
+    The port is reachable by every app on the device, so a controller must
+    first prove it holds the token in socket.token, and the agent proves the
+    same back (HMAC-SHA256 over both sides' nonces; the token never crosses
+    the socket). Anyone able to read the token can already write command.txt,
+    so this exposes nothing the file transport does not.
+
+    One controller is served at a time. Received commands are queued for the
+    monitor loop; status updates are pushed to the connected controller.
+    """
+
+    def __init__(self, base_dir: Path, port: int):
+        self.port = port
+        self.token = secrets.token_hex(16).encode("utf-8")
+        (base_dir / SOCKET_TOKEN_FILE).write_text(self.token.decode("utf-8") + "\n", encoding="utf-8")
+        self.commands = queue.Queue()
+        # Set whenever a command is queued, so the monitor loop wakes at once
+        self.arrived = threading.Event()
+        self.lock = threading.Lock()
+        self.client = None
+        self.last_status = None
+
+        self.server = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
+        self.server.setsockopt(socket.SOL_SOCKET, socket.SO_REUSEADDR, 1)
+        self.server.bind(("127.0.0.1", port))
+        self.server.listen(1)
+        threading.Thread(target=self._accept_loop, name="socket-listener", daemon=True).start()
+
+    def push_status(self, status: str):
+        """Send a status update to the connected controller, if any."""
+        with self.lock:
+            self.last_status = status
+            if self.client is None:
+                return
+            try:
+                send_frame(self.client, FRAME_STATUS, status)
+            except OSError:
+                self._drop_client()
+
+    def close(self):
+        self.server.close()
+        with self.lock:
+            self._drop_client()
+
+    def _drop_client(self):
+        if self.client is not None:
+            try:
+                self.client.close()
+            except OSError:
+                pass
+            self.client = None
+
+    def _accept_loop(self):
+        while True:
+            try:
+                conn, _ = self.server.accept()
+            except OSError:
+                return  # listener closed
+            try:
+                conn.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
+                conn.settimeout(HANDSHAKE_TIMEOUT)
+                if not self._handshake(conn):
+                    print("Socket: rejected a controller with the wrong token")
+                    conn.close()
+                    continue
+                conn.settimeout(None)
+                with self.lock:
+                    self.client = conn
+                    if self.last_status is not None:
+                        send_frame(conn, FRAME_STATUS, self.last_status)
+                print("Socket: controller connected")
+                self._read_loop(conn)
+            except (OSError, ValueError, UnicodeDecodeError):
+                pass
+            with self.lock:
+                if self.client is conn:
+                    self._drop_client()
+                else:
+                    conn.close()
+            print("Socket: controller disconnected")
+
+    def _handshake(self, conn: socket.socket) -> bool:
+        frame_type, controller_nonce = recv_frame(conn)
+        if frame_type != FRAME_HELLO:
+            return False
+        nonce = secrets.token_hex(16)
+        send_frame(conn, FRAME_HELLO, f"{nonce} {sign(self.token, f'agent:{controller_nonce}:{nonce}')}")
+        frame_type, proof = recv_frame(conn)
+        expected = sign(self.token, f"controller:{nonce}:{controller_nonce}")
+        return frame_type == FRAME_HELLO and hmac.compare_digest(proof, expected)
+
+    def _read_loop(self, conn: socket.socket):
+        while True:
+            frame_type, payload = recv_frame(conn)
+            if frame_type == FRAME_COMMAND:
+                self.commands.put(payload)
+                self.arrived.set()
+
+
 class AndroidCommunication:
     """
     Handles communication with android via shared files
     """
 
-    def __init__(self, base_dir: str, poll_interval: float = 0.5):
+    def __init__(self, base_dir: str, poll_interval: float = 0.5, socket_port: int = None):
         """
         Initialize Android communication.
 
         Args:
             base_dir: Base directory for communication files
             poll_interval: Polling interval in seconds
+            socket_port: Loopback port for the controller's socket transport (optional)
         """
         self.base_dir = Path(base_dir)
         self.poll_interval = poll_interval
@@ -508,25 +710,52 @@ class AndroidCommunication:
         self.current_task = None
         self.task_result = None
         self.is_running = True
+        # Commands read while another command ran or waited for its decision,
+        # and why the last command stopped before acting (None if it went on)
+        self.pending = []
+        self.stop_reason = None
+        # IDs of recently accepted commands, to skip ones the controller resends,
+        # and of commands cancelled before they were read, to skip when they arrive
+        self.recent_ids = deque(maxlen=RECENT_ID_LIMIT)
+        self.cancelled_ids = deque(maxlen=RECENT_ID_LIMIT)
+
+        # Commands also arrive over the socket when enabled; command.txt stays
+        # the fallback the controller uses while it is not connected
+        self.socket = None
+        if socket_port:
+            try:
+                self.socket = SocketListener(self.base_dir, socket_port)
+            except OSError as e:
+                print(f"Socket listener unavailable on port {socket_port}, using files only: {e}")
 
         print(f"Android communication initialized:")
         print(f"  Command file: {self.command_file}")
         print(f"  Status file: {self.status_file}")
         print(f"  Poll interval: {poll_interval}s")
+        if self.socket:
+            print(f"  Socket: 127.0.0.1:{self.socket.port}")
 
-    def write_status(self, status: str, result: str = "", task: str = None):
+    def write_status(self, status: str, result: str = "", task: str = None, command_id: str = None):
         """
         Write status to status.txt.
 
         Args:
-            status: Current status (IDLE, PROCESSING, SUCCESS, ERROR)
+            status: Current status (IDLE, ACCEPTED, PROCESSING, SUCCESS, ERROR)
             result: Result message (optional)
             task: Current task being processed (optional)
+            command_id: ID of the command this status belongs to (optional)
         """
         self.current_status = status
         self.task_result = result
 
+        # Protocol fields go before TASK/RESULT, which may contain arbitrary text
         status_content = f"STATUS: {status}"
+        if command_id:
+            status_content += f"\nID: {command_id}"
+        status_content += f"\nPROTOCOL: {PROTOCOL_VERSION}"
+        if self.socket:
+            # Tells a controller that stopped retrying that the listener is up
+            status_content += f"\n{SOCKET_HEADER}{self.socket.port}"
         if task:
             status_content += f"\nTASK: {task}"
         if result:
@@ -538,17 +767,32 @@ class AndroidCommunication:
                 f.write(status_content)
         except Exception as e:
             print(f"Error writing status file: {e}")
+        if self.socket:
+            self.socket.push_status(status_content)
 
-    def read_command(self) -> str:
+    def read_command(self) -> tuple:
         """
-        Read command from command.txt.
+        Read the next command from the socket, or else from command.txt.
+
+        Commands from newer controllers start with an "ID: <id>" line; plain
+        text commands from older controllers have no ID. A held command has a
+        "HOLD: 1" line after its ID and must not act on the device until a
+        "CONFIRM: <id>" message arrives; "CANCEL: <id>" drops it, or stops a
+        running command before its next action.
 
         Returns:
-            Command string or empty string if no command
+            (command_id, command, headers) tuple; command_id is None for plain
+            text commands, command is an empty string if there is no command,
+            and headers holds the protocol 3 fields (see parse_command)
         """
+        if self.socket:
+            try:
+                return parse_command(self.socket.commands.get_nowait().strip())
+            except queue.Empty:
+                pass
         try:
             if not self.command_file.exists():
-                return ""
+                return None, "", {}
 
             with open(self.command_file, 'r', encoding='utf-8') as f:
                 command = f.read().strip()
@@ -558,10 +802,66 @@ class AndroidCommunication:
                 with open(self.command_file, 'w', encoding='utf-8') as f:
                     f.write("")
 
-            return command
+            return parse_command(command)
         except Exception as e:
             print(f"Error reading command file: {e}")
-            return ""
+            return None, "", {}
+
+    def await_decision(self, held_id: str, agent: PhoneAgent) -> bool:
+        """
+        Wait for the controller to confirm or cancel a held command.
+
+        Installed as the agent's action gate, so the screenshot and model
+        request of the first step overlap with the controller's final speech
+        recognition and nothing touches the device before the decision. Any
+        other command also drops the held one and is queued to run next.
+
+        Returns:
+            True if the command was confirmed and may go on
+        """
+        deadline = time.time() + HOLD_TIMEOUT
+        reason = "Held command not confirmed in time"
+        while self.is_running and time.time() < deadline:
+            command_id, command, headers = self.read_command()
+            if headers.get("CONFIRM") == held_id:
+                agent.action_gate = lambda action: self.check_cancel(held_id)
+                return True
+            if headers.get("CANCEL") == held_id:
+                reason = "Held command cancelled"
+                break
+            if command:
+                self.pending.append((command_id, command, headers))
+                reason = "Held command superseded by a new command"
+                break
+            self.wait(HOLD_POLL_INTERVAL)
+        self.stop_reason = reason
+        return False
+
+    def check_cancel(self, running_id: str) -> bool:
+        """
+        Look for a cancellation of the running command before its next action.
+
+        Installed as the agent's action gate for commands with an ID, since
+        agent.run() blocks the monitor loop until the task ends. The controller
+        sends "CANCEL: <id>" when the user says stop; the current step then
+        ends without touching the device. Other commands that arrive meanwhile
+        are queued to run next, cancellations of those are remembered.
+
+        Returns:
+            True if the command may go on
+        """
+        while True:
+            command_id, command, headers = self.read_command()
+            cancelled = headers.get("CANCEL")
+            if cancelled == running_id:
+                self.stop_reason = "Cancelled while running"
+                return False
+            if cancelled:
+                self.cancelled_ids.append(cancelled)
+            elif command:
+                self.pending.append((command_id, command, headers))
+            elif not headers:
+                return True
 
     def monitor_commands(self, agent: PhoneAgent):
         """
@@ -582,39 +882,79 @@ class AndroidCommunication:
         while self.is_running:
             try:
                 # Read command from file
-                command = self.read_command()
-
-                # If new command received
-                if command and command != last_command:
+                if self.pending:
+                    command_id, command, headers = self.pending.pop(0)
+                else:
+                    command_id, command, headers = self.read_command()
+
+                if "CANCEL" in headers:
+                    # Stop for a command that has finished, or that has not been read yet
+                    print(f"Command {headers['CANCEL']} cancelled; skipping it if it arrives")
+                    self.cancelled_ids.append(headers["CANCEL"])
+
+                elif "CONFIRM" in headers:
+                    # Decision for a held command that was already dropped
+                    print(f"Ignoring decision for a command no longer held: {headers}")
+
+                elif command_id and command_id in self.cancelled_ids:
+                    print(f"⏭️  Skipping cancelled command: {command}")
+                    self.write_status("ERROR", result="Cancelled before it ran", task=command,
+                                      command_id=command_id)
+
+                elif command_id and command_id in self.recent_ids:
+                    # Resent after a reconnect that lost the acknowledgement
+                    print(f"Ignoring command {command_id} that was already accepted")
+
+                # If new command received; commands with an ID may repeat the same text
+                elif command and (command_id or command != last_command):
                     print(f"📥 Received command: {command}")
                     self.current_task = command
-                    self.write_status("PROCESSING", task=command)
+                    self.stop_reason = None
+                    held = command_id and "HOLD" in headers
+                    if held:
+                        agent.action_gate = lambda action, held_id=command_id: self.await_decision(held_id, agent)
+                    elif command_id:
+                        agent.action_gate = lambda action, running_id=command_id: self.check_cancel(running_id)
+                    # ACCEPTED only acknowledges that the command was taken off the
+                    # channel; commands run synchronously, so PROCESSING follows at once
+                    if command_id:
+                        self.recent_ids.append(command_id)
+                        self.write_status("ACCEPTED", task=command, command_id=command_id)
+                    self.write_status("PROCESSING", task=command, command_id=command_id)
 
                     try:
                         # Execute the command using agent
-                        print(f"🚀 Executing task: {command}")
+                        print(f"🚀 Executing task{' (held until confirmed)' if held else ''}: {command}")
                         result = agent.run(command)
-                        print(f"✅ Task completed: {result}")
+                        if self.stop_reason:
+                            print(f"⏭️  Stopped before acting: {self.stop_reason}")
+                            self.write_status("ERROR", result=self.stop_reason,
+                                              task=command, command_id=command_id)
+                        else:
+                            print(f"✅ Task completed: {result}")
 
-                        # Write success status
-                        self.write_status("SUCCESS", result=str(result), task=command)
+                            # Write success status
+                            self.write_status("SUCCESS", result=str(result), task=command, command_id=command_id)
 
                     except Exception as e:
                         error_msg = f"Error executing task: {str(e)}"
                         print(f"❌ {error_msg}")
-                        self.write_status("ERROR", result=error_msg, task=command)
+                        self.write_status("ERROR", result=error_msg, task=command, command_id=command_id)
 
                     # Reset agent for next task
+                    agent.action_gate = None
                     agent.reset()
-                    last_command = command
+                    if not self.stop_reason:
+                        last_command = command
                     self.current_task = None
 
                 # If no command, update idle status periodically
                 elif not command and time.time() % 10 < self.poll_interval:
                     self.write_status("IDLE")
 
-                # Sleep for poll interval
-                time.sleep(self.poll_interval)
+                # Sleep for poll interval; commands queued during a hold run at once
+                if not self.pending:
+                    self.wait(self.poll_interval)
 
             except KeyboardInterrupt:
                 print("\n🛑 Android communication mode stopped by user")
@@ -624,8 +964,19 @@ class AndroidCommunication:
                 print(f"Error in monitor loop: {e}")
                 time.sleep(self.poll_interval)
 
+        if self.socket:
+            self.socket.close()
+            self.socket = None
         self.write_status("STOPPED", "Android communication stopped")
 
+    def wait(self, seconds: float):
+        """Sleep between polls; a command arriving over the socket ends the wait early."""
+        if self.socket:
+            self.socket.arrived.wait(seconds)
+            self.socket.arrived.clear()
+        else:
+            time.sleep(seconds)
+
 def main():
     """Main entry point."""
     args = parse_args()
@@ -670,7 +1021,7 @@ def main():
     )
 
     if args.android_mode:
-        androidCommunication = AndroidCommunication(args.shared_dir, args.poll_interval)
+        androidCommunication = AndroidCommunication(args.shared_dir, args.poll_interval, args.socket_port)
         androidCommunication.monitor_commands(agent)
         return
 
@@ -81,6 +81,10 @@ class PhoneAgent:
         self._context: list[dict[str, Any]] = []
         self._step_count = 0
 
+        # Optional veto consulted before each action is executed; returning
+        # False ends the task without touching the device
+        self.action_gate: Callable[[dict[str, Any]], bool] | None = None
+
     def run(self, task: str) -> str:
         """
         Run the agent to complete a task.
@@ -204,6 +208,15 @@ class PhoneAgent:
         # Remove image from context to save space
         self._context[-1] = MessageBuilder.remove_images_from_message(self._context[-1])
 
+        if self.action_gate is not None and not self.action_gate(action):
+            return StepResult(
+                success=False,
+                finished=True,
+                action=None,
+                thinking=response.thinking,
+                message="Cancelled before executing an action",
+            )
+
         # Execute action
         try:
             result = self.action_handler.execute(
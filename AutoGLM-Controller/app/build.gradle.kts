@@ -44,6 +44,11 @@ android {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
     }
+
+    testOptions {
+        // 本地单元测试中 android.util.Log 等方法返回默认值，而不是抛出异常
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -52,6 +57,8 @@ dependencies {
     implementation("com.google.android.material:material:1.9.0")
     implementation(files("libs\\Msc.jar"))
     testImplementation("junit:junit:4.13.2")
+    // 本地单元测试中 android.jar 的 org.json 只是桩实现，用真实实现作为解析器的比对基准
+    testImplementation("org.json:json:20231013")
     androidTestImplementation("androidx.test.ext:junit:1.1.5")
     androidTestImplementation("androidx.test.espresso:espresso-core:3.5.1")
 
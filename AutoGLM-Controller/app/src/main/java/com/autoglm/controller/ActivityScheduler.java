@@ -0,0 +1,262 @@
+package com.autoglm.controller;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 按使用情况调整服务的活动级别，减少后台唤醒
+ * <p>
+ * 级别：
+ * <ul>
+ * <li>{@link Level#IDLE}：不刷新状态（日志中仍有排队命令的通道除外，投递完为止）。息屏、悬浮窗隐藏或超过
+ * {@link #ARMED_TIMEOUT_MILLIS} 没有使用时进入。</li>
+ * <li>{@link Level#ARMED}：亮屏、悬浮窗显示且最近使用过，按文件事件刷新状态，随时可以说命令。</li>
+ * <li>{@link Level#IN_FLIGHT}：已发送命令、agent 尚未完成，按文件事件刷新状态，需要轮询时缩短间隔。不受屏幕与悬浮窗影响，
+ * agent 长时间没有回报时按 {@link #IN_FLIGHT_TIMEOUT_MILLIS} 兜底退出。</li>
+ * </ul>
+ * 同时按小时统计服务被唤醒（状态刷新、轮询）的次数。
+ * <p>
+ * 级别相关的方法在主线程调用；{@link #recordWakeup()} 可在任意线程调用。
+ */
+public class ActivityScheduler {
+    private static final String TAG = "ActivityScheduler";
+
+    // 没有使用（发送命令、触摸悬浮窗、亮屏）超过该时长后进入空闲
+    static final long ARMED_TIMEOUT_MILLIS = 30 * 60 * 1000;
+    // agent 没有回报完成时，执行中状态的最长保持时间（从最近一次发送或状态更新算起）
+    static final long IN_FLIGHT_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    static final long HOUR_MILLIS = 60 * 60 * 1000;
+    // 保留的小时统计数
+    static final int HOURS_KEPT = 24;
+
+    public enum Level {
+        IDLE,
+        ARMED,
+        IN_FLIGHT
+    }
+
+    public interface Listener {
+        void onLevelChanged(Level level, Level previous);
+    }
+
+    private static ActivityScheduler instance;
+
+    private final CommandDispatcher.Scheduler scheduler;
+    private final LongSupplier clock;
+    private Listener listener;
+
+    private Level level = Level.IDLE;
+    private boolean screenOn = true;
+    private boolean overlayVisible = false;
+    private boolean inFlight = false;
+    private long lastActivityMillis;
+    private long lastFlightUpdateMillis;
+    private final Runnable timeoutRunnable = this::update;
+
+    // 唤醒统计：当前小时的计数与之前各小时的计数（环形，按小时序号取模）
+    private final Object wakeupLock = new Object();
+    private final int[] hourlyWakeups = new int[HOURS_KEPT];
+    private long currentHour;
+    private int currentWakeups;
+
+    /**
+     * 进程内共享的调度器，回调在主线程
+     */
+    public static synchronized ActivityScheduler get() {
+        if (instance == null) {
+            Handler handler = IoThread.getMainHandler();
+            instance = new ActivityScheduler(new CommandDispatcher.Scheduler() {
+                @Override
+                public void postDelayed(Runnable task, long delayMillis) {
+                    handler.postDelayed(task, delayMillis);
+                }
+
+                @Override
+                public void removeCallbacks(Runnable task) {
+                    handler.removeCallbacks(task);
+                }
+            }, SystemClock::elapsedRealtime);
+        }
+        return instance;
+    }
+
+    /**
+     * @param scheduler 超时检查的延时执行
+     * @param clock     单调时钟，毫秒，息屏期间也应计时
+     */
+    ActivityScheduler(CommandDispatcher.Scheduler scheduler, LongSupplier clock) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+        long now = clock.getAsLong();
+        this.lastActivityMillis = now;
+        this.currentHour = now / HOUR_MILLIS;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * 屏幕亮灭；亮屏视为一次使用
+     */
+    public void setScreenOn(boolean screenOn) {
+        if (screenOn && !this.screenOn) {
+            lastActivityMillis = clock.getAsLong();
+        }
+        this.screenOn = screenOn;
+        update();
+    }
+
+    /**
+     * 悬浮窗显示或隐藏；显示视为一次使用
+     */
+    public void setOverlayVisible(boolean overlayVisible) {
+        if (overlayVisible && !this.overlayVisible) {
+            lastActivityMillis = clock.getAsLong();
+        }
+        this.overlayVisible = overlayVisible;
+        update();
+    }
+
+    /**
+     * 用户触摸了悬浮窗
+     */
+    public void onUserActivity() {
+        lastActivityMillis = clock.getAsLong();
+        update();
+    }
+
+    /**
+     * 命令已交给传输通道
+     */
+    public void onCommandDispatched() {
+        long now = clock.getAsLong();
+        lastActivityMillis = now;
+        lastFlightUpdateMillis = now;
+        inFlight = true;
+        update();
+    }
+
+    /**
+     * agent 状态更新：处理中保持执行中，空闲、完成或退出后结束
+     */
+    public void onAgentStatus(AgentStatus status) {
+        String state = status.getState();
+        if (state == null) {
+            return;
+        }
+        switch (state) {
+            case AgentStatus.ACCEPTED:
+            case AgentStatus.PROCESSING:
+                if (inFlight) {
+                    lastFlightUpdateMillis = clock.getAsLong();
+                }
+                break;
+            case AgentStatus.IDLE:
+            case AgentStatus.SUCCESS:
+            case AgentStatus.ERROR:
+            case AgentStatus.STOPPED:
+                inFlight = false;
+                update();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 重新计算级别，并安排下一次超时检查
+     */
+    private void update() {
+        long now = clock.getAsLong();
+        if (inFlight && now - lastFlightUpdateMillis >= IN_FLIGHT_TIMEOUT_MILLIS) {
+            Log.w(TAG, "agent 长时间没有回报，结束执行中状态");
+            inFlight = false;
+        }
+        long armedUntil = lastActivityMillis + ARMED_TIMEOUT_MILLIS;
+        Level next;
+        long deadline;
+        if (inFlight) {
+            next = Level.IN_FLIGHT;
+            deadline = lastFlightUpdateMillis + IN_FLIGHT_TIMEOUT_MILLIS;
+        } else if (screenOn && overlayVisible && now < armedUntil) {
+            next = Level.ARMED;
+            deadline = armedUntil;
+        } else {
+            next = Level.IDLE;
+            deadline = -1;
+        }
+        scheduler.removeCallbacks(timeoutRunnable);
+        if (deadline >= 0) {
+            scheduler.postDelayed(timeoutRunnable, Math.max(0, deadline - now));
+        }
+        if (next != level) {
+            Level previous = level;
+            level = next;
+            Log.d(TAG, "活动级别: " + previous + " -> " + next + "，上一小时唤醒 " + getWakeupsLastHour() + " 次");
+            if (listener != null) {
+                listener.onLevelChanged(next, previous);
+            }
+        }
+    }
+
+    /**
+     * 记录一次唤醒（状态刷新、轮询检查等）
+     */
+    public void recordWakeup() {
+        synchronized (wakeupLock) {
+            rollHourLocked(clock.getAsLong());
+            currentWakeups++;
+        }
+    }
+
+    /**
+     * 上一个完整小时的唤醒次数
+     */
+    public int getWakeupsLastHour() {
+        synchronized (wakeupLock) {
+            rollHourLocked(clock.getAsLong());
+            return hourlyWakeups[slot(currentHour - 1)];
+        }
+    }
+
+    /**
+     * 最近 {@link #HOURS_KEPT} 个完整小时的唤醒次数，最早的在前
+     */
+    public int[] getHourlyWakeups() {
+        synchronized (wakeupLock) {
+            rollHourLocked(clock.getAsLong());
+            int[] result = new int[HOURS_KEPT];
+            for (int i = 0; i < HOURS_KEPT; i++) {
+                result[i] = hourlyWakeups[slot(currentHour - HOURS_KEPT + i)];
+            }
+            return result;
+        }
+    }
+
+    private void rollHourLocked(long now) {
+        long hour = now / HOUR_MILLIS;
+        if (hour == currentHour) {
+            return;
+        }
+        // 结束当前小时；中间没有唤醒的小时计 0
+        hourlyWakeups[slot(currentHour)] = currentWakeups;
+        Log.d(TAG, "过去一小时唤醒 " + currentWakeups + " 次，当前级别 " + level);
+        for (long h = currentHour + 1; h < hour && h <= currentHour + HOURS_KEPT; h++) {
+            hourlyWakeups[slot(h)] = 0;
+        }
+        currentHour = hour;
+        currentWakeups = 0;
+    }
+
+    private static int slot(long hour) {
+        return (int) Math.floorMod(hour, (long) HOURS_KEPT);
+    }
+}
@@ -0,0 +1,157 @@
+package com.autoglm.controller;
+
+/**
+ * 基于音量回调的自适应尾端点检测
+ * <p>
+ * 识别器的固定后端点（VAD_EOS）要等满一段静音才结束录音。这里根据音量流判断语音是否已经结束：
+ * 跟踪背景噪声基线，音量明显高于基线视为语音；语音累计足够长后，若静音持续超过所需的拖尾时间，
+ * 即判定说完，调用方可提前停止录音。拖尾时间随说话人的停顿习惯自适应：本次已出现过的句中停顿越长，
+ * 需要等待的静音也越长，但不超过 {@link #MAX_HANGOVER_MILLIS}，固定 VAD_EOS 仍作为兜底上限。
+ * <p>
+ * 非线程安全，在识别回调线程中使用。
+ */
+public class AdaptiveEndpointer {
+    // 在离线音量轨迹（test/resources/endpoint）上标定：0.5 会截断约 600ms 的句中犹豫，0.25 不截断任何轨迹
+    public static final float DEFAULT_SENSITIVITY = 0.25f;
+
+    // 拖尾时间范围：灵敏度 0 时最少等待 700ms，灵敏度 1 时 250ms；上限小于 VAD_EOS(1000ms)
+    private static final long MIN_HANGOVER_LOW_SENSITIVITY = 700;
+    private static final long MIN_HANGOVER_HIGH_SENSITIVITY = 250;
+    static final long MAX_HANGOVER_MILLIS = 900;
+    // 句中停顿的放大系数
+    private static final float PAUSE_FACTOR = 1.3f;
+    // 判定为有效语音所需的累计时长
+    private static final long MIN_SPEECH_MILLIS = 200;
+    // 相对噪声基线的语音起点/终点门限（音量单位，讯飞音量范围 0~30）
+    private static final float ONSET_MARGIN = 4f;
+    private static final float OFFSET_MARGIN = 2f;
+    // 语音中判定静音的相对门限：低于噪声基线到语音电平之间的该比例即视为静音，
+    // 避免噪声逐渐变大时基线跟不上、把噪声一直当作语音
+    private static final float OFFSET_RATIO = 0.3f;
+    // 单帧时长上限，避免回调间隔异常时一帧计入过长时间
+    private static final long MAX_FRAME_MILLIS = 200;
+
+    private float sensitivity = DEFAULT_SENSITIVITY;
+
+    private boolean started;
+    private long lastTime;
+    private float noiseFloor;
+    private float speechLevel;
+    private boolean inSpeech;
+    private long speechMillis;
+    private long silenceStart;
+    private long longestPause;
+    private boolean endpointed;
+    private long endpointTime;
+
+    public AdaptiveEndpointer() {
+        reset();
+    }
+
+    /**
+     * @param sensitivity 0~1，越大越早结束录音
+     */
+    public void setSensitivity(float sensitivity) {
+        this.sensitivity = Math.max(0f, Math.min(1f, sensitivity));
+    }
+
+    public float getSensitivity() {
+        return sensitivity;
+    }
+
+    /**
+     * 开始新的一次识别
+     */
+    public void reset() {
+        started = false;
+        lastTime = 0;
+        noiseFloor = 0;
+        speechLevel = 0;
+        inSpeech = false;
+        speechMillis = 0;
+        silenceStart = -1;
+        longestPause = 0;
+        endpointed = false;
+        endpointTime = -1;
+    }
+
+    /**
+     * 输入一次音量回调
+     *
+     * @param volume 音量，讯飞为 0~30
+     * @param now    时间，毫秒
+     * @return 本次判定语音已结束时返回 true，每次识别只返回一次
+     */
+    public boolean onVolume(int volume, long now) {
+        if (endpointed) {
+            return false;
+        }
+        if (!started) {
+            started = true;
+            lastTime = now;
+            noiseFloor = volume;
+            return false;
+        }
+        long frame = Math.max(0, Math.min(now - lastTime, MAX_FRAME_MILLIS));
+        lastTime = now;
+
+        boolean speech = inSpeech
+                ? volume >= Math.max(noiseFloor + OFFSET_MARGIN,
+                        noiseFloor + (speechLevel - noiseFloor) * OFFSET_RATIO)
+                : volume >= noiseFloor + ONSET_MARGIN;
+        if (speech) {
+            speechLevel = speechMillis == 0 ? volume : speechLevel + (volume - speechLevel) * 0.1f;
+            if (silenceStart >= 0 && speechMillis >= MIN_SPEECH_MILLIS) {
+                // 句中停顿后继续说话
+                longestPause = Math.max(longestPause, now - silenceStart);
+            }
+            silenceStart = -1;
+            inSpeech = true;
+            speechMillis += frame;
+            return false;
+        }
+
+        // 非语音帧：下降时快速、上升时缓慢地跟踪噪声基线
+        float rate = volume < noiseFloor ? 0.5f : 0.05f;
+        noiseFloor += (volume - noiseFloor) * rate;
+        if (inSpeech) {
+            inSpeech = false;
+            silenceStart = now;
+        }
+        if (silenceStart >= 0 && speechMillis >= MIN_SPEECH_MILLIS
+                && now - silenceStart >= getRequiredHangover()) {
+            endpointed = true;
+            endpointTime = now;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 当前判定结束所需的静音时长
+     */
+    public long getRequiredHangover() {
+        long min = (long) (MIN_HANGOVER_LOW_SENSITIVITY
+                + (MIN_HANGOVER_HIGH_SENSITIVITY - MIN_HANGOVER_LOW_SENSITIVITY) * sensitivity);
+        long adaptive = (long) (longestPause * PAUSE_FACTOR);
+        return Math.min(MAX_HANGOVER_MILLIS, Math.max(min, adaptive));
+    }
+
+    public boolean isEndpointed() {
+        return endpointed;
+    }
+
+    /**
+     * 判定结束的时间，尚未判定时为 -1
+     */
+    public long getEndpointTime() {
+        return endpointTime;
+    }
+
+    /**
+     * 本次识别累计的语音时长
+     */
+    public long getSpeechMillis() {
+        return speechMillis;
+    }
+}
@@ -0,0 +1,78 @@
+package com.autoglm.controller;
+
+/**
+ * 一个 agent 通道：名称、通信目录与传输通道
+ * <p>
+ * 每个通道对应一个 agent 进程（或一台经 adb 控制的设备），有独立的命令/状态文件。
+ * 路由所需的负载与最新状态由 {@link ChannelRouter} 加锁维护。
+ */
+public class AgentChannel {
+    /**
+     * 通道的状态推送回调，在通道内部线程执行
+     */
+    public interface OnStatusPushListener {
+        void onStatusPushed(AgentChannel channel, String status);
+    }
+
+    private final String name;
+    private final CommandFiles files;
+    // 为 null 时使用当前默认传输通道（随配置切换）
+    private final CommandTransport transport;
+
+    // 以下由 ChannelRouter 加锁访问
+    // 已发送、尚未结束的命令数
+    int inFlight;
+    // 最近一次分配命令的序号，负载相同时轮流分配
+    long lastRouteSeq;
+    String statusText;
+    AgentStatus status;
+    // 最近发送的命令文本（去掉首尾空白），旧版 agent 以此忽略重复的纯文本命令
+    String lastCommand;
+
+    /**
+     * @param files     通信目录下的文件协议，用于监听状态与投递排队的命令
+     * @param transport 传输通道；为 null 时使用 {@link Transports#get()}
+     */
+    public AgentChannel(String name, CommandFiles files, CommandTransport transport) {
+        this.name = name;
+        this.files = files;
+        this.transport = transport;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CommandFiles getFiles() {
+        return files;
+    }
+
+    /**
+     * 通道使用的传输通道
+     */
+    public CommandTransport getTransport() {
+        return transport != null ? transport : Transports.get();
+    }
+
+    /**
+     * 是否使用默认传输通道
+     */
+    public boolean isDefault() {
+        return transport == null;
+    }
+
+    /**
+     * 释放通道自己创建的资源；默认通道的资源由 {@link Transports} 与 {@link FileUtils} 管理
+     */
+    public void close() {
+        if (transport != null) {
+            transport.close();
+            files.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,118 @@
+package com.autoglm.controller;
+
+/**
+ * agent 写入的状态文本
+ * <p>
+ * 状态为若干 "KEY: value" 行，例如：
+ * <pre>
+ * STATUS: PROCESSING
+ * ID: k3x9a-12
+ * PROTOCOL: 2
+ * TASK: 打开微信
+ * TIMESTAMP: 2024-01-01 12:00:00
+ * </pre>
+ * 支持命令 ID 的 agent（协议版本 2 及以上）会带上 PROTOCOL 行，并在处理某条命令期间回显其 ID；
+ * 旧版 agent 只写 STATUS/TASK/RESULT/TIMESTAMP。TASK 与 RESULT 为任意文本（可能跨多行），
+ * 协议字段写在它们之前，解析到 TASK 或 RESULT 即停止。开启 socket 监听的 agent 还会写 "SOCKET: 端口"。
+ */
+public class AgentStatus {
+    // 状态取值
+    public static final String IDLE = "IDLE";
+    public static final String ACCEPTED = "ACCEPTED";
+    public static final String PROCESSING = "PROCESSING";
+    public static final String SUCCESS = "SUCCESS";
+    public static final String ERROR = "ERROR";
+    public static final String STOPPED = "STOPPED";
+
+    private final String state;
+    private final String commandId;
+    private final int protocol;
+    private final int socketPort;
+
+    AgentStatus(String state, String commandId, int protocol) {
+        this(state, commandId, protocol, 0);
+    }
+
+    AgentStatus(String state, String commandId, int protocol, int socketPort) {
+        this.state = state;
+        this.commandId = commandId;
+        this.protocol = protocol;
+        this.socketPort = socketPort;
+    }
+
+    /**
+     * 解析状态文本；无法识别的内容得到 state 为 null 的状态
+     */
+    public static AgentStatus parse(String text) {
+        String state = null;
+        String commandId = null;
+        int protocol = 1;
+        int socketPort = 0;
+        if (text != null) {
+            int start = 0;
+            int length = text.length();
+            while (start < length) {
+                int end = text.indexOf('\n', start);
+                if (end < 0) {
+                    end = length;
+                }
+                String line = text.substring(start, end).trim();
+                start = end + 1;
+                if (line.startsWith("STATUS:")) {
+                    state = value(line, "STATUS:");
+                } else if (line.startsWith("ID:")) {
+                    commandId = value(line, "ID:");
+                } else if (line.startsWith("PROTOCOL:")) {
+                    try {
+                        protocol = Integer.parseInt(value(line, "PROTOCOL:"));
+                    } catch (NumberFormatException e) {
+                        // 无法识别的版本按旧协议处理
+                    }
+                } else if (line.startsWith("SOCKET:")) {
+                    try {
+                        socketPort = Integer.parseInt(value(line, "SOCKET:"));
+                    } catch (NumberFormatException e) {
+                        // 忽略无法识别的端口
+                    }
+                } else if (line.startsWith("TASK:") || line.startsWith("RESULT:")) {
+                    // 之后为任意文本，不再向下解析
+                    break;
+                }
+            }
+        }
+        return new AgentStatus(state, commandId != null && !commandId.isEmpty() ? commandId : null, protocol,
+                socketPort);
+    }
+
+    private static String value(String line, String key) {
+        return line.substring(key.length()).trim();
+    }
+
+    /**
+     * 状态取值，如 {@link #PROCESSING}；无法识别时为 null
+     */
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * 回显的命令 ID，没有时为 null
+     */
+    public String getCommandId() {
+        return commandId;
+    }
+
+    /**
+     * agent 的协议版本，旧版 agent 为 1
+     */
+    public int getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * agent 监听的 socket 端口，未监听时为 0
+     */
+    public int getSocketPort() {
+        return socketPort;
+    }
+}
@@ -0,0 +1,222 @@
+package com.autoglm.controller;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 录音预缓冲：长按之前就开始采集，识别开始时把最近一段音频先交给引擎
+ * <p>
+ * 长按触发到引擎回调 onBeginOfSpeech 之间识别器仍在启动，用户开口的第一个字常被截掉。
+ * 按下悬浮窗时 {@link #arm()} 开始采集，音频写入固定大小的环形缓冲，只保留最近
+ * {@link #DEFAULT_PRE_ROLL_MILLIS} 毫秒；识别开始时 {@link #startStreaming(Sink)} 先送出缓冲中的音频，
+ * 之后的音频直接送出，中间不丢、不重复。未开始识别时采集在 {@link #ARM_TIMEOUT_MILLIS} 后自动停止。
+ * <p>
+ * 采集在专用线程进行，缓冲与读取块在构造时一次分配，采集期间不再分配内存。
+ * {@link Sink} 的回调都在采集线程执行。
+ */
+public class AudioPreRoll {
+    private static final String TAG = "AudioPreRoll";
+    private static final String THREAD_NAME = "AutoGLM-Audio";
+
+    public static final int DEFAULT_PRE_ROLL_MILLIS = 1500;
+    // 按下后未开始识别（如只是拖动）时自动停止采集
+    static final long ARM_TIMEOUT_MILLIS = 3000;
+    // 每次读取 20ms
+    private static final int CHUNK_MILLIS = 20;
+
+    /**
+     * 音频接收方，回调在采集线程执行
+     */
+    public interface Sink {
+        void onAudio(byte[] data, int offset, int length);
+
+        /**
+         * 送出过程中音频来源意外结束（麦克风被占用等）
+         */
+        void onEnd();
+    }
+
+    private final Supplier<AudioSource> sourceFactory;
+    private final int sampleRate;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final PcmRingBuffer ring;
+    private final byte[] chunk;
+
+    private final Object lock = new Object();
+    // 采集线程是否在运行、来源是否已成功开始
+    private boolean running = false;
+    private boolean capturing = false;
+    private boolean stopRequested = false;
+    private long armedAt;
+    private Sink sink;
+    private boolean flushPending = false;
+    private volatile int lastPreRollBytes;
+
+    /**
+     * @param sourceFactory 每次采集创建一个音频来源
+     */
+    public AudioPreRoll(Supplier<AudioSource> sourceFactory, int sampleRate) {
+        this(sourceFactory, sampleRate, DEFAULT_PRE_ROLL_MILLIS,
+                task -> new Thread(task, THREAD_NAME).start(), SystemClock::elapsedRealtime);
+    }
+
+    AudioPreRoll(Supplier<AudioSource> sourceFactory, int sampleRate, int preRollMillis,
+                 Executor executor, LongSupplier clock) {
+        this.sourceFactory = sourceFactory;
+        this.sampleRate = sampleRate;
+        this.executor = executor;
+        this.clock = clock;
+        this.ring = PcmRingBuffer.forMillis(sampleRate, preRollMillis);
+        this.chunk = new byte[sampleRate * 2 * CHUNK_MILLIS / 1000];
+    }
+
+    /**
+     * 开始采集到环形缓冲；已在采集时只刷新超时
+     */
+    public void arm() {
+        synchronized (lock) {
+            armedAt = clock.getAsLong();
+            stopRequested = false;
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        executor.execute(this::captureLoop);
+    }
+
+    /**
+     * 开始向接收方送出音频：先送出缓冲中的预录音，之后实时送出
+     *
+     * @return 当前没有在采集时返回 false
+     */
+    public boolean startStreaming(Sink sink) {
+        synchronized (lock) {
+            if (!running || stopRequested) {
+                return false;
+            }
+            this.sink = sink;
+            flushPending = true;
+            return true;
+        }
+    }
+
+    /**
+     * 停止采集，接收方不再收到音频
+     */
+    public void stop() {
+        synchronized (lock) {
+            if (running) {
+                stopRequested = true;
+            }
+            sink = null;
+            flushPending = false;
+        }
+    }
+
+    /**
+     * 音频来源已成功开始且未被停止
+     */
+    public boolean isCapturing() {
+        synchronized (lock) {
+            return capturing && !stopRequested;
+        }
+    }
+
+    /**
+     * 最近一次送出的预录音字节数
+     */
+    public int getLastPreRollBytes() {
+        return lastPreRollBytes;
+    }
+
+    /**
+     * 字节数对应的毫秒数
+     */
+    public long bytesToMillis(int bytes) {
+        return bytes * 1000L / (sampleRate * 2L);
+    }
+
+    private void captureLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        AudioSource source = sourceFactory.get();
+        if (!source.start()) {
+            source.stop();
+            finishCapture();
+            return;
+        }
+        if (source.getSampleRate() != sampleRate) {
+            Log.e(TAG, "采样率不匹配: " + source.getSampleRate());
+            source.stop();
+            finishCapture();
+            return;
+        }
+        ring.clear();
+        synchronized (lock) {
+            capturing = true;
+        }
+
+        Sink endedSink = null;
+        while (true) {
+            Sink current;
+            boolean flush;
+            synchronized (lock) {
+                boolean timedOut = sink == null && clock.getAsLong() - armedAt > ARM_TIMEOUT_MILLIS;
+                if (stopRequested || timedOut) {
+                    resetLocked();
+                    break;
+                }
+                current = sink;
+                flush = flushPending;
+                flushPending = false;
+            }
+            if (flush) {
+                int bytes = ring.drainTo(current::onAudio);
+                lastPreRollBytes = bytes;
+                Log.d(TAG, "预录音 " + bytesToMillis(bytes) + "ms");
+            }
+            int n = source.read(chunk, 0, chunk.length);
+            if (n < 0) {
+                synchronized (lock) {
+                    endedSink = sink;
+                    resetLocked();
+                }
+                break;
+            }
+            if (current != null) {
+                current.onAudio(chunk, 0, n);
+            } else {
+                // 还没开始识别，或接收方刚设置：写入缓冲，下一轮随预录音一起送出
+                ring.write(chunk, 0, n);
+            }
+        }
+        source.stop();
+        if (endedSink != null) {
+            Log.w(TAG, "音频来源意外结束");
+            endedSink.onEnd();
+        }
+    }
+
+    private void finishCapture() {
+        synchronized (lock) {
+            resetLocked();
+        }
+    }
+
+    /**
+     * 采集结束，需持有 lock
+     */
+    private void resetLocked() {
+        running = false;
+        capturing = false;
+        stopRequested = false;
+        sink = null;
+        flushPending = false;
+    }
+}
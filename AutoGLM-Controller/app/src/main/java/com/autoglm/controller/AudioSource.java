@@ -0,0 +1,33 @@
+package com.autoglm.controller;
+
+/**
+ * PCM 音频来源：16 位单声道小端
+ * <p>
+ * 默认实现为麦克风 {@link MicAudioSource}；测试与回放使用 {@link PcmStreamAudioSource} 从文件读取。
+ * 每个实例只用于一次采集，由采集线程调用 start、read 与 stop。
+ */
+public interface AudioSource {
+    /**
+     * 开始采集
+     *
+     * @return 来源不可用（无权限、设备被占用等）时返回 false
+     */
+    boolean start();
+
+    /**
+     * 读取音频，阻塞直到有数据
+     *
+     * @return 读取的字节数，来源结束或出错时返回负数
+     */
+    int read(byte[] buffer, int offset, int length);
+
+    /**
+     * 停止采集并释放资源
+     */
+    void stop();
+
+    /**
+     * 采样率（Hz）
+     */
+    int getSampleRate();
+}
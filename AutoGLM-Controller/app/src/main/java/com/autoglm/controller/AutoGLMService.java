@@ -1,30 +1,69 @@
 package com.autoglm.controller;
 
-import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
-import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
 
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 public class AutoGLMService extends Service {
     private static final String TAG = "AutoGLMService";
     private static final int NOTIFICATION_ID = 1001;
     private static final String CHANNEL_ID = "AutoGLM_CHANNEL";
-    private static final long POLL_INTERVAL = 1000; // 轮询间隔1秒
+    private static final long POLL_INTERVAL = 1000; // 轮询间隔1秒（文件事件不可用时的兜底）
+    private static final long FAST_POLL_INTERVAL = 250; // 命令执行中的轮询间隔（文件事件不可用时）
+    private static final float MAX_NOTIFY_RATE = 4f; // 通知每秒最多更新4次
+    // 启动阶段（见 StartupTrace）
+    static final String STAGE_FOREGROUND = "foreground";
+    static final String STAGE_OVERLAY = "overlay";
+    static final String STAGE_STORAGE = "storage";
+    static final String STAGE_TRANSPORT = "transport";
+    static final String STAGE_RECOGNIZER = "recognizer";
+    // Intent extra：将延迟追踪导出到通信目录，供离线分析（与配置一样经主界面转交，见 ControllerConfig）
+    public static final String EXTRA_EXPORT_TRACE = "export_trace";
+    // Intent extra：录入一遍唤醒词（需已开启唤醒词）
+    public static final String EXTRA_ENROLL_WAKE = "enroll_wake";
+
+    // 本进程是否已创建过服务：首次创建为冷启动，启动时间从进程启动算起
+    private static boolean processStarted = false;
 
     private Handler handler;
-    private Runnable statusPollingRunnable;
+    // 每个 agent 通道一个状态监听
+    private final Map<AgentChannel, StatusWatcher> statusWatchers = new HashMap<>();
+    // 已发现不投递文件事件的通道，之后的监听直接轮询
+    private final Set<AgentChannel> pollingChannels = new HashSet<>();
+    private ChannelRouter channelRouter;
+    private NotificationPublisher notificationPublisher;
     private FloatWindowManager floatWindowManager;
+    // 活动级别：决定是否刷新状态以及刷新频率
+    private ActivityScheduler activityScheduler;
+    private boolean directoryReady = false;
+    // 在 I/O 线程加载，加载完成前为 null
+    private ControllerConfig config;
+    // 配置加载完成前收到的启动 Intent，加载后再应用其中的配置
+    private Intent pendingConfigIntent;
+    // 屏幕亮灭，息屏后唤醒词轮换监听
+    private BroadcastReceiver screenReceiver;
+    private boolean destroyed = false;
 
     @Override
     public void onCreate() {
@@ -39,43 +78,143 @@ public class AutoGLMService extends Service {
             return;
         }
 
-        // 初始化文件目录
-        FileUtils.initDirectory();
+        // 分阶段启动：先显示前台通知与悬浮窗，存储、传输通道与识别器在之后的阶段初始化
+        StartupTrace trace = StartupTrace.get();
+        trace.begin(processStarted ? -1 : Process.getStartElapsedRealtime(),
+                STAGE_FOREGROUND, STAGE_OVERLAY, STAGE_STORAGE, STAGE_TRANSPORT, STAGE_RECOGNIZER);
+        processStarted = true;
+        trace.setOnCompleteListener(completed -> IoThread.execute(() -> {
+            File dir = new File(FileUtils.getBasePath());
+            if (dir.isDirectory()) {
+                completed.appendTo(new File(dir, StartupTrace.LOG_FILE_NAME));
+            }
+        }));
 
-        // 初始化悬浮窗
-        floatWindowManager = FloatWindowManager.getInstance(this);
-        floatWindowManager.showFloatWindow();
+        // 启动前台服务
+        trace.run(STAGE_FOREGROUND, () -> {
+            createNotificationChannel();
+            handler = new Handler(Looper.getMainLooper());
+            notificationPublisher = new NotificationPublisher(this, handler, CHANNEL_ID,
+                    NOTIFICATION_ID, "AutoGLM控制器", MAX_NOTIFY_RATE);
+            startForeground(NOTIFICATION_ID, notificationPublisher.build("服务启动中..."));
+        });
 
-        // 创建通知渠道
-        createNotificationChannel();
+        // 显示悬浮窗（识别器尚未创建，配置尚未加载）；活动级别变化时调整状态刷新，通信目录就绪前不刷新
+        trace.run(STAGE_OVERLAY, () -> {
+            activityScheduler = ActivityScheduler.get();
+            activityScheduler.setListener((level, previous) -> applyActivityLevel());
+            floatWindowManager = FloatWindowManager.getInstance(this);
+            floatWindowManager.showFloatWindow();
+            registerScreenReceiver();
+        });
+        channelRouter = ChannelRouter.get();
+        Transports.setOnStatusPushListener(status -> handler.post(
+                () -> onChannelStatus(channelRouter.getDefaultChannel(), status)));
+        Transports.setOnChannelStatusListener((channel, status) -> handler.post(
+                () -> onChannelStatus(channel, status)));
 
-        // 启动前台服务
-        startForeground(NOTIFICATION_ID, createNotification("服务启动中..."));
+        // 在 I/O 线程加载配置（首次读取 SharedPreferences 要从磁盘加载）并初始化文件目录，
+        // 之后在主线程应用配置、切换传输通道并开始监听状态
+        IoThread.execute(() -> {
+            boolean ok = trace.call(STAGE_STORAGE, () -> {
+                ControllerConfig loaded = new ControllerConfig(this);
+                String protocol = loaded.getCommandProtocol();
+                handler.post(() -> onConfigLoaded(loaded, protocol));
+                return FileUtils.getCommandFiles().initDirectory();
+            });
+            handler.post(() -> {
+                if (destroyed) {
+                    return;
+                }
+                if (!ok) {
+                    Log.e(TAG, "通信目录创建失败: " + FileUtils.getBasePath());
+                }
+                directoryReady = true;
+                applyActivityLevel();
+            });
+        });
 
-        // 初始化轮询
-        initStatusPolling();
+        // 主线程空闲后（悬浮窗已绘制）再创建识别器
+        Looper.myQueue().addIdleHandler(() -> {
+            if (!destroyed) {
+                trace.run(STAGE_RECOGNIZER, floatWindowManager::initRecognizer);
+            }
+            return false;
+        });
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "服务启动");
+        if (config == null) {
+            pendingConfigIntent = intent;
+        } else if (config.applyExtras(intent)) {
+            Log.d(TAG, "配置已更新");
+            floatWindowManager.applyConfig(config);
+            CommandTracker.get().setMode(config.getCommandProtocol());
+            selectTransports();
+        }
+        if (intent != null && intent.getBooleanExtra(EXTRA_EXPORT_TRACE, false)) {
+            IoThread.execute(() -> LatencyTracer.get().exportTo(
+                    new File(FileUtils.getBasePath(), LatencyTracer.EXPORT_FILE_NAME)));
+        }
+        if (intent != null && floatWindowManager != null && intent.getBooleanExtra(EXTRA_ENROLL_WAKE, false)) {
+            floatWindowManager.enrollWakePhrase();
+        }
         return START_STICKY; // 服务被杀死后自动重启
     }
 
+    /**
+     * 配置已在 I/O 线程加载：应用此前收到的启动配置，再应用到悬浮窗、命令协议与传输通道
+     */
+    private void onConfigLoaded(ControllerConfig loaded, String protocol) {
+        if (destroyed) {
+            return;
+        }
+        config = loaded;
+        if (pendingConfigIntent != null && config.applyExtras(pendingConfigIntent)) {
+            Log.d(TAG, "配置已更新");
+            protocol = config.getCommandProtocol();
+        }
+        pendingConfigIntent = null;
+        floatWindowManager.applyConfig(config);
+        CommandTracker.get().setMode(protocol);
+        selectTransports();
+    }
+
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
         return null;
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (floatWindowManager != null) {
+            floatWindowManager.onTrimMemory(level);
+        }
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
         Log.d(TAG, "服务销毁");
+        destroyed = true;
 
-        // 停止轮询
-        if (handler != null && statusPollingRunnable != null) {
-            handler.removeCallbacks(statusPollingRunnable);
+        // 停止状态监听
+        stopStatusWatchers();
+        if (notificationPublisher != null) {
+            notificationPublisher.release();
+        }
+        Transports.setOnStatusPushListener(null);
+        Transports.setOnChannelStatusListener(null);
+        if (activityScheduler != null) {
+            activityScheduler.setListener(null);
+        }
+        if (screenReceiver != null) {
+            unregisterReceiver(screenReceiver);
+            screenReceiver = null;
         }
 
         // 释放悬浮窗
@@ -84,6 +223,30 @@ public class AutoGLMService extends Service {
         }
     }
 
+    /**
+     * 监听屏幕亮灭并同步给悬浮窗与活动级别
+     */
+    private void registerScreenReceiver() {
+        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null) {
+            floatWindowManager.setScreenOn(powerManager.isInteractive());
+            activityScheduler.setScreenOn(powerManager.isInteractive());
+        }
+        screenReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                boolean screenOn = Intent.ACTION_SCREEN_ON.equals(intent.getAction());
+                if (floatWindowManager != null) {
+                    floatWindowManager.setScreenOn(screenOn);
+                }
+                activityScheduler.setScreenOn(screenOn);
+            }
+        };
+        IntentFilter filter = new IntentFilter(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        registerReceiver(screenReceiver, filter);
+    }
+
     /**
      * 创建通知渠道
      */
@@ -101,49 +264,143 @@ public class AutoGLMService extends Service {
     }
 
     /**
-     * 创建通知
+     * 更新通知内容
      */
-    private Notification createNotification(String content) {
-        return new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle("AutoGLM控制器")
-                .setContentText(content)
-                .setSmallIcon(R.mipmap.ic_launcher)
-                .setPriority(NotificationCompat.PRIORITY_LOW)
-                .setOngoing(true)
-                .build();
+    private void updateNotification(String content) {
+        notificationPublisher.publish(content);
     }
 
     /**
-     * 更新通知内容
+     * 在 I/O 线程按配置切换传输通道与附加的 agent 通道，完成后重建状态监听
      */
-    private void updateNotification(String content) {
-        NotificationManager manager = getSystemService(NotificationManager.class);
-        manager.notify(NOTIFICATION_ID, createNotification(content));
+    private void selectTransports() {
+        String transport = config.getTransport();
+        int socketPort = config.getSocketPort();
+        String channels = config.getChannels();
+        IoThread.execute(() -> {
+            StartupTrace.get().run(STAGE_TRANSPORT, () -> {
+                Transports.select(transport, socketPort);
+                Transports.selectChannels(channels);
+            });
+            handler.post(this::applyActivityLevel);
+        });
     }
 
     /**
-     * 初始化状态轮询
+     * 按活动级别重建状态监听：待命与命令执行中按文件事件刷新（执行中文件事件不可用时快速轮询）；
+     * 空闲时只为日志中仍有排队命令的通道保留监听，排空后停止
      */
-    private void initStatusPolling() {
-        handler = new Handler(Looper.getMainLooper());
-        statusPollingRunnable = new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    // 读取状态并更新通知
-                    String status = FileUtils.readStatus();
-                    updateNotification(status);
-                } catch (Exception e) {
-                    Log.e(TAG, "轮询状态失败", e);
-                    updateNotification("轮询失败: " + e.getMessage());
-                } finally {
-                    // 循环执行
-                    handler.postDelayed(this, POLL_INTERVAL);
-                }
+    private void applyActivityLevel() {
+        if (destroyed || !directoryReady) {
+            return;
+        }
+        stopStatusWatchers();
+        ActivityScheduler.Level level = activityScheduler.getLevel();
+        for (AgentChannel channel : channelRouter.getChannels()) {
+            if (level != ActivityScheduler.Level.IDLE) {
+                initStatusWatcher(channel, level == ActivityScheduler.Level.IN_FLIGHT);
+            } else {
+                pumpPendingCommands(channel);
             }
-        };
+        }
+    }
+
+    private void stopStatusWatchers() {
+        for (Map.Entry<AgentChannel, StatusWatcher> entry : statusWatchers.entrySet()) {
+            stopStatusWatcher(entry.getKey(), entry.getValue());
+        }
+        statusWatchers.clear();
+    }
+
+    /**
+     * 停止监听，记住监听中发现的事件不可用
+     */
+    private void stopStatusWatcher(AgentChannel channel, StatusWatcher watcher) {
+        watcher.stop();
+        if (watcher.getMode() == StatusWatcher.Mode.POLL) {
+            pollingChannels.add(channel);
+        }
+    }
+
+    /**
+     * 空闲时的投递：排队的命令只在读取状态时投递（见 {@link #refreshStatus}），
+     * 因此日志中仍有命令时保持该通道的监听，agent 每取走一条就投递下一条，排空后停止监听
+     */
+    private void pumpPendingCommands(AgentChannel channel) {
+        FileUtils.deliverPendingCommandAsync(channel, pending -> {
+            if (destroyed || activityScheduler.getLevel() != ActivityScheduler.Level.IDLE) {
+                return;
+            }
+            StatusWatcher watcher = statusWatchers.get(channel);
+            if (pending > 0 && watcher == null) {
+                Log.d(TAG, "空闲但仍有 " + pending + " 条命令排队，继续监听: " + channel.getName());
+                initStatusWatcher(channel, false);
+            } else if (pending <= 0 && watcher != null) {
+                stopStatusWatcher(channel, watcher);
+                statusWatchers.remove(channel);
+            }
+        });
+    }
 
-        // 启动轮询
-        handler.post(statusPollingRunnable);
+    /**
+     * 初始化某个通道的状态监听：状态文件写入后立即刷新通知，事件不可用时退回轮询。
+     * 只在命令执行中校验事件是否送达，待命与空闲时监听不设定时器；发现过事件不可用的通道直接轮询。
+     * 监听与文件检查都在 I/O 线程进行。
+     *
+     * @param fast 命令执行中：校验事件是否送达，需要轮询时缩短间隔
+     */
+    private void initStatusWatcher(AgentChannel channel, boolean fast) {
+        StatusWatcher watcher = new StatusWatcher(IoThread.getHandler(),
+                channel.getFiles().getDirectory().getPath(), FileUtils.STATUS_FILE_NAME,
+                fast ? FAST_POLL_INTERVAL : POLL_INTERVAL);
+        watcher.setOnStatusChangedListener(() -> refreshStatus(channel));
+        watcher.setOnWakeupListener(activityScheduler::recordWakeup);
+        watcher.setVerifying(fast);
+        watcher.start(pollingChannels.contains(channel) ? StatusWatcher.Mode.POLL : StatusWatcher.Mode.WATCH);
+        statusWatchers.put(channel, watcher);
+    }
+
+    /**
+     * agent 更新了状态：更新命令跟踪与延迟追踪，空闲时发送排队中的命令。
+     * 支持命令 ID 时只有属于已发送命令的状态才算确认，旧版 agent 的任何状态变化都视为确认。
+     */
+    private void onAgentStatus(String status) {
+        AgentStatus parsed = AgentStatus.parse(status);
+        CommandTracker tracker = CommandTracker.get();
+        CommandTracker.Command changed = tracker.onStatus(parsed);
+        if (changed != null || !tracker.isIdEnabled()) {
+            LatencyTracer.get().onStatusChanged();
+        }
+        // 多个通道时，活动级别看是否有通道在执行，命令调度看是否有通道空闲
+        activityScheduler.onAgentStatus(channelRouter.getActivityStatus(parsed));
+        if (!destroyed) {
+            floatWindowManager.onAgentStatus(channelRouter.getDispatchStatus(parsed));
+        }
+    }
+
+    /**
+     * 异步读取某个通道的状态并在主线程更新通知。
+     * agent 取走命令后会立即更新状态，借此时机投递该通道下一条排队的命令。
+     */
+    private void refreshStatus(AgentChannel channel) {
+        FileUtils.readStatusAsync(channel, status -> {
+            onChannelStatus(channel, status);
+            if (!destroyed && activityScheduler.getLevel() == ActivityScheduler.Level.IDLE) {
+                pumpPendingCommands(channel);
+            }
+        });
+    }
+
+    /**
+     * 通道读到或收到推送的状态：内容变化时视为 agent 更新了状态（轮询模式下没有变化也会回调），
+     * 通知显示所有通道的合并状态
+     */
+    private void onChannelStatus(AgentChannel channel, String status) {
+        if (channelRouter.onStatus(channel, status)) {
+            onAgentStatus(status);
+        }
+        if (!destroyed) {
+            updateNotification(channelRouter.summarize());
+        }
     }
-}
\ No newline at end of file
+}
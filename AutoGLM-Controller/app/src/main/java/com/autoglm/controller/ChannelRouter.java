@@ -0,0 +1,282 @@
+package com.autoglm.controller;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 多个 agent 通道之间的命令路由与状态合并
+ * <p>
+ * 命令以通道名开头时发往该通道，例如 "平板，打开微信" 或 "@w2 打开微信"（通道名后为逗号、冒号或空白）；
+ * 否则发往负载最低的可用通道：进行中的命令最少，相同时轮流分配。读不到状态（agent 未运行）的通道
+ * 不参与分配，全部不可用时退回所有通道。
+ * <p>
+ * 进行中的命令数在分配时加一，通道报告一条命令结束（成功、失败或退出）时减一，报告空闲时清零。
+ * 只有一个通道时行为与单通道相同。方法均为线程安全。
+ */
+public class ChannelRouter {
+    private static final String TAG = "ChannelRouter";
+
+    public static final String MAIN_CHANNEL = "main";
+    // 命令开头的通道名最多这么长，超出不视为指定通道
+    private static final int MAX_TARGET_LENGTH = 16;
+
+    /**
+     * 一条命令的路由结果
+     */
+    public static final class Route {
+        public final AgentChannel channel;
+        // 去掉通道名后的命令文本
+        public final String command;
+
+        Route(AgentChannel channel, String command) {
+            this.channel = channel;
+            this.command = command;
+        }
+    }
+
+    private static ChannelRouter instance;
+
+    private List<AgentChannel> channels;
+    private long routeSeq = 0;
+
+    /**
+     * 进程内共享的路由器，初始只有默认通道
+     */
+    public static synchronized ChannelRouter get() {
+        if (instance == null) {
+            instance = new ChannelRouter(Collections.singletonList(
+                    new AgentChannel(MAIN_CHANNEL, FileUtils.getCommandFiles(), null)));
+        }
+        return instance;
+    }
+
+    ChannelRouter(List<AgentChannel> channels) {
+        setChannels(channels);
+    }
+
+    /**
+     * 替换通道列表，第一个为默认通道
+     */
+    public synchronized void setChannels(List<AgentChannel> channels) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个通道");
+        }
+        this.channels = new ArrayList<>(channels);
+    }
+
+    public synchronized List<AgentChannel> getChannels() {
+        return new ArrayList<>(channels);
+    }
+
+    public synchronized int getChannelCount() {
+        return channels.size();
+    }
+
+    public synchronized AgentChannel getDefaultChannel() {
+        return channels.get(0);
+    }
+
+    /**
+     * 为命令选择通道，并计入该通道的负载
+     */
+    public synchronized Route route(String text) {
+        AgentChannel target = null;
+        String command = text;
+        if (channels.size() > 1) {
+            String trimmed = text.trim();
+            int end = targetEnd(trimmed);
+            if (end > 0) {
+                String name = trimmed.substring(trimmed.startsWith("@") ? 1 : 0, end).trim();
+                target = find(name);
+                if (target != null) {
+                    command = trimmed.substring(end + 1).trim();
+                }
+            }
+        }
+        if (target == null) {
+            target = leastLoaded();
+        }
+        target.inFlight++;
+        target.lastRouteSeq = ++routeSeq;
+        if (channels.size() > 1) {
+            Log.d(TAG, "命令发往 " + target + "（进行中 " + target.inFlight + "）: " + command);
+        }
+        return new Route(target, command);
+    }
+
+    /**
+     * 命令已写入通道，记录其文本
+     * <p>
+     * agent 会忽略与上一条文本相同的纯文本命令（带 ID 的命令不受影响），这样的命令不会有状态更新，
+     * 因此不计入负载。
+     *
+     * @param plain 是否以纯文本发送
+     * @return 是否为会被忽略的重复命令
+     */
+    public synchronized boolean onSent(AgentChannel channel, String command, boolean plain) {
+        String text = command.trim();
+        boolean repeated = plain && text.equals(channel.lastCommand);
+        channel.lastCommand = text;
+        if (repeated) {
+            channel.inFlight = Math.max(0, channel.inFlight - 1);
+        }
+        return repeated;
+    }
+
+    /**
+     * 命令发送失败，撤销计入的负载
+     */
+    public synchronized void onSendFailed(AgentChannel channel) {
+        channel.inFlight = Math.max(0, channel.inFlight - 1);
+    }
+
+    /**
+     * 通道读到状态文本
+     *
+     * @return 状态是否有变化
+     */
+    public synchronized boolean onStatus(AgentChannel channel, String text) {
+        if (text == null || text.equals(channel.statusText)) {
+            return false;
+        }
+        AgentStatus previous = channel.status;
+        AgentStatus status = AgentStatus.parse(text);
+        channel.statusText = text;
+        channel.status = status;
+        String state = status.getState();
+        if (AgentStatus.IDLE.equals(state)) {
+            channel.inFlight = 0;
+        } else if (isFinished(state)) {
+            // 同一条命令的多次结束状态只计一次
+            boolean sameCommand = previous != null && isFinished(previous.getState())
+                    && equals(previous.getCommandId(), status.getCommandId());
+            if (!sameCommand) {
+                channel.inFlight = Math.max(0, channel.inFlight - 1);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 所有通道进行中的命令数
+     */
+    public synchronized int getInFlight() {
+        int total = 0;
+        for (AgentChannel channel : channels) {
+            total += channel.inFlight;
+        }
+        return total;
+    }
+
+    /**
+     * 供命令调度使用的状态：多个通道时，任一可用通道没有进行中的命令即为空闲，否则为执行中
+     *
+     * @param latest 刚收到的状态，单个通道时原样返回；可为 null
+     */
+    public synchronized AgentStatus getDispatchStatus(AgentStatus latest) {
+        if (channels.size() == 1) {
+            return latest;
+        }
+        int protocol = latest != null ? latest.getProtocol() : 1;
+        for (AgentChannel channel : available()) {
+            if (channel.inFlight == 0) {
+                return new AgentStatus(AgentStatus.IDLE, null, protocol);
+            }
+        }
+        return new AgentStatus(AgentStatus.PROCESSING, null, protocol);
+    }
+
+    /**
+     * 供活动级别使用的状态：多个通道时，任一通道有进行中的命令即为执行中，否则为空闲
+     *
+     * @param latest 刚收到的状态，单个通道时原样返回
+     */
+    public synchronized AgentStatus getActivityStatus(AgentStatus latest) {
+        if (channels.size() == 1) {
+            return latest;
+        }
+        return new AgentStatus(getInFlight() > 0 ? AgentStatus.PROCESSING : AgentStatus.IDLE,
+                null, latest.getProtocol());
+    }
+
+    /**
+     * 通知显示的合并状态：单个通道时为其状态文本，多个通道时每个通道一段
+     */
+    public synchronized String summarize() {
+        if (channels.size() == 1) {
+            return channels.get(0).statusText;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (AgentChannel channel : channels) {
+            if (builder.length() > 0) {
+                builder.append("  |  ");
+            }
+            builder.append(channel.getName()).append(": ");
+            String state = channel.status != null ? channel.status.getState() : null;
+            builder.append(state != null ? state : "未连接");
+            if (channel.inFlight > 0) {
+                builder.append("（进行中 ").append(channel.inFlight).append("）");
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 命令开头通道名的结束位置：@name 后的空白，或 name 后的逗号、冒号；没有时为 -1
+     */
+    private static int targetEnd(String text) {
+        int limit = Math.min(text.length(), MAX_TARGET_LENGTH + 2);
+        for (int i = 1; i < limit; i++) {
+            char c = text.charAt(i);
+            if (c == '，' || c == ',' || c == '：' || c == ':' || (text.charAt(0) == '@' && Character.isWhitespace(c))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private AgentChannel find(String name) {
+        for (AgentChannel channel : channels) {
+            if (channel.getName().equalsIgnoreCase(name)) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    private AgentChannel leastLoaded() {
+        AgentChannel best = null;
+        for (AgentChannel channel : available()) {
+            if (best == null || channel.inFlight < best.inFlight
+                    || (channel.inFlight == best.inFlight && channel.lastRouteSeq < best.lastRouteSeq)) {
+                best = channel;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 可用的通道：尚未读到状态，或状态可以识别；全部不可用时为所有通道
+     */
+    private List<AgentChannel> available() {
+        List<AgentChannel> result = new ArrayList<>(channels.size());
+        for (AgentChannel channel : channels) {
+            if (channel.status == null || channel.status.getState() != null) {
+                result.add(channel);
+            }
+        }
+        return result.isEmpty() ? channels : result;
+    }
+
+    private static boolean isFinished(String state) {
+        return AgentStatus.SUCCESS.equals(state) || AgentStatus.ERROR.equals(state)
+                || AgentStatus.STOPPED.equals(state);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
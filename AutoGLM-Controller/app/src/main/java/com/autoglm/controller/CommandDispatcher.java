@@ -0,0 +1,309 @@
+package com.autoglm.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * 控制器端的命令调度：agent 忙时排队，空闲后再发送
+ * <p>
+ * 命令分两个优先级：紧急命令（停止、返回等）不进入队列、不等待 agent 空闲，立即发送，
+ * 因此总是排在所有普通命令之前，其中停止/取消类命令同时清空排队中的普通命令（agent 已收到的命令由发送方
+ * 改为发送取消，见 {@link FileUtils#cancelPendingCommandsAsync}）；
+ * 普通命令进入有界队列，按提交顺序在 agent 报告空闲（IDLE/SUCCESS/ERROR）后逐条发送，
+ * 队列已满时丢弃最早的一条。
+ * <p>
+ * 可选合并：开启后普通命令先等待一个合并窗口，窗口内连续说出的命令合并为一条发送，
+ * 减少 agent 调用模型的轮次。尚未收到过 agent 状态时（不知道 agent 是否在运行）不排队，直接发送。
+ * <p>
+ * 所有方法需在同一线程（主线程）调用。
+ */
+public class CommandDispatcher {
+    public static final int DEFAULT_CAPACITY = 8;
+    // 合并后的命令从第一条提交起最多等待合并窗口的倍数
+    private static final int MAX_MERGE_WINDOWS = 3;
+    // 合并命令之间的分隔
+    static final String MERGE_SEPARATOR = "，然后";
+
+    // 紧急命令：归一化后与之完全相同才算，避免 "返回桌面打开微信" 被误判
+    private static final Set<String> CANCEL_COMMANDS = new HashSet<>(Arrays.asList(
+            "停止", "停", "停下", "别动", "取消", "算了", "stop", "cancel"));
+    private static final Set<String> URGENT_COMMANDS = new HashSet<>(Arrays.asList(
+            "返回", "后退", "回到桌面", "返回桌面", "退出", "back", "home"));
+
+    public enum Priority {
+        NORMAL,
+        URGENT
+    }
+
+    /**
+     * 排队中的命令
+     */
+    public static final class Command {
+        private final Priority priority;
+        private final long submittedAt;
+        private String text;
+        private long readyAt;
+        // 对应的延迟追踪 ID（合并后包含多条）
+        private final List<Integer> traceIds = new ArrayList<>();
+
+        Command(String text, Priority priority, long now, int traceId) {
+            this.text = text;
+            this.priority = priority;
+            this.submittedAt = now;
+            this.readyAt = now;
+            if (traceId != 0) {
+                traceIds.add(traceId);
+            }
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * 对应的延迟追踪 ID，合并的命令包含每条原始命令的 ID
+         */
+        public List<Integer> getTraceIds() {
+            return traceIds;
+        }
+    }
+
+    public interface Listener {
+        /**
+         * 发送命令
+         */
+        void onSend(Command command);
+
+        /**
+         * 命令进入队列等待 agent 空闲
+         */
+        void onQueued(Command command, int queueSize);
+
+        /**
+         * 命令因队列已满或被取消类命令清除而丢弃
+         */
+        void onDropped(Command command);
+    }
+
+    /**
+     * 延时执行，主线程 Handler 即可满足
+     */
+    public interface Scheduler {
+        void postDelayed(Runnable task, long delayMillis);
+
+        void removeCallbacks(Runnable task);
+    }
+
+    private final Listener listener;
+    private final Scheduler scheduler;
+    private final LongSupplier clock;
+    private final int capacity;
+
+    // 排队中的普通命令，按提交顺序排列
+    private final List<Command> queue = new ArrayList<>();
+    private long mergeWindowMillis = 0;
+    // agent 状态：尚未收到状态时为 null
+    private Boolean agentBusy = null;
+    // 发出后把 agent 标记为忙的命令，收到 agent 状态前有效
+    private Command markedBusyBy;
+
+    private final Runnable flushRunnable = this::flush;
+
+    public CommandDispatcher(Listener listener, Scheduler scheduler,
+                             LongSupplier clock, int capacity) {
+        this.listener = listener;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * 合并窗口，不大于 0 时不合并
+     */
+    public void setMergeWindowMillis(long mergeWindowMillis) {
+        this.mergeWindowMillis = Math.max(0, mergeWindowMillis);
+    }
+
+    public long getMergeWindowMillis() {
+        return mergeWindowMillis;
+    }
+
+    /**
+     * 提交一条命令
+     *
+     * @param traceId 延迟追踪 ID，没有时为 0
+     */
+    public void submit(String text, int traceId) {
+        long now = clock.getAsLong();
+        Priority priority = classify(text);
+        if (priority == Priority.URGENT) {
+            if (isCancel(text)) {
+                dropNormal();
+            }
+            Command command = new Command(text, priority, now, traceId);
+            send(command);
+            return;
+        }
+
+        Command last = queue.isEmpty() ? null : queue.get(queue.size() - 1);
+        if (mergeWindowMillis > 0 && last != null && now < last.readyAt) {
+            // 合并窗口内：与上一条合并，延长等待但不超过上限
+            last.text = last.text + MERGE_SEPARATOR + text;
+            if (traceId != 0) {
+                last.traceIds.add(traceId);
+            }
+            last.readyAt = Math.min(now + mergeWindowMillis,
+                    last.submittedAt + mergeWindowMillis * MAX_MERGE_WINDOWS);
+            scheduleFlush(now);
+            return;
+        }
+
+        Command command = new Command(text, priority, now, traceId);
+        command.readyAt = now + mergeWindowMillis;
+        if (queue.size() >= capacity) {
+            listener.onDropped(queue.remove(0));
+        }
+        queue.add(command);
+        flush();
+        if (Boolean.TRUE.equals(agentBusy) && queue.contains(command)) {
+            listener.onQueued(command, queue.size());
+        }
+    }
+
+    /**
+     * agent 状态更新：空闲后发送下一条
+     */
+    public void onAgentStatus(AgentStatus status) {
+        String state = status.getState();
+        if (state == null) {
+            return;
+        }
+        markedBusyBy = null;
+        switch (state) {
+            case AgentStatus.ACCEPTED:
+            case AgentStatus.PROCESSING:
+                agentBusy = true;
+                break;
+            case AgentStatus.IDLE:
+            case AgentStatus.SUCCESS:
+            case AgentStatus.ERROR:
+                agentBusy = false;
+                flush();
+                break;
+            case AgentStatus.STOPPED:
+                // agent 已退出，之后的命令直接交给传输通道排队
+                agentBusy = null;
+                flush();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 命令未能发出：agent 不会为它报告状态，撤销发送时的忙碌标记并继续发送排队中的命令
+     */
+    public void onSendFailed(Command command) {
+        if (command != markedBusyBy) {
+            return;
+        }
+        markedBusyBy = null;
+        agentBusy = false;
+        flush();
+    }
+
+    /**
+     * 没有排队中的命令，且 agent 未报告忙碌
+     */
+    public boolean isIdle() {
+        return queue.isEmpty() && !Boolean.TRUE.equals(agentBusy);
+    }
+
+    /**
+     * 排队中的命令数
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * 丢弃所有排队中的命令
+     */
+    public void clear() {
+        dropNormal();
+    }
+
+    /**
+     * 命令优先级：与紧急命令完全相同（忽略空白、标点与大小写）时为紧急
+     */
+    static Priority classify(String text) {
+        String normalized = normalize(text);
+        return CANCEL_COMMANDS.contains(normalized) || URGENT_COMMANDS.contains(normalized)
+                ? Priority.URGENT : Priority.NORMAL;
+    }
+
+    /**
+     * 是否为停止/取消类命令
+     */
+    static boolean isCancel(String text) {
+        return CANCEL_COMMANDS.contains(normalize(text));
+    }
+
+    private static String normalize(String text) {
+        return SpeculativeDispatcher.normalize(text).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 发送队首命令（如果 agent 空闲且合并窗口已过）
+     */
+    private void flush() {
+        scheduler.removeCallbacks(flushRunnable);
+        if (queue.isEmpty()) {
+            return;
+        }
+        long now = clock.getAsLong();
+        Command head = queue.get(0);
+        if (now < head.readyAt) {
+            scheduleFlush(now);
+            return;
+        }
+        if (Boolean.TRUE.equals(agentBusy)) {
+            return;
+        }
+        queue.remove(0);
+        send(head);
+    }
+
+    private void send(Command command) {
+        if (Boolean.FALSE.equals(agentBusy)) {
+            // 发出后在 agent 报告结果之前视为忙
+            agentBusy = true;
+            markedBusyBy = command;
+        }
+        listener.onSend(command);
+    }
+
+    private void scheduleFlush(long now) {
+        if (queue.isEmpty()) {
+            return;
+        }
+        scheduler.removeCallbacks(flushRunnable);
+        scheduler.postDelayed(flushRunnable, Math.max(0, queue.get(0).readyAt - now));
+    }
+
+    private void dropNormal() {
+        scheduler.removeCallbacks(flushRunnable);
+        while (!queue.isEmpty()) {
+            listener.onDropped(queue.remove(0));
+        }
+    }
+}
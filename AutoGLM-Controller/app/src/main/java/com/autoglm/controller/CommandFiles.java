@@ -0,0 +1,176 @@
+package com.autoglm.controller;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 某个通信目录下的命令/状态文件协议
+ * <p>
+ * 命令先追加到目录中的命令日志并落盘，再投递到 command.txt；agent 读取后清空 command.txt，
+ * 之后才投递下一条。状态从 status.txt 读取。不依赖 Android API，可在普通 JVM 上使用。
+ * 公开方法均已加锁，可跨线程调用。
+ */
+public class CommandFiles {
+    public static final String COMMAND_FILE_NAME = "command.txt";
+    public static final String STATUS_FILE_NAME = "status.txt";
+
+    // 命令日志中 command.txt 投递进度对应的消费者名
+    private static final String HANDOFF_CONSUMER = "command_file";
+
+    private final File dir;
+    private final File commandFile;
+    private final File statusFile;
+    private final StatusTailReader statusReader;
+
+    // 线程安全锁
+    private final ReentrantLock lock = new ReentrantLock();
+    private CommandJournal journal;
+
+    public CommandFiles(File dir) {
+        this.dir = dir;
+        this.commandFile = new File(dir, COMMAND_FILE_NAME);
+        this.statusFile = new File(dir, STATUS_FILE_NAME);
+        this.statusReader = new StatusTailReader(statusFile);
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    public File getCommandFile() {
+        return commandFile;
+    }
+
+    public File getStatusFile() {
+        return statusFile;
+    }
+
+    /**
+     * 初始化目录
+     *
+     * @return 目录是否可用
+     */
+    public boolean initDirectory() {
+        lock.lock();
+        try {
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            return dir.isDirectory();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写入命令文本：追加到日志并尝试投递
+     */
+    public boolean writeCommand(String content) {
+        lock.lock();
+        try {
+            getJournal().append(content);
+            deliverPendingLocked();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 若 agent 已取走上一条命令，投递日志中的下一条
+     *
+     * @return 仍在排队的命令数，出错时返回 -1
+     */
+    public int deliverPendingCommand() {
+        lock.lock();
+        try {
+            deliverPendingLocked();
+            return getJournal().pendingCount(HANDOFF_CONSUMER);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取状态文本，只读取上次之后的变化（见 {@link StatusTailReader}）
+     */
+    public String readStatus() {
+        lock.lock();
+        try {
+            String status = statusReader.read();
+            return status != null ? status : "未检测到状态文件";
+        } catch (IOException e) {
+            e.printStackTrace();
+            return "读取状态失败: " + e.getMessage();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 关闭命令日志，之后的写入会重新打开
+     */
+    public void close() {
+        lock.lock();
+        try {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CommandJournal getJournal() throws IOException {
+        if (journal == null) {
+            journal = new CommandJournal(dir);
+        }
+        return journal;
+    }
+
+    /**
+     * command.txt 为空说明 agent 已读取上一条命令，此时原子写入下一条并提交进度。
+     * 若在写入后、提交前崩溃，重启后该命令会再投递一次（至少一次语义）。
+     */
+    private void deliverPendingLocked() throws IOException {
+        CommandJournal.Record next = getJournal().next(HANDOFF_CONSUMER);
+        if (next == null) {
+            return;
+        }
+        if (commandFile.length() > 0) {
+            return;
+        }
+        writeFileAtomically(commandFile, next.command);
+        getJournal().commit(HANDOFF_CONSUMER, next.seq);
+    }
+
+    /**
+     * 写临时文件、fsync 后 rename，读取方不会看到写了一半的内容
+     */
+    private static void writeFileAtomically(File file, String content) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            fos.write(content.getBytes(StandardCharsets.UTF_8));
+            fos.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("重命名失败: " + tmp + " -> " + file);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.autoglm.controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写的命令日志
+ * <p>
+ * 每条命令写为一条记录：序号(8字节) + 长度(4字节) + UTF-8 内容 + CRC32(4字节)，写入后 fsync。
+ * 各消费者的读取进度（已消费的最大序号）单独保存在偏移文件中，通过临时文件 + rename 原子更新。
+ * 打开时校验记录，丢弃崩溃时写了一半的尾部；所有消费者都已消费的记录在积累到一定数量后被压缩掉。
+ * 公开方法均已加锁，可跨线程调用。
+ */
+public class CommandJournal implements Closeable {
+    public static final String JOURNAL_FILE_NAME = "command.journal";
+    public static final String OFFSETS_FILE_NAME = "command.offsets";
+
+    private static final int MAGIC = 0x41474C4A; // "AGLJ"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_OVERHEAD = 8 + 4 + 4;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    // 已消费记录达到该数量时压缩日志
+    private static final int COMPACT_THRESHOLD = 32;
+
+    /**
+     * 日志记录
+     */
+    public static final class Record {
+        public final long seq;
+        public final String command;
+
+        Record(long seq, String command) {
+            this.seq = seq;
+            this.command = command;
+        }
+    }
+
+    private final File journalFile;
+    private final File offsetsFile;
+
+    // 日志中仍保留的记录（已按序号递增）
+    private final List<Record> records = new ArrayList<>();
+    private final Map<String, Long> offsets = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+
+    private FileOutputStream appendStream;
+    private long nextSeq = 1;
+
+    public CommandJournal(File dir) throws IOException {
+        this.journalFile = new File(dir, JOURNAL_FILE_NAME);
+        this.offsetsFile = new File(dir, OFFSETS_FILE_NAME);
+        loadOffsets();
+        recover();
+        appendStream = new FileOutputStream(journalFile, true);
+    }
+
+    /**
+     * 追加一条命令并落盘
+     *
+     * @return 命令的序号
+     */
+    public synchronized long append(String command) throws IOException {
+        byte[] payload = command.getBytes(StandardCharsets.UTF_8);
+        if (payload.length > MAX_RECORD_SIZE) {
+            throw new IOException("命令过长: " + payload.length + " 字节");
+        }
+        long seq = nextSeq;
+        appendStream.write(encodeRecord(seq, payload));
+        appendStream.flush();
+        appendStream.getFD().sync();
+        records.add(new Record(seq, command));
+        nextSeq = seq + 1;
+        return seq;
+    }
+
+    /**
+     * 某个消费者尚未消费的第一条记录，没有则返回 null
+     */
+    public synchronized Record next(String consumer) {
+        long offset = getOffset(consumer);
+        for (Record record : records) {
+            if (record.seq > offset) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 某个消费者尚未消费的全部记录，按序号排列
+     */
+    public synchronized List<Record> pending(String consumer) {
+        long offset = getOffset(consumer);
+        List<Record> result = new ArrayList<>();
+        for (Record record : records) {
+            if (record.seq > offset) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 某个消费者尚未消费的记录数
+     */
+    public synchronized int pendingCount(String consumer) {
+        long offset = getOffset(consumer);
+        int count = 0;
+        for (Record record : records) {
+            if (record.seq > offset) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 某个消费者已消费的最大序号
+     */
+    public synchronized long getOffset(String consumer) {
+        Long offset = offsets.get(consumer);
+        return offset != null ? offset : 0;
+    }
+
+    /**
+     * 提交消费进度，必要时压缩日志
+     */
+    public synchronized void commit(String consumer, long seq) throws IOException {
+        if (seq <= getOffset(consumer)) {
+            return;
+        }
+        offsets.put(consumer, seq);
+        saveOffsets();
+        if (consumedCount() >= COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * 压缩日志：移除所有消费者都已消费的记录
+     */
+    public synchronized void compact() throws IOException {
+        long minOffset = minOffset();
+        List<Record> remaining = new ArrayList<>();
+        for (Record record : records) {
+            if (record.seq > minOffset) {
+                remaining.add(record);
+            }
+        }
+        if (remaining.size() == records.size()) {
+            return;
+        }
+
+        File tmp = new File(journalFile.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            fos.write(encodeFileHeader());
+            for (Record record : remaining) {
+                fos.write(encodeRecord(record.seq, record.command.getBytes(StandardCharsets.UTF_8)));
+            }
+            fos.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+
+        appendStream.close();
+        if (!tmp.renameTo(journalFile)) {
+            appendStream = new FileOutputStream(journalFile, true);
+            throw new IOException("压缩日志重命名失败: " + tmp);
+        }
+        appendStream = new FileOutputStream(journalFile, true);
+        records.clear();
+        records.addAll(remaining);
+    }
+
+    /**
+     * 当前保留在日志中的记录数
+     */
+    public synchronized int size() {
+        return records.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        appendStream.close();
+    }
+
+    private int consumedCount() {
+        long minOffset = minOffset();
+        int count = 0;
+        for (Record record : records) {
+            if (record.seq <= minOffset) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 所有消费者中最小的消费进度；没有消费者时不允许丢弃任何记录
+     */
+    private long minOffset() {
+        if (offsets.isEmpty()) {
+            return 0;
+        }
+        long min = Long.MAX_VALUE;
+        for (long offset : offsets.values()) {
+            min = Math.min(min, offset);
+        }
+        return min;
+    }
+
+    /**
+     * 读取日志并校验，截掉损坏或不完整的尾部
+     */
+    private void recover() throws IOException {
+        long maxOffset = 0;
+        for (long offset : offsets.values()) {
+            maxOffset = Math.max(maxOffset, offset);
+        }
+        nextSeq = maxOffset + 1;
+
+        if (!journalFile.exists() || journalFile.length() < FILE_HEADER_SIZE) {
+            writeEmptyJournal();
+            return;
+        }
+
+        long validLength = FILE_HEADER_SIZE;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("日志文件格式不正确: " + journalFile);
+            }
+            while (true) {
+                Record record;
+                try {
+                    long seq = in.readLong();
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    int checksum = in.readInt();
+                    if (checksum != checksum(seq, payload)) {
+                        break;
+                    }
+                    record = new Record(seq, new String(payload, StandardCharsets.UTF_8));
+                    validLength += RECORD_OVERHEAD + length;
+                } catch (EOFException e) {
+                    break;
+                }
+                records.add(record);
+                nextSeq = Math.max(nextSeq, record.seq + 1);
+            }
+        } finally {
+            in.close();
+        }
+
+        if (validLength < journalFile.length()) {
+            // 崩溃时未写完的记录，截断丢弃
+            RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+            try {
+                raf.setLength(validLength);
+                raf.getFD().sync();
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    private void writeEmptyJournal() throws IOException {
+        FileOutputStream fos = new FileOutputStream(journalFile);
+        try {
+            fos.write(encodeFileHeader());
+            fos.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+    }
+
+    private void loadOffsets() throws IOException {
+        if (!offsetsFile.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(offsetsFile), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int index = line.lastIndexOf('=');
+                if (index <= 0) {
+                    continue;
+                }
+                try {
+                    offsets.put(line.substring(0, index), Long.parseLong(line.substring(index + 1).trim()));
+                } catch (NumberFormatException ignored) {
+                    // 跳过损坏的行
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void saveOffsets() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        File tmp = new File(offsetsFile.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            fos.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            fos.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        if (!tmp.renameTo(offsetsFile)) {
+            throw new IOException("偏移文件重命名失败: " + tmp);
+        }
+    }
+
+    private byte[] encodeFileHeader() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(FILE_HEADER_SIZE);
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        return bos.toByteArray();
+    }
+
+    private byte[] encodeRecord(long seq, byte[] payload) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(RECORD_OVERHEAD + payload.length);
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeLong(seq);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt(checksum(seq, payload));
+        return bos.toByteArray();
+    }
+
+    private int checksum(long seq, byte[] payload) {
+        crc.reset();
+        for (int i = 7; i >= 0; i--) {
+            crc.update((int) (seq >>> (i * 8)) & 0xFF);
+        }
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,330 @@
+package com.autoglm.controller;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 命令关联 ID 与确认协议
+ * <p>
+ * 支持命令 ID 的 agent（状态中带 "PROTOCOL: 2"）启用后，每条命令以一行 "ID: &lt;id&gt;" 开头，
+ * 其后为命令文本；agent 在状态中回显该 ID，控制器据此跟踪每条命令的状态：
+ * 已发送 → 已接收（agent 取走命令）→ 执行中 → 已完成，并统计排队、启动与执行耗时。
+ * agent 取走命令后立即同步执行，已接收与执行中几乎同时报告，因此启动耗时从发送算起，即等到 agent 开始执行的时间。
+ * <p>
+ * 协议版本 3 增加暂缓执行的命令（用于预发送）：ID 行之后为 "HOLD: 1"，agent 在操作设备前等待
+ * 单行的 "CONFIRM: &lt;id&gt;" 或 "CANCEL: &lt;id&gt;"，取消或超时未确认时报告 ERROR。
+ * CANCEL 同样用于停止执行中的命令：agent 每一步操作设备前检查，收到后停止并报告 ERROR，尚未读取的命令之后跳过。
+ * <p>
+ * 尚未确认 agent 支持时发送纯文本命令，与旧版 agent 兼容；也可通过配置强制使用某种模式。
+ * 方法均为线程安全。
+ */
+public class CommandTracker {
+    private static final String TAG = "CommandTracker";
+
+    public static final int PROTOCOL_VERSION = 2;
+    // 支持暂缓执行命令的协议版本
+    public static final int HOLD_PROTOCOL_VERSION = 3;
+    static final String ID_HEADER = "ID: ";
+    static final String HOLD_HEADER = "HOLD: ";
+    static final String CONFIRM_HEADER = "CONFIRM: ";
+    static final String CANCEL_HEADER = "CANCEL: ";
+
+    // 协议模式
+    public static final String MODE_AUTO = "auto";
+    public static final String MODE_PLAIN = "plain";
+    public static final String MODE_ID = "id";
+
+    // 保留的命令记录数
+    private static final int MAX_COMMANDS = 64;
+
+    /**
+     * 命令状态
+     */
+    public enum State {
+        SENT,      // 已写入传输通道
+        ACCEPTED,  // agent 已取走
+        RUNNING,   // agent 执行中
+        FINISHED   // 执行结束（成功或失败）
+    }
+
+    /**
+     * 一条命令的状态与各阶段时间（毫秒，单调时钟，未到达的阶段为 -1）
+     */
+    public static final class Command {
+        private final String id;
+        private final String text;
+        private State state = State.SENT;
+        private boolean success;
+        private long sentAt;
+        private long acceptedAt = -1;
+        private long startedAt = -1;
+        private long finishedAt = -1;
+
+        Command(String id, String text, long sentAt) {
+            this.id = id;
+            this.text = text;
+            this.sentAt = sentAt;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * 已完成且 agent 报告成功
+         */
+        public boolean isSuccess() {
+            return state == State.FINISHED && success;
+        }
+
+        /**
+         * 排队耗时：发送到 agent 取走命令
+         */
+        public long getQueueMillis() {
+            return acceptedAt >= 0 ? acceptedAt - sentAt : -1;
+        }
+
+        /**
+         * 启动耗时：发送到 agent 报告开始执行（PROCESSING），包含排队耗时
+         */
+        public long getStartMillis() {
+            return startedAt >= 0 ? startedAt - sentAt : -1;
+        }
+
+        /**
+         * 执行耗时：开始执行到结束
+         */
+        public long getCompletionMillis() {
+            return startedAt >= 0 && finishedAt >= 0 ? finishedAt - startedAt : -1;
+        }
+
+        /**
+         * 发送到结束的总耗时
+         */
+        public long getTotalMillis() {
+            return finishedAt >= 0 ? finishedAt - sentAt : -1;
+        }
+    }
+
+    private static CommandTracker instance;
+
+    private final LongSupplier clock;
+    // 本次进程的 ID 前缀，避免与重启前仍在命令日志中排队的命令重复
+    private final String idPrefix;
+    private int nextSeq = 1;
+    private String mode = MODE_AUTO;
+    private boolean agentSupportsIds = false;
+    // agent 声明的最高协议版本
+    private int agentProtocol = 0;
+    private final Map<String, Command> commands = new LinkedHashMap<String, Command>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Command> eldest) {
+            return size() > MAX_COMMANDS;
+        }
+    };
+
+    /**
+     * 进程内共享的跟踪器
+     */
+    public static synchronized CommandTracker get() {
+        if (instance == null) {
+            instance = new CommandTracker(SystemClock::elapsedRealtime,
+                    Long.toString(System.currentTimeMillis(), 36));
+        }
+        return instance;
+    }
+
+    /**
+     * @param clock    单调时钟，毫秒
+     * @param idPrefix 命令 ID 前缀
+     */
+    CommandTracker(LongSupplier clock, String idPrefix) {
+        this.clock = clock;
+        this.idPrefix = idPrefix;
+    }
+
+    /**
+     * 协议模式：auto（默认，agent 声明支持后启用 ID）、plain（始终纯文本）或 id（始终带 ID）
+     */
+    public synchronized void setMode(String mode) {
+        this.mode = MODE_PLAIN.equals(mode) || MODE_ID.equals(mode) ? mode : MODE_AUTO;
+    }
+
+    /**
+     * 当前是否发送带 ID 的命令
+     */
+    public synchronized boolean isIdEnabled() {
+        return MODE_ID.equals(mode) || (MODE_AUTO.equals(mode) && agentSupportsIds);
+    }
+
+    /**
+     * 当前能否发送暂缓执行的命令：已启用 ID 且 agent 声明支持协议版本 3
+     */
+    public synchronized boolean isHoldEnabled() {
+        return isIdEnabled() && agentProtocol >= HOLD_PROTOCOL_VERSION;
+    }
+
+    /**
+     * 为暂缓执行的命令分配 ID 并编码；需先确认 {@link #isHoldEnabled()}
+     */
+    public synchronized String prepareHeld(String command) {
+        String id = idPrefix + "-" + nextSeq++;
+        commands.put(id, new Command(id, command, clock.getAsLong()));
+        return ID_HEADER + id + "\n" + HOLD_HEADER + "1\n" + command;
+    }
+
+    /**
+     * 确认暂缓执行的命令
+     */
+    static String encodeConfirm(String id) {
+        return CONFIRM_HEADER + id;
+    }
+
+    /**
+     * 取消命令：暂缓执行的不再执行，执行中的在下一步操作前停止
+     */
+    static String encodeCancel(String id) {
+        return CANCEL_HEADER + id;
+    }
+
+    /**
+     * 为即将发送的命令分配 ID 并编码；纯文本模式下原样返回且不跟踪
+     */
+    public synchronized String prepare(String command) {
+        if (!isIdEnabled()) {
+            return command;
+        }
+        String id = idPrefix + "-" + nextSeq++;
+        commands.put(id, new Command(id, command, clock.getAsLong()));
+        return encode(id, command);
+    }
+
+    /**
+     * 带 ID 的命令格式：首行 "ID: &lt;id&gt;"，其后为命令文本
+     */
+    static String encode(String id, String command) {
+        return ID_HEADER + id + "\n" + command;
+    }
+
+    /**
+     * 命令已写入传输通道，以此作为排队耗时的起点
+     */
+    public synchronized void onSent(String payload) {
+        Command command = commands.get(idOf(payload));
+        if (command != null) {
+            command.sentAt = clock.getAsLong();
+        }
+    }
+
+    /**
+     * 发送失败，移除对应的命令记录
+     */
+    public synchronized void onSendFailed(String payload) {
+        commands.remove(idOf(payload));
+    }
+
+    /**
+     * 取出编码后命令中的 ID，纯文本命令返回 null
+     */
+    static String idOf(String payload) {
+        if (!payload.startsWith(ID_HEADER)) {
+            return null;
+        }
+        int end = payload.indexOf('\n');
+        return end > 0 ? payload.substring(ID_HEADER.length(), end) : null;
+    }
+
+    /**
+     * 处理 agent 的状态更新
+     *
+     * @return 状态发生变化的命令；状态不属于任何已跟踪的命令时返回 null
+     */
+    public synchronized Command onStatus(AgentStatus status) {
+        if (status.getProtocol() > agentProtocol) {
+            agentProtocol = status.getProtocol();
+        }
+        if (status.getProtocol() >= PROTOCOL_VERSION && !agentSupportsIds) {
+            agentSupportsIds = true;
+            Log.d(TAG, "agent 支持命令 ID（协议版本 " + status.getProtocol() + "）");
+        }
+        String id = status.getCommandId();
+        Command command = id != null ? commands.get(id) : null;
+        if (command == null || command.state == State.FINISHED || status.getState() == null) {
+            return null;
+        }
+        long now = clock.getAsLong();
+        State previous = command.state;
+        switch (status.getState()) {
+            case AgentStatus.ACCEPTED:
+                advance(command, State.ACCEPTED, now);
+                break;
+            case AgentStatus.PROCESSING:
+                advance(command, State.RUNNING, now);
+                break;
+            case AgentStatus.SUCCESS:
+            case AgentStatus.ERROR:
+                command.success = AgentStatus.SUCCESS.equals(status.getState());
+                advance(command, State.FINISHED, now);
+                Log.d(TAG, "命令 " + id + (command.success ? " 成功" : " 失败")
+                        + "，排队 " + command.getQueueMillis() + "ms，启动 " + command.getStartMillis()
+                        + "ms，执行 " + command.getCompletionMillis() + "ms");
+                break;
+            default:
+                return null;
+        }
+        return command.state != previous ? command : null;
+    }
+
+    /**
+     * 查询命令，记录已被淘汰或不存在时返回 null
+     */
+    public synchronized Command getCommand(String id) {
+        return commands.get(id);
+    }
+
+    /**
+     * 尚未完成的命令，最早发送的在前
+     */
+    public synchronized List<Command> getPending() {
+        List<Command> pending = new ArrayList<>();
+        for (Command command : commands.values()) {
+            if (command.state != State.FINISHED) {
+                pending.add(command);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * 状态只能前进；跳过的阶段（如 agent 未写 ACCEPTED 直接开始执行）以当前时间补齐
+     */
+    private static void advance(Command command, State state, long now) {
+        if (state.ordinal() <= command.state.ordinal()) {
+            return;
+        }
+        if (command.acceptedAt < 0) {
+            command.acceptedAt = now;
+        }
+        if (state.ordinal() >= State.RUNNING.ordinal() && command.startedAt < 0) {
+            command.startedAt = now;
+        }
+        if (state == State.FINISHED) {
+            command.finishedAt = now;
+        }
+        command.state = state;
+    }
+}
@@ -0,0 +1,41 @@
+package com.autoglm.controller;
+
+/**
+ * 与 agent 之间的命令/状态传输通道
+ * <p>
+ * 实现可能阻塞（磁盘或网络 I/O），需在 {@link IoThread} 调用。
+ */
+public interface CommandTransport {
+    /**
+     * 状态推送回调，在通道内部线程执行
+     */
+    interface OnStatusPushListener {
+        void onStatusPushed(String status);
+    }
+
+    /**
+     * 通道名称，与配置中的取值对应
+     */
+    String getName();
+
+    /**
+     * 发送命令文本
+     */
+    boolean sendCommand(String command);
+
+    /**
+     * 读取 agent 最新的状态文本
+     */
+    String readStatus();
+
+    /**
+     * 设置状态推送回调；只支持拉取的通道忽略此设置
+     */
+    default void setOnStatusPushListener(OnStatusPushListener listener) {
+    }
+
+    /**
+     * 释放通道资源
+     */
+    void close();
+}
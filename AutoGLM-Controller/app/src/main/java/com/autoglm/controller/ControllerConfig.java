@@ -0,0 +1,260 @@
+package com.autoglm.controller;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 控制器运行配置
+ * <p>
+ * 保存在 SharedPreferences 中。服务不对外导出，配置经主界面修改：启动主界面时带上 Intent extra，
+ * 在设备上确认后连同 extra 一起启动服务，由服务写入并生效，例如：
+ * <pre>
+ * adb shell am start -n com.autoglm.controller/.MainActivity --es transport socket --ei socket_port 18765
+ * </pre>
+ * 字符串、整数、布尔配置分别用 --es、--ei、--ez。
+ */
+public class ControllerConfig {
+    private static final String PREFS_NAME = "autoglm_config";
+
+    public static final String KEY_TRANSPORT = "transport";
+    public static final String KEY_SOCKET_PORT = "socket_port";
+    public static final String KEY_STREAMING = "streaming";
+    public static final String KEY_SPECULATIVE_DISPATCH = "speculative_dispatch";
+    public static final String KEY_SPEECH_ENGINE = "speech_engine";
+    public static final String KEY_ENGINE_FALLBACK = "engine_fallback";
+    public static final String KEY_FALLBACK_LATENCY_MS = "fallback_latency_ms";
+    public static final String KEY_FALLBACK_ERRORS = "fallback_errors";
+    public static final String KEY_COMMAND_PROTOCOL = "command_protocol";
+    public static final String KEY_MERGE_WINDOW_MS = "merge_window_ms";
+    public static final String KEY_ADAPTIVE_ENDPOINT = "adaptive_endpoint";
+    public static final String KEY_ENDPOINT_SENSITIVITY = "endpoint_sensitivity";
+    public static final String KEY_AUDIO_PREROLL = "audio_preroll";
+    public static final String KEY_WAKE_WORD = "wake_word";
+    public static final String KEY_WAKE_SENSITIVITY = "wake_sensitivity";
+    public static final String KEY_RECORD_SESSIONS = "record_sessions";
+    public static final String KEY_CHANNELS = "channels";
+    public static final String KEY_PHRASE_CACHE = "phrase_cache";
+
+    // 可通过 Intent extra 修改的配置项
+    private static final String[] STRING_KEYS = {
+            KEY_TRANSPORT,
+            KEY_SPEECH_ENGINE,
+            KEY_COMMAND_PROTOCOL,
+            KEY_CHANNELS
+    };
+    private static final String[] INT_KEYS = {
+            KEY_SOCKET_PORT,
+            KEY_FALLBACK_LATENCY_MS,
+            KEY_FALLBACK_ERRORS,
+            KEY_ENDPOINT_SENSITIVITY,
+            KEY_MERGE_WINDOW_MS,
+            KEY_WAKE_SENSITIVITY
+    };
+    private static final String[] BOOLEAN_KEYS = {
+            KEY_STREAMING,
+            KEY_SPECULATIVE_DISPATCH,
+            KEY_ENGINE_FALLBACK,
+            KEY_ADAPTIVE_ENDPOINT,
+            KEY_AUDIO_PREROLL,
+            KEY_WAKE_WORD,
+            KEY_RECORD_SESSIONS,
+            KEY_PHRASE_CACHE
+    };
+
+    private final SharedPreferences prefs;
+
+    public ControllerConfig(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * 传输通道名称：file（默认）或 socket；mmap 只用于测试与基准，配置后按 file 处理
+     */
+    public String getTransport() {
+        return prefs.getString(KEY_TRANSPORT, FileTransport.NAME);
+    }
+
+    /**
+     * socket 通道连接的 agent 端口
+     */
+    public int getSocketPort() {
+        return prefs.getInt(KEY_SOCKET_PORT, SocketTransport.DEFAULT_PORT);
+    }
+
+    /**
+     * 是否开启流式识别（回调中间结果）
+     */
+    public boolean isStreamingEnabled() {
+        return prefs.getBoolean(KEY_STREAMING, false);
+    }
+
+    /**
+     * 是否开启预发送：语音结束时先发送已稳定的识别结果，需同时开启流式识别
+     */
+    public boolean isSpeculativeDispatchEnabled() {
+        return prefs.getBoolean(KEY_SPECULATIVE_DISPATCH, false);
+    }
+
+    /**
+     * 首选识别引擎：iflytek（默认，讯飞云端）或 local（本机，离线优先）
+     */
+    public String getSpeechEngine() {
+        return prefs.getString(KEY_SPEECH_ENGINE, IflytekSpeechEngine.NAME);
+    }
+
+    /**
+     * 首选引擎故障或过慢时是否自动改用另一个引擎
+     */
+    public boolean isEngineFallbackEnabled() {
+        return prefs.getBoolean(KEY_ENGINE_FALLBACK, true);
+    }
+
+    /**
+     * 识别延迟（语音结束到最终结果）超过该值即视为过慢，单位毫秒
+     */
+    public int getFallbackLatencyMillis() {
+        return prefs.getInt(KEY_FALLBACK_LATENCY_MS, (int) EngineFallbackPolicy.DEFAULT_MAX_LATENCY_MILLIS);
+    }
+
+    /**
+     * 连续出现多少次引擎故障后降级
+     */
+    public int getFallbackErrors() {
+        return prefs.getInt(KEY_FALLBACK_ERRORS, EngineFallbackPolicy.DEFAULT_MAX_ERRORS);
+    }
+
+    /**
+     * 命令协议：auto（默认，agent 支持时附带命令 ID）、plain（纯文本，兼容旧版 agent）或 id
+     */
+    public String getCommandProtocol() {
+        return prefs.getString(KEY_COMMAND_PROTOCOL, CommandTracker.MODE_AUTO);
+    }
+
+    /**
+     * 命令合并窗口，单位毫秒：窗口内连续说出的命令合并为一条发送，0（默认）为不合并
+     */
+    public int getMergeWindowMillis() {
+        return prefs.getInt(KEY_MERGE_WINDOW_MS, 0);
+    }
+
+    /**
+     * 是否开启自适应尾端点：根据音量判断说完后提前结束录音
+     */
+    public boolean isAdaptiveEndpointEnabled() {
+        return prefs.getBoolean(KEY_ADAPTIVE_ENDPOINT, false);
+    }
+
+    /**
+     * 自适应尾端点灵敏度，0~100，越大越早结束录音
+     */
+    public int getEndpointSensitivity() {
+        return prefs.getInt(KEY_ENDPOINT_SENSITIVITY, Math.round(AdaptiveEndpointer.DEFAULT_SENSITIVITY * 100));
+    }
+
+    /**
+     * 是否开启录音预缓冲：按下悬浮窗时开始采集，避免截掉开头
+     */
+    public boolean isAudioPreRollEnabled() {
+        return prefs.getBoolean(KEY_AUDIO_PREROLL, false);
+    }
+
+    /**
+     * 是否开启唤醒词：说出录入的唤醒词即开始识别，无需长按
+     */
+    public boolean isWakeWordEnabled() {
+        return prefs.getBoolean(KEY_WAKE_WORD, false);
+    }
+
+    /**
+     * 唤醒词灵敏度，0~100，越大越容易唤醒，误唤醒也越多
+     */
+    public int getWakeSensitivity() {
+        return prefs.getInt(KEY_WAKE_SENSITIVITY, 50);
+    }
+
+    /**
+     * 是否录制识别会话：保存音频与识别结果，供离线回放
+     */
+    public boolean isSessionRecordingEnabled() {
+        return prefs.getBoolean(KEY_RECORD_SESSIONS, false);
+    }
+
+    /**
+     * 是否记录常用命令：双击悬浮窗列出最近常说的命令，选中后直接重发
+     */
+    public boolean isPhraseCacheEnabled() {
+        return prefs.getBoolean(KEY_PHRASE_CACHE, true);
+    }
+
+    /**
+     * 附加的 agent 通道，如 "w2,tablet=socket:18766"，空（默认）为只用默认通道。格式见 {@link Transports#selectChannels}
+     */
+    public String getChannels() {
+        return prefs.getString(KEY_CHANNELS, "");
+    }
+
+    /**
+     * 将 Intent 中携带的配置写入
+     *
+     * @return 是否有配置被修改
+     */
+    public boolean applyExtras(Intent intent) {
+        if (intent == null) {
+            return false;
+        }
+        SharedPreferences.Editor editor = prefs.edit();
+        boolean changed = !collectChanges(intent, editor).isEmpty();
+        if (changed) {
+            editor.apply();
+        }
+        return changed;
+    }
+
+    /**
+     * Intent 中携带的、与当前值不同的配置，每项为 "key = value"，用于修改前确认
+     */
+    public List<String> describeChanges(Intent intent) {
+        return intent != null ? collectChanges(intent, null) : new ArrayList<>();
+    }
+
+    /**
+     * 找出 Intent 中与当前值不同的配置，editor 不为 null 时同时写入
+     */
+    private List<String> collectChanges(Intent intent, SharedPreferences.Editor editor) {
+        List<String> changes = new ArrayList<>();
+        for (String key : STRING_KEYS) {
+            String value = intent.getStringExtra(key);
+            if (value != null && !value.equals(prefs.getString(key, null))) {
+                if (editor != null) {
+                    editor.putString(key, value);
+                }
+                changes.add(key + " = " + value);
+            }
+        }
+        for (String key : INT_KEYS) {
+            int value = intent.getIntExtra(key, Integer.MIN_VALUE);
+            if (value != Integer.MIN_VALUE && value != prefs.getInt(key, Integer.MIN_VALUE)) {
+                if (editor != null) {
+                    editor.putInt(key, value);
+                }
+                changes.add(key + " = " + value);
+            }
+        }
+        for (String key : BOOLEAN_KEYS) {
+            if (intent.hasExtra(key)) {
+                boolean value = intent.getBooleanExtra(key, false);
+                if (!prefs.contains(key) || value != prefs.getBoolean(key, false)) {
+                    if (editor != null) {
+                        editor.putBoolean(key, value);
+                    }
+                    changes.add(key + " = " + value);
+                }
+            }
+        }
+        return changes;
+    }
+}
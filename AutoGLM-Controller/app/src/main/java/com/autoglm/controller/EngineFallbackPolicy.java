@@ -0,0 +1,111 @@
+package com.autoglm.controller;
+
+/**
+ * 识别引擎自动降级策略
+ * <p>
+ * 首选引擎连续出现引擎故障，或连续多次识别延迟（语音结束到最终结果）超过阈值时，切换到备用引擎。
+ * 降级一段时间后重新尝试首选引擎：成功则恢复，再次失败则继续使用备用引擎。
+ * 时间均由调用方传入（毫秒，单调时钟），便于测试。
+ */
+public class EngineFallbackPolicy {
+    public static final long DEFAULT_MAX_LATENCY_MILLIS = 3000;
+    public static final int DEFAULT_MAX_ERRORS = 2;
+    public static final int DEFAULT_MAX_SLOW_RESULTS = 2;
+    public static final long DEFAULT_RETRY_AFTER_MILLIS = 5 * 60 * 1000;
+
+    private long maxLatencyMillis = DEFAULT_MAX_LATENCY_MILLIS;
+    private int maxErrors = DEFAULT_MAX_ERRORS;
+    private int maxSlowResults = DEFAULT_MAX_SLOW_RESULTS;
+    private long retryAfterMillis = DEFAULT_RETRY_AFTER_MILLIS;
+
+    private int consecutiveErrors = 0;
+    private int consecutiveSlowResults = 0;
+    private boolean fallbackActive = false;
+    private long fallbackSince = 0;
+    private int fallbackCount = 0;
+
+    /**
+     * @param maxLatencyMillis 识别延迟阈值，不大于 0 时不按延迟降级
+     * @param maxErrors        连续引擎故障次数阈值，不大于 0 时不按故障降级
+     */
+    public void setThresholds(long maxLatencyMillis, int maxErrors) {
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.maxErrors = maxErrors;
+    }
+
+    public void setMaxSlowResults(int maxSlowResults) {
+        this.maxSlowResults = Math.max(1, maxSlowResults);
+    }
+
+    public void setRetryAfterMillis(long retryAfterMillis) {
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * 本次识别是否应使用首选引擎
+     */
+    public boolean shouldUsePrimary(long now) {
+        return !fallbackActive || now - fallbackSince >= retryAfterMillis;
+    }
+
+    /**
+     * 首选引擎识别成功
+     *
+     * @param latencyMillis 语音结束到最终结果的耗时
+     */
+    public void onPrimaryResult(long latencyMillis, long now) {
+        consecutiveErrors = 0;
+        if (maxLatencyMillis > 0 && latencyMillis > maxLatencyMillis) {
+            consecutiveSlowResults++;
+            if (consecutiveSlowResults >= maxSlowResults || fallbackActive) {
+                enterFallback(now);
+            }
+            return;
+        }
+        consecutiveSlowResults = 0;
+        fallbackActive = false;
+    }
+
+    /**
+     * 首选引擎出错
+     *
+     * @param engineFault 是否为引擎故障（网络、服务等），否则不计入
+     */
+    public void onPrimaryError(boolean engineFault, long now) {
+        if (!engineFault) {
+            return;
+        }
+        consecutiveErrors++;
+        if (maxErrors > 0 && (consecutiveErrors >= maxErrors || fallbackActive)) {
+            enterFallback(now);
+        }
+    }
+
+    /**
+     * 手动切换首选引擎后清空统计
+     */
+    public void reset() {
+        consecutiveErrors = 0;
+        consecutiveSlowResults = 0;
+        fallbackActive = false;
+    }
+
+    public boolean isFallbackActive() {
+        return fallbackActive;
+    }
+
+    /**
+     * 降级次数（含重试首选引擎失败后的再次降级）
+     */
+    public int getFallbackCount() {
+        return fallbackCount;
+    }
+
+    private void enterFallback(long now) {
+        fallbackActive = true;
+        fallbackSince = now;
+        fallbackCount++;
+        consecutiveErrors = 0;
+        consecutiveSlowResults = 0;
+    }
+}
@@ -0,0 +1,43 @@
+package com.autoglm.controller;
+
+/**
+ * 基于共享文件的传输通道（默认）：command.txt / status.txt
+ */
+public class FileTransport implements CommandTransport {
+    public static final String NAME = "file";
+
+    private final CommandFiles files;
+
+    /**
+     * 默认通信目录
+     */
+    public FileTransport() {
+        this(FileUtils.getCommandFiles());
+    }
+
+    /**
+     * 指定通信目录，用于多通道
+     */
+    public FileTransport(CommandFiles files) {
+        this.files = files;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean sendCommand(String command) {
+        return files.writeCommand(command);
+    }
+
+    @Override
+    public String readStatus() {
+        return files.readStatus();
+    }
+
+    @Override
+    public void close() {
+    }
+}
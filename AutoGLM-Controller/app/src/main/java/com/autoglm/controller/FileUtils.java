@@ -1,87 +1,295 @@
 package com.autoglm.controller;
 
-import android.content.Context;
-import android.os.Build;
 import android.os.Environment;
-
-import androidx.annotation.RequiresApi;
+import android.util.Log;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 public class FileUtils {
+    private static final String TAG = "FileUtils";
+
     // 通信路径
     private static final String BASE_PATH = Environment.getExternalStorageDirectory() + "/UbuntuAndroid/";
-    private static final String COMMAND_FILE = BASE_PATH + "command.txt";
-    private static final String STATUS_FILE = BASE_PATH + "status.txt";
+    public static final String COMMAND_FILE_NAME = CommandFiles.COMMAND_FILE_NAME;
+    public static final String STATUS_FILE_NAME = CommandFiles.STATUS_FILE_NAME;
+
+    // 默认通信目录下的文件协议
+    private static final CommandFiles files = new CommandFiles(new File(BASE_PATH));
+
+    // 命令发送结果
+    public static final int SEND_OK = 0;
+    public static final int SEND_FAILED = 1;
+    // 已写入，但与上一条纯文本命令相同，agent 会忽略
+    public static final int SEND_REPEATED = 2;
+
+    /**
+     * 异步操作结果回调，在主线程执行；操作出错时也会回调（失败值）
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * 暂缓执行的命令：所在通道与命令 ID
+     */
+    public static final class HeldCommand {
+        final AgentChannel channel;
+        final String id;
+
+        HeldCommand(AgentChannel channel, String id) {
+            this.channel = channel;
+            this.id = id;
+        }
+    }
+
+    /**
+     * 通信目录路径
+     */
+    public static String getBasePath() {
+        return BASE_PATH;
+    }
+
+    /**
+     * 默认通信目录下的文件协议
+     */
+    public static CommandFiles getCommandFiles() {
+        return files;
+    }
+
+    /**
+     * 状态文件
+     */
+    public static File getStatusFile() {
+        return files.getStatusFile();
+    }
+
+    /**
+     * 唤醒词模板目录
+     */
+    public static File getWakeTemplateDir() {
+        return new File(BASE_PATH, "wake");
+    }
 
-    // 线程安全锁
-    private static final ReentrantLock lock = new ReentrantLock();
+    /**
+     * 识别会话录制目录
+     */
+    public static File getSessionRecordDir() {
+        return new File(BASE_PATH, "sessions");
+    }
 
     /**
      * 初始化目录
      */
     public static void initDirectory() {
-        lock.lock();
-        try {
-            File dir = new File(BASE_PATH);
-            if (!dir.exists()) {
-                dir.mkdirs();
-            }
-        } finally {
-            lock.unlock();
-        }
+        files.initDirectory();
     }
 
     /**
      * 写入命令文本
+     * <p>
+     * 命令先追加到命令日志并落盘，再投递到 command.txt。agent 读取后会清空 command.txt，
+     * 在此之前到达的命令在日志中排队，不会覆盖上一条，进程重启后也会继续投递。
      */
     public static boolean writeCommand(String content) {
-        lock.lock();
-        try {
-            File file = new File(COMMAND_FILE);
-            if (!file.exists()) {
-                file.createNewFile();
-            }
+        return files.writeCommand(content);
+    }
 
-            FileOutputStream fos = new FileOutputStream(file);
-            fos.write(content.getBytes(StandardCharsets.UTF_8));
-            fos.flush();
-            fos.close();
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
-        } finally {
-            lock.unlock();
-        }
+    /**
+     * 若 agent 已取走上一条命令，投递日志中的下一条
+     *
+     * @return 仍在排队的命令数
+     */
+    public static int deliverPendingCommand() {
+        return files.deliverPendingCommand();
     }
 
     /**
      * 读取状态文本
      */
     public static String readStatus() {
-        lock.lock();
-        try {
-            File file = new File(STATUS_FILE);
-            if (!file.exists()) {
-                return "未检测到状态文件";
+        return files.readStatus();
+    }
+
+    /**
+     * 在 I/O 线程初始化目录
+     */
+    public static Future<Boolean> initDirectoryAsync(Callback<Boolean> callback) {
+        return submit(files::initDirectory, false, callback);
+    }
+
+    /**
+     * 在 I/O 线程发送命令，写入完成时记录延迟追踪。有多个 agent 通道时由 {@link ChannelRouter} 选择通道。
+     * agent 支持命令 ID 时附带 ID，由 {@link CommandTracker} 跟踪执行状态。
+     *
+     * @param traceIds 对应的延迟追踪 ID
+     * @param callback 发送结果：{@link #SEND_OK}、{@link #SEND_FAILED} 或 {@link #SEND_REPEATED}
+     */
+    public static Future<Integer> writeCommandAsync(String content, List<Integer> traceIds,
+                                                    Callback<Integer> callback) {
+        ChannelRouter.Route route = ChannelRouter.get().route(content);
+        return send(route, CommandTracker.get().prepare(route.command), traceIds, callback);
+    }
+
+    /**
+     * 以暂缓执行方式发送预发送的命令：agent 收到后开始准备，在操作设备前等待确认或取消。
+     * 需 agent 支持（{@link CommandTracker#isHoldEnabled()}）。
+     *
+     * @return 发出的命令，用于之后确认或取消
+     */
+    public static HeldCommand writeHeldCommandAsync(String content, List<Integer> traceIds,
+                                                    Callback<Integer> callback) {
+        ChannelRouter.Route route = ChannelRouter.get().route(content);
+        String payload = CommandTracker.get().prepareHeld(route.command);
+        send(route, payload, traceIds, callback);
+        return new HeldCommand(route.channel, CommandTracker.idOf(payload));
+    }
+
+    /**
+     * 确认暂缓执行的命令，agent 继续执行
+     *
+     * @param callback 是否发出
+     */
+    public static Future<Boolean> confirmHeldCommandAsync(HeldCommand held, Callback<Boolean> callback) {
+        AgentChannel channel = held.channel;
+        String payload = CommandTracker.encodeConfirm(held.id);
+        return submit(() -> channel.getTransport().sendCommand(payload), false, callback);
+    }
+
+    /**
+     * 取消暂缓执行的命令，agent 不执行并报告 ERROR
+     */
+    public static Future<Boolean> cancelHeldCommandAsync(HeldCommand held) {
+        AgentChannel channel = held.channel;
+        String payload = CommandTracker.encodeCancel(held.id);
+        return submit(() -> channel.getTransport().sendCommand(payload), false, null);
+    }
+
+    /**
+     * 停止已发给 agent 的命令：向每个通道发送尚未完成的命令的 "CANCEL: id"。agent 在每一步操作设备前检查，
+     * 执行中的命令就此停止并报告 ERROR，尚未读取的命令之后跳过。需 agent 支持（{@link CommandTracker#isHoldEnabled()}）。
+     *
+     * @param traceIds 停止命令的延迟追踪 ID
+     * @param callback 发送结果：{@link #SEND_OK} 或 {@link #SEND_FAILED}
+     * @return 没有可取消的命令或 agent 不支持时为 null，调用方照常发送停止命令
+     */
+    public static Future<Integer> cancelPendingCommandsAsync(List<Integer> traceIds, Callback<Integer> callback) {
+        CommandTracker tracker = CommandTracker.get();
+        List<String> ids = new ArrayList<>();
+        if (tracker.isHoldEnabled()) {
+            for (CommandTracker.Command command : tracker.getPending()) {
+                ids.add(command.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return null;
+        }
+        // 不记录命令发往了哪个通道，逐个通道发送；agent 忽略不认识的 ID
+        List<AgentChannel> channels = ChannelRouter.get().getChannels();
+        LatencyTracer tracer = LatencyTracer.get();
+        return submit(() -> {
+            boolean ok = false;
+            for (AgentChannel channel : channels) {
+                for (String id : ids) {
+                    ok |= channel.getTransport().sendCommand(CommandTracker.encodeCancel(id));
+                }
+            }
+            for (int traceId : traceIds) {
+                if (ok) {
+                    tracer.mark(traceId, LatencyTracer.Stage.COMMAND_WRITTEN);
+                } else {
+                    tracer.fail(traceId, LatencyTracer.OUTCOME_SEND_FAILED);
+                }
+            }
+            return ok ? SEND_OK : SEND_FAILED;
+        }, SEND_FAILED, callback);
+    }
+
+    private static Future<Integer> send(ChannelRouter.Route route, String payload, List<Integer> traceIds,
+                                        Callback<Integer> callback) {
+        LatencyTracer tracer = LatencyTracer.get();
+        return submit(() -> {
+            boolean ok = false;
+            try {
+                ok = route.channel.getTransport().sendCommand(payload);
+            } finally {
+                // 发送失败或抛出异常：撤销计入的负载，延迟追踪记为失败
+                if (!ok) {
+                    ChannelRouter.get().onSendFailed(route.channel);
+                    CommandTracker.get().onSendFailed(payload);
+                    for (int traceId : traceIds) {
+                        tracer.fail(traceId, LatencyTracer.OUTCOME_SEND_FAILED);
+                    }
+                }
+            }
+            if (!ok) {
+                return SEND_FAILED;
             }
+            CommandTracker.get().onSent(payload);
+            boolean plain = CommandTracker.idOf(payload) == null;
+            int result = ChannelRouter.get().onSent(route.channel, route.command, plain) ? SEND_REPEATED : SEND_OK;
+            for (int traceId : traceIds) {
+                tracer.mark(traceId, LatencyTracer.Stage.COMMAND_WRITTEN);
+            }
+            return result;
+        }, SEND_FAILED, callback);
+    }
+
+    /**
+     * 在 I/O 线程投递排队中的命令
+     */
+    public static Future<Integer> deliverPendingCommandAsync() {
+        return IoThread.submit(FileUtils::deliverPendingCommand);
+    }
+
+    /**
+     * 在 I/O 线程投递某个通道排队中的命令，回调仍在排队的命令数（出错时为 -1）
+     */
+    public static Future<Integer> deliverPendingCommandAsync(AgentChannel channel, Callback<Integer> callback) {
+        return submit(channel.getFiles()::deliverPendingCommand, -1, callback);
+    }
+
+    /**
+     * 在 I/O 线程通过当前传输通道读取状态
+     */
+    public static Future<String> readStatusAsync(Callback<String> callback) {
+        return submit(() -> Transports.get().readStatus(), null, callback);
+    }
+
+    /**
+     * 在 I/O 线程投递某个通道排队中的命令并读取其状态
+     */
+    public static Future<String> readStatusAsync(AgentChannel channel, Callback<String> callback) {
+        return submit(() -> {
+            channel.getFiles().deliverPendingCommand();
+            return channel.getTransport().readStatus();
+        }, null, callback);
+    }
+
+    /**
+     * 在 I/O 线程执行任务并回调结果。任务抛出异常时记录日志并回调 failure，
+     * 调用方不会因为异常被 Future 吞掉而一直等不到回调。
+     */
+    private static <T> Future<T> submit(Callable<T> task, T failure, Callback<T> callback) {
+        return IoThread.submit(() -> {
+            T result;
+            try {
+                result = task.call();
+            } catch (Throwable e) {
+                Log.e(TAG, "I/O 操作失败", e);
+                result = failure;
+            }
+            postResult(callback, result);
+            return result;
+        });
+    }
 
-            FileInputStream fis = new FileInputStream(file);
-            byte[] buffer = new byte[fis.available()];
-            fis.read(buffer);
-            fis.close();
-            return new String(buffer, StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return "读取状态失败: " + e.getMessage();
-        } finally {
-            lock.unlock();
+    private static <T> void postResult(Callback<T> callback, T result) {
+        if (callback != null) {
+            IoThread.getMainHandler().post(() -> callback.onResult(result));
         }
     }
-}
\ No newline at end of file
+}
@@ -1,25 +1,33 @@
 package com.autoglm.controller;
 
-import android.animation.Animator;
-import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.PixelFormat;
 import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.util.DisplayMetrics;
+import android.util.Log;
 import android.view.GestureDetector;
 import android.view.Gravity;
 import android.view.MotionEvent;
+import android.view.ContextThemeWrapper;
+import android.view.Menu;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.WindowManager;
-import android.view.animation.LinearInterpolator;
 import android.widget.Button;
-import android.widget.ImageView;
+import android.widget.PopupMenu;
 import android.widget.Toast;
 
 import androidx.core.view.GestureDetectorCompat;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class FloatWindowManager {
     private static final String TAG = "FloatWindowManager";
     private static FloatWindowManager instance;
@@ -30,6 +38,8 @@ public class FloatWindowManager {
 
     private View floatView;
     private WindowManager.LayoutParams layoutParams;
+    // 与屏幕刷新同步的位置更新与贴边动画
+    private OverlayPositionUpdater positionUpdater;
 
     // 屏幕参数
     private int screenWidth;
@@ -38,8 +48,29 @@ public class FloatWindowManager {
 
     // 悬浮窗状态
     private boolean isRecording = false;
+    // 识别器在启动的后续阶段创建（见 initRecognizer），之前为 null
     private SpeechRecognizerHelper speechHelper;
-    private ImageView recordAnimationView;
+    private ControllerConfig config;
+    private RecordIndicatorView recordIndicator;
+
+    // 预发送（未开启时为 null）
+    private SpeculativeDispatcher speculativeDispatcher;
+    // 预发送后尚未确认或取消的命令
+    private FileUtils.HeldCommand heldCommand;
+    // 命令排队与合并
+    private CommandDispatcher commandDispatcher;
+    // 唤醒词触发（未开启时为 null）；识别会话进行中时暂停
+    private WakeWordTrigger wakeTrigger;
+    private boolean recognitionActive = false;
+    private boolean screenOn = true;
+
+    // 常用命令：双击悬浮窗列出并直接重发
+    private static final int PHRASE_MENU_SIZE = 8;
+    // 记录命令后延迟保存，合并连续的写入
+    private static final long PHRASE_SAVE_DELAY = 10 * 1000;
+    private final PhraseCache phraseCache = new PhraseCache(PhraseCache.DEFAULT_CAPACITY);
+    private boolean phraseCacheEnabled = true;
+    private final Runnable savePhraseCacheRunnable = this::savePhraseCache;
 
     private FloatWindowManager(Context context) {
         this.context = context.getApplicationContext();
@@ -59,7 +90,8 @@ public class FloatWindowManager {
         }
 
         initFloatView();
-        initSpeechHelper();
+        initCommandDispatcher();
+        IoThread.execute(() -> phraseCache.readFrom(phraseCacheFile()));
     }
 
     public static FloatWindowManager getInstance(Context context) {
@@ -80,7 +112,7 @@ public class FloatWindowManager {
     private void initFloatView() {
         // 加载悬浮窗布局
         floatView = View.inflate(context, R.layout.float_window, null);
-        recordAnimationView = floatView.findViewById(R.id.record_animation);
+        recordIndicator = floatView.findViewById(R.id.record_animation);
 
         // 设置悬浮窗参数
         layoutParams = new WindowManager.LayoutParams();
@@ -100,7 +132,15 @@ public class FloatWindowManager {
         layoutParams.x = 0; // 默认左侧
         layoutParams.y = screenHeight / 2; // 垂直居中
 
-        // 设置触摸监听
+        positionUpdater = new OverlayPositionUpdater((x, y) -> {
+            layoutParams.x = x;
+            layoutParams.y = y;
+            if (floatView.getParent() != null) {
+                windowManager.updateViewLayout(floatView, layoutParams);
+            }
+        });
+
+        // 设置触摸监听：位置只在下一帧统一更新，每帧最多一次布局更新
         floatView.setOnTouchListener((v, event) -> {
             if (gestureDetector.onTouchEvent(event)) {
                 return true;
@@ -108,28 +148,56 @@ public class FloatWindowManager {
 
             switch (event.getAction()) {
                 case MotionEvent.ACTION_DOWN:
+                    // 可能即将长按录音，提前预热识别器；麦克风让给识别器
+                    pauseWakeTrigger();
+                    initRecognizer();
+                    speechHelper.prewarm();
+                    ActivityScheduler.get().onUserActivity();
                     // 记录初始位置
-                    layoutParams.x = (int) event.getRawX() - floatView.getWidth() / 2;
-                    layoutParams.y = (int) event.getRawY() - floatView.getHeight() / 2 - statusBarHeight;
-                    windowManager.updateViewLayout(floatView, layoutParams);
+                    positionUpdater.beginDrag(dragX(event), dragY(event), event.getEventTime());
                     break;
 
                 case MotionEvent.ACTION_MOVE:
                     // 更新位置
-                    layoutParams.x = (int) event.getRawX() - floatView.getWidth() / 2;
-                    layoutParams.y = (int) event.getRawY() - floatView.getHeight() / 2 - statusBarHeight;
-                    windowManager.updateViewLayout(floatView, layoutParams);
+                    positionUpdater.moveTo(dragX(event), dragY(event), event.getEventTime());
                     break;
 
                 case MotionEvent.ACTION_UP:
+                case MotionEvent.ACTION_CANCEL:
                     // 磁吸到边缘
-                    magnetToEdge();
+                    magnetToEdge(event.getEventTime());
+                    if (!recognitionActive) {
+                        resumeWakeTrigger();
+                    }
                     break;
             }
             return true;
         });
     }
 
+    private int dragX(MotionEvent event) {
+        return (int) event.getRawX() - floatView.getWidth() / 2;
+    }
+
+    private int dragY(MotionEvent event) {
+        return (int) event.getRawY() - floatView.getHeight() / 2 - statusBarHeight;
+    }
+
+    /**
+     * 创建识别器并应用配置；已创建时不做任何事。
+     * 创建讯飞识别器较慢，服务启动时在主线程空闲后调用，悬浮窗先行显示；在此之前按下悬浮窗时立即创建。
+     */
+    public void initRecognizer() {
+        if (speechHelper != null) {
+            return;
+        }
+        initSpeechHelper();
+        speechHelper.setOverlayVisible(screenOn && floatView.getParent() != null);
+        if (config != null) {
+            applySpeechConfig(config);
+        }
+    }
+
     /**
      * 初始化语音识别助手
      */
@@ -138,21 +206,33 @@ public class FloatWindowManager {
         speechHelper.setOnRecognizeResultListener(new SpeechRecognizerHelper.OnRecognizeResultListener() {
             @Override
             public void onResult(String result) {
+                LatencyTracer.get().mark(LatencyTracer.Stage.RESULT);
                 isRecording = false;
                 stopRecordAnimation();
-                FileUtils.writeCommand(result);
-                Toast.makeText(context, "已发送命令: " + result, Toast.LENGTH_SHORT).show();
+                onRecognitionFinished();
+                recordPhrase(result);
+                if (speculativeDispatcher != null) {
+                    speculativeDispatcher.onFinal(result);
+                } else {
+                    sendCommand(result);
+                }
             }
 
             @Override
             public void onError(String errorMsg) {
+                LatencyTracer.get().fail(LatencyTracer.OUTCOME_ERROR);
+                if (speculativeDispatcher != null) {
+                    speculativeDispatcher.abandon();
+                }
                 isRecording = false;
                 stopRecordAnimation();
+                onRecognitionFinished();
                 Toast.makeText(context, "识别失败: " + errorMsg, Toast.LENGTH_SHORT).show();
             }
 
             @Override
             public void onRecordingStart() {
+                LatencyTracer.get().mark(LatencyTracer.Stage.SPEECH_BEGIN);
                 isRecording = true;
                 startRecordAnimation();
                 Toast.makeText(context, "开始录音...", Toast.LENGTH_SHORT).show();
@@ -160,52 +240,408 @@ public class FloatWindowManager {
 
             @Override
             public void onRecordingEnd() {
+                LatencyTracer.get().mark(LatencyTracer.Stage.SPEECH_END);
                 Toast.makeText(context, "正在识别...", Toast.LENGTH_SHORT).show();
+                if (speculativeDispatcher != null) {
+                    speculativeDispatcher.onEndOfSpeech();
+                }
+            }
+        });
+        speechHelper.setOnPartialResultListener(hypothesis -> {
+            if (speculativeDispatcher != null) {
+                speculativeDispatcher.onPartial(hypothesis);
+            }
+        });
+        speechHelper.setOnVolumeChangedListener(level -> recordIndicator.setLevel(level));
+    }
+
+    /**
+     * 初始化命令调度：agent 忙时排队，空闲后发送
+     */
+    private void initCommandDispatcher() {
+        Handler mainHandler = IoThread.getMainHandler();
+        commandDispatcher = new CommandDispatcher(new CommandDispatcher.Listener() {
+            @Override
+            public void onSend(CommandDispatcher.Command command) {
+                String text = command.getText();
+                ActivityScheduler.get().onCommandDispatched();
+                List<Integer> traceIds = new ArrayList<>(command.getTraceIds());
+                FileUtils.Callback<Integer> callback = result -> {
+                    showSendResult(text, result);
+                    if (result == FileUtils.SEND_FAILED) {
+                        commandDispatcher.onSendFailed(command);
+                    }
+                };
+                // agent 同步执行命令，只在两步之间检查取消：停止类命令改为取消已发出的命令，不再作为新任务排在其后
+                if (!CommandDispatcher.isCancel(text)
+                        || FileUtils.cancelPendingCommandsAsync(traceIds, callback) == null) {
+                    FileUtils.writeCommandAsync(text, traceIds, callback);
+                }
+                ChannelRouter router = ChannelRouter.get();
+                if (router.getChannelCount() > 1) {
+                    // 多个 agent 通道时，还有空闲通道就继续发送排队中的命令
+                    mainHandler.post(() -> commandDispatcher.onAgentStatus(router.getDispatchStatus(null)));
+                }
+            }
+
+            @Override
+            public void onQueued(CommandDispatcher.Command command, int queueSize) {
+                Toast.makeText(context, "agent 忙，已排队(" + queueSize + "): " + command.getText(),
+                        Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onDropped(CommandDispatcher.Command command) {
+                for (int traceId : command.getTraceIds()) {
+                    LatencyTracer.get().fail(traceId, LatencyTracer.OUTCOME_DROPPED);
+                }
+                Toast.makeText(context, "已丢弃命令: " + command.getText(), Toast.LENGTH_SHORT).show();
+            }
+        }, new CommandDispatcher.Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMillis) {
+                mainHandler.postDelayed(task, delayMillis);
+            }
+
+            @Override
+            public void removeCallbacks(Runnable task) {
+                mainHandler.removeCallbacks(task);
+            }
+        }, SystemClock::uptimeMillis, CommandDispatcher.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * agent 状态更新，空闲时发送排队中的命令
+     */
+    public void onAgentStatus(AgentStatus status) {
+        commandDispatcher.onAgentStatus(status);
+    }
+
+    /**
+     * 应用运行配置：识别引擎、尾端点、预缓冲、唤醒词、流式识别、预发送与命令合并
+     */
+    public void applyConfig(ControllerConfig config) {
+        this.config = config;
+        phraseCacheEnabled = config.isPhraseCacheEnabled();
+        commandDispatcher.setMergeWindowMillis(config.getMergeWindowMillis());
+        if (speechHelper != null) {
+            applySpeechConfig(config);
+        }
+        applyWakeConfig(config.isWakeWordEnabled(), config.getWakeSensitivity());
+
+        boolean speculative = config.isStreamingEnabled() && config.isSpeculativeDispatchEnabled();
+        if (speculative && speculativeDispatcher == null) {
+            speculativeDispatcher = new SpeculativeDispatcher(new SpeculativeDispatcher.Listener() {
+                @Override
+                public boolean canSpeculate() {
+                    return CommandTracker.get().isHoldEnabled() && commandDispatcher.isIdle();
+                }
+
+                @Override
+                public void onDispatch(String text, boolean speculative) {
+                    if (!speculative) {
+                        sendCommand(text);
+                        return;
+                    }
+                    // 不经排队与合并直接发出；agent 确认前不操作设备
+                    ActivityScheduler.get().onCommandDispatched();
+                    List<Integer> traceIds = Collections.singletonList(LatencyTracer.get().detach());
+                    FileUtils.HeldCommand[] sent = new FileUtils.HeldCommand[1];
+                    sent[0] = heldCommand = FileUtils.writeHeldCommandAsync(text, traceIds, result -> {
+                        if (result != FileUtils.SEND_FAILED) {
+                            return;
+                        }
+                        if (heldCommand == sent[0]) {
+                            // 尚未确认：最终结果到达时按普通命令发送
+                            heldCommand = null;
+                        } else {
+                            showSendResult(text, result);
+                        }
+                    });
+                }
+
+                @Override
+                public void onConfirm(String text) {
+                    if (heldCommand == null) {
+                        // 预发送失败
+                        sendCommand(text);
+                        return;
+                    }
+                    FileUtils.confirmHeldCommandAsync(heldCommand, ok -> {
+                        if (ok) {
+                            Toast.makeText(context, "已发送命令: " + text, Toast.LENGTH_SHORT).show();
+                        } else {
+                            // 确认未发出：按普通命令发送，agent 收到其他命令时丢弃暂缓的命令
+                            sendCommand(text);
+                        }
+                    });
+                    heldCommand = null;
+                }
+
+                @Override
+                public void onCancel(String dispatched) {
+                    if (heldCommand != null) {
+                        FileUtils.cancelHeldCommandAsync(heldCommand);
+                        heldCommand = null;
+                    }
+                }
+            });
+        } else if (!speculative) {
+            speculativeDispatcher = null;
+        }
+    }
+
+    /**
+     * 识别器相关的配置
+     */
+    private void applySpeechConfig(ControllerConfig config) {
+        speechHelper.setEngine(config.getSpeechEngine());
+        speechHelper.setFallbackEnabled(config.isEngineFallbackEnabled());
+        speechHelper.setFallbackThresholds(config.getFallbackLatencyMillis(), config.getFallbackErrors());
+        speechHelper.setAdaptiveEndpoint(config.isAdaptiveEndpointEnabled(), config.getEndpointSensitivity() / 100f);
+        speechHelper.setAudioPreRoll(config.isAudioPreRollEnabled());
+        speechHelper.setSessionRecordDir(config.isSessionRecordingEnabled() ? FileUtils.getSessionRecordDir() : null);
+        speechHelper.setStreamingEnabled(config.isStreamingEnabled());
+    }
+
+    /**
+     * 开始一次识别：长按与唤醒词共用
+     */
+    private void startRecognition() {
+        LatencyTracer.get().begin();
+        if (speculativeDispatcher != null) {
+            speculativeDispatcher.abandon();
+        }
+        recognitionActive = true;
+        pauseWakeTrigger();
+        initRecognizer();
+        speechHelper.startListening();
+    }
+
+    /**
+     * 识别结束（得到结果或出错），恢复唤醒词监听
+     */
+    private void onRecognitionFinished() {
+        recognitionActive = false;
+        resumeWakeTrigger();
+    }
+
+    /**
+     * 开启或关闭唤醒词触发；模板在 I/O 线程加载，完成后开始监听
+     */
+    private void applyWakeConfig(boolean enabled, int sensitivity) {
+        float threshold = WakePhraseSpotter.DEFAULT_THRESHOLD * (0.7f + 0.6f * sensitivity / 100f);
+        if (!enabled) {
+            if (wakeTrigger != null) {
+                wakeTrigger.stop();
+                wakeTrigger = null;
+            }
+            return;
+        }
+        if (wakeTrigger != null) {
+            wakeTrigger.getSpotter().setThreshold(threshold);
+            return;
+        }
+        File dir = FileUtils.getWakeTemplateDir();
+        IoThread.execute(() -> {
+            WakePhraseSpotter spotter = new WakePhraseSpotter();
+            spotter.setThreshold(threshold);
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    try {
+                        PcmFiles.Clip clip = PcmFiles.read(file, WakePhraseSpotter.SAMPLE_RATE);
+                        if (clip.sampleRate != WakePhraseSpotter.SAMPLE_RATE
+                                || !spotter.addTemplate(clip.samples, clip.samples.length)) {
+                            Log.w(TAG, "忽略唤醒词模板: " + file.getName());
+                        }
+                    } catch (IOException e) {
+                        Log.w(TAG, "读取唤醒词模板失败: " + file.getName(), e);
+                    }
+                }
             }
+            IoThread.getMainHandler().post(() -> {
+                if (wakeTrigger != null) {
+                    return;
+                }
+                wakeTrigger = new WakeWordTrigger(MicAudioSource::new, spotter, new WakeListener(spotter));
+                wakeTrigger.setScreenOn(screenOn);
+                if (recognitionActive) {
+                    wakeTrigger.pause();
+                }
+                wakeTrigger.start();
+                if (spotter.getTemplateCount() == 0) {
+                    Toast.makeText(context, "尚未录入唤醒词", Toast.LENGTH_SHORT).show();
+                }
+            });
         });
     }
 
     /**
-     * 磁吸到屏幕边缘
+     * 唤醒词回调，在采集线程执行
      */
-    private void magnetToEdge() {
-        ValueAnimator animator = ValueAnimator.ofInt(layoutParams.x,
-                layoutParams.x < screenWidth / 2 ? 0 : screenWidth - floatView.getWidth());
-        animator.setDuration(200);
-        animator.setInterpolator(new LinearInterpolator());
-        animator.addUpdateListener(animation -> {
-            layoutParams.x = (int) animation.getAnimatedValue();
-            windowManager.updateViewLayout(floatView, layoutParams);
+    private class WakeListener implements WakeWordTrigger.Listener {
+        private final WakePhraseSpotter spotter;
+
+        WakeListener(WakePhraseSpotter spotter) {
+            this.spotter = spotter;
+        }
+
+        @Override
+        public void onWake() {
+            IoThread.getMainHandler().post(() -> {
+                if (recognitionActive || isRecording) {
+                    return;
+                }
+                startRecognition();
+            });
+        }
+
+        @Override
+        public void onEnrolled(short[] pcm) {
+            // 在采集线程加入模板，与检测在同一线程
+            boolean ok = spotter.addTemplate(pcm, pcm.length);
+            int count = spotter.getTemplateCount();
+            if (ok) {
+                File file = new File(FileUtils.getWakeTemplateDir(), "template_" + System.currentTimeMillis() + ".pcm");
+                IoThread.execute(() -> {
+                    try {
+                        file.getParentFile().mkdirs();
+                        PcmFiles.writePcm(file, pcm, pcm.length);
+                    } catch (IOException e) {
+                        Log.e(TAG, "保存唤醒词模板失败", e);
+                    }
+                });
+            }
+            IoThread.getMainHandler().post(() -> Toast.makeText(context,
+                    ok ? "已录入唤醒词（共 " + count + " 个）" : "录入失败，请重试", Toast.LENGTH_SHORT).show());
+        }
+    }
+
+    /**
+     * 录入唤醒词：下一句话作为模板，建议录入 3 遍
+     */
+    public void enrollWakePhrase() {
+        if (wakeTrigger == null) {
+            Toast.makeText(context, "唤醒词未开启", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        wakeTrigger.enrollNext();
+        Toast.makeText(context, "请说出唤醒词", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * 屏幕状态：息屏后释放预热的识别器，唤醒词轮换监听
+     */
+    public void setScreenOn(boolean screenOn) {
+        if (this.screenOn == screenOn) {
+            return;
+        }
+        this.screenOn = screenOn;
+        if (speechHelper != null) {
+            speechHelper.setOverlayVisible(screenOn && floatView.getParent() != null);
+        }
+        if (wakeTrigger != null) {
+            wakeTrigger.setScreenOn(screenOn);
+        }
+    }
+
+    private void pauseWakeTrigger() {
+        if (wakeTrigger != null) {
+            wakeTrigger.pause();
+        }
+    }
+
+    private void resumeWakeTrigger() {
+        if (wakeTrigger != null) {
+            wakeTrigger.resume();
+        }
+    }
+
+    private void showSendResult(String text, int result) {
+        Toast.makeText(context, result == FileUtils.SEND_OK ? "已发送命令: " + text
+                : result == FileUtils.SEND_REPEATED ? "agent 不支持命令 ID，会忽略与上一条相同的命令: " + text
+                : "命令发送失败: " + text, Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * 提交命令：agent 空闲时立即发送，忙时排队；紧急命令总是立即发送
+     */
+    private void sendCommand(String command) {
+        commandDispatcher.submit(command, LatencyTracer.get().detach());
+    }
+
+    /**
+     * 记入常用命令（紧急命令除外），稍后保存
+     */
+    private void recordPhrase(String command) {
+        if (!phraseCacheEnabled || CommandDispatcher.classify(command) != CommandDispatcher.Priority.NORMAL
+                || phraseCache.record(command) == null) {
+            return;
+        }
+        Handler handler = IoThread.getMainHandler();
+        handler.removeCallbacks(savePhraseCacheRunnable);
+        handler.postDelayed(savePhraseCacheRunnable, PHRASE_SAVE_DELAY);
+    }
+
+    private void savePhraseCache() {
+        IoThread.execute(() -> phraseCache.writeTo(phraseCacheFile()));
+    }
+
+    /**
+     * 常用命令保存在应用私有目录，不放在与 agent 共享的通信目录
+     */
+    private File phraseCacheFile() {
+        return new File(context.getFilesDir(), PhraseCache.FILE_NAME);
+    }
+
+    /**
+     * 列出常用命令，选中后不经识别直接发送
+     */
+    private void showPhraseMenu() {
+        if (!phraseCacheEnabled) {
+            return;
+        }
+        List<PhraseCache.Phrase> phrases = phraseCache.top(PHRASE_MENU_SIZE);
+        if (phrases.isEmpty()) {
+            Toast.makeText(context, "还没有常用命令", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        PopupMenu menu = new PopupMenu(new ContextThemeWrapper(context, R.style.Theme_Controller), floatView);
+        for (int i = 0; i < phrases.size(); i++) {
+            menu.getMenu().add(Menu.NONE, i, i, phrases.get(i).getText());
+        }
+        menu.setOnMenuItemClickListener(item -> {
+            String command = phrases.get(item.getItemId()).getText();
+            ActivityScheduler.get().onUserActivity();
+            recordPhrase(command);
+            commandDispatcher.submit(command, LatencyTracer.get().beginDispatch());
+            return true;
         });
-        animator.start();
+        menu.show();
+    }
+
+    /**
+     * 以弹簧动画磁吸到屏幕边缘
+     */
+    private void magnetToEdge(long eventTimeMillis) {
+        int centerX = layoutParams.x + floatView.getWidth() / 2;
+        positionUpdater.endDrag(centerX < screenWidth / 2 ? 0 : screenWidth - floatView.getWidth(),
+                eventTimeMillis);
     }
 
     /**
      * 启动录音动画
      */
     private void startRecordAnimation() {
-        recordAnimationView.setVisibility(View.VISIBLE);
-        ValueAnimator animator = ValueAnimator.ofFloat(0.5f, 1.0f);
-        animator.setDuration(800);
-        animator.setRepeatMode(ValueAnimator.REVERSE);
-        animator.setRepeatCount(ValueAnimator.INFINITE);
-        animator.setInterpolator(new LinearInterpolator());
-        animator.addUpdateListener(animation -> {
-            float value = (float) animation.getAnimatedValue();
-            recordAnimationView.setScaleX(value);
-            recordAnimationView.setScaleY(value);
-        });
-        animator.start();
+        recordIndicator.setRecording(true);
     }
 
     /**
      * 停止录音动画
      */
     private void stopRecordAnimation() {
-        recordAnimationView.setVisibility(View.GONE);
-        recordAnimationView.clearAnimation();
-        recordAnimationView.setScaleX(1.0f);
-        recordAnimationView.setScaleY(1.0f);
+        recordIndicator.setRecording(false);
     }
 
     /**
@@ -215,15 +651,24 @@ public class FloatWindowManager {
         if (floatView.getParent() == null) {
             windowManager.addView(floatView, layoutParams);
         }
+        if (speechHelper != null) {
+            speechHelper.setOverlayVisible(screenOn);
+        }
+        ActivityScheduler.get().setOverlayVisible(true);
     }
 
     /**
      * 隐藏悬浮窗
      */
     public void hideFloatWindow() {
+        positionUpdater.cancel();
         if (floatView.getParent() != null) {
             windowManager.removeView(floatView);
         }
+        if (speechHelper != null) {
+            speechHelper.setOverlayVisible(false);
+        }
+        ActivityScheduler.get().setOverlayVisible(false);
     }
 
     /**
@@ -235,12 +680,21 @@ public class FloatWindowManager {
         public void onLongPress(MotionEvent e) {
             // 长按开始录音
             if (!isRecording) {
-                speechHelper.startListening();
+                startRecognition();
             }
 
         }
 
 
+        @Override
+        public boolean onDoubleTap(MotionEvent e) {
+            // 双击列出常用命令
+            if (!isRecording) {
+                showPhraseMenu();
+            }
+            return true;
+        }
+
 //        @Override
 //        public boolean onSingleTapUp(MotionEvent e) {
 //            // 点击展开更多选项（此处简化，可扩展）
@@ -249,11 +703,25 @@ public class FloatWindowManager {
 //        }
     }
 
+    /**
+     * 系统内存紧张时释放识别器，下次按下悬浮窗时重新预热
+     */
+    public void onTrimMemory(int level) {
+        if (speechHelper != null) {
+            speechHelper.onTrimMemory(level);
+        }
+    }
+
     /**
      * 释放资源
      */
     public void release() {
         hideFloatWindow();
+        if (phraseCacheEnabled) {
+            IoThread.getMainHandler().removeCallbacks(savePhraseCacheRunnable);
+            savePhraseCache();
+        }
+        applyWakeConfig(false, 0);
         if (speechHelper != null) {
             speechHelper.destroy();
         }
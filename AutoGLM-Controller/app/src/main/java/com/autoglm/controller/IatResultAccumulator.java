@@ -0,0 +1,46 @@
+package com.autoglm.controller;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 拼接讯飞听写的分段结果
+ * <p>
+ * 每次 onResult 返回一个分段（sn 递增）。开启动态修正（dwa=wpgs）后，分段的 pgs 为 "rpl" 时
+ * 表示用当前分段替换 rg 范围内的旧分段，为 "apd" 时直接追加。
+ */
+public class IatResultAccumulator {
+    private final TreeMap<Integer, String> segments = new TreeMap<>();
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * 合入一个分段
+     *
+     * @param sn      分段序号
+     * @param segment 分段文本
+     * @param replace 是否为替换（pgs=rpl）
+     * @param rgStart 替换范围起始序号
+     * @param rgEnd   替换范围结束序号
+     */
+    public void apply(int sn, String segment, boolean replace, int rgStart, int rgEnd) {
+        if (replace && rgStart <= rgEnd) {
+            segments.subMap(rgStart, true, rgEnd, true).clear();
+        }
+        segments.put(sn, segment);
+    }
+
+    /**
+     * 当前完整的识别文本
+     */
+    public String getText() {
+        text.setLength(0);
+        for (Map.Entry<Integer, String> entry : segments.entrySet()) {
+            text.append(entry.getValue());
+        }
+        return text.toString();
+    }
+
+    public void reset() {
+        segments.clear();
+    }
+}
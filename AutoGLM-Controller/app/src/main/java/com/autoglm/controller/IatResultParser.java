@@ -0,0 +1,618 @@
+package com.autoglm.controller;
+
+/**
+ * 讯飞听写(IAT) JSON 结果的单遍解析器
+ * <p>
+ * 只识别 ws/cw/w 结构及 sn、ls、pgs、rg 字段，其余字段直接跳过，不构建对象树。
+ * 识别文本与临时字符串都写入复用的缓冲区，解析一条结果除最终文本外不产生额外对象。
+ * 输入格式错误时不抛异常，通过 {@link #getError()} 与 {@link #getErrorOffset()} 报告。
+ * 与原先基于 org.json 的实现一致：语法错误时文本为空，结构不符时保留出错前已解析出的词。
+ * <p>
+ * 非线程安全，每个识别回调线程使用一个实例。
+ */
+public class IatResultParser {
+
+    /**
+     * 解析错误类型
+     */
+    public enum Error {
+        NONE,
+        /** 输入提前结束 */
+        UNEXPECTED_END,
+        /** 出现不符合 JSON 语法的字符 */
+        UNEXPECTED_CHAR,
+        /** 字符串中的转义序列无效 */
+        BAD_ESCAPE,
+        /** 数字格式无效 */
+        BAD_NUMBER,
+        /** 缺少 ws 字段，或 ws/cw 中的元素不是预期结构 */
+        BAD_SCHEMA
+    }
+
+    // 解析中止信号，不携带堆栈，避免每次出错都创建异常对象
+    private static final class Abort extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Abort() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Abort ABORT = new Abort();
+
+    private final StringBuilder text = new StringBuilder(64);
+    // 键名与 pgs 等短字符串的复用缓冲
+    private final StringBuilder scratch = new StringBuilder(16);
+
+    private String input;
+    private int pos;
+    private int end;
+
+    private int sn;
+    private boolean last;
+    private boolean replace;
+    private int rgStart;
+    private int rgEnd;
+    private Error error = Error.NONE;
+    private int errorOffset = -1;
+
+    /**
+     * 解析一条结果
+     *
+     * @return 解析成功返回 true；失败时可通过 {@link #getError()} 获取原因
+     */
+    public boolean parse(String json) {
+        text.setLength(0);
+        sn = 0;
+        last = false;
+        replace = false;
+        rgStart = 0;
+        rgEnd = -1;
+        error = Error.NONE;
+        errorOffset = -1;
+        if (json == null) {
+            error = Error.UNEXPECTED_END;
+            errorOffset = 0;
+            return false;
+        }
+        input = json;
+        pos = 0;
+        end = json.length();
+        try {
+            // 与 org.json 一致，不检查根对象之后的内容
+            parseRoot();
+            return error == Error.NONE;
+        } catch (Abort abort) {
+            // 语法错误时整条结果作废
+            text.setLength(0);
+            return false;
+        } finally {
+            input = null;
+        }
+    }
+
+    /**
+     * 识别文本（各词首选结果拼接）
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * 识别文本缓冲区，下次解析时会被覆盖
+     */
+    public CharSequence getTextBuffer() {
+        return text;
+    }
+
+    /**
+     * 结果序号 sn，缺省为 0
+     */
+    public int getSn() {
+        return sn;
+    }
+
+    /**
+     * 是否为最后一条结果 ls
+     */
+    public boolean isLast() {
+        return last;
+    }
+
+    /**
+     * 动态修正：pgs 为 rpl 时返回 true，表示替换 rg 范围内的分段
+     */
+    public boolean isReplace() {
+        return replace;
+    }
+
+    /**
+     * 被替换分段范围 rg 的起点，缺省为 0
+     */
+    public int getRgStart() {
+        return rgStart;
+    }
+
+    /**
+     * 被替换分段范围 rg 的终点，缺省为 -1
+     */
+    public int getRgEnd() {
+        return rgEnd;
+    }
+
+    public Error getError() {
+        return error;
+    }
+
+    /**
+     * 出错位置（字符下标），无错误时为 -1
+     */
+    public int getErrorOffset() {
+        return errorOffset;
+    }
+
+    /**
+     * 便于写日志的错误描述
+     */
+    public String describeError() {
+        return error == Error.NONE ? "" : error + " @" + errorOffset;
+    }
+
+    // ---------------- 结构解析 ----------------
+
+    private void parseRoot() {
+        boolean sawWords = false;
+        int rootStart = skipWhitespace();
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                readKey();
+                if (keyIs("ws")) {
+                    parseWords();
+                    sawWords = true;
+                } else if (keyIs("sn") && isNumberStart(peek())) {
+                    sn = readInt();
+                } else if (keyIs("ls")) {
+                    last = readBoolean();
+                } else if (keyIs("pgs")) {
+                    readString(scratch);
+                    replace = contentEquals(scratch, "rpl");
+                } else if (keyIs("rg")) {
+                    parseRange();
+                } else {
+                    skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+        if (!sawWords) {
+            errorOffset = rootStart;
+            schemaError();
+        }
+    }
+
+    /**
+     * ws: [{"cw":[{"w":"..."}, ...]}, ...]，每个词取 cw 的第一个候选
+     * <p>
+     * 结构不符时记录错误并停止收集后续的词，但仍继续检查语法
+     */
+    private void parseWords() {
+        if (peek() != '[') {
+            schemaError();
+            skipValue();
+            return;
+        }
+        pos++;
+        if (consumeIf(']')) {
+            return;
+        }
+        do {
+            if (error != Error.NONE || peek() != '{') {
+                schemaError();
+                skipValue();
+                continue;
+            }
+            pos++;
+            boolean sawCandidates = false;
+            if (!consumeIf('}')) {
+                do {
+                    readKey();
+                    if (keyIs("cw") && !sawCandidates && error == Error.NONE) {
+                        parseCandidates();
+                        sawCandidates = true;
+                    } else {
+                        skipValue();
+                    }
+                } while (consumeIf(','));
+                expect('}');
+            }
+            if (!sawCandidates) {
+                schemaError();
+            }
+        } while (consumeIf(','));
+        expect(']');
+    }
+
+    private void parseCandidates() {
+        if (peek() != '[') {
+            schemaError();
+            skipValue();
+            return;
+        }
+        pos++;
+        if (consumeIf(']')) {
+            schemaError();
+            return;
+        }
+        // 第一个候选
+        if (peek() == '{') {
+            pos++;
+            boolean sawWord = false;
+            if (!consumeIf('}')) {
+                do {
+                    readKey();
+                    if (keyIs("w") && !sawWord && peek() == '"') {
+                        readStringTo(text);
+                        sawWord = true;
+                    } else {
+                        skipValue();
+                    }
+                } while (consumeIf(','));
+                expect('}');
+            }
+            if (!sawWord) {
+                schemaError();
+            }
+        } else {
+            schemaError();
+            skipValue();
+        }
+        // 其余候选
+        while (consumeIf(',')) {
+            skipValue();
+        }
+        expect(']');
+    }
+
+    private void parseRange() {
+        if (peek() != '[') {
+            skipValue();
+            return;
+        }
+        pos++;
+        int count = 0;
+        int first = 0;
+        int second = -1;
+        if (!consumeIf(']')) {
+            do {
+                int value = readInt();
+                if (count == 0) {
+                    first = value;
+                } else if (count == 1) {
+                    second = value;
+                }
+                count++;
+            } while (consumeIf(','));
+            expect(']');
+        }
+        if (count == 2) {
+            rgStart = first;
+            rgEnd = second;
+        }
+    }
+
+    // ---------------- 词法 ----------------
+
+    private void readKey() {
+        readString(scratch);
+        expect(':');
+    }
+
+    private boolean keyIs(String key) {
+        return contentEquals(scratch, key);
+    }
+
+    private static boolean contentEquals(StringBuilder sb, String s) {
+        int length = sb.length();
+        if (length != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (sb.charAt(i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readString(StringBuilder out) {
+        out.setLength(0);
+        readStringTo(out);
+    }
+
+    /**
+     * 读取一个字符串值并追加到 out，处理转义
+     */
+    private void readStringTo(StringBuilder out) {
+        expect('"');
+        while (true) {
+            if (pos >= end) {
+                fail(Error.UNEXPECTED_END, pos);
+            }
+            char c = input.charAt(pos++);
+            if (c == '"') {
+                return;
+            }
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            if (pos >= end) {
+                fail(Error.UNEXPECTED_END, pos);
+            }
+            char e = input.charAt(pos++);
+            switch (e) {
+                case '"':
+                case '\\':
+                case '/':
+                    out.append(e);
+                    break;
+                case 'b':
+                    out.append('\b');
+                    break;
+                case 'f':
+                    out.append('\f');
+                    break;
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                case 't':
+                    out.append('\t');
+                    break;
+                case 'u':
+                    out.append(readHex4());
+                    break;
+                default:
+                    fail(Error.BAD_ESCAPE, pos - 1);
+            }
+        }
+    }
+
+    private char readHex4() {
+        if (pos + 4 > end) {
+            fail(Error.UNEXPECTED_END, pos);
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(input.charAt(pos + i), 16);
+            if (digit < 0) {
+                fail(Error.BAD_ESCAPE, pos + i);
+            }
+            value = (value << 4) | digit;
+        }
+        pos += 4;
+        return (char) value;
+    }
+
+    /**
+     * 读取整数；带小数或指数的数字按整数部分截断，与 org.json 的 optInt 一致
+     */
+    private int readInt() {
+        skipWhitespace();
+        int start = pos;
+        boolean negative = consumeRaw('-');
+        long value = 0;
+        int digits = 0;
+        while (pos < end) {
+            char c = input.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (value <= Integer.MAX_VALUE) {
+                value = value * 10 + (c - '0');
+            }
+            digits++;
+            pos++;
+        }
+        if (digits == 0) {
+            if (pos >= end) {
+                fail(Error.UNEXPECTED_END, pos);
+            }
+            fail(Error.BAD_NUMBER, start);
+        }
+        skipNumberTail();
+        if (value > Integer.MAX_VALUE) {
+            value = Integer.MAX_VALUE;
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private boolean readBoolean() {
+        skipWhitespace();
+        if (input.startsWith("true", pos)) {
+            pos += 4;
+            return true;
+        }
+        if (input.startsWith("false", pos)) {
+            pos += 5;
+            return false;
+        }
+        skipValue();
+        return false;
+    }
+
+    /**
+     * 跳过任意 JSON 值
+     */
+    private void skipValue() {
+        skipWhitespace();
+        if (pos >= end) {
+            fail(Error.UNEXPECTED_END, pos);
+        }
+        char c = input.charAt(pos);
+        switch (c) {
+            case '{':
+                pos++;
+                if (!consumeIf('}')) {
+                    do {
+                        skipString();
+                        expect(':');
+                        skipValue();
+                    } while (consumeIf(','));
+                    expect('}');
+                }
+                break;
+            case '[':
+                pos++;
+                if (!consumeIf(']')) {
+                    do {
+                        skipValue();
+                    } while (consumeIf(','));
+                    expect(']');
+                }
+                break;
+            case '"':
+                skipString();
+                break;
+            case 't':
+                skipLiteral("true");
+                break;
+            case 'f':
+                skipLiteral("false");
+                break;
+            case 'n':
+                skipLiteral("null");
+                break;
+            default:
+                if (isNumberStart(c)) {
+                    readInt();
+                } else {
+                    fail(Error.UNEXPECTED_CHAR, pos);
+                }
+        }
+    }
+
+    private void skipString() {
+        expect('"');
+        while (true) {
+            if (pos >= end) {
+                fail(Error.UNEXPECTED_END, pos);
+            }
+            char c = input.charAt(pos++);
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                if (pos >= end) {
+                    fail(Error.UNEXPECTED_END, pos);
+                }
+                if (input.charAt(pos++) == 'u') {
+                    readHex4();
+                }
+            }
+        }
+    }
+
+    private static boolean isNumberStart(char c) {
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    private void skipLiteral(String literal) {
+        if (!input.startsWith(literal, pos)) {
+            fail(pos + literal.length() > end ? Error.UNEXPECTED_END : Error.UNEXPECTED_CHAR, pos);
+        }
+        pos += literal.length();
+    }
+
+    private void skipNumberTail() {
+        if (consumeRaw('.')) {
+            skipDigits();
+        }
+        if (consumeRaw('e') || consumeRaw('E')) {
+            if (!consumeRaw('+')) {
+                consumeRaw('-');
+            }
+            skipDigits();
+        }
+    }
+
+    private void skipDigits() {
+        int start = pos;
+        while (pos < end && input.charAt(pos) >= '0' && input.charAt(pos) <= '9') {
+            pos++;
+        }
+        if (pos == start) {
+            fail(pos >= end ? Error.UNEXPECTED_END : Error.BAD_NUMBER, pos);
+        }
+    }
+
+    private void expect(char c) {
+        skipWhitespace();
+        if (pos >= end) {
+            fail(Error.UNEXPECTED_END, pos);
+        }
+        if (input.charAt(pos) != c) {
+            fail(Error.UNEXPECTED_CHAR, pos);
+        }
+        pos++;
+    }
+
+    private boolean consumeIf(char c) {
+        skipWhitespace();
+        return consumeRaw(c);
+    }
+
+    private boolean consumeRaw(char c) {
+        if (pos < end && input.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 下一个非空白字符，输入结束时报错
+     */
+    private char peek() {
+        skipWhitespace();
+        if (pos >= end) {
+            fail(Error.UNEXPECTED_END, pos);
+        }
+        return input.charAt(pos);
+    }
+
+    private int skipWhitespace() {
+        while (pos < end) {
+            char c = input.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * 记录结构错误，不中止解析
+     */
+    private void schemaError() {
+        if (error == Error.NONE) {
+            error = Error.BAD_SCHEMA;
+            if (errorOffset < 0) {
+                errorOffset = pos;
+            }
+        }
+    }
+
+    /**
+     * 记录语法错误并中止解析
+     */
+    private void fail(Error type, int offset) {
+        error = type;
+        errorOffset = offset;
+        throw ABORT;
+    }
+}
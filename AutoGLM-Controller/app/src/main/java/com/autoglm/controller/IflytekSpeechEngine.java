@@ -0,0 +1,530 @@
+package com.autoglm.controller;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.iflytek.cloud.ErrorCode;
+import com.iflytek.cloud.InitListener;
+import com.iflytek.cloud.RecognizerListener;
+import com.iflytek.cloud.RecognizerResult;
+import com.iflytek.cloud.SpeechError;
+import com.iflytek.cloud.SpeechRecognizer;
+import com.iflytek.cloud.SpeechConstant;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 讯飞云端听写引擎
+ */
+public class IflytekSpeechEngine implements SpeechEngine {
+    private static final String TAG = "IflytekSpeechEngine";
+
+    public static final String NAME = "iflytek";
+
+    // 不计入引擎故障的错误码：没有检测到语音、无匹配结果
+    private static final int ERROR_NO_SPEECH = 10118;
+    private static final int ERROR_NO_MATCH = 20005;
+    // onVolumeChanged 的音量上限
+    private static final int MAX_VOLUME = 30;
+
+    private final Context context;
+    // 识别器的预热与释放
+    private final RecognizerPool<SpeechRecognizer> recognizerPool;
+    // 当前会话使用的识别器，会话结束后归还
+    private SpeechRecognizer activeRecognizer;
+    // 已请求开始、正在等待识别器就绪
+    private boolean startPending = false;
+    private Listener listener;
+
+    // 流式模式：开启动态修正，拼接分段并回调中间结果
+    private boolean streamingEnabled = false;
+    private final IatResultAccumulator accumulator = new IatResultAccumulator();
+    // 识别结果解析器，复用缓冲区；只在主线程的识别回调中使用
+    private final IatResultParser parser = new IatResultParser();
+    // 自适应尾端点，VAD_EOS 仍作为上限
+    private final AdaptiveEndpointer endpointer = new AdaptiveEndpointer();
+    private boolean adaptiveEndpointEnabled = false;
+    // 录音预缓冲：开启后自行采集音频，通过 writeAudio 交给识别器
+    private AudioPreRoll preRoll;
+    private RecognizerAudioSink audioSink;
+    // 会话录制：保存每次会话的音频与结果脚本，供离线回放；为 null 时不录制
+    private File sessionRecordDir;
+    private SessionRecord sessionRecord;
+
+    public IflytekSpeechEngine(Context context) {
+        this.context = context;
+        this.recognizerPool = new RecognizerPool<>(new RecognizerPool.Factory<SpeechRecognizer>() {
+            @Override
+            public SpeechRecognizer create(RecognizerPool.InitCallback callback) {
+                return createRecognizer(callback);
+            }
+
+            @Override
+            public void destroy(SpeechRecognizer recognizer) {
+                recognizer.cancel();
+                recognizer.destroy();
+            }
+        }, IoThread::execute, command -> IoThread.getMainHandler().post(command));
+        // 后台预热，首次长按时无需等待初始化
+        recognizerPool.warmUp();
+    }
+
+    /**
+     * 创建讯飞语音识别器并设置参数，在 I/O 线程执行
+     */
+    private SpeechRecognizer createRecognizer(RecognizerPool.InitCallback callback) {
+        // 初始化识别对象
+        SpeechRecognizer recognizer = SpeechRecognizer.createRecognizer(context, code -> {
+            Log.d(TAG, "SpeechRecognizer init() code = " + code);
+            if (code != ErrorCode.SUCCESS) {
+                Log.e(TAG, "初始化失败，错误码：" + code + ",请点击网址https://www.xfyun.cn/document/error-code查询解决方案");
+            }
+            callback.onInitComplete(code == ErrorCode.SUCCESS);
+        });
+        if (recognizer == null) {
+            return null;
+        }
+
+        // 配置离线识别参数
+        setParam(recognizer);
+        return recognizer;
+    }
+
+    /**
+     * 设置识别参数
+     */
+    private void setParam(SpeechRecognizer speechRecognizer) {
+        //设置语法ID和 SUBJECT 为空，以免因之前有语法调用而设置了此参数；或直接清空所有参数，具体可参考 DEMO 的示例。
+        speechRecognizer.setParameter( SpeechConstant.CLOUD_GRAMMAR, null );
+        speechRecognizer.setParameter( SpeechConstant.SUBJECT, null );
+//设置返回结果格式，目前支持json,xml以及plain 三种格式，其中plain为纯听写文本内容
+        speechRecognizer.setParameter(SpeechConstant.RESULT_TYPE, "json");
+//此处engineType为“cloud”
+        speechRecognizer.setParameter( SpeechConstant.ENGINE_TYPE, SpeechConstant.TYPE_CLOUD);
+//设置语音输入语言，zh_cn为简体中文
+        speechRecognizer.setParameter(SpeechConstant.LANGUAGE, "zh_cn");
+//设置结果返回语言
+        speechRecognizer.setParameter(SpeechConstant.ACCENT, "mandarin");
+// 设置语音前端点:静音超时时间，单位ms，即用户多长时间不说话则当做超时处理
+//取值范围{1000～10000}
+        speechRecognizer.setParameter(SpeechConstant.VAD_BOS, "4000");
+//设置语音后端点:后端点静音检测时间，单位ms，即用户停止说话多长时间内即认为不再输入，
+//自动停止录音，范围{0~10000}
+        speechRecognizer.setParameter(SpeechConstant.VAD_EOS, "1000");
+//设置标点符号,设置为"0"返回结果无标点,设置为"1"返回结果有标点
+        speechRecognizer.setParameter(SpeechConstant.ASR_PTT,"1");
+
+        // 音频保存路径（ASR_AUDIO_PATH）在开启会话录制时按会话设置，见 setSessionRecordDir
+    }
+
+    /**
+     * 开始语音识别；识别器尚未就绪时等待预热完成后开始
+     */
+    @Override
+    public void startListening() {
+        if (activeRecognizer != null || startPending) {
+            return;
+        }
+        startPending = true;
+        recognizerPool.acquire(recognizer -> {
+            if (!startPending) {
+                // 等待期间已被取消
+                if (recognizer != null) {
+                    recognizerPool.recycle();
+                }
+                return;
+            }
+            startPending = false;
+            if (recognizer == null) {
+                if (listener != null) {
+                    listener.onError("识别器初始化失败", true);
+                }
+                return;
+            }
+            activeRecognizer = recognizer;
+
+            // 流式模式开启动态修正(wpgs)，中间结果可能替换之前的分段
+            recognizer.setParameter("dwa", streamingEnabled ? "wpgs" : null);
+            accumulator.reset();
+            endpointer.reset();
+            // 预缓冲已在采集时由外部写入音频，否则识别器自己录音
+            boolean external = preRoll != null && preRoll.isCapturing();
+            recognizer.setParameter(SpeechConstant.AUDIO_SOURCE, external ? "-1" : null);
+            // 会话录制：识别器把本次音频保存为 wav，结果脚本在最终结果到达后保存
+            sessionRecord = sessionRecordDir != null ? new SessionRecord(sessionRecordDir, streamingEnabled) : null;
+            recognizer.setParameter(SpeechConstant.AUDIO_FORMAT, sessionRecord != null ? "wav" : null);
+            recognizer.setParameter(SpeechConstant.ASR_AUDIO_PATH,
+                    sessionRecord != null ? sessionRecord.getAudioFile().getPath() : null);
+
+            int ret = recognizer.startListening(recognizerListener);
+            if (ret != ErrorCode.SUCCESS) {
+                sessionRecord = null;
+                finishSession();
+                if (listener != null) {
+                    listener.onError("识别启动失败，错误码：" + ret, true);
+                }
+                return;
+            }
+            if (external) {
+                audioSink = new RecognizerAudioSink(recognizer);
+                if (!preRoll.startStreaming(audioSink)) {
+                    // 检查之后采集恰好结束，没有音频可写
+                    Log.w(TAG, "预缓冲采集已停止");
+                    stopListening();
+                }
+            }
+        });
+    }
+
+    /**
+     * 停止语音识别
+     */
+    @Override
+    public void stopListening() {
+        stopExternalAudio();
+        if (sessionRecord != null) {
+            sessionRecord.markEnd();
+        }
+        if (activeRecognizer != null) {
+            activeRecognizer.stopListening();
+        }
+    }
+
+    /**
+     * 销毁识别器
+     */
+    @Override
+    public void destroy() {
+        startPending = false;
+        sessionRecord = null;
+        stopExternalAudio();
+        if (preRoll != null) {
+            preRoll.stop();
+        }
+        if (activeRecognizer != null) {
+            activeRecognizer.cancel();
+            finishSession();
+        }
+        recognizerPool.release();
+    }
+
+    /**
+     * 悬浮窗可见时保持识别器预热，隐藏时释放
+     */
+    @Override
+    public void setOverlayVisible(boolean visible) {
+        recognizerPool.setVisible(visible);
+        if (!visible && preRoll != null && audioSink == null) {
+            preRoll.stop();
+        }
+    }
+
+    /**
+     * 按下悬浮窗时提前预热；开启预缓冲时同时开始采集
+     */
+    @Override
+    public void prewarm() {
+        recognizerPool.onTouchDown();
+        if (preRoll != null) {
+            preRoll.arm();
+        }
+    }
+
+    /**
+     * 系统内存紧张时释放识别器
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        recognizerPool.onTrimMemory(level);
+    }
+
+    /**
+     * 识别器预热与初始化耗时统计
+     */
+    public RecognizerPool<SpeechRecognizer> getRecognizerPool() {
+        return recognizerPool;
+    }
+
+    /**
+     * 一次识别结束，归还识别器
+     */
+    private void finishSession() {
+        stopExternalAudio();
+        if (activeRecognizer != null) {
+            activeRecognizer = null;
+            recognizerPool.recycle();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 开启流式模式：开启动态修正，中间结果通过 {@link Listener#onPartialResult(String)} 回调，
+     * 最终结果为所有分段拼接后的完整文本。下次开始识别时生效。
+     */
+    @Override
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+
+    /**
+     * 开启自适应尾端点：根据音量回调判断说完后提前停止录音，不必等满 VAD_EOS 的静音
+     */
+    @Override
+    public void setAdaptiveEndpoint(boolean enabled, float sensitivity) {
+        this.adaptiveEndpointEnabled = enabled;
+        endpointer.setSensitivity(sensitivity);
+    }
+
+    /**
+     * 录音预缓冲：按下悬浮窗时开始采集，识别开始时先写入按下后的音频，避免截掉开头
+     */
+    @Override
+    public void setAudioPreRoll(boolean enabled) {
+        if (enabled && preRoll == null) {
+            preRoll = new AudioPreRoll(MicAudioSource::new, MicAudioSource.SAMPLE_RATE);
+        } else if (!enabled && preRoll != null) {
+            preRoll.stop();
+            preRoll = null;
+        }
+    }
+
+    /**
+     * 会话录制：每次会话的音频（wav）与结果脚本保存到该目录，并在 index.txt 中追加识别文本，
+     * 供离线回放。index.txt 中的文本可手工修正为参考文本。下次开始识别时生效。
+     *
+     * @param dir 为 null 时关闭
+     */
+    @Override
+    public void setSessionRecordDir(File dir) {
+        this.sessionRecordDir = dir;
+        if (dir != null) {
+            IoThread.execute(dir::mkdirs);
+        }
+    }
+
+    /**
+     * 停止向识别器写入音频
+     */
+    private void stopExternalAudio() {
+        if (audioSink != null) {
+            audioSink.closed = true;
+            audioSink = null;
+            if (preRoll != null) {
+                preRoll.stop();
+            }
+        }
+    }
+
+    /**
+     * 把采集线程的音频写入识别器；会话结束后关闭，迟到的音频不会写入复用的识别器
+     */
+    private final class RecognizerAudioSink implements AudioPreRoll.Sink {
+        private final SpeechRecognizer recognizer;
+        private volatile boolean closed = false;
+
+        RecognizerAudioSink(SpeechRecognizer recognizer) {
+            this.recognizer = recognizer;
+        }
+
+        @Override
+        public void onAudio(byte[] data, int offset, int length) {
+            if (!closed) {
+                recognizer.writeAudio(data, offset, length);
+            }
+        }
+
+        @Override
+        public void onEnd() {
+            IoThread.getMainHandler().post(() -> {
+                if (audioSink == this) {
+                    stopListening();
+                }
+            });
+        }
+    }
+
+    /**
+     * 识别监听器
+     */
+    private RecognizerListener recognizerListener = new RecognizerListener() {
+
+        @Override
+        public void onBeginOfSpeech() {
+            // 开始录音
+            Log.d(TAG, "开始录音");
+            if (listener != null) {
+                listener.onRecordingStart();
+            }
+        }
+
+        @Override
+        public void onError(SpeechError error) {
+            // 识别出错
+            String errorMsg = error.getPlainDescription(true);
+            Log.e(TAG, "识别错误: " + errorMsg);
+            sessionRecord = null;
+            finishSession();
+            if (listener != null) {
+                int code = error.getErrorCode();
+                listener.onError(errorMsg, code != ERROR_NO_SPEECH && code != ERROR_NO_MATCH);
+            }
+        }
+
+        @Override
+        public void onEndOfSpeech() {
+            // 结束录音
+            Log.d(TAG, "结束录音");
+            stopExternalAudio();
+            if (sessionRecord != null) {
+                sessionRecord.markEnd();
+            }
+            if (listener != null) {
+                listener.onRecordingEnd();
+            }
+        }
+
+        @Override
+        public void onResult(RecognizerResult results, boolean isLast) {
+            Log.d(TAG, "识别结果: " + results.getResultString());
+            SessionRecord record = sessionRecord;
+            if (record != null) {
+                record.add(results.getResultString(), isLast);
+            }
+            if (isLast) {
+                sessionRecord = null;
+                finishSession();
+            }
+
+            if (streamingEnabled) {
+                String hypothesis = accumulateResult(results.getResultString());
+                if (isLast) {
+                    accumulator.reset();
+                    if (record != null) {
+                        record.save(hypothesis);
+                    }
+                    if (listener != null) {
+                        listener.onResult(hypothesis);
+                    }
+                } else if (listener != null) {
+                    listener.onPartialResult(hypothesis);
+                }
+                return;
+            }
+
+            String text = parseIatResult(results.getResultString());
+            if (isLast && record != null) {
+                record.save(text);
+            }
+            if (listener != null && isLast) {
+                listener.onResult(text);
+            }
+        }
+
+        @Override
+        public void onVolumeChanged(int volume, byte[] data) {
+            // 音量变化
+            if (listener != null) {
+                listener.onVolumeChanged(volume / (float) MAX_VOLUME);
+            }
+            if (adaptiveEndpointEnabled && activeRecognizer != null
+                    && endpointer.onVolume(volume, SystemClock.elapsedRealtime())) {
+                Log.d(TAG, "检测到语音结束，提前停止录音，语音时长 " + endpointer.getSpeechMillis() + "ms");
+                stopListening();
+            }
+        }
+
+        @Override
+        public void onEvent(int eventType, int arg1, int arg2, Bundle obj) {
+            // 其他事件
+        }
+    };
+
+    /**
+     * 一次会话的录制：记录结果到达时间，最终结果到达后在 I/O 线程保存脚本
+     */
+    private static final class SessionRecord {
+        private final File dir;
+        private final String name;
+        private final ReplayScript script = new ReplayScript();
+        private final long startMillis = SystemClock.elapsedRealtime();
+        private long endMillis = -1;
+
+        SessionRecord(File dir, boolean streaming) {
+            this.dir = dir;
+            this.name = "session_" + System.currentTimeMillis();
+            script.setStreaming(streaming);
+        }
+
+        File getAudioFile() {
+            return new File(dir, name + ".wav");
+        }
+
+        void markEnd() {
+            if (endMillis < 0) {
+                endMillis = SystemClock.elapsedRealtime();
+            }
+        }
+
+        void add(String json, boolean last) {
+            long now = SystemClock.elapsedRealtime();
+            if (endMillis >= 0) {
+                script.add(now - endMillis, true, last, json);
+            } else {
+                script.add(now - startMillis, false, last, json);
+            }
+        }
+
+        void save(String text) {
+            IoThread.execute(() -> {
+                try {
+                    script.writeTo(new File(dir, name + ReplayScript.EXTENSION));
+                    try (Writer index = new OutputStreamWriter(
+                            new FileOutputStream(new File(dir, "index.txt"), true), StandardCharsets.UTF_8)) {
+                        index.write(name + "\t" + text.replace('\n', ' ') + "\n");
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "保存会话录制失败: " + name, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * 解析讯飞返回的JSON结果
+     */
+    private String parseIatResult(String json) {
+        if (!parser.parse(json)) {
+            Log.w(TAG, "识别结果格式错误: " + parser.describeError());
+        }
+        return parser.getText();
+    }
+
+    /**
+     * 合入一个分段（含动态修正信息），返回当前完整文本
+     */
+    private String accumulateResult(String json) {
+        String segment = parseIatResult(json);
+        if (parser.getError() == IatResultParser.Error.NONE
+                || parser.getError() == IatResultParser.Error.BAD_SCHEMA) {
+            accumulator.apply(parser.getSn(), segment, parser.isReplace(),
+                    parser.getRgStart(), parser.getRgEnd());
+        }
+        return accumulator.getText();
+    }
+}
@@ -0,0 +1,83 @@
+package com.autoglm.controller;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 专用 I/O 线程
+ * <p>
+ * 共享存储走 FUSE，读写可能阻塞较长时间，所有磁盘访问都投递到这一条后台线程串行执行，
+ * 主线程只接收结果回调。
+ */
+public final class IoThread {
+    private static final String TAG = "IoThread";
+    private static final String THREAD_NAME = "AutoGLM-IO";
+
+    private static HandlerThread thread;
+    private static Handler handler;
+    private static Handler mainHandler;
+
+    private IoThread() {
+    }
+
+    /**
+     * 获取 I/O 线程的 Handler，首次调用时启动线程
+     */
+    public static synchronized Handler getHandler() {
+        if (handler == null) {
+            thread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    /**
+     * 主线程 Handler，用于投递回调
+     */
+    public static synchronized Handler getMainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+
+    /**
+     * 在 I/O 线程执行任务
+     */
+    public static void execute(Runnable task) {
+        getHandler().post(task);
+    }
+
+    /**
+     * 在 I/O 线程执行任务并返回 Future。调用方通常不调用 get()，任务抛出的异常在完成时记录到日志；
+     * 需要回调结果的任务应自行捕获异常并回调失败，见 FileUtils。
+     */
+    public static <T> Future<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<T>(task) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    get();
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "I/O 任务失败", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        getHandler().post(future);
+        return future;
+    }
+}
@@ -0,0 +1,466 @@
+package com.autoglm.controller;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * 端到端延迟追踪：从长按悬浮窗到 agent 首次更新状态
+ * <p>
+ * 每条语音命令对应一条追踪，依次记录各阶段的时间点（{@link Stage}），相邻时间点之间为一个区间。
+ * 区间同时以 {@link Trace} 异步区间输出（Android 10 及以上，systrace/Perfetto 抓取时可见），
+ * 结束的追踪保存在有界的内存环形队列中，可导出为 Chrome/Perfetto 可读的 JSON 文件离线分析。
+ * <p>
+ * 各阶段在不同线程记录（主线程、I/O 线程），方法均为线程安全。
+ */
+public class LatencyTracer {
+    private static final String TAG = "LatencyTracer";
+
+    public static final int DEFAULT_CAPACITY = 64;
+    // 已发送命令后等待 agent 更新状态的最长时间，超时的追踪以 no_ack 结束
+    static final long ACK_TIMEOUT_MILLIS = 60 * 1000;
+    public static final String EXPORT_FILE_NAME = "latency_trace.json";
+
+    // 结束原因
+    public static final String OUTCOME_ACKED = "acked";
+    public static final String OUTCOME_NO_ACK = "no_ack";
+    public static final String OUTCOME_ABANDONED = "abandoned";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_SEND_FAILED = "send_failed";
+    public static final String OUTCOME_DROPPED = "dropped";
+
+    /**
+     * 命令经过的阶段，按先后顺序排列
+     */
+    public enum Stage {
+        LONG_PRESS("wait_speech"),      // 长按悬浮窗
+        SPEECH_BEGIN("speech"),         // 识别器检测到开始说话
+        SPEECH_END("recognize"),        // 识别器检测到说话结束
+        RESULT("dispatch"),             // 最终识别结果
+        COMMAND_WRITTEN("agent_ack"),   // 命令已写入传输通道
+        STATUS_CHANGED(null);           // agent 首次更新状态
+
+        // 从该阶段开始的区间名称
+        final String spanName;
+
+        Stage(String spanName) {
+            this.spanName = spanName;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    /**
+     * 一条命令的追踪记录
+     */
+    public static final class Record {
+        private final int id;
+        // 各阶段的时间（纳秒），未经过的阶段为 -1
+        private final long[] marks = new long[STAGES.length];
+        private int lastStage = -1;
+        private String outcome;
+
+        Record(int id) {
+            this.id = id;
+            for (int i = 0; i < marks.length; i++) {
+                marks[i] = -1;
+            }
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * 阶段时间（纳秒），未经过时为 -1
+         */
+        public long getTime(Stage stage) {
+            return marks[stage.ordinal()];
+        }
+
+        /**
+         * 两个阶段之间的耗时（毫秒），任一阶段未经过时为 -1
+         */
+        public long getMillis(Stage from, Stage to) {
+            long start = getTime(from);
+            long end = getTime(to);
+            return start >= 0 && end >= 0 ? (end - start) / 1000000 : -1;
+        }
+
+        /**
+         * 结束原因；未结束时为 null
+         */
+        public String getOutcome() {
+            return outcome;
+        }
+
+        Stage getLastStage() {
+            return lastStage >= 0 ? STAGES[lastStage] : null;
+        }
+    }
+
+    private static LatencyTracer instance;
+
+    private final int capacity;
+    private final LongSupplier nanoClock;
+
+    private int nextId = 1;
+    // 当前正在识别的命令
+    private Record current;
+    // 已提交发送、尚未写入传输通道的命令（可能在排队）
+    private final List<Record> inFlight = new ArrayList<>();
+    // 已发送、等待 agent 更新状态的命令
+    private final List<Record> awaitingAck = new ArrayList<>();
+    // 已结束的追踪，最旧的在前
+    private final ArrayDeque<Record> finished = new ArrayDeque<>();
+
+    /**
+     * 进程内共享的追踪器
+     */
+    public static synchronized LatencyTracer get() {
+        if (instance == null) {
+            instance = new LatencyTracer(DEFAULT_CAPACITY, SystemClock::elapsedRealtimeNanos);
+        }
+        return instance;
+    }
+
+    /**
+     * @param capacity  保留的已结束追踪数
+     * @param nanoClock 单调时钟，纳秒
+     */
+    LatencyTracer(int capacity, LongSupplier nanoClock) {
+        this.capacity = capacity;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * 开始一条新的命令追踪并记录 {@link Stage#LONG_PRESS}；上一条尚未发出的命令以 abandoned 结束
+     *
+     * @return 追踪 ID
+     */
+    public synchronized int begin() {
+        long now = nanoClock.getAsLong();
+        expireAwaitingAck(now);
+        if (current != null) {
+            finish(current, OUTCOME_ABANDONED, now);
+        }
+        current = new Record(nextId++);
+        beginAsync("command", current.id);
+        mark(current, Stage.LONG_PRESS, now);
+        return current.id;
+    }
+
+    /**
+     * 开始一条不经过语音识别的命令追踪（如重发常用命令），从 {@link Stage#RESULT} 开始记录。
+     * 追踪直接处于已提交发送的状态，不影响正在识别的命令，后续阶段按 ID 记录。
+     *
+     * @return 追踪 ID
+     */
+    public synchronized int beginDispatch() {
+        long now = nanoClock.getAsLong();
+        expireAwaitingAck(now);
+        Record record = new Record(nextId++);
+        beginAsync("command", record.id);
+        mark(record, Stage.RESULT, now);
+        inFlight.add(record);
+        if (inFlight.size() > capacity) {
+            finish(inFlight.remove(0), OUTCOME_ABANDONED, now);
+        }
+        return record.id;
+    }
+
+    /**
+     * 当前命令到达某个阶段；每个阶段只记录第一次，早于已记录阶段的调用被忽略
+     *
+     * @return 当前追踪 ID，没有正在进行的追踪时返回 0
+     */
+    public synchronized int mark(Stage stage) {
+        if (current == null) {
+            return 0;
+        }
+        int id = current.id;
+        mark(id, stage);
+        return id;
+    }
+
+    /**
+     * 指定的命令到达某个阶段，用于异步完成的步骤（如在 I/O 线程写入命令）
+     */
+    public synchronized void mark(int id, Stage stage) {
+        Record record = find(id);
+        if (record == null || stage == Stage.STATUS_CHANGED) {
+            return;
+        }
+        mark(record, stage, nanoClock.getAsLong());
+        if (stage == Stage.COMMAND_WRITTEN) {
+            detach(record);
+            awaitingAck.add(record);
+        }
+    }
+
+    /**
+     * 当前命令已提交发送：之后开始的新命令不再使其以 abandoned 结束，
+     * 后续阶段通过 {@link #mark(int, Stage)} 按 ID 记录
+     *
+     * @return 当前追踪 ID，没有时返回 0
+     */
+    public synchronized int detach() {
+        if (current == null) {
+            return 0;
+        }
+        Record record = current;
+        current = null;
+        inFlight.add(record);
+        if (inFlight.size() > capacity) {
+            finish(inFlight.remove(0), OUTCOME_ABANDONED, nanoClock.getAsLong());
+        }
+        return record.id;
+    }
+
+    /**
+     * 当前正在进行的追踪 ID，没有时返回 0
+     */
+    public synchronized int getCurrentId() {
+        return current != null ? current.id : 0;
+    }
+
+    /**
+     * 当前命令失败，以给定原因结束
+     *
+     * @param outcome 结束原因，如 {@link #OUTCOME_ERROR}
+     */
+    public synchronized void fail(String outcome) {
+        if (current != null) {
+            fail(current.id, outcome);
+        }
+    }
+
+    /**
+     * 指定的命令失败；已写入或已结束的命令不受影响
+     */
+    public synchronized void fail(int id, String outcome) {
+        Record record = find(id);
+        if (record != null) {
+            detach(record);
+            finish(record, outcome, nanoClock.getAsLong());
+        }
+    }
+
+    /**
+     * agent 更新了状态：所有已发送、等待确认的命令记录 {@link Stage#STATUS_CHANGED} 并结束
+     */
+    public synchronized void onStatusChanged() {
+        long now = nanoClock.getAsLong();
+        expireAwaitingAck(now);
+        for (Record record : awaitingAck) {
+            mark(record, Stage.STATUS_CHANGED, now);
+            finish(record, OUTCOME_ACKED, now);
+        }
+        awaitingAck.clear();
+    }
+
+    /**
+     * 已结束追踪的快照，最旧的在前
+     */
+    public synchronized List<Record> getFinished() {
+        return new ArrayList<>(finished);
+    }
+
+    /**
+     * 导出为 Chrome/Perfetto 的 JSON 追踪格式（Trace Event Format）
+     * <p>
+     * 每条命令占一行（tid 为追踪 ID），包含整体的 command 区间与各阶段区间，时间单位为微秒。
+     */
+    public synchronized String toChromeJson() {
+        StringBuilder sb = new StringBuilder(256 + finished.size() * 512);
+        sb.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        boolean first = true;
+        for (Record record : finished) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendRecord(sb, record);
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    /**
+     * 将已结束的追踪写入文件，需在 I/O 线程调用
+     */
+    public boolean exportTo(File file) {
+        int count;
+        String json;
+        synchronized (this) {
+            count = finished.size();
+            json = toChromeJson();
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            writer.write(json);
+        } catch (IOException e) {
+            Log.e(TAG, "导出追踪失败: " + file, e);
+            return false;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "导出追踪失败，无法重命名: " + file);
+            tmp.delete();
+            return false;
+        }
+        Log.d(TAG, "已导出 " + count + " 条追踪: " + file);
+        return true;
+    }
+
+    /**
+     * 尚未写入传输通道的追踪
+     */
+    private Record find(int id) {
+        if (current != null && current.id == id) {
+            return current;
+        }
+        for (Record record : inFlight) {
+            if (record.id == id) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    private void detach(Record record) {
+        if (record == current) {
+            current = null;
+        } else {
+            inFlight.remove(record);
+        }
+    }
+
+    private void mark(Record record, Stage stage, long now) {
+        int index = stage.ordinal();
+        if (index <= record.lastStage) {
+            return;
+        }
+        Stage previous = record.getLastStage();
+        if (previous != null) {
+            endAsync(previous.spanName, record.id);
+        }
+        record.marks[index] = now;
+        record.lastStage = index;
+        if (stage.spanName != null) {
+            beginAsync(stage.spanName, record.id);
+        }
+    }
+
+    private void finish(Record record, String outcome, long now) {
+        Stage last = record.getLastStage();
+        if (last != null && last.spanName != null) {
+            endAsync(last.spanName, record.id);
+        }
+        endAsync("command", record.id);
+        record.outcome = outcome;
+        if (finished.size() >= capacity) {
+            finished.removeFirst();
+        }
+        finished.addLast(record);
+        Log.d(TAG, describe(record, now));
+    }
+
+    private void expireAwaitingAck(long now) {
+        Iterator<Record> it = awaitingAck.iterator();
+        while (it.hasNext()) {
+            Record record = it.next();
+            if ((now - record.getTime(Stage.COMMAND_WRITTEN)) / 1000000 >= ACK_TIMEOUT_MILLIS) {
+                it.remove();
+                finish(record, OUTCOME_NO_ACK, now);
+            }
+        }
+    }
+
+    private static String describe(Record record, long now) {
+        StringBuilder sb = new StringBuilder("命令 #").append(record.id).append(' ').append(record.outcome);
+        long start = -1;
+        Stage previous = null;
+        for (Stage stage : STAGES) {
+            if (record.getTime(stage) < 0) {
+                continue;
+            }
+            if (start < 0) {
+                start = record.getTime(stage);
+            }
+            if (previous != null) {
+                sb.append(' ').append(previous.spanName).append('=')
+                        .append(record.getMillis(previous, stage)).append("ms");
+            }
+            previous = stage;
+        }
+        if (start >= 0) {
+            sb.append(" 共 ").append((now - start) / 1000000).append("ms");
+        }
+        return sb.toString();
+    }
+
+    private static void appendRecord(StringBuilder sb, Record record) {
+        // 行名称
+        sb.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(record.id)
+                .append(",\"args\":{\"name\":\"command #").append(record.id).append("\"}}");
+
+        long start = -1;
+        long end = -1;
+        Stage previous = null;
+        for (Stage stage : STAGES) {
+            long time = record.getTime(stage);
+            if (time < 0) {
+                continue;
+            }
+            if (start < 0) {
+                start = time;
+            }
+            end = time;
+            if (previous != null) {
+                appendSpan(sb, previous.spanName, record.id, record.getTime(previous), time, null);
+            }
+            previous = stage;
+        }
+        if (start >= 0) {
+            appendSpan(sb, "command", record.id, start, end, record.outcome);
+        }
+    }
+
+    private static void appendSpan(StringBuilder sb, String name, int tid, long startNanos, long endNanos,
+                                   String outcome) {
+        sb.append(",{\"name\":\"").append(name)
+                .append("\",\"cat\":\"autoglm\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(tid)
+                .append(",\"ts\":").append(startNanos / 1000)
+                .append(",\"dur\":").append((endNanos - startNanos) / 1000);
+        if (outcome != null) {
+            sb.append(",\"args\":{\"outcome\":\"").append(outcome).append("\"}");
+        }
+        sb.append('}');
+    }
+
+    // 异步区间可跨线程开始与结束，需要 Android 10
+    private static void beginAsync(String name, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+    }
+
+    private static void endAsync(String name, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+}
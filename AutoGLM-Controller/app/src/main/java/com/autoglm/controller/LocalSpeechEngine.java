@@ -0,0 +1,244 @@
+package com.autoglm.controller;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.speech.RecognitionListener;
+import android.speech.RecognizerIntent;
+import android.speech.SpeechRecognizer;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * 本机识别引擎：系统 {@link SpeechRecognizer}，优先使用离线识别
+ * <p>
+ * Android 12 及以上且设备支持时使用端侧识别器；否则使用默认识别服务并设置
+ * {@link RecognizerIntent#EXTRA_PREFER_OFFLINE}，是否真正离线取决于设备上的识别服务与语言包。
+ */
+public class LocalSpeechEngine implements SpeechEngine {
+    private static final String TAG = "LocalSpeechEngine";
+
+    public static final String NAME = "local";
+
+    private static final String LANGUAGE = "zh-CN";
+    // onRmsChanged 的常见范围（dB），映射为 0~1 的音量
+    private static final float MIN_RMS_DB = -2f;
+    private static final float MAX_RMS_DB = 10f;
+
+    private final Context context;
+    private SpeechRecognizer recognizer;
+    private Listener listener;
+    private boolean streamingEnabled = false;
+    private boolean listening = false;
+
+    public LocalSpeechEngine(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return SpeechRecognizer.isRecognitionAvailable(context);
+    }
+
+    @Override
+    public void prewarm() {
+        ensureRecognizer();
+    }
+
+    @Override
+    public void startListening() {
+        if (listening) {
+            return;
+        }
+        if (!ensureRecognizer()) {
+            if (listener != null) {
+                listener.onError("本机识别服务不可用", true);
+            }
+            return;
+        }
+
+        Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
+        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, LANGUAGE);
+        intent.putExtra(RecognizerIntent.EXTRA_PREFER_OFFLINE, true);
+        intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, streamingEnabled);
+        intent.putExtra(RecognizerIntent.EXTRA_CALLING_PACKAGE, context.getPackageName());
+
+        listening = true;
+        recognizer.startListening(intent);
+    }
+
+    @Override
+    public void stopListening() {
+        if (recognizer != null && listening) {
+            recognizer.stopListening();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        listening = false;
+        if (recognizer != null) {
+            recognizer.cancel();
+            recognizer.destroy();
+            recognizer = null;
+        }
+    }
+
+    @Override
+    public void setOverlayVisible(boolean visible) {
+        if (!visible && !listening) {
+            destroy();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (!listening) {
+            destroy();
+        }
+    }
+
+    private boolean ensureRecognizer() {
+        if (recognizer != null) {
+            return true;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                && SpeechRecognizer.isOnDeviceRecognitionAvailable(context)) {
+            recognizer = SpeechRecognizer.createOnDeviceSpeechRecognizer(context);
+        } else if (SpeechRecognizer.isRecognitionAvailable(context)) {
+            recognizer = SpeechRecognizer.createSpeechRecognizer(context);
+        } else {
+            Log.w(TAG, "设备上没有可用的识别服务");
+            return false;
+        }
+        recognizer.setRecognitionListener(recognitionListener);
+        return true;
+    }
+
+    /**
+     * 系统识别错误的描述；未检测到语音、无匹配结果不算引擎故障
+     */
+    private static String describeError(int error) {
+        switch (error) {
+            case SpeechRecognizer.ERROR_NETWORK_TIMEOUT:
+                return "网络超时";
+            case SpeechRecognizer.ERROR_NETWORK:
+                return "网络错误";
+            case SpeechRecognizer.ERROR_AUDIO:
+                return "录音错误";
+            case SpeechRecognizer.ERROR_SERVER:
+                return "识别服务错误";
+            case SpeechRecognizer.ERROR_CLIENT:
+                return "客户端错误";
+            case SpeechRecognizer.ERROR_SPEECH_TIMEOUT:
+                return "没有检测到语音";
+            case SpeechRecognizer.ERROR_NO_MATCH:
+                return "没有匹配的识别结果";
+            case SpeechRecognizer.ERROR_RECOGNIZER_BUSY:
+                return "识别服务忙";
+            case SpeechRecognizer.ERROR_INSUFFICIENT_PERMISSIONS:
+                return "缺少录音权限";
+            default:
+                return "错误码 " + error;
+        }
+    }
+
+    private static boolean isEngineFault(int error) {
+        return error != SpeechRecognizer.ERROR_SPEECH_TIMEOUT && error != SpeechRecognizer.ERROR_NO_MATCH;
+    }
+
+    private static String firstResult(Bundle bundle) {
+        if (bundle == null) {
+            return null;
+        }
+        List<String> results = bundle.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+        return results != null && !results.isEmpty() ? results.get(0) : null;
+    }
+
+    private final RecognitionListener recognitionListener = new RecognitionListener() {
+        @Override
+        public void onReadyForSpeech(Bundle params) {
+        }
+
+        @Override
+        public void onBeginningOfSpeech() {
+            Log.d(TAG, "开始录音");
+            if (listener != null) {
+                listener.onRecordingStart();
+            }
+        }
+
+        @Override
+        public void onRmsChanged(float rmsdB) {
+            if (listener != null) {
+                listener.onVolumeChanged(Math.max(0f, Math.min(1f, (rmsdB - MIN_RMS_DB) / (MAX_RMS_DB - MIN_RMS_DB))));
+            }
+        }
+
+        @Override
+        public void onBufferReceived(byte[] buffer) {
+        }
+
+        @Override
+        public void onEndOfSpeech() {
+            Log.d(TAG, "结束录音");
+            if (listener != null) {
+                listener.onRecordingEnd();
+            }
+        }
+
+        @Override
+        public void onError(int error) {
+            listening = false;
+            String errorMsg = describeError(error);
+            Log.e(TAG, "识别错误: " + errorMsg);
+            if (listener != null) {
+                listener.onError(errorMsg, isEngineFault(error));
+            }
+        }
+
+        @Override
+        public void onResults(Bundle results) {
+            listening = false;
+            String text = firstResult(results);
+            Log.d(TAG, "识别结果: " + text);
+            if (listener != null) {
+                if (text != null) {
+                    listener.onResult(text);
+                } else {
+                    listener.onError(describeError(SpeechRecognizer.ERROR_NO_MATCH), false);
+                }
+            }
+        }
+
+        @Override
+        public void onPartialResults(Bundle partialResults) {
+            String text = firstResult(partialResults);
+            if (text != null && listener != null) {
+                listener.onPartialResult(text);
+            }
+        }
+
+        @Override
+        public void onEvent(int eventType, Bundle params) {
+        }
+    };
+}
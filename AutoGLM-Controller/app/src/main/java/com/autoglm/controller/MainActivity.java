@@ -6,8 +6,17 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.Toast;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.util.List;
+
+/**
+ * 主界面：授予权限并启动服务
+ * <p>
+ * 服务不对外导出，运行配置与调试操作（见 {@link ControllerConfig}）经这里转交：启动主界面时带上的 extra
+ * 需在设备上确认，之后连同 extra 一起启动服务。
+ */
 public class MainActivity extends AppCompatActivity {
     private Button startServiceBtn;
 
@@ -17,10 +26,40 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         startServiceBtn = findViewById(R.id.start_service_btn);
-        startServiceBtn.setOnClickListener(v -> startAutoGLMService());
+        startServiceBtn.setOnClickListener(v -> startAutoGLMService(null));
 
         // 检查权限
         checkPermissions();
+        confirmExtras(getIntent());
+    }
+
+    /**
+     * 启动时带有配置或调试操作：列出将要进行的修改，确认后启动服务并转交
+     */
+    private void confirmExtras(Intent intent) {
+        if (intent == null || intent.getExtras() == null) {
+            return;
+        }
+        List<String> changes = new ControllerConfig(this).describeChanges(intent);
+        if (intent.getBooleanExtra(AutoGLMService.EXTRA_EXPORT_TRACE, false)) {
+            changes.add("导出延迟追踪");
+        }
+        if (intent.getBooleanExtra(AutoGLMService.EXTRA_ENROLL_WAKE, false)) {
+            changes.add("录入唤醒词");
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        StringBuilder message = new StringBuilder();
+        for (String change : changes) {
+            message.append(change).append('\n');
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("应用以下配置？")
+                .setMessage(message.toString().trim())
+                .setPositiveButton("应用并启动服务", (dialog, which) -> startAutoGLMService(intent.getExtras()))
+                .setNegativeButton("取消", null)
+                .show();
     }
 
     /**
@@ -34,8 +73,10 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * 启动服务
+     *
+     * @param extras 转交给服务的配置与调试操作，没有时为 null
      */
-    private void startAutoGLMService() {
+    private void startAutoGLMService(Bundle extras) {
         if (!PermissionUtils.checkBasePermissions(this)) {
             Toast.makeText(this, "基础权限未授予", Toast.LENGTH_SHORT).show();
             return;
@@ -49,6 +90,9 @@ public class MainActivity extends AppCompatActivity {
 
         // 启动前台服务
         Intent serviceIntent = new Intent(this, AutoGLMService.class);
+        if (extras != null) {
+            serviceIntent.putExtras(extras);
+        }
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
             startForegroundService(serviceIntent);
         } else {
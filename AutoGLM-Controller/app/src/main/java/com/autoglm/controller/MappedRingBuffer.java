@@ -0,0 +1,315 @@
+package com.autoglm.controller;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的单生产者/单消费者环形缓冲区
+ * <p>
+ * 文件布局：头部 {@link #HEADER_SIZE} 字节，之后是容量为 2 的幂的数据区。
+ * 头部中写位置/写计数由生产者维护，读位置/读计数由消费者维护，各占一个缓存行，位置均为单调递增的字节数。
+ * 每条消息为：长度(4) + 消息序号(8) + 内容 + CRC32(4)，跨越数据区末尾时回绕写入。
+ * <p>
+ * 两个进程映射同一文件时，Java 8 没有跨进程的内存屏障可用，因此消费者按序号和 CRC 校验消息，
+ * 校验不通过视为生产者尚未写完，下次再读。一端只能有一个生产者和一个消费者。
+ */
+public class MappedRingBuffer implements Closeable {
+    public static final int HEADER_SIZE = 192;
+
+    private static final int MAGIC = 0x41474C52; // "AGLR"
+    private static final int VERSION = 1;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_CAPACITY = 8;
+    private static final int OFFSET_WRITE_POS = 64;
+    private static final int OFFSET_WRITE_COUNT = 72;
+    private static final int OFFSET_READ_POS = 128;
+    private static final int OFFSET_READ_COUNT = 136;
+
+    private static final int RECORD_OVERHEAD = 4 + 8 + 4;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // 生产者与消费者各自使用的视图，用于批量读写（Java 8 没有按绝对位置的批量方法）
+    private final ByteBuffer writeView;
+    private final ByteBuffer readView;
+    private final int capacity;
+    private final int mask;
+    private final CRC32 writeCrc = new CRC32();
+    private final CRC32 readCrc = new CRC32();
+
+    // 复用的读缓冲
+    private byte[] readBuffer = new byte[256];
+
+    /**
+     * 打开或创建环形缓冲区文件
+     *
+     * @param path     文件路径
+     * @param capacity 数据区容量，必须是 2 的幂；打开已有文件时以文件中的容量为准
+     */
+    public MappedRingBuffer(File path, int capacity) throws IOException {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("容量必须是2的幂: " + capacity);
+        }
+        file = new RandomAccessFile(path, "rw");
+        try {
+            boolean fresh = file.length() < HEADER_SIZE;
+            if (!fresh) {
+                file.seek(OFFSET_MAGIC);
+                int magic = file.readInt();
+                file.seek(OFFSET_CAPACITY);
+                int existing = file.readInt();
+                if (magic != MAGIC || existing <= 0 || Integer.bitCount(existing) != 1
+                        || file.length() < HEADER_SIZE + (long) existing) {
+                    fresh = true;
+                } else {
+                    capacity = existing;
+                }
+            }
+            if (fresh) {
+                file.setLength(0);
+                file.setLength(HEADER_SIZE + (long) capacity);
+            }
+            channel = file.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+            if (fresh) {
+                buffer.putInt(OFFSET_CAPACITY, capacity);
+                buffer.putInt(OFFSET_VERSION, VERSION);
+                buffer.putInt(OFFSET_MAGIC, MAGIC);
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.writeView = buffer.duplicate();
+        this.readView = buffer.duplicate();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 生产者：写入一条消息
+     *
+     * @return 空间不足时返回 false
+     */
+    public boolean offer(byte[] payload) {
+        return offer(payload, 0, payload.length);
+    }
+
+    public boolean offer(byte[] payload, int offset, int length) {
+        int recordSize = RECORD_OVERHEAD + length;
+        if (recordSize > capacity) {
+            throw new IllegalArgumentException("消息超过缓冲区容量: " + length);
+        }
+        long writePos = buffer.getLong(OFFSET_WRITE_POS);
+        long readPos = buffer.getLong(OFFSET_READ_POS);
+        if (capacity - (writePos - readPos) < recordSize) {
+            return false;
+        }
+        long seq = buffer.getLong(OFFSET_WRITE_COUNT) + 1;
+
+        long pos = writePos;
+        putInt(pos, length);
+        pos += 4;
+        putLong(pos, seq);
+        pos += 8;
+        putBytes(pos, payload, offset, length);
+        pos += length;
+        putInt(pos, checksum(writeCrc, seq, payload, offset, length));
+
+        // 先写内容后发布位置
+        buffer.putLong(OFFSET_WRITE_COUNT, seq);
+        buffer.putLong(OFFSET_WRITE_POS, writePos + recordSize);
+        return true;
+    }
+
+    /**
+     * 消费者：读取一条消息
+     *
+     * @return 没有可读消息（或消息尚未写完）时返回 null
+     */
+    public byte[] poll() {
+        int length = peekLength();
+        if (length < 0) {
+            return null;
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(readBuffer, 0, result, 0, length);
+        advance(length);
+        return result;
+    }
+
+    /**
+     * 消费者：读取一条 UTF-8 文本消息
+     */
+    public String pollString() {
+        int length = peekLength();
+        if (length < 0) {
+            return null;
+        }
+        String result = new String(readBuffer, 0, length, StandardCharsets.UTF_8);
+        advance(length);
+        return result;
+    }
+
+    /**
+     * 尚未被消费的字节数
+     */
+    public long available() {
+        return buffer.getLong(OFFSET_WRITE_POS) - buffer.getLong(OFFSET_READ_POS);
+    }
+
+    /**
+     * 已写入的消息总数
+     */
+    public long getWriteCount() {
+        return buffer.getLong(OFFSET_WRITE_COUNT);
+    }
+
+    /**
+     * 已读取的消息总数
+     */
+    public long getReadCount() {
+        return buffer.getLong(OFFSET_READ_COUNT);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        file.close();
+    }
+
+    /**
+     * 校验下一条消息并读入 readBuffer，返回内容长度；不可读时返回 -1
+     */
+    private int peekLength() {
+        long readPos = buffer.getLong(OFFSET_READ_POS);
+        long writePos = buffer.getLong(OFFSET_WRITE_POS);
+        if (writePos - readPos < RECORD_OVERHEAD) {
+            return -1;
+        }
+        int length = getInt(readPos);
+        if (length < 0 || RECORD_OVERHEAD + (long) length > writePos - readPos) {
+            return -1;
+        }
+        long seq = getLong(readPos + 4);
+        if (seq != buffer.getLong(OFFSET_READ_COUNT) + 1) {
+            return -1;
+        }
+        if (readBuffer.length < length) {
+            readBuffer = new byte[Math.max(length, readBuffer.length * 2)];
+        }
+        getBytes(readPos + 12, readBuffer, length);
+        int checksum = getInt(readPos + 12 + length);
+        if (checksum != checksum(readCrc, seq, readBuffer, 0, length)) {
+            return -1;
+        }
+        return length;
+    }
+
+    private void advance(int length) {
+        long readPos = buffer.getLong(OFFSET_READ_POS);
+        buffer.putLong(OFFSET_READ_COUNT, buffer.getLong(OFFSET_READ_COUNT) + 1);
+        buffer.putLong(OFFSET_READ_POS, readPos + RECORD_OVERHEAD + length);
+    }
+
+    private static int checksum(CRC32 crc, long seq, byte[] payload, int offset, int length) {
+        crc.reset();
+        for (int i = 7; i >= 0; i--) {
+            crc.update((int) (seq >>> (i * 8)) & 0xFF);
+        }
+        crc.update(payload, offset, length);
+        return (int) crc.getValue();
+    }
+
+    // 以下为带回绕的数据区读写，pos 为单调递增的逻辑位置
+
+    private void putInt(long pos, int value) {
+        int index = (int) (pos & mask);
+        if (index + 4 <= capacity) {
+            buffer.putInt(HEADER_SIZE + index, value);
+            return;
+        }
+        for (int i = 3; i >= 0; i--) {
+            putByte(pos++, (byte) (value >>> (i * 8)));
+        }
+    }
+
+    private void putLong(long pos, long value) {
+        int index = (int) (pos & mask);
+        if (index + 8 <= capacity) {
+            buffer.putLong(HEADER_SIZE + index, value);
+            return;
+        }
+        for (int i = 7; i >= 0; i--) {
+            putByte(pos++, (byte) (value >>> (i * 8)));
+        }
+    }
+
+    private int getInt(long pos) {
+        int index = (int) (pos & mask);
+        if (index + 4 <= capacity) {
+            return buffer.getInt(HEADER_SIZE + index);
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (getByte(pos++) & 0xFF);
+        }
+        return value;
+    }
+
+    private long getLong(long pos) {
+        int index = (int) (pos & mask);
+        if (index + 8 <= capacity) {
+            return buffer.getLong(HEADER_SIZE + index);
+        }
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (getByte(pos++) & 0xFF);
+        }
+        return value;
+    }
+
+    private void putBytes(long pos, byte[] src, int offset, int length) {
+        int index = (int) (pos & mask);
+        int first = Math.min(length, capacity - index);
+        writeView.position(HEADER_SIZE + index);
+        writeView.put(src, offset, first);
+        if (first < length) {
+            writeView.position(HEADER_SIZE);
+            writeView.put(src, offset + first, length - first);
+        }
+    }
+
+    private void getBytes(long pos, byte[] dst, int length) {
+        int index = (int) (pos & mask);
+        int first = Math.min(length, capacity - index);
+        readView.position(HEADER_SIZE + index);
+        readView.get(dst, 0, first);
+        if (first < length) {
+            readView.position(HEADER_SIZE);
+            readView.get(dst, first, length - first);
+        }
+    }
+
+    private void putByte(long pos, byte value) {
+        buffer.put(HEADER_SIZE + (int) (pos & mask), value);
+    }
+
+    private byte getByte(long pos) {
+        return buffer.get(HEADER_SIZE + (int) (pos & mask));
+    }
+}
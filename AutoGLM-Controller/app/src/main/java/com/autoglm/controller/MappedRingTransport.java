@@ -0,0 +1,72 @@
+package com.autoglm.controller;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基于内存映射环形缓冲区的传输通道
+ * <p>
+ * 通信目录下两个环形缓冲区文件：command.ring 由控制器写、agent 读；status.ring 由 agent 写、控制器读。
+ * 映射一次后消息直接在共享内存中传递，不再反复打开和整文件重写。
+ * <p>
+ * agent（main.py）还没有读取 command.ring 的实现，命令写入后无人处理，因此运行配置不接受该通道
+ * （见 {@link Transports}），目前只用于测试与基准。
+ */
+public class MappedRingTransport implements CommandTransport {
+    private static final String TAG = "MappedRingTransport";
+
+    public static final String NAME = "mmap";
+    public static final String COMMAND_RING_FILE_NAME = "command.ring";
+    public static final String STATUS_RING_FILE_NAME = "status.ring";
+
+    private static final int RING_CAPACITY = 64 * 1024;
+
+    private final MappedRingBuffer commandRing;
+    private final MappedRingBuffer statusRing;
+    private String lastStatus = "未检测到状态";
+
+    public MappedRingTransport(File dir) throws IOException {
+        commandRing = new MappedRingBuffer(new File(dir, COMMAND_RING_FILE_NAME), RING_CAPACITY);
+        try {
+            statusRing = new MappedRingBuffer(new File(dir, STATUS_RING_FILE_NAME), RING_CAPACITY);
+        } catch (IOException e) {
+            commandRing.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public synchronized boolean sendCommand(String command) {
+        return commandRing.offer(command.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 取出所有积压的状态消息，返回最新一条
+     */
+    @Override
+    public synchronized String readStatus() {
+        String status;
+        while ((status = statusRing.pollString()) != null) {
+            lastStatus = status;
+        }
+        return lastStatus;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            commandRing.close();
+            statusRing.close();
+        } catch (IOException e) {
+            Log.e(TAG, "关闭环形缓冲区失败", e);
+        }
+    }
+}
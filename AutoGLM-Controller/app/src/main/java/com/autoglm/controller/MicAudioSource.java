@@ -0,0 +1,79 @@
+package com.autoglm.controller;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.util.Log;
+
+/**
+ * 麦克风音频来源，16kHz 单声道，与讯飞听写的默认采样率一致
+ */
+public class MicAudioSource implements AudioSource {
+    private static final String TAG = "MicAudioSource";
+
+    public static final int SAMPLE_RATE = 16000;
+
+    private AudioRecord record;
+
+    @Override
+    public boolean start() {
+        int minBufferSize = AudioRecord.getMinBufferSize(SAMPLE_RATE,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        if (minBufferSize <= 0) {
+            Log.e(TAG, "不支持的录音参数: " + minBufferSize);
+            return false;
+        }
+        try {
+            // 系统缓冲至少半秒，采集线程短暂被抢占时不丢数据
+            record = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, SAMPLE_RATE,
+                    AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                    Math.max(minBufferSize, SAMPLE_RATE));
+        } catch (IllegalArgumentException | SecurityException e) {
+            Log.e(TAG, "创建录音失败", e);
+            return false;
+        }
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            Log.e(TAG, "录音初始化失败");
+            stop();
+            return false;
+        }
+        try {
+            record.startRecording();
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "开始录音失败", e);
+            stop();
+            return false;
+        }
+        if (record.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
+            // 麦克风被其他应用占用
+            Log.e(TAG, "麦克风不可用");
+            stop();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        return record != null ? record.read(buffer, offset, length) : -1;
+    }
+
+    @Override
+    public void stop() {
+        if (record == null) {
+            return;
+        }
+        try {
+            record.stop();
+        } catch (IllegalStateException ignored) {
+            // 未开始录音
+        }
+        record.release();
+        record = null;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return SAMPLE_RATE;
+    }
+}
@@ -0,0 +1,150 @@
+package com.autoglm.controller;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+
+/**
+ * 通知发布器
+ * <p>
+ * NotificationManager.notify() 每次都是一次到 system_server 的 binder 调用，
+ * 这里缓存上次发布的内容：内容相同直接跳过；短时间内的多次更新合并为一次，
+ * 发布频率不超过设定的上限。复用同一个 Builder，避免每次重建。
+ * 所有方法需在 handler 所在线程调用。
+ */
+public class NotificationPublisher {
+    private static final String TAG = "NotificationPublisher";
+
+    private final NotificationManager manager;
+    private final NotificationCompat.Builder builder;
+    private final Handler handler;
+    private final int notificationId;
+
+    // 两次发布之间的最小间隔
+    private long minInterval;
+
+    // 上次发布的内容与时间
+    private String lastContent;
+    private long lastPublishTime;
+
+    // 等待发布的内容（限流期间只保留最新一条）
+    private String pendingContent;
+
+    // 统计
+    private long publishedCount = 0;
+    private long suppressedCount = 0;
+
+    private final Runnable publishPendingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            String content = pendingContent;
+            pendingContent = null;
+            if (content == null) {
+                return;
+            }
+            if (content.equals(lastContent)) {
+                suppressedCount++;
+                return;
+            }
+            publishNow(content);
+        }
+    };
+
+    /**
+     * @param context        上下文
+     * @param handler        发布所在线程的 Handler
+     * @param channelId      通知渠道
+     * @param notificationId 通知 ID
+     * @param title          通知标题
+     * @param maxRate        每秒最多发布次数
+     */
+    public NotificationPublisher(Context context, Handler handler, String channelId,
+                                 int notificationId, String title, float maxRate) {
+        this.manager = context.getSystemService(NotificationManager.class);
+        this.handler = handler;
+        this.notificationId = notificationId;
+        this.builder = new NotificationCompat.Builder(context, channelId)
+                .setContentTitle(title)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setShowWhen(false);
+        setMaxRate(maxRate);
+    }
+
+    /**
+     * 设置每秒最多发布次数，小于等于0表示不限流
+     */
+    public void setMaxRate(float maxRate) {
+        this.minInterval = maxRate > 0 ? (long) (1000 / maxRate) : 0;
+    }
+
+    /**
+     * 构建通知（用于 startForeground），并记为已发布的内容
+     */
+    public Notification build(String content) {
+        lastContent = content;
+        lastPublishTime = SystemClock.uptimeMillis();
+        return builder.setContentText(content).build();
+    }
+
+    /**
+     * 发布通知内容：相同内容跳过，超出频率上限时合并到下一个时间窗口
+     */
+    public void publish(String content) {
+        if (content == null) {
+            content = "";
+        }
+
+        if (pendingContent != null) {
+            // 已有等待发布的内容，用最新内容替换，被替换的那条计为抑制
+            suppressedCount++;
+            pendingContent = content;
+            return;
+        }
+
+        if (content.equals(lastContent)) {
+            suppressedCount++;
+            return;
+        }
+
+        long now = SystemClock.uptimeMillis();
+        long nextAllowed = lastPublishTime + minInterval;
+        if (now >= nextAllowed) {
+            publishNow(content);
+        } else {
+            pendingContent = content;
+            handler.postDelayed(publishPendingRunnable, nextAllowed - now);
+        }
+    }
+
+    private void publishNow(String content) {
+        lastContent = content;
+        lastPublishTime = SystemClock.uptimeMillis();
+        publishedCount++;
+        manager.notify(notificationId, builder.setContentText(content).build());
+    }
+
+    /**
+     * 取消等待中的发布
+     */
+    public void release() {
+        handler.removeCallbacks(publishPendingRunnable);
+        pendingContent = null;
+        Log.d(TAG, "通知发布统计: 已发布 " + publishedCount + " 次, 已抑制 " + suppressedCount + " 次");
+    }
+
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+}
@@ -0,0 +1,260 @@
+package com.autoglm.controller;
+
+import android.util.Log;
+import android.view.Choreographer;
+
+/**
+ * 悬浮窗位置更新：与屏幕刷新同步，每帧最多一次布局更新
+ * <p>
+ * 每次 {@code WindowManager.updateViewLayout()} 都是一次跨进程调用。高刷新率触摸屏上触摸事件比
+ * 显示帧更密，逐事件更新会造成拖动卡顿。这里只记录目标位置，在下一个 {@link Choreographer} 帧
+ * 回调中统一应用；贴边吸附改为在同一帧回调中驱动的弹簧动画，不再为每次吸附新建动画对象。
+ * <p>
+ * 统计每次拖动的触摸事件数与实际布局更新数，便于确认合并效果。所有方法需在主线程调用。
+ */
+public class OverlayPositionUpdater implements Choreographer.FrameCallback {
+    private static final String TAG = "OverlayPositionUpdater";
+
+    // 弹簧参数：刚度（1/s²）与阻尼比，轻微回弹
+    static final float DEFAULT_STIFFNESS = 800f;
+    static final float DEFAULT_DAMPING_RATIO = 0.75f;
+    // 位置与速度均低于阈值时结束动画，单位 px 与 px/s
+    private static final float REST_DISTANCE = 0.5f;
+    private static final float REST_VELOCITY = 20f;
+    // 单帧最长积分时间，避免掉帧后一步跳得过远；积分子步长
+    private static final float MAX_FRAME_SECONDS = 0.05f;
+    private static final float STEP_SECONDS = 0.004f;
+    // 计算松手速度时只采用最近这段时间内的触摸采样
+    private static final long VELOCITY_WINDOW_MILLIS = 100;
+
+    /**
+     * 实际应用位置，通常为 updateViewLayout
+     */
+    public interface Target {
+        void applyPosition(int x, int y);
+    }
+
+    /**
+     * 帧回调来源，默认为 {@link Choreographer}
+     */
+    public interface FrameScheduler {
+        void postFrameCallback(Choreographer.FrameCallback callback);
+
+        void removeFrameCallback(Choreographer.FrameCallback callback);
+    }
+
+    private final Target target;
+    private final FrameScheduler scheduler;
+
+    private final float stiffness;
+    private final float dampingRatio;
+
+    // 待应用与已应用的位置
+    private float x;
+    private int y;
+    private int appliedX = Integer.MIN_VALUE;
+    private int appliedY = Integer.MIN_VALUE;
+    private boolean frameScheduled = false;
+
+    // 弹簧动画
+    private boolean springing = false;
+    private float springTarget;
+    private float velocity;
+    private long lastFrameNanos = -1;
+
+    // 松手速度估计
+    private float lastSampleX;
+    private long lastSampleMillis = -1;
+    private float sampleVelocity;
+
+    // 统计
+    private boolean dragging = false;
+    private int dragEvents;
+    private int dragUpdates;
+    private int lastDragEvents;
+    private int lastDragUpdates;
+    private int springUpdates;
+    private long totalUpdates;
+
+    public OverlayPositionUpdater(Target target) {
+        this(target, new FrameScheduler() {
+            @Override
+            public void postFrameCallback(Choreographer.FrameCallback callback) {
+                Choreographer.getInstance().postFrameCallback(callback);
+            }
+
+            @Override
+            public void removeFrameCallback(Choreographer.FrameCallback callback) {
+                Choreographer.getInstance().removeFrameCallback(callback);
+            }
+        }, DEFAULT_STIFFNESS, DEFAULT_DAMPING_RATIO);
+    }
+
+    OverlayPositionUpdater(Target target, FrameScheduler scheduler, float stiffness, float dampingRatio) {
+        this.target = target;
+        this.scheduler = scheduler;
+        this.stiffness = stiffness;
+        this.dampingRatio = dampingRatio;
+    }
+
+    /**
+     * 开始拖动：停止吸附动画并重置统计
+     */
+    public void beginDrag(int x, int y, long eventTimeMillis) {
+        cancelSpring();
+        dragging = true;
+        dragEvents = 0;
+        dragUpdates = 0;
+        lastSampleMillis = -1;
+        sampleVelocity = 0;
+        moveTo(x, y, eventTimeMillis);
+    }
+
+    /**
+     * 拖动中的触摸事件：只记录位置，下一帧统一应用
+     */
+    public void moveTo(int x, int y, long eventTimeMillis) {
+        if (dragging) {
+            dragEvents++;
+        }
+        if (lastSampleMillis >= 0) {
+            long dt = eventTimeMillis - lastSampleMillis;
+            if (dt > 0) {
+                sampleVelocity = (x - lastSampleX) * 1000f / dt;
+            }
+        }
+        lastSampleX = x;
+        lastSampleMillis = eventTimeMillis;
+        cancelSpring();
+        this.x = x;
+        this.y = y;
+        scheduleFrame();
+    }
+
+    /**
+     * 结束拖动并以弹簧动画吸附到指定横坐标，初速度取松手前的拖动速度
+     */
+    public void endDrag(int snapX, long eventTimeMillis) {
+        if (dragging) {
+            dragging = false;
+            lastDragEvents = dragEvents;
+            lastDragUpdates = dragUpdates;
+            Log.d(TAG, "拖动: " + dragEvents + " 次触摸事件，" + dragUpdates + " 次布局更新");
+        }
+        boolean recent = lastSampleMillis >= 0 && eventTimeMillis - lastSampleMillis <= VELOCITY_WINDOW_MILLIS;
+        animateXTo(snapX, recent ? sampleVelocity : 0);
+    }
+
+    /**
+     * 以弹簧动画移动到指定横坐标；动画进行中时从当前位置与速度继续
+     */
+    public void animateXTo(int targetX, float startVelocity) {
+        springTarget = targetX;
+        if (!springing) {
+            springing = true;
+            velocity = startVelocity;
+            lastFrameNanos = -1;
+            springUpdates = 0;
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * 停止动画与待应用的更新
+     */
+    public void cancel() {
+        cancelSpring();
+        if (frameScheduled) {
+            scheduler.removeFrameCallback(this);
+            frameScheduled = false;
+        }
+    }
+
+    public boolean isAnimating() {
+        return springing;
+    }
+
+    /**
+     * 上一次拖动的触摸事件数
+     */
+    public int getLastDragEvents() {
+        return lastDragEvents;
+    }
+
+    /**
+     * 上一次拖动实际的布局更新数
+     */
+    public int getLastDragUpdates() {
+        return lastDragUpdates;
+    }
+
+    /**
+     * 累计布局更新数
+     */
+    public long getTotalUpdates() {
+        return totalUpdates;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        boolean animating = springing;
+        if (animating) {
+            stepSpring(frameTimeNanos);
+        }
+        int newX = Math.round(x);
+        if (newX != appliedX || y != appliedY) {
+            appliedX = newX;
+            appliedY = y;
+            totalUpdates++;
+            if (dragging) {
+                dragUpdates++;
+            } else if (animating) {
+                springUpdates++;
+            }
+            target.applyPosition(newX, y);
+        }
+        if (springing) {
+            scheduleFrame();
+        } else if (animating) {
+            Log.d(TAG, "吸附完成，" + springUpdates + " 次布局更新");
+        }
+    }
+
+    /**
+     * 按帧间隔推进弹簧，半隐式欧拉积分
+     */
+    private void stepSpring(long frameTimeNanos) {
+        if (lastFrameNanos < 0) {
+            lastFrameNanos = frameTimeNanos;
+            return;
+        }
+        float remaining = Math.min((frameTimeNanos - lastFrameNanos) / 1e9f, MAX_FRAME_SECONDS);
+        lastFrameNanos = frameTimeNanos;
+        float damping = 2f * dampingRatio * (float) Math.sqrt(stiffness);
+        while (remaining > 0) {
+            float dt = Math.min(STEP_SECONDS, remaining);
+            remaining -= dt;
+            float acceleration = -stiffness * (x - springTarget) - damping * velocity;
+            velocity += acceleration * dt;
+            x += velocity * dt;
+        }
+        if (Math.abs(x - springTarget) < REST_DISTANCE && Math.abs(velocity) < REST_VELOCITY) {
+            x = springTarget;
+            velocity = 0;
+            springing = false;
+        }
+    }
+
+    private void cancelSpring() {
+        springing = false;
+        velocity = 0;
+    }
+
+    private void scheduleFrame() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            scheduler.postFrameCallback(this);
+        }
+    }
+}
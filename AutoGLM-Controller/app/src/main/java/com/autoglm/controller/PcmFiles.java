@@ -0,0 +1,156 @@
+package com.autoglm.controller;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 16 位单声道 PCM 片段的读写：裸 PCM（.pcm，小端）或 WAV（.wav）
+ */
+public final class PcmFiles {
+    private PcmFiles() {
+    }
+
+    /**
+     * 一段音频
+     */
+    public static final class Clip {
+        public final short[] samples;
+        public final int sampleRate;
+
+        public Clip(short[] samples, int sampleRate) {
+            this.samples = samples;
+            this.sampleRate = sampleRate;
+        }
+
+        public long getDurationMillis() {
+            return samples.length * 1000L / sampleRate;
+        }
+    }
+
+    /**
+     * 读取片段；.wav 按文件头解析，其余按裸 PCM 与给定采样率解析
+     */
+    public static Clip read(File file, int defaultSampleRate) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in, file.getName().toLowerCase().endsWith(".wav"), defaultSampleRate);
+        }
+    }
+
+    static Clip read(InputStream in, boolean wav, int defaultSampleRate) throws IOException {
+        byte[] data = readAll(in);
+        int offset = 0;
+        int length = data.length;
+        int sampleRate = defaultSampleRate;
+        if (wav) {
+            int[] chunk = findDataChunk(data);
+            offset = chunk[0];
+            length = chunk[1];
+            sampleRate = chunk[2];
+        }
+        short[] samples = new short[length / 2];
+        for (int i = 0; i < samples.length; i++) {
+            int p = offset + i * 2;
+            samples[i] = (short) ((data[p] & 0xff) | (data[p + 1] << 8));
+        }
+        return new Clip(samples, sampleRate);
+    }
+
+    /**
+     * 写入裸 PCM
+     */
+    public static void writePcm(File file, short[] samples, int length) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < length; i++) {
+                out.write(samples[i] & 0xff);
+                out.write((samples[i] >> 8) & 0xff);
+            }
+        }
+    }
+
+    /**
+     * 采样转换为小端字节
+     */
+    public static byte[] toBytes(short[] samples, int length) {
+        byte[] data = new byte[length * 2];
+        for (int i = 0; i < length; i++) {
+            data[i * 2] = (byte) samples[i];
+            data[i * 2 + 1] = (byte) (samples[i] >> 8);
+        }
+        return data;
+    }
+
+    /**
+     * 小端字节转换为采样
+     *
+     * @return 转换的采样数
+     */
+    public static int toSamples(byte[] data, int offset, int length, short[] out) {
+        int n = Math.min(length / 2, out.length);
+        for (int i = 0; i < n; i++) {
+            int p = offset + i * 2;
+            out[i] = (short) ((data[p] & 0xff) | (data[p + 1] << 8));
+        }
+        return n;
+    }
+
+    /**
+     * 查找 WAV 的 data 块，只支持 16 位单声道 PCM
+     *
+     * @return {偏移, 长度, 采样率}
+     */
+    private static int[] findDataChunk(byte[] data) throws IOException {
+        if (data.length < 12 || !"RIFF".equals(new String(data, 0, 4, "US-ASCII"))
+                || !"WAVE".equals(new String(data, 8, 4, "US-ASCII"))) {
+            throw new IOException("不是 WAV 文件");
+        }
+        int sampleRate = -1;
+        int p = 12;
+        while (p + 8 <= data.length) {
+            String id = new String(data, p, 4, "US-ASCII");
+            int size = readInt(data, p + 4);
+            int body = p + 8;
+            if ("fmt ".equals(id)) {
+                int format = readShort(data, body);
+                int channels = readShort(data, body + 2);
+                int bits = readShort(data, body + 14);
+                if (format != 1 || channels != 1 || bits != 16) {
+                    throw new IOException("只支持 16 位单声道 PCM: format=" + format
+                            + " channels=" + channels + " bits=" + bits);
+                }
+                sampleRate = readInt(data, body + 4);
+            } else if ("data".equals(id)) {
+                if (sampleRate < 0) {
+                    throw new IOException("缺少 fmt 块");
+                }
+                return new int[]{body, Math.min(size, data.length - body), sampleRate};
+            }
+            // 块按偶数字节对齐
+            p = body + size + (size & 1);
+        }
+        throw new IOException("缺少 data 块");
+    }
+
+    private static int readInt(byte[] data, int p) {
+        return (data[p] & 0xff) | (data[p + 1] & 0xff) << 8 | (data[p + 2] & 0xff) << 16 | (data[p + 3] & 0xff) << 24;
+    }
+
+    private static int readShort(byte[] data, int p) {
+        return (data[p] & 0xff) | (data[p + 1] & 0xff) << 8;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
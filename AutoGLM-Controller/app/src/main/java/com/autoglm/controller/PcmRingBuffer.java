@@ -0,0 +1,85 @@
+package com.autoglm.controller;
+
+/**
+ * 固定容量的 PCM 环形缓冲：空间在构造时一次分配，写满后覆盖最早的数据
+ * <p>
+ * 容量按 16 位采样对齐，覆盖时不会把一个采样拆成两半。非线程安全，由采集线程独占使用。
+ */
+public class PcmRingBuffer {
+    /**
+     * 按时间顺序接收缓冲中的数据，可能分两段回调
+     */
+    public interface Reader {
+        void onData(byte[] data, int offset, int length);
+    }
+
+    private final byte[] buffer;
+    // 下一次写入的位置与有效字节数
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * @param capacity 容量（字节），向下对齐到偶数
+     */
+    public PcmRingBuffer(int capacity) {
+        buffer = new byte[Math.max(2, capacity & ~1)];
+    }
+
+    /**
+     * 可容纳的毫秒数对应的缓冲
+     */
+    public static PcmRingBuffer forMillis(int sampleRate, int millis) {
+        return new PcmRingBuffer((int) ((long) sampleRate * 2 * millis / 1000));
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 追加数据，超出容量的部分覆盖最早的数据
+     */
+    public void write(byte[] data, int offset, int length) {
+        int capacity = buffer.length;
+        if (length >= capacity) {
+            // 只保留最后 capacity 字节
+            System.arraycopy(data, offset + length - capacity, buffer, 0, capacity);
+            head = 0;
+            size = capacity;
+            return;
+        }
+        int first = Math.min(length, capacity - head);
+        System.arraycopy(data, offset, buffer, head, first);
+        System.arraycopy(data, offset + first, buffer, 0, length - first);
+        head = (head + length) % capacity;
+        size = Math.min(capacity, size + length);
+    }
+
+    /**
+     * 按时间顺序读出全部数据并清空，不复制
+     *
+     * @return 读出的字节数
+     */
+    public int drainTo(Reader reader) {
+        int drained = size;
+        if (size > 0) {
+            int start = (head - size + buffer.length) % buffer.length;
+            int first = Math.min(size, buffer.length - start);
+            reader.onData(buffer, start, first);
+            if (size > first) {
+                reader.onData(buffer, 0, size - first);
+            }
+        }
+        clear();
+        return drained;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
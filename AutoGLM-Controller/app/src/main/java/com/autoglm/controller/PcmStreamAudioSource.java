@@ -0,0 +1,76 @@
+package com.autoglm.controller;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 从流中读取 PCM 的音频来源，用于测试与录音回放
+ * <p>
+ * 默认尽快读出；开启实时节奏后按采样率限速，模拟麦克风的到达速度。
+ */
+public class PcmStreamAudioSource implements AudioSource {
+    private static final String TAG = "PcmStreamAudioSource";
+
+    private final InputStream in;
+    private final int sampleRate;
+    private final boolean realtime;
+    private long startNanos;
+    private long bytesRead;
+
+    public PcmStreamAudioSource(InputStream in, int sampleRate, boolean realtime) {
+        this.in = in;
+        this.sampleRate = sampleRate;
+        this.realtime = realtime;
+    }
+
+    @Override
+    public boolean start() {
+        startNanos = System.nanoTime();
+        bytesRead = 0;
+        return true;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        int n;
+        try {
+            n = in.read(buffer, offset, length);
+        } catch (IOException e) {
+            Log.e(TAG, "读取音频失败", e);
+            return -1;
+        }
+        if (n <= 0) {
+            return -1;
+        }
+        bytesRead += n;
+        if (realtime) {
+            // 读到的数据在实时采集中应到达的时间
+            long dueNanos = startNanos + bytesRead * 1_000_000_000L / (sampleRate * 2L);
+            long waitMillis = (dueNanos - System.nanoTime()) / 1_000_000L;
+            if (waitMillis > 0) {
+                try {
+                    Thread.sleep(waitMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void stop() {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+}
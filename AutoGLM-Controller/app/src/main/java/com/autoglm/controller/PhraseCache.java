@@ -0,0 +1,264 @@
+package com.autoglm.controller;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 常用命令缓存
+ * <p>
+ * 识别出的命令按归一化文本（去掉空白与标点、忽略大小写）合并计数，保留最近一次的原文。
+ * 容量有限，满时淘汰得分最低的一条：得分为使用次数，按之后其他命令的使用次数衰减
+ * （每 {@link #HALF_LIFE} 次减半），兼顾常用与最近使用。归一化文本上的有序索引支持按前缀查找。
+ * <p>
+ * 可保存为紧凑的二进制文件（每条只存原文、次数与距今的使用次数），重启后恢复。方法均为线程安全。
+ */
+public class PhraseCache {
+    private static final String TAG = "PhraseCache";
+
+    public static final String FILE_NAME = "phrase_cache.bin";
+    public static final int DEFAULT_CAPACITY = 64;
+    // 得分衰减一半所经过的使用次数
+    static final int HALF_LIFE = 32;
+    // 过长的文本不缓存
+    static final int MAX_TEXT_LENGTH = 200;
+    private static final int MAGIC = 0x50484331; // "PHC1"
+
+    /**
+     * 一条缓存的命令
+     */
+    public static final class Phrase {
+        private String text;
+        private int count;
+        private long lastUse;
+
+        Phrase(String text, int count, long lastUse) {
+            this.text = text;
+            this.count = count;
+            this.lastUse = lastUse;
+        }
+
+        /**
+         * 最近一次使用时的原文
+         */
+        public String getText() {
+            return text;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    private final int capacity;
+    // 归一化文本 -> 命令
+    private final TreeMap<String, Phrase> index = new TreeMap<>();
+    // 使用序号，每次记录加一
+    private long useSeq = 0;
+
+    public PhraseCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * 记录一次使用
+     *
+     * @return 对应的缓存项；文本为空或过长时为 null
+     */
+    public synchronized Phrase record(String text) {
+        String key = normalize(text);
+        if (key.isEmpty() || text.length() > MAX_TEXT_LENGTH) {
+            return null;
+        }
+        useSeq++;
+        Phrase phrase = index.get(key);
+        if (phrase != null) {
+            phrase.text = text.trim();
+            phrase.count = phrase.count < Integer.MAX_VALUE ? phrase.count + 1 : phrase.count;
+            phrase.lastUse = useSeq;
+            return phrase;
+        }
+        if (index.size() >= capacity) {
+            evict();
+        }
+        phrase = new Phrase(text.trim(), 1, useSeq);
+        index.put(key, phrase);
+        return phrase;
+    }
+
+    /**
+     * 按得分从高到低的前 limit 条
+     */
+    public synchronized List<Phrase> top(int limit) {
+        return best(new ArrayList<>(index.values()), limit);
+    }
+
+    /**
+     * 归一化文本以 prefix 开头的命令，按得分从高到低的前 limit 条
+     */
+    public synchronized List<Phrase> lookup(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return top(limit);
+        }
+        return best(new ArrayList<>(index.subMap(key, true, key + Character.MAX_VALUE, false).values()), limit);
+    }
+
+    /**
+     * 删除一条命令
+     *
+     * @return 是否存在
+     */
+    public synchronized boolean remove(String text) {
+        return index.remove(normalize(text)) != null;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized void clear() {
+        index.clear();
+        useSeq = 0;
+    }
+
+    /**
+     * 保存到文件：先写临时文件再重命名
+     *
+     * @return 是否保存成功
+     */
+    public boolean writeTo(File file) {
+        List<Phrase> snapshot;
+        long[] ages;
+        synchronized (this) {
+            snapshot = new ArrayList<>(index.values());
+            ages = new long[snapshot.size()];
+            for (int i = 0; i < ages.length; i++) {
+                ages[i] = useSeq - snapshot.get(i).lastUse;
+            }
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(snapshot.size());
+            for (int i = 0; i < ages.length; i++) {
+                Phrase phrase = snapshot.get(i);
+                out.writeUTF(phrase.text);
+                out.writeInt(phrase.count);
+                out.writeInt((int) Math.min(ages[i], Integer.MAX_VALUE));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "保存常用命令失败: " + file, e);
+            tmp.delete();
+            return false;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "保存常用命令失败，无法重命名: " + file);
+            tmp.delete();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 从文件恢复，替换当前内容；文件不存在或格式不对时保留当前内容
+     *
+     * @return 是否读取成功
+     */
+    public boolean readFrom(File file) {
+        TreeMap<String, Phrase> loaded = new TreeMap<>();
+        long maxAge = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                Log.w(TAG, "常用命令文件格式不对: " + file);
+                return false;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String text = in.readUTF();
+                int uses = in.readInt();
+                int age = in.readInt();
+                String key = normalize(text);
+                if (!key.isEmpty() && uses > 0 && age >= 0) {
+                    // 暂存距今的使用次数，之后换算为序号
+                    loaded.put(key, new Phrase(text, uses, age));
+                    maxAge = Math.max(maxAge, age);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "读取常用命令失败: " + file, e);
+            return false;
+        }
+        synchronized (this) {
+            index.clear();
+            useSeq = maxAge;
+            for (Map.Entry<String, Phrase> entry : loaded.entrySet()) {
+                Phrase phrase = entry.getValue();
+                phrase.lastUse = useSeq - phrase.lastUse;
+                index.put(entry.getKey(), phrase);
+            }
+            while (index.size() > capacity) {
+                evict();
+            }
+        }
+        return true;
+    }
+
+    private void evict() {
+        String worst = null;
+        double worstScore = Double.MAX_VALUE;
+        for (Map.Entry<String, Phrase> entry : index.entrySet()) {
+            double score = score(entry.getValue());
+            if (score < worstScore) {
+                worst = entry.getKey();
+                worstScore = score;
+            }
+        }
+        if (worst != null) {
+            index.remove(worst);
+        }
+    }
+
+    private double score(Phrase phrase) {
+        return phrase.count * Math.pow(0.5, (useSeq - phrase.lastUse) / (double) HALF_LIFE);
+    }
+
+    private List<Phrase> best(List<Phrase> phrases, int limit) {
+        phrases.sort((a, b) -> {
+            int result = Double.compare(score(b), score(a));
+            return result != 0 ? result : Long.compare(b.lastUse, a.lastUse);
+        });
+        return phrases.size() > limit ? new ArrayList<>(phrases.subList(0, limit)) : phrases;
+    }
+
+    /**
+     * 只保留字母、数字与汉字，统一小写
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+}
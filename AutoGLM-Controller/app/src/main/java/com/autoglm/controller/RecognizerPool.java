@@ -0,0 +1,310 @@
+package com.autoglm.controller;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 识别器生命周期管理：后台预热、保持常驻、内存紧张时释放
+ * <p>
+ * 同一时间最多持有一个识别器。悬浮窗可见期间保持预热状态；悬浮窗隐藏或系统内存紧张
+ * （{@link #onTrimMemory(int)}）时释放，之后在按下悬浮窗或下次使用前重新预热。
+ * 识别器在后台线程创建，初始化完成后才交给使用方，长按时不再临时冷启动。
+ * <p>
+ * 除工厂方法外，所有方法与回调都在主线程执行。
+ */
+public class RecognizerPool<T> {
+    private static final String TAG = "RecognizerPool";
+
+    /**
+     * 识别器工厂
+     */
+    public interface Factory<T> {
+        /**
+         * 创建识别器，在后台线程调用。初始化完成（可能是异步的）后调用 callback。
+         */
+        T create(InitCallback callback);
+
+        /**
+         * 销毁识别器，在后台线程调用
+         */
+        void destroy(T recognizer);
+    }
+
+    public interface InitCallback {
+        void onInitComplete(boolean success);
+    }
+
+    /**
+     * 获取识别器的回调，在主线程执行
+     */
+    public interface Consumer<T> {
+        void accept(T recognizer);
+    }
+
+    private final Factory<T> factory;
+    private final Executor background;
+    private final Executor main;
+
+    private T recognizer;
+    private boolean ready = false;
+    private boolean inUse = false;
+    private boolean visible = false;
+    private boolean releasePending = false;
+    private Warmup warmup;
+    private final List<Consumer<T>> waiting = new ArrayList<>();
+
+    // 初始化耗时统计
+    private int warmUpCount = 0;
+    private int failureCount = 0;
+    private int waitCount = 0;
+    private int releaseCount = 0;
+    private long lastInitMillis = -1;
+    private long totalInitMillis = 0;
+
+    /**
+     * 一次预热过程，创建完成与初始化回调的先后顺序不确定，两者都到达后才算就绪
+     */
+    private final class Warmup {
+        final long startNanos = System.nanoTime();
+        T created;
+        boolean createDone;
+        boolean initDone;
+        boolean initSuccess;
+        boolean cancelled;
+    }
+
+    /**
+     * @param background 创建与销毁识别器的线程
+     * @param main       主线程
+     */
+    public RecognizerPool(Factory<T> factory, Executor background, Executor main) {
+        this.factory = factory;
+        this.background = background;
+        this.main = main;
+    }
+
+    /**
+     * 在后台预热识别器；已就绪或正在预热时无操作
+     */
+    public void warmUp() {
+        releasePending = false;
+        if (recognizer != null || warmup != null) {
+            return;
+        }
+        final Warmup current = new Warmup();
+        warmup = current;
+        background.execute(() -> {
+            T created = null;
+            try {
+                created = factory.create(success -> main.execute(() -> onInitComplete(current, success)));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "创建识别器失败", e);
+            }
+            final T result = created;
+            main.execute(() -> onCreated(current, result));
+        });
+    }
+
+    /**
+     * 获取识别器：已就绪时立即回调，否则预热完成后回调。
+     * 使用完毕后必须调用 {@link #recycle()}。预热失败时回调 null。
+     */
+    public void acquire(Consumer<T> consumer) {
+        if (ready) {
+            inUse = true;
+            consumer.accept(recognizer);
+            return;
+        }
+        waitCount++;
+        waiting.add(consumer);
+        warmUp();
+    }
+
+    /**
+     * 当前持有的识别器（可能尚未就绪），没有时返回 null
+     */
+    public T peek() {
+        return recognizer;
+    }
+
+    /**
+     * 使用方结束一次识别；期间收到的释放请求此时执行
+     */
+    public void recycle() {
+        inUse = false;
+        if (releasePending) {
+            release();
+        }
+    }
+
+    /**
+     * 悬浮窗可见性变化：可见时预热并保持，隐藏时释放
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        if (visible) {
+            warmUp();
+        } else {
+            release();
+        }
+    }
+
+    /**
+     * 按下悬浮窗：可能马上要开始识别，提前预热
+     */
+    public void onTouchDown() {
+        warmUp();
+    }
+
+    /**
+     * 系统内存紧张时释放识别器
+     *
+     * @return 是否释放（或将在本次识别结束后释放）
+     */
+    public boolean onTrimMemory(int level) {
+        boolean pressure = level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                && level != ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+        if (!pressure || (recognizer == null && warmup == null)) {
+            return false;
+        }
+        Log.d(TAG, "内存紧张(level=" + level + ")，释放识别器");
+        release();
+        return true;
+    }
+
+    /**
+     * 释放识别器；正在使用时推迟到 {@link #recycle()}
+     */
+    public void release() {
+        if (inUse) {
+            releasePending = true;
+            return;
+        }
+        releasePending = false;
+        if (warmup != null) {
+            // 预热尚未完成，完成后直接销毁
+            warmup.cancelled = true;
+            warmup = null;
+            notifyWaiting(null);
+        }
+        if (recognizer != null) {
+            final T old = recognizer;
+            recognizer = null;
+            ready = false;
+            releaseCount++;
+            background.execute(() -> factory.destroy(old));
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * 最近一次初始化耗时（从开始预热到初始化回调），尚未初始化时为 -1
+     */
+    public long getLastInitMillis() {
+        return lastInitMillis;
+    }
+
+    /**
+     * 平均初始化耗时
+     */
+    public long getAverageInitMillis() {
+        int count = warmUpCount - failureCount;
+        return count > 0 ? totalInitMillis / count : -1;
+    }
+
+    /**
+     * 预热次数（含失败）
+     */
+    public int getWarmUpCount() {
+        return warmUpCount;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * 获取识别器时尚未就绪、需要等待的次数
+     */
+    public int getWaitCount() {
+        return waitCount;
+    }
+
+    public int getReleaseCount() {
+        return releaseCount;
+    }
+
+    private void onCreated(Warmup current, T created) {
+        current.created = created;
+        current.createDone = true;
+        if (created == null) {
+            current.initDone = true;
+            current.initSuccess = false;
+        }
+        maybeComplete(current);
+    }
+
+    private void onInitComplete(Warmup current, boolean success) {
+        if (current.initDone) {
+            return;
+        }
+        current.initDone = true;
+        current.initSuccess = success;
+        maybeComplete(current);
+    }
+
+    private void maybeComplete(Warmup current) {
+        if (!current.createDone || !current.initDone) {
+            return;
+        }
+        if (current.cancelled) {
+            if (current.created != null) {
+                background.execute(() -> factory.destroy(current.created));
+            }
+            return;
+        }
+        warmup = null;
+        warmUpCount++;
+        long millis = (System.nanoTime() - current.startNanos) / 1000000;
+        if (!current.initSuccess) {
+            failureCount++;
+            Log.w(TAG, "识别器初始化失败，耗时 " + millis + "ms");
+            if (current.created != null) {
+                background.execute(() -> factory.destroy(current.created));
+            }
+            notifyWaiting(null);
+            return;
+        }
+        lastInitMillis = millis;
+        totalInitMillis += millis;
+        recognizer = current.created;
+        ready = true;
+        Log.d(TAG, "识别器就绪，初始化耗时 " + millis + "ms，平均 " + getAverageInitMillis() + "ms");
+        if (!waiting.isEmpty()) {
+            inUse = true;
+        }
+        notifyWaiting(recognizer);
+    }
+
+    private void notifyWaiting(T result) {
+        if (waiting.isEmpty()) {
+            return;
+        }
+        List<Consumer<T>> consumers = new ArrayList<>(waiting);
+        waiting.clear();
+        for (Consumer<T> consumer : consumers) {
+            consumer.accept(result);
+        }
+    }
+}
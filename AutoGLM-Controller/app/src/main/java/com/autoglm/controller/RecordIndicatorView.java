@@ -0,0 +1,164 @@
+package com.autoglm.controller;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.animation.LinearInterpolator;
+import android.widget.ImageView;
+
+/**
+ * 录音指示器：随实际音量缩放
+ * <p>
+ * 视图持有唯一一个动画对象，录音时启动，结束时停止；视图不可见（悬浮窗隐藏、屏幕关闭）时暂停。
+ * 录音期间使用硬件层，缩放只修改渲染属性而不重绘内容；空闲时动画停止、释放硬件层，不占用 CPU。
+ * 音量由 {@link #setLevel(float)} 传入，逐帧平滑：上升快、回落慢，没有音量时保持轻微呼吸效果。
+ */
+public class RecordIndicatorView extends ImageView {
+    // 呼吸周期
+    private static final long BREATH_MILLIS = 1200;
+    // 缩放范围：静音时在基准附近呼吸，音量最大时放大到 MAX_SCALE
+    private static final float BASE_SCALE = 0.6f;
+    private static final float MAX_SCALE = 1.1f;
+    private static final float BREATH_AMPLITUDE = 0.05f;
+    // 音量平滑的时间常数（毫秒）
+    private static final float ATTACK_MILLIS = 50f;
+    private static final float RELEASE_MILLIS = 250f;
+
+    private final ValueAnimator animator;
+    private boolean recording = false;
+
+    private float targetLevel = 0f;
+    private float level = 0f;
+    private long lastFrameMillis = -1;
+
+    public RecordIndicatorView(Context context) {
+        this(context, null);
+    }
+
+    public RecordIndicatorView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public RecordIndicatorView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        animator = ValueAnimator.ofFloat(0f, 1f);
+        animator.setDuration(BREATH_MILLIS);
+        animator.setRepeatCount(ValueAnimator.INFINITE);
+        animator.setRepeatMode(ValueAnimator.RESTART);
+        animator.setInterpolator(new LinearInterpolator());
+        animator.addUpdateListener(animation -> onFrame(animation.getAnimatedFraction(),
+                animation.getCurrentPlayTime()));
+    }
+
+    /**
+     * 开始或结束录音显示
+     */
+    public void setRecording(boolean recording) {
+        if (this.recording == recording) {
+            return;
+        }
+        this.recording = recording;
+        if (recording) {
+            targetLevel = 0f;
+            level = 0f;
+            lastFrameMillis = -1;
+            setLayerType(View.LAYER_TYPE_HARDWARE, null);
+            setVisibility(View.VISIBLE);
+            updateAnimator();
+        } else {
+            animator.cancel();
+            setVisibility(View.GONE);
+            setLayerType(View.LAYER_TYPE_NONE, null);
+            setScaleX(1f);
+            setScaleY(1f);
+        }
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * 当前音量
+     *
+     * @param level 0~1
+     */
+    public void setLevel(float level) {
+        targetLevel = Math.max(0f, Math.min(1f, level));
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAnimator();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateAnimator();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateAnimator();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        animator.cancel();
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * 录音且实际可见时运行动画，否则暂停
+     */
+    private void updateAnimator() {
+        // 父类构造期间也会回调
+        if (animator == null) {
+            return;
+        }
+        boolean shouldRun = recording && isAttachedToWindow() && isShown();
+        if (shouldRun) {
+            if (animator.isPaused()) {
+                lastFrameMillis = -1;
+                animator.resume();
+            } else if (!animator.isStarted()) {
+                animator.start();
+            }
+        } else if (animator.isRunning()) {
+            animator.pause();
+        }
+    }
+
+    private void onFrame(float phase, long playTimeMillis) {
+        long dt = lastFrameMillis >= 0 ? Math.max(0, playTimeMillis - lastFrameMillis) : 0;
+        lastFrameMillis = playTimeMillis;
+        level = smooth(level, targetLevel, dt);
+        float scale = scaleFor(level, phase);
+        setScaleX(scale);
+        setScaleY(scale);
+    }
+
+    /**
+     * 一阶低通：上升用较短的时间常数，回落用较长的
+     */
+    static float smooth(float current, float target, long dtMillis) {
+        if (dtMillis <= 0) {
+            return current;
+        }
+        float tau = target > current ? ATTACK_MILLIS : RELEASE_MILLIS;
+        float alpha = 1f - (float) Math.exp(-dtMillis / tau);
+        return current + (target - current) * alpha;
+    }
+
+    /**
+     * 音量与呼吸相位对应的缩放
+     */
+    static float scaleFor(float level, float phase) {
+        float breath = (float) Math.sin(phase * 2 * Math.PI) * BREATH_AMPLITUDE;
+        return BASE_SCALE + (MAX_SCALE - BASE_SCALE) * level + breath;
+    }
+}
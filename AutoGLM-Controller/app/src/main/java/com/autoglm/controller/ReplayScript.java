@@ -0,0 +1,113 @@
+package com.autoglm.controller;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 识别会话的结果脚本：识别器在一次会话中依次返回的原始结果及其到达时间，与会话音频一起用于离线回放
+ * <p>
+ * 文本格式，UTF-8，每行一条结果：{@code <时间>\t<是否最后一条(0/1)>\t<讯飞 JSON>}。
+ * 时间为距开始录音的毫秒数；以 + 开头时为距录音结束的毫秒数（录音结束后云端才返回的结果）。
+ * 以 # 开头的行为注释，{@code # streaming=1} 表示会话开启了动态修正。
+ */
+public class ReplayScript {
+    public static final String EXTENSION = ".script";
+
+    private static final String STREAMING_HEADER = "# streaming=";
+
+    /**
+     * 一条结果
+     */
+    public static final class Entry {
+        public final long millis;
+        // 为 true 时 millis 从录音结束算起
+        public final boolean afterEnd;
+        public final boolean last;
+        public final String json;
+
+        public Entry(long millis, boolean afterEnd, boolean last, String json) {
+            this.millis = millis;
+            this.afterEnd = afterEnd;
+            this.last = last;
+            this.json = json;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private boolean streaming;
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * 会话是否开启了动态修正，结果需按分段拼接
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void add(long millis, boolean afterEnd, boolean last, String json) {
+        entries.add(new Entry(millis, afterEnd, last, json));
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public void writeTo(File file) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(STREAMING_HEADER + (streaming ? 1 : 0) + "\n");
+            for (Entry entry : entries) {
+                writer.write((entry.afterEnd ? "+" : "") + entry.millis + "\t" + (entry.last ? 1 : 0)
+                        + "\t" + entry.json.replace('\n', ' ') + "\n");
+            }
+        }
+    }
+
+    public static ReplayScript read(File file) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    static ReplayScript read(Reader in) throws IOException {
+        ReplayScript script = new ReplayScript();
+        BufferedReader reader = new BufferedReader(in);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.startsWith(STREAMING_HEADER)) {
+                script.streaming = "1".equals(line.substring(STREAMING_HEADER.length()).trim());
+                continue;
+            }
+            if (line.trim().isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t", 3);
+            if (fields.length < 3) {
+                throw new IOException("第 " + lineNumber + " 行格式错误: " + line);
+            }
+            boolean afterEnd = fields[0].startsWith("+");
+            try {
+                long millis = Long.parseLong(afterEnd ? fields[0].substring(1) : fields[0]);
+                script.add(millis, afterEnd, "1".equals(fields[1]), fields[2]);
+            } catch (NumberFormatException e) {
+                throw new IOException("第 " + lineNumber + " 行时间无效: " + fields[0]);
+            }
+        }
+        return script;
+    }
+}
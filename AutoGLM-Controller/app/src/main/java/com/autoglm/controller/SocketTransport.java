@@ -0,0 +1,531 @@
+package com.autoglm.controller;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 基于本地回环 socket 的传输通道
+ * <p>
+ * 控制器作为客户端连接 agent（main.py --socket-port）监听的端口，双方交换帧：长度(4) + 类型(1) + UTF-8 内容。
+ * 命令由控制器发往 agent，状态由 agent 主动推送，无需轮询。
+ * <p>
+ * 回环端口对本机所有应用可见，因此连接后先以共享令牌双向认证：agent 启动监听时在通信目录生成
+ * {@link #TOKEN_FILE_NAME}，双方各出一个随机数，用令牌对两个随机数做 HMAC-SHA256 互相证明持有令牌，
+ * 令牌本身不在连接上传输。能读到令牌的应用本来就能读写 command.txt，socket 不比文件通道暴露更多。
+ * <pre>
+ * 控制器 -> agent  HELLO 随机数C
+ * agent -> 控制器  HELLO 随机数A HMAC("agent:" + C + ":" + A)
+ * 控制器 -> agent  HELLO HMAC("controller:" + A + ":" + C)
+ * </pre>
+ * 连接断开后按指数退避重连，连续 {@link #MAX_CONNECT_ATTEMPTS} 次连不上（agent 未开启监听）即停止重连，
+ * 直到文件通道读到新的状态声明了本端口（"SOCKET: 端口"）再试。未连接期间命令与状态走备用通道（默认文件协议）。
+ * <p>
+ * 经 socket 发出的命令先追加到 {@link CommandJournal} 并落盘，直到 agent 推送的状态确认收到才移除：
+ * 带 ID 的命令以带该 ID 的任一状态确认（agent 取走命令时先报告 ACCEPTED），纯文本命令以新推送的
+ * 不带 ID 的 ACCEPTED/PROCESSING 确认。连接断开时未确认的命令留在日志中，重连后按顺序重发
+ * （agent 按 ID 忽略已执行过的命令）；停止重连时转交备用通道。确认与取消暂缓命令的消息只对当前命令有意义，不记入日志。
+ */
+public class SocketTransport implements CommandTransport {
+    private static final String TAG = "SocketTransport";
+
+    public static final String NAME = "socket";
+    public static final String DEFAULT_HOST = "127.0.0.1";
+    public static final int DEFAULT_PORT = 18765;
+    // 通信目录中的共享令牌，由 agent 生成
+    public static final String TOKEN_FILE_NAME = "socket.token";
+    // 令牌文件所在目录下保存未确认命令的子目录
+    static final String JOURNAL_DIR_NAME = "socket";
+    private static final String ACK_CONSUMER = "socket_ack";
+
+    static final byte TYPE_COMMAND = 1;
+    static final byte TYPE_STATUS = 2;
+    static final byte TYPE_HELLO = 3;
+
+    private static final int MAX_FRAME_SIZE = 256 * 1024;
+    private static final int MAX_TOKEN_SIZE = 1024;
+    private static final int NONCE_SIZE = 16;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final int HANDSHAKE_TIMEOUT = 2000;
+    private static final long INITIAL_BACKOFF = 500;
+    private static final long MAX_BACKOFF = 30 * 1000;
+    // 连续失败达到该次数后停止重连，等待 agent 声明监听
+    static final int MAX_CONNECT_ATTEMPTS = 5;
+
+    private final String host;
+    private final int port;
+    private final File tokenFile;
+    private final CommandTransport fallback;
+    private final CommandJournal journal;
+    private final long initialBackoff;
+    private final Thread connectionThread;
+    private final Object writeLock = new Object();
+    private final SecureRandom random = new SecureRandom();
+
+    // 停止重连期间为 true；parkedStatus 为停止时备用通道的状态，状态变化且声明了本端口时恢复重连
+    private final Object parkLock = new Object();
+    private boolean parked = false;
+    private String parkedStatus;
+
+    private volatile boolean running = true;
+    private volatile Socket socket;
+    private volatile DataOutputStream output;
+    private volatile String lastStatus;
+    private volatile OnStatusPushListener statusListener;
+
+    // 统计
+    private volatile int connectCount = 0;
+
+    /**
+     * @param tokenFile agent 生成的共享令牌文件，未确认的命令日志保存在同一目录下的 {@link #JOURNAL_DIR_NAME}
+     * @throws IOException 无法打开命令日志
+     */
+    public SocketTransport(String host, int port, File tokenFile, CommandTransport fallback) throws IOException {
+        this(host, port, tokenFile, fallback, INITIAL_BACKOFF);
+    }
+
+    SocketTransport(String host, int port, File tokenFile, CommandTransport fallback,
+                    long initialBackoff) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.tokenFile = tokenFile;
+        this.fallback = fallback;
+        this.initialBackoff = initialBackoff;
+        File journalDir = new File(tokenFile.getParentFile(), JOURNAL_DIR_NAME);
+        if (!journalDir.isDirectory() && !journalDir.mkdirs()) {
+            throw new IOException("无法创建命令日志目录: " + journalDir);
+        }
+        this.journal = new CommandJournal(journalDir);
+        this.connectionThread = new Thread(this::connectionLoop, "AutoGLM-Socket");
+        this.connectionThread.setDaemon(true);
+        this.connectionThread.start();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * 已连接时记入日志并经 socket 发送，否则走备用通道
+     * <p>
+     * 记入日志后即返回成功：发送失败时命令留在日志中，重连后重发或停止重连时转交备用通道。
+     * 断开期间仍有未确认的命令时，新命令同样记入日志排在其后，不会抢先经备用通道到达 agent。
+     */
+    @Override
+    public boolean sendCommand(String command) {
+        synchronized (writeLock) {
+            DataOutputStream out = output;
+            if (isDecision(command)) {
+                if (out != null) {
+                    try {
+                        writeFrame(out, TYPE_COMMAND, command);
+                        return true;
+                    } catch (IOException e) {
+                        Log.w(TAG, "发送命令失败，改用备用通道: " + e.getMessage());
+                        closeSocket();
+                    }
+                }
+            } else if (out != null || (!isParked() && journal.pendingCount(ACK_CONSUMER) > 0)) {
+                try {
+                    journal.append(command);
+                } catch (IOException e) {
+                    Log.w(TAG, "命令日志写入失败，改用备用通道: " + e.getMessage());
+                    return fallback.sendCommand(command);
+                }
+                if (out != null) {
+                    try {
+                        writeFrame(out, TYPE_COMMAND, command);
+                    } catch (IOException e) {
+                        Log.w(TAG, "发送命令失败，重连后重发: " + e.getMessage());
+                        closeSocket();
+                    }
+                }
+                return true;
+            }
+        }
+        return fallback.sendCommand(command);
+    }
+
+    /**
+     * 尚未被 agent 确认收到的命令数
+     */
+    public int getUnacknowledgedCount() {
+        return journal.pendingCount(ACK_CONSUMER);
+    }
+
+    /**
+     * 已连接时返回最近一次推送的状态，否则从备用通道读取
+     */
+    @Override
+    public String readStatus() {
+        String status = lastStatus;
+        if (isConnected() && status != null) {
+            return status;
+        }
+        status = fallback.readStatus();
+        resumeIfAdvertised(status);
+        return status;
+    }
+
+    @Override
+    public void setOnStatusPushListener(OnStatusPushListener listener) {
+        this.statusListener = listener;
+    }
+
+    public boolean isConnected() {
+        return output != null;
+    }
+
+    /**
+     * 是否因 agent 未监听而停止了重连
+     */
+    public boolean isParked() {
+        synchronized (parkLock) {
+            return parked;
+        }
+    }
+
+    /**
+     * 成功建立连接的次数
+     */
+    public int getConnectCount() {
+        return connectCount;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        synchronized (parkLock) {
+            parkLock.notifyAll();
+        }
+        closeSocket();
+        connectionThread.interrupt();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            Log.w(TAG, "关闭命令日志失败: " + e.getMessage());
+        }
+        fallback.close();
+    }
+
+    /**
+     * 连接线程：连接、认证、读取推送，断开后退避重连，连续失败后停止重连
+     */
+    private void connectionLoop() {
+        long backoff = initialBackoff;
+        int failures = 0;
+        while (running) {
+            Socket s = new Socket();
+            boolean connected = false;
+            try {
+                s.setTcpNoDelay(true);
+                s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+                if (s.getLocalPort() == s.getPort() && s.getLocalAddress().equals(s.getInetAddress())) {
+                    // agent 未监听时，回环连接可能恰好选中同一端口而连上自己，会占住 agent 的端口
+                    throw new IOException("回环自连接");
+                }
+                socket = s;
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                DataInputStream input = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                s.setSoTimeout(HANDSHAKE_TIMEOUT);
+                handshake(input, out);
+                s.setSoTimeout(0);
+                synchronized (writeLock) {
+                    // 先重发上次连接未确认的命令，再接受新命令，保持顺序
+                    for (CommandJournal.Record record : journal.pending(ACK_CONSUMER)) {
+                        writeFrame(out, TYPE_COMMAND, record.command);
+                    }
+                    output = out;
+                }
+                connected = true;
+                connectCount++;
+                failures = 0;
+                backoff = initialBackoff;
+                Log.d(TAG, "已连接 agent: " + host + ":" + port);
+
+                while (running) {
+                    Frame frame = readFrame(input);
+                    if (frame.type == TYPE_STATUS) {
+                        boolean repeated = frame.payload.equals(lastStatus);
+                        lastStatus = frame.payload;
+                        acknowledge(frame.payload, repeated);
+                        OnStatusPushListener listener = statusListener;
+                        if (listener != null) {
+                            listener.onStatusPushed(frame.payload);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (connected) {
+                    Log.w(TAG, "与 agent 的连接断开: " + e.getMessage());
+                }
+            } finally {
+                closeSocket();
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                }
+            }
+
+            if (!running) {
+                break;
+            }
+            if (!connected && ++failures >= MAX_CONNECT_ATTEMPTS) {
+                Log.w(TAG, "agent 未监听 " + host + ":" + port + "，停止重连，使用备用通道");
+                if (!park()) {
+                    break;
+                }
+                failures = 0;
+                backoff = initialBackoff;
+                continue;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                break;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF);
+        }
+    }
+
+    /**
+     * 停止重连，直到 {@link #resumeIfAdvertised} 唤醒
+     *
+     * @return 是否被唤醒；通道关闭时为 false
+     */
+    private boolean park() {
+        String status = fallback.readStatus();
+        synchronized (writeLock) {
+            // 未确认的命令先转交备用通道，之后的命令直接走备用通道，保持顺序
+            handOffUnacknowledged();
+            synchronized (parkLock) {
+                parked = true;
+                parkedStatus = status;
+            }
+        }
+        synchronized (parkLock) {
+            try {
+                while (parked && running) {
+                    parkLock.wait();
+                }
+            } catch (InterruptedException e) {
+                return false;
+            } finally {
+                parked = false;
+            }
+            return running;
+        }
+    }
+
+    /**
+     * 按推送的状态移除 agent 已收到的命令：带 ID 的状态确认该 ID 的命令及之前的所有命令，
+     * 新推送的不带 ID 的 ACCEPTED/PROCESSING 确认排在最前的纯文本命令
+     *
+     * @param repeated 与上一次推送的状态相同（重连后 agent 会重推最近的状态）
+     */
+    private void acknowledge(String payload, boolean repeated) {
+        AgentStatus status = AgentStatus.parse(payload);
+        String id = status.getCommandId();
+        String state = status.getState();
+        List<CommandJournal.Record> pending = journal.pending(ACK_CONSUMER);
+        long acked = 0;
+        if (id != null) {
+            for (CommandJournal.Record record : pending) {
+                if (id.equals(CommandTracker.idOf(record.command))) {
+                    acked = record.seq;
+                    break;
+                }
+            }
+        } else if (!repeated && !pending.isEmpty() && CommandTracker.idOf(pending.get(0).command) == null
+                && (AgentStatus.ACCEPTED.equals(state) || AgentStatus.PROCESSING.equals(state))) {
+            acked = pending.get(0).seq;
+        }
+        if (acked > 0) {
+            try {
+                journal.commit(ACK_CONSUMER, acked);
+            } catch (IOException e) {
+                Log.w(TAG, "保存确认进度失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 停止重连前把未确认的命令转交备用通道，agent 之后从文件通道读取
+     */
+    private void handOffUnacknowledged() {
+        for (CommandJournal.Record record : journal.pending(ACK_CONSUMER)) {
+            if (!fallback.sendCommand(record.command)) {
+                Log.w(TAG, "未确认的命令转交备用通道失败，保留到下次连接: " + record.command);
+                return;
+            }
+            try {
+                journal.commit(ACK_CONSUMER, record.seq);
+            } catch (IOException e) {
+                Log.w(TAG, "保存确认进度失败: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 确认或取消暂缓命令的消息
+     */
+    private static boolean isDecision(String command) {
+        return command.startsWith(CommandTracker.CONFIRM_HEADER) || command.startsWith(CommandTracker.CANCEL_HEADER);
+    }
+
+    /**
+     * 停止重连期间，备用通道读到新的状态且其中声明了本端口时恢复重连
+     */
+    private void resumeIfAdvertised(String status) {
+        synchronized (parkLock) {
+            if (!parked || status == null || status.equals(parkedStatus)) {
+                return;
+            }
+            parkedStatus = status;
+            if (AgentStatus.parse(status).getSocketPort() == port) {
+                Log.d(TAG, "agent 已开启监听，恢复连接: " + port);
+                parked = false;
+                parkLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 与 agent 互相认证，失败时抛出异常
+     */
+    private void handshake(DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] token = readToken(tokenFile);
+        String nonce = newNonce();
+        writeFrame(out, TYPE_HELLO, nonce);
+        Frame reply = readFrame(in);
+        String[] parts = reply.payload.split(" ");
+        if (reply.type != TYPE_HELLO || parts.length != 2
+                || !macEquals(parts[1], sign(token, "agent:" + nonce + ":" + parts[0]))) {
+            throw new IOException("agent 认证失败");
+        }
+        writeFrame(out, TYPE_HELLO, sign(token, "controller:" + parts[0] + ":" + nonce));
+    }
+
+    private String newNonce() {
+        byte[] bytes = new byte[NONCE_SIZE];
+        random.nextBytes(bytes);
+        return toHex(bytes);
+    }
+
+    /**
+     * 读取令牌文件（去掉首尾空白），不存在说明 agent 未开启监听
+     */
+    static byte[] readToken(File file) throws IOException {
+        if (file.length() > MAX_TOKEN_SIZE) {
+            throw new IOException("令牌文件过大: " + file);
+        }
+        byte[] bytes = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int n = 0;
+            while (n < bytes.length) {
+                int read = in.read(bytes, n, bytes.length - n);
+                if (read < 0) {
+                    break;
+                }
+                n += read;
+            }
+            String token = new String(bytes, 0, n, StandardCharsets.UTF_8).trim();
+            if (token.isEmpty()) {
+                throw new IOException("令牌为空: " + file);
+            }
+            return token.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * HMAC-SHA256，小写十六进制
+     */
+    static String sign(byte[] token, String message) throws IOException {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(token, HMAC_ALGORITHM));
+            return toHex(mac.doFinal(message.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("无法计算 HMAC", e);
+        }
+    }
+
+    /**
+     * 定长比较，不因提前返回泄露匹配长度
+     */
+    static boolean macEquals(String a, String b) {
+        return MessageDigest.isEqual(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private void closeSocket() {
+        output = null;
+        Socket s = socket;
+        socket = null;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 帧
+     */
+    static final class Frame {
+        final byte type;
+        final String payload;
+
+        Frame(byte type, String payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    static void writeFrame(DataOutputStream out, byte type, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.writeByte(type);
+        out.write(bytes);
+        out.flush();
+    }
+
+    static Frame readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("帧长度异常: " + length);
+        }
+        byte type = in.readByte();
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new Frame(type, new String(bytes, StandardCharsets.UTF_8));
+    }
+}
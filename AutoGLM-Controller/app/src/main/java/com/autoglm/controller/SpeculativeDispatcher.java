@@ -0,0 +1,164 @@
+package com.autoglm.controller;
+
+/**
+ * 语音命令的预发送
+ * <p>
+ * 云端在用户停止说话后还需要一段时间才返回最终结果。开启后，检测到语音结束时，
+ * 若最近几次中间结果的公共前缀（稳定前缀）就是最新的识别文本，说明结果已不再变化，先行发出；
+ * 只发送不再增长的完整文本，避免把说了一半的命令交给 agent。
+ * <p>
+ * 稳定前缀不能保证与最终结果相同，因此预发送的命令以暂缓执行方式发送（协议版本 3）：
+ * agent 收到后先截屏并请求模型，在操作设备前等待确认。最终结果一致时确认；不同时取消预发送的命令，
+ * 再发送最终结果；识别失败时取消。agent 不支持暂缓执行时不预发送。所有方法需在同一线程调用。
+ */
+public class SpeculativeDispatcher {
+    // 计算稳定前缀所用的最近中间结果数
+    private static final int HISTORY_SIZE = 2;
+    // 预发送的最少字数
+    private static final int DEFAULT_MIN_LENGTH = 2;
+
+    public interface Listener {
+        /**
+         * 当前能否预发送：agent 支持暂缓执行的命令，且没有排队中的命令
+         */
+        boolean canSpeculate();
+
+        /**
+         * 发送命令；speculative 为 true 时以暂缓执行方式发送，确认前 agent 不操作设备
+         */
+        void onDispatch(String text, boolean speculative);
+
+        /**
+         * 最终结果与预发送内容一致，确认预发送的命令
+         */
+        void onConfirm(String text);
+
+        /**
+         * 预发送的命令作废（最终结果不同或识别失败），取消它；最终结果不同时随后发送最终结果
+         */
+        void onCancel(String dispatched);
+    }
+
+    private final Listener listener;
+    private final String[] history = new String[HISTORY_SIZE];
+    private int historyCount = 0;
+    private int minLength = DEFAULT_MIN_LENGTH;
+    private boolean speechEnded = false;
+    private String dispatched;
+
+    public SpeculativeDispatcher(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void setMinLength(int minLength) {
+        this.minLength = minLength;
+    }
+
+    /**
+     * 新一轮识别开始
+     */
+    public void reset() {
+        historyCount = 0;
+        speechEnded = false;
+        dispatched = null;
+    }
+
+    /**
+     * 收到中间结果
+     */
+    public void onPartial(String hypothesis) {
+        history[historyCount % HISTORY_SIZE] = normalize(hypothesis);
+        historyCount++;
+        if (speechEnded) {
+            tryDispatch();
+        }
+    }
+
+    /**
+     * 语音结束：结果已稳定则预发送
+     */
+    public void onEndOfSpeech() {
+        speechEnded = true;
+        tryDispatch();
+    }
+
+    private void tryDispatch() {
+        if (dispatched != null || historyCount < HISTORY_SIZE) {
+            return;
+        }
+        String prefix = stablePrefix();
+        String latest = history[(historyCount - 1) % HISTORY_SIZE];
+        if (prefix.length() >= minLength && prefix.equals(latest) && listener.canSpeculate()) {
+            dispatched = prefix;
+            listener.onDispatch(prefix, true);
+        }
+    }
+
+    /**
+     * 收到最终结果：确认，或取消预发送的命令后发送最终结果
+     */
+    public void onFinal(String finalText) {
+        String normalized = normalize(finalText);
+        if (dispatched != null && dispatched.equals(normalized)) {
+            listener.onConfirm(finalText);
+        } else {
+            if (dispatched != null) {
+                listener.onCancel(dispatched);
+            }
+            if (!normalized.isEmpty()) {
+                listener.onDispatch(finalText, false);
+            }
+        }
+        reset();
+    }
+
+    /**
+     * 识别失败或被新一轮识别取代：取消尚未确认的预发送命令
+     */
+    public void abandon() {
+        if (dispatched != null) {
+            listener.onCancel(dispatched);
+        }
+        reset();
+    }
+
+    /**
+     * 最近几次中间结果的公共前缀
+     */
+    String stablePrefix() {
+        int count = Math.min(historyCount, HISTORY_SIZE);
+        if (count == 0) {
+            return "";
+        }
+        String prefix = history[(historyCount - 1) % HISTORY_SIZE];
+        for (int i = 2; i <= count; i++) {
+            String other = history[(historyCount - i) % HISTORY_SIZE];
+            int length = 0;
+            int max = Math.min(prefix.length(), other.length());
+            while (length < max && prefix.charAt(length) == other.charAt(length)) {
+                length++;
+            }
+            prefix = prefix.substring(0, length);
+        }
+        return prefix;
+    }
+
+    /**
+     * 去掉首尾空白和结尾标点，避免标点差异导致误判为修正
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String result = text.trim();
+        int end = result.length();
+        while (end > 0 && isPunctuation(result.charAt(end - 1))) {
+            end--;
+        }
+        return result.substring(0, end);
+    }
+
+    private static boolean isPunctuation(char c) {
+        return "。，、？！；：.,?!;:".indexOf(c) >= 0;
+    }
+}
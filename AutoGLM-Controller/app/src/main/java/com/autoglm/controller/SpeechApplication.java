@@ -1,6 +1,9 @@
 package com.autoglm.controller;
 
 import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.os.StrictMode;
+
 import com.iflytek.cloud.SpeechConstant;
 import com.iflytek.cloud.SpeechUtility;
 
@@ -9,6 +12,14 @@ public class SpeechApplication extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
+        // 调试包开启 StrictMode，检查主线程磁盘访问（文件读写应走 IoThread）
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
         //   为在开放平台注册的APPID  注意没有空格，直接替换即可，这个=号保留
         SpeechUtility.createUtility(SpeechApplication.this, SpeechConstant.APPID + "=xxxxx");
     }
@@ -0,0 +1,101 @@
+package com.autoglm.controller;
+
+import java.io.File;
+
+/**
+ * 语音识别引擎
+ * <p>
+ * 回调沿用 {@link SpeechRecognizerHelper.OnRecognizeResultListener} 的约定：
+ * 一次识别依次回调 onRecordingStart、onRecordingEnd，最后是 onResult 或 onError 之一。
+ * 所有方法与回调都在主线程执行。
+ */
+public interface SpeechEngine {
+
+    /**
+     * 引擎回调
+     */
+    interface Listener extends SpeechRecognizerHelper.OnRecognizeResultListener,
+            SpeechRecognizerHelper.OnPartialResultListener,
+            SpeechRecognizerHelper.OnVolumeChangedListener {
+        /**
+         * 识别出错
+         *
+         * @param engineFault 网络、服务或引擎本身的故障，会计入自动降级；
+         *                    未检测到语音、无匹配结果等不计入
+         */
+        default void onError(String errorMsg, boolean engineFault) {
+            onError(errorMsg);
+        }
+    }
+
+    /**
+     * 引擎名称，用于配置与日志
+     */
+    String getName();
+
+    void setListener(Listener listener);
+
+    /**
+     * 开启流式模式：通过 {@link Listener#onPartialResult(String)} 回调中间结果，下次开始识别时生效
+     */
+    void setStreamingEnabled(boolean streamingEnabled);
+
+    /**
+     * 自适应尾端点：根据音量判断说完后提前结束录音，引擎自身的后端点仍作为上限。
+     * 不支持的引擎忽略该设置。
+     *
+     * @param sensitivity 0~1，越大越早结束录音
+     */
+    default void setAdaptiveEndpoint(boolean enabled, float sensitivity) {
+    }
+
+    /**
+     * 录音预缓冲：按下悬浮窗时开始采集，识别开始时先交给引擎，避免启动期间截掉开头。
+     * 只有能接收外部音频的引擎支持，其余忽略该设置。
+     */
+    default void setAudioPreRoll(boolean enabled) {
+    }
+
+    /**
+     * 会话录制：保存每次会话的音频与结果脚本，供离线回放（见 {@link ReplayScript}）。
+     * 不支持的引擎忽略该设置。
+     *
+     * @param dir 保存目录，为 null 时关闭
+     */
+    default void setSessionRecordDir(File dir) {
+    }
+
+    /**
+     * 当前设备上是否可用
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+
+    void startListening();
+
+    void stopListening();
+
+    /**
+     * 释放引擎资源，之后仍可再次开始识别
+     */
+    void destroy();
+
+    /**
+     * 悬浮窗可见性变化，引擎可据此预热或释放资源
+     */
+    default void setOverlayVisible(boolean visible) {
+    }
+
+    /**
+     * 即将开始识别，引擎可提前准备
+     */
+    default void prewarm() {
+    }
+
+    /**
+     * 系统内存紧张
+     */
+    default void onTrimMemory(int level) {
+    }
+}
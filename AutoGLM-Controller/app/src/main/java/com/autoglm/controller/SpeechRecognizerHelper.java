@@ -1,28 +1,38 @@
 package com.autoglm.controller;
 
 import android.content.Context;
-import android.os.Bundle;
-import android.os.Environment;
+import android.os.SystemClock;
 import android.util.Log;
 
-import com.iflytek.cloud.ErrorCode;
-import com.iflytek.cloud.InitListener;
-import com.iflytek.cloud.RecognizerListener;
-import com.iflytek.cloud.RecognizerResult;
-import com.iflytek.cloud.SpeechError;
-import com.iflytek.cloud.SpeechRecognizer;
-import com.iflytek.cloud.SpeechConstant;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
 
+/**
+ * 语音识别入口：在多个识别引擎之间选择，并在首选引擎故障或过慢时自动降级到备用引擎
+ * <p>
+ * 默认首选讯飞云端引擎（{@link IflytekSpeechEngine}），备用为本机离线优先引擎（{@link LocalSpeechEngine}），
+ * 可在运行时通过 {@link #setEngine(String)} 切换。
+ */
 public class SpeechRecognizerHelper {
     private static final String TAG = "SpeechRecognizerHelper";
-    private final Context context;
-    private SpeechRecognizer speechRecognizer;
+
+    private final Map<String, SpeechEngine> engines = new LinkedHashMap<>();
+    private final EngineFallbackPolicy fallbackPolicy = new EngineFallbackPolicy();
     private OnRecognizeResultListener listener;
+    private OnPartialResultListener partialListener;
+    private OnVolumeChangedListener volumeListener;
+
+    private SpeechEngine primary;
+    private boolean fallbackEnabled = true;
+
+    // 当前识别会话
+    private SpeechEngine activeEngine;
+    private long sessionStartMillis;
+    private long speechEndMillis;
+
+    private LongSupplier clock = SystemClock::elapsedRealtime;
 
     public interface OnRecognizeResultListener {
         void onResult(String result);
@@ -31,84 +41,109 @@ public class SpeechRecognizerHelper {
         void onRecordingEnd();
     }
 
-    public SpeechRecognizerHelper(Context context) {
-        this.context = context;
-        initRecognizer();
+    /**
+     * 中间结果回调（流式模式）
+     */
+    public interface OnPartialResultListener {
+        /**
+         * @param hypothesis 截至目前的完整识别文本，后续可能被修正
+         */
+        void onPartialResult(String hypothesis);
     }
 
     /**
-     * 初始化讯飞语音识别器
+     * 录音音量回调
      */
-    private void initRecognizer() {
-        // 初始化识别对象
-        speechRecognizer = SpeechRecognizer.createRecognizer(context, mInitListener);
+    public interface OnVolumeChangedListener {
+        /**
+         * @param level 归一化音量，0~1
+         */
+        void onVolumeChanged(float level);
+    }
+
+    public SpeechRecognizerHelper(Context context) {
+        this(new IflytekSpeechEngine(context), new LocalSpeechEngine(context));
+    }
 
-        // 配置离线识别参数
-        setParam();
+    /**
+     * @param engines 可用引擎，第一个为默认首选
+     */
+    SpeechRecognizerHelper(SpeechEngine... engines) {
+        for (SpeechEngine engine : engines) {
+            this.engines.put(engine.getName(), engine);
+            engine.setListener(new EngineListener(engine));
+        }
+        this.primary = engines[0];
     }
 
     /**
-     * 初始化监听器。
+     * 设置首选引擎
+     *
+     * @return 引擎不存在时返回 false
      */
-    private final InitListener mInitListener = code -> {
-        Log.d(TAG, "SpeechRecognizer init() code = " + code);
-        if (code != ErrorCode.SUCCESS) {
-            Log.e(TAG, "初始化失败，错误码：" + code + ",请点击网址https://www.xfyun.cn/document/error-code查询解决方案");
+    public boolean setEngine(String name) {
+        SpeechEngine engine = engines.get(name);
+        if (engine == null) {
+            Log.w(TAG, "未知的识别引擎: " + name);
+            return false;
         }
-    };
+        if (engine != primary) {
+            primary = engine;
+            fallbackPolicy.reset();
+            Log.d(TAG, "首选识别引擎: " + name);
+        }
+        return true;
+    }
 
     /**
-     * 设置识别参数
+     * 是否允许自动降级到备用引擎
      */
-    private void setParam() {
-        //设置语法ID和 SUBJECT 为空，以免因之前有语法调用而设置了此参数；或直接清空所有参数，具体可参考 DEMO 的示例。
-        speechRecognizer.setParameter( SpeechConstant.CLOUD_GRAMMAR, null );
-        speechRecognizer.setParameter( SpeechConstant.SUBJECT, null );
-//设置返回结果格式，目前支持json,xml以及plain 三种格式，其中plain为纯听写文本内容
-        speechRecognizer.setParameter(SpeechConstant.RESULT_TYPE, "json");
-//此处engineType为“cloud”
-        speechRecognizer.setParameter( SpeechConstant.ENGINE_TYPE, SpeechConstant.TYPE_CLOUD);
-//设置语音输入语言，zh_cn为简体中文
-        speechRecognizer.setParameter(SpeechConstant.LANGUAGE, "zh_cn");
-//设置结果返回语言
-        speechRecognizer.setParameter(SpeechConstant.ACCENT, "mandarin");
-// 设置语音前端点:静音超时时间，单位ms，即用户多长时间不说话则当做超时处理
-//取值范围{1000～10000}
-        speechRecognizer.setParameter(SpeechConstant.VAD_BOS, "4000");
-//设置语音后端点:后端点静音检测时间，单位ms，即用户停止说话多长时间内即认为不再输入，
-//自动停止录音，范围{0~10000}
-        speechRecognizer.setParameter(SpeechConstant.VAD_EOS, "1000");
-//设置标点符号,设置为"0"返回结果无标点,设置为"1"返回结果有标点
-        speechRecognizer.setParameter(SpeechConstant.ASR_PTT,"1");
+    public void setFallbackEnabled(boolean fallbackEnabled) {
+        this.fallbackEnabled = fallbackEnabled;
+    }
 
-        // 设置音频保存路径，保存音频格式支持pcm、wav，设置路径为sd卡请注意WRITE_EXTERNAL_STORAGE权限
-//        speechRecognizer.setParameter(SpeechConstant.AUDIO_FORMAT, "wav");
-//        speechRecognizer.setParameter(SpeechConstant.ASR_AUDIO_PATH,
-//                Environment.getExternalStorageDirectory() + "/msc/asr.wav");
+    /**
+     * 降级阈值
+     *
+     * @param maxLatencyMillis 语音结束到最终结果的耗时阈值
+     * @param maxErrors        连续引擎故障次数阈值
+     */
+    public void setFallbackThresholds(long maxLatencyMillis, int maxErrors) {
+        fallbackPolicy.setThresholds(maxLatencyMillis, maxErrors);
+    }
+
+    public EngineFallbackPolicy getFallbackPolicy() {
+        return fallbackPolicy;
+    }
+
+    /**
+     * 下次识别将使用的引擎名称
+     */
+    public String getCurrentEngineName() {
+        return selectEngine().getName();
     }
 
     /**
      * 开始语音识别
      */
     public void startListening() {
-        if (speechRecognizer == null) {
-            initRecognizer();
-        }
-
-        int ret = speechRecognizer.startListening(recognizerListener);
-        if (ret != ErrorCode.SUCCESS) {
-            if (listener != null) {
-                listener.onError("识别启动失败，错误码：" + ret);
-            }
+        if (activeEngine != null) {
+            return;
         }
+        SpeechEngine engine = selectEngine();
+        activeEngine = engine;
+        sessionStartMillis = clock.getAsLong();
+        speechEndMillis = -1;
+        Log.d(TAG, "使用识别引擎: " + engine.getName());
+        engine.startListening();
     }
 
     /**
      * 停止语音识别
      */
     public void stopListening() {
-        if (speechRecognizer != null) {
-            speechRecognizer.stopListening();
+        if (activeEngine != null) {
+            activeEngine.stopListening();
         }
     }
 
@@ -116,10 +151,34 @@ public class SpeechRecognizerHelper {
      * 销毁识别器
      */
     public void destroy() {
-        if (speechRecognizer != null) {
-            speechRecognizer.cancel();
-            speechRecognizer.destroy();
-            speechRecognizer = null;
+        activeEngine = null;
+        for (SpeechEngine engine : engines.values()) {
+            engine.destroy();
+        }
+    }
+
+    /**
+     * 悬浮窗可见时保持识别器预热，隐藏时释放
+     */
+    public void setOverlayVisible(boolean visible) {
+        for (SpeechEngine engine : engines.values()) {
+            engine.setOverlayVisible(visible);
+        }
+    }
+
+    /**
+     * 按下悬浮窗时提前预热下次要用的引擎
+     */
+    public void prewarm() {
+        selectEngine().prewarm();
+    }
+
+    /**
+     * 系统内存紧张时释放识别器
+     */
+    public void onTrimMemory(int level) {
+        for (SpeechEngine engine : engines.values()) {
+            engine.onTrimMemory(level);
         }
     }
 
@@ -127,80 +186,171 @@ public class SpeechRecognizerHelper {
         this.listener = listener;
     }
 
+    public void setOnPartialResultListener(OnPartialResultListener partialListener) {
+        this.partialListener = partialListener;
+    }
+
+    public void setOnVolumeChangedListener(OnVolumeChangedListener volumeListener) {
+        this.volumeListener = volumeListener;
+    }
+
     /**
-     * 识别监听器
+     * 开启流式模式：中间结果通过 {@link OnPartialResultListener} 回调，
+     * 最终结果为完整文本。下次开始识别时生效。
      */
-    private RecognizerListener recognizerListener = new RecognizerListener() {
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        for (SpeechEngine engine : engines.values()) {
+            engine.setStreamingEnabled(streamingEnabled);
+        }
+    }
 
-        @Override
-        public void onBeginOfSpeech() {
-            // 开始录音
-            Log.d(TAG, "开始录音");
-            if (listener != null) {
-                listener.onRecordingStart();
+    /**
+     * 自适应尾端点：说完后提前结束录音，下次开始识别时生效
+     *
+     * @param sensitivity 0~1，越大越早结束录音
+     */
+    public void setAdaptiveEndpoint(boolean enabled, float sensitivity) {
+        for (SpeechEngine engine : engines.values()) {
+            engine.setAdaptiveEndpoint(enabled, sensitivity);
+        }
+    }
+
+    /**
+     * 录音预缓冲：按下悬浮窗时开始采集，避免识别器启动期间截掉开头
+     */
+    public void setAudioPreRoll(boolean enabled) {
+        for (SpeechEngine engine : engines.values()) {
+            engine.setAudioPreRoll(enabled);
+        }
+    }
+
+    /**
+     * 会话录制：保存每次会话的音频与结果脚本，供离线回放
+     *
+     * @param dir 保存目录，为 null 时关闭
+     */
+    public void setSessionRecordDir(File dir) {
+        for (SpeechEngine engine : engines.values()) {
+            engine.setSessionRecordDir(dir);
+        }
+    }
+
+    /**
+     * 测试用：替换时钟
+     */
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * 首选引擎可用且未降级时使用首选引擎，否则使用第一个可用的其他引擎
+     */
+    private SpeechEngine selectEngine() {
+        boolean usePrimary = !fallbackEnabled || fallbackPolicy.shouldUsePrimary(clock.getAsLong());
+        if (usePrimary && primary.isAvailable()) {
+            return primary;
+        }
+        for (SpeechEngine engine : engines.values()) {
+            if (engine != primary && engine.isAvailable()) {
+                return engine;
             }
         }
+        return primary;
+    }
+
+    /**
+     * 转发某个引擎的回调，并统计首选引擎的延迟与故障
+     */
+    private class EngineListener implements SpeechEngine.Listener {
+        private final SpeechEngine engine;
+
+        EngineListener(SpeechEngine engine) {
+            this.engine = engine;
+        }
+
+        private boolean isActive() {
+            return activeEngine == engine;
+        }
 
         @Override
-        public void onError(SpeechError error) {
-            // 识别出错
-            String errorMsg = error.getPlainDescription(true);
-            Log.e(TAG, "识别错误: " + errorMsg);
-            if (listener != null) {
-                listener.onError(errorMsg);
+        public void onRecordingStart() {
+            if (isActive() && listener != null) {
+                listener.onRecordingStart();
             }
         }
 
         @Override
-        public void onEndOfSpeech() {
-            // 结束录音
-            Log.d(TAG, "结束录音");
+        public void onRecordingEnd() {
+            if (!isActive()) {
+                return;
+            }
+            speechEndMillis = clock.getAsLong();
             if (listener != null) {
                 listener.onRecordingEnd();
             }
         }
 
         @Override
-        public void onResult(RecognizerResult results, boolean isLast) {
-            Log.d(TAG, "识别结果: " + results.getResultString());
+        public void onPartialResult(String hypothesis) {
+            if (isActive() && partialListener != null) {
+                partialListener.onPartialResult(hypothesis);
+            }
+        }
 
-            String text = parseIatResult(results.getResultString());
-            if (listener != null && isLast) {
-                listener.onResult(text);
+        @Override
+        public void onVolumeChanged(float level) {
+            if (isActive() && volumeListener != null) {
+                volumeListener.onVolumeChanged(level);
             }
         }
 
         @Override
-        public void onVolumeChanged(int volume, byte[] data) {
-            // 音量变化
-            Log.d(TAG, "音量变化: " + volume);
+        public void onResult(String result) {
+            if (!isActive()) {
+                return;
+            }
+            activeEngine = null;
+            long now = clock.getAsLong();
+            long latency = now - (speechEndMillis >= 0 ? speechEndMillis : sessionStartMillis);
+            Log.d(TAG, engine.getName() + " 识别耗时 " + latency + "ms");
+            if (engine == primary) {
+                boolean wasFallback = fallbackPolicy.isFallbackActive();
+                fallbackPolicy.onPrimaryResult(latency, now);
+                logFallbackChange(wasFallback);
+            }
+            if (listener != null) {
+                listener.onResult(result);
+            }
         }
 
         @Override
-        public void onEvent(int eventType, int arg1, int arg2, Bundle obj) {
-            // 其他事件
+        public void onError(String errorMsg) {
+            onError(errorMsg, true);
         }
-    };
 
-    /**
-     * 解析讯飞返回的JSON结果
-     */
-    private String parseIatResult(String json) {
-        StringBuffer ret = new StringBuffer();
-        try {
-            JSONTokener tokener = new JSONTokener(json);
-            JSONObject joResult = new JSONObject(tokener);
+        @Override
+        public void onError(String errorMsg, boolean engineFault) {
+            if (!isActive()) {
+                return;
+            }
+            activeEngine = null;
+            if (engine == primary) {
+                boolean wasFallback = fallbackPolicy.isFallbackActive();
+                fallbackPolicy.onPrimaryError(engineFault, clock.getAsLong());
+                logFallbackChange(wasFallback);
+            }
+            if (listener != null) {
+                listener.onError(errorMsg);
+            }
+        }
 
-            JSONArray words = joResult.getJSONArray("ws");
-            for (int i = 0; i < words.length(); i++) {
-                // 转写结果词，默认使用第一个结果
-                JSONArray items = words.getJSONObject(i).getJSONArray("cw");
-                JSONObject obj = items.getJSONObject(0);
-                ret.append(obj.getString("w"));
+        private void logFallbackChange(boolean wasFallback) {
+            boolean fallback = fallbackPolicy.isFallbackActive();
+            if (fallback && fallbackEnabled) {
+                Log.w(TAG, engine.getName() + " 故障或过慢，改用备用引擎");
+            } else if (wasFallback && !fallback) {
+                Log.d(TAG, engine.getName() + " 已恢复");
             }
-        } catch (JSONException e) {
-            e.printStackTrace();
         }
-        return ret.toString();
     }
-}
\ No newline at end of file
+}
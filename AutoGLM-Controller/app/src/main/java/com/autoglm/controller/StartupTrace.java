@@ -0,0 +1,241 @@
+package com.autoglm.controller;
+
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 服务启动时间线
+ * <p>
+ * 启动分为若干阶段，分别在主线程或 I/O 线程执行。每个阶段记录相对起点的开始与结束时间，
+ * 冷启动以进程启动为起点，进程已存在时以服务创建为起点。阶段同时以 {@link Trace} 区间输出。
+ * 预期的阶段全部完成后输出到日志并回调，服务将其追加到通信目录的 {@link #LOG_FILE_NAME}，
+ * 每次启动一行，用于跟踪冷启动耗时。
+ * <p>
+ * 方法均为线程安全。
+ */
+public class StartupTrace {
+    private static final String TAG = "StartupTrace";
+
+    public static final String LOG_FILE_NAME = "startup.log";
+    // 冷启动时进程启动到服务创建的阶段
+    public static final String STAGE_PROCESS = "process";
+
+    /**
+     * 一个阶段，时间为相对起点的毫秒数
+     */
+    public static final class Stage {
+        private final String name;
+        private final String thread;
+        private final long startMillis;
+        private final long endMillis;
+
+        Stage(String name, String thread, long startMillis, long endMillis) {
+            this.name = name;
+            this.thread = thread;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        public long getDurationMillis() {
+            return endMillis - startMillis;
+        }
+    }
+
+    public interface OnCompleteListener {
+        void onComplete(StartupTrace trace);
+    }
+
+    private static StartupTrace instance;
+
+    private final LongSupplier clock;
+    private long originMillis;
+    private boolean coldStart;
+    private final List<Stage> stages = new ArrayList<>();
+    private final List<String> pending = new ArrayList<>();
+    private boolean complete = true;
+    private OnCompleteListener listener;
+
+    /**
+     * 进程内共享的时间线
+     */
+    public static synchronized StartupTrace get() {
+        if (instance == null) {
+            instance = new StartupTrace(SystemClock::elapsedRealtime);
+        }
+        return instance;
+    }
+
+    /**
+     * @param clock 单调时钟，毫秒，与 {@link android.os.Process#getStartElapsedRealtime()} 同源
+     */
+    StartupTrace(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public void setOnCompleteListener(OnCompleteListener listener) {
+        synchronized (this) {
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * 开始一次启动，清除上一次的记录
+     *
+     * @param processStartMillis 进程启动时间，进程已存在（非冷启动）时为 -1
+     * @param expected           预期的阶段，全部完成即视为启动结束
+     */
+    public synchronized void begin(long processStartMillis, String... expected) {
+        long now = clock.getAsLong();
+        stages.clear();
+        pending.clear();
+        pending.addAll(Arrays.asList(expected));
+        complete = pending.isEmpty();
+        coldStart = processStartMillis >= 0 && processStartMillis <= now;
+        originMillis = coldStart ? processStartMillis : now;
+        if (coldStart) {
+            stages.add(new Stage(STAGE_PROCESS, "", 0, now - originMillis));
+        }
+    }
+
+    /**
+     * 当前时间，用于 {@link #record(String, long)}
+     */
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * 在当前线程执行一个阶段并记录
+     */
+    public void run(String name, Runnable task) {
+        call(name, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * 在当前线程执行一个有返回值的阶段并记录
+     */
+    public <T> T call(String name, Supplier<T> task) {
+        long start = clock.getAsLong();
+        Trace.beginSection("startup:" + name);
+        try {
+            return task.get();
+        } finally {
+            Trace.endSection();
+            record(name, start);
+        }
+    }
+
+    /**
+     * 记录一个从 startMillis 开始、到现在结束的阶段；启动结束后的记录被忽略
+     */
+    public void record(String name, long startMillis) {
+        OnCompleteListener callback = null;
+        synchronized (this) {
+            if (complete) {
+                return;
+            }
+            long end = clock.getAsLong();
+            stages.add(new Stage(name, Thread.currentThread().getName(),
+                    startMillis - originMillis, end - originMillis));
+            pending.remove(name);
+            if (pending.isEmpty()) {
+                complete = true;
+                callback = listener;
+                Log.i(TAG, format());
+            }
+        }
+        if (callback != null) {
+            callback.onComplete(this);
+        }
+    }
+
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    public synchronized boolean isColdStart() {
+        return coldStart;
+    }
+
+    /**
+     * 已记录的阶段，按完成先后排列
+     */
+    public synchronized List<Stage> getStages() {
+        return new ArrayList<>(stages);
+    }
+
+    /**
+     * 起点到最后一个阶段结束的耗时
+     */
+    public synchronized long getTotalMillis() {
+        long total = 0;
+        for (Stage stage : stages) {
+            total = Math.max(total, stage.endMillis);
+        }
+        return total;
+    }
+
+    /**
+     * 单行文本：启动类型、总耗时与各阶段的 名称@开始+耗时[线程]
+     */
+    public synchronized String format() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(coldStart ? "cold" : "warm").append(' ').append(getTotalMillis()).append("ms");
+        for (Stage stage : stages) {
+            builder.append("  ").append(stage.name).append('@').append(stage.startMillis)
+                    .append('+').append(stage.getDurationMillis());
+            if (!stage.thread.isEmpty()) {
+                builder.append('[').append(stage.thread).append(']');
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 把本次时间线追加到文件，每次启动一行，以墙上时间开头
+     *
+     * @return 是否写入成功
+     */
+    public boolean appendTo(File file) {
+        String line = System.currentTimeMillis() + "\t" + format() + "\n";
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            writer.write(line);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "写入启动时间线失败: " + file, e);
+            return false;
+        }
+    }
+}
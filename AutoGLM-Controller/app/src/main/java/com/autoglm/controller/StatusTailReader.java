@@ -0,0 +1,446 @@
+package com.autoglm.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * status.txt 的增量读取
+ * <p>
+ * 支持两种格式：
+ * <ul>
+ * <li>快照（旧版 agent）：整个文件为 "KEY: value" 行（见 {@link AgentStatus}），每次更新整体重写。
+ * 每次都整体读取并与上次的内容逐字节比较，内容不变时不生成新的状态文本。不依据长度与修改时间跳过读取：
+ * 部分挂载点的修改时间只精确到秒，同一秒内等长的重写会被漏掉。</li>
+ * <li>步骤日志：首行以 {@link #LOG_HEADER} 开头（其后可带会话标识），之后 agent 只追加，每行一条记录，
+ * 字段以 Tab 分隔、形如 key=value：step、action、progress(0~100)、ts，以及可选的 status、id、protocol。
+ * 例如 {@code step=3\taction=点击 微信\tprogress=40\tts=1700000000000\tstatus=PROCESSING\tid=k3x9a-12}。</li>
+ * </ul>
+ * 步骤日志按字节偏移只读取新追加的完整行，未以换行结束的行留到下次。文件变短视为被截断，
+ * 开头 {@link #FINGERPRINT_SIZE} 字节变化视为被替换（轮转），两种情况都从头重新读取。
+ * 读取缓冲、解码缓冲与记录都复用，每次更新的内存分配与文件大小无关，只有状态变化时生成一个新的状态文本。
+ * <p>
+ * 不依赖 Android API；公开方法已加锁。
+ */
+public class StatusTailReader {
+    public static final String LOG_HEADER = "# autoglm-status-log";
+
+    // 每次读取的块大小，也是一条记录的最大长度，超长的行被跳过
+    static final int CHUNK_SIZE = 8192;
+    // 判断文件是否被替换所比较的开头字节数
+    static final int FINGERPRINT_SIZE = 64;
+    // 快照格式最多读取的长度
+    static final int MAX_SNAPSHOT_SIZE = 64 * 1024;
+
+    private static final byte[] LOG_HEADER_BYTES = LOG_HEADER.getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 步骤日志中的一条记录，读取时复用
+     */
+    public static final class Record {
+        int step;
+        final StringBuilder action = new StringBuilder();
+        int progress;
+        final StringBuilder timestamp = new StringBuilder();
+        final StringBuilder state = new StringBuilder();
+        final StringBuilder commandId = new StringBuilder();
+        int protocol;
+
+        Record() {
+            clear();
+        }
+
+        void clear() {
+            step = -1;
+            action.setLength(0);
+            progress = -1;
+            timestamp.setLength(0);
+            state.setLength(0);
+            commandId.setLength(0);
+            protocol = -1;
+        }
+
+        /**
+         * 步骤序号，没有时为 -1
+         */
+        public int getStep() {
+            return step;
+        }
+
+        public CharSequence getAction() {
+            return action;
+        }
+
+        /**
+         * 进度 0~100，没有时为 -1
+         */
+        public int getProgress() {
+            return progress;
+        }
+
+        public CharSequence getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * 状态取值（如 PROCESSING），没有时为空
+         */
+        public CharSequence getState() {
+            return state;
+        }
+
+        public CharSequence getCommandId() {
+            return commandId;
+        }
+    }
+
+    private final File file;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final ByteBuffer chunkView = ByteBuffer.wrap(chunk);
+    private final byte[] fingerprint = new byte[FINGERPRINT_SIZE];
+    private final byte[] head = new byte[FINGERPRINT_SIZE];
+    private int fingerprintLength = 0;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer line = CharBuffer.allocate(CHUNK_SIZE);
+    private final Record record = new Record();
+    private final StringBuilder render = new StringBuilder();
+
+    // 步骤日志：已读取到的字节偏移；正在跳过超长的行
+    private boolean log = false;
+    private long offset = 0;
+    private boolean skippingLine = false;
+    private long recordCount = 0;
+    // 快照：上次读取的内容，以及本次读取用的缓冲（二者交替使用）
+    private byte[] snapshot;
+    private byte[] snapshotScratch;
+    private int snapshotSize = -1;
+
+    private String text;
+    private int resetCount = 0;
+
+    public StatusTailReader(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 读取新内容并返回最新的状态文本。步骤日志返回最近一条记录，渲染为 {@link AgentStatus} 可解析的格式。
+     *
+     * @return 状态文本；文件不存在时为 null，尚无记录时为空串
+     */
+    public synchronized String read() throws IOException {
+        if (!file.exists()) {
+            reset();
+            text = null;
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            int headLength = readFully(raf, 0, head, FINGERPRINT_SIZE);
+            if (length < offset || !matchesFingerprint(headLength)) {
+                // 截断或替换：从头读取
+                if (offset > 0 || fingerprintLength > 0) {
+                    resetCount++;
+                }
+                reset();
+            }
+            System.arraycopy(head, 0, fingerprint, 0, headLength);
+            fingerprintLength = headLength;
+            if (offset == 0) {
+                log = startsWith(head, headLength, LOG_HEADER_BYTES);
+            }
+            if (log) {
+                readLog(raf, length);
+            } else {
+                readSnapshot(raf, length);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * 最近一条记录；只在步骤日志格式下有效，需在读取线程使用
+     */
+    public synchronized Record getRecord() {
+        return record;
+    }
+
+    /**
+     * 是否为步骤日志格式
+     */
+    public synchronized boolean isLog() {
+        return log;
+    }
+
+    /**
+     * 已读取到的字节偏移
+     */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    /**
+     * 已解析的记录数
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 检测到截断或替换的次数
+     */
+    public synchronized int getResetCount() {
+        return resetCount;
+    }
+
+    private void reset() {
+        log = false;
+        offset = 0;
+        skippingLine = false;
+        fingerprintLength = 0;
+        snapshotSize = -1;
+        record.clear();
+        text = "";
+    }
+
+    private boolean matchesFingerprint(int headLength) {
+        if (headLength < fingerprintLength) {
+            return false;
+        }
+        for (int i = 0; i < fingerprintLength; i++) {
+            if (head[i] != fingerprint[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取 offset 之后的完整行，逐行解析
+     */
+    private void readLog(RandomAccessFile raf, long length) throws IOException {
+        boolean changed = false;
+        while (offset < length) {
+            int n = readFully(raf, offset, chunk, (int) Math.min(CHUNK_SIZE, length - offset));
+            if (n <= 0) {
+                break;
+            }
+            int start = 0;
+            for (int i = 0; i < n; i++) {
+                if (chunk[i] != '\n') {
+                    continue;
+                }
+                if (skippingLine) {
+                    skippingLine = false;
+                } else if (parseLine(start, i)) {
+                    changed = true;
+                }
+                start = i + 1;
+            }
+            if (start == 0 && n == CHUNK_SIZE) {
+                // 整块没有换行：超长的行，跳过到下一个换行
+                skippingLine = true;
+                start = n;
+            }
+            if (start == 0) {
+                // 最后一行尚未写完
+                break;
+            }
+            offset += start;
+        }
+        if (changed) {
+            text = renderRecord();
+        }
+    }
+
+    /**
+     * 解析 chunk[start, end) 的一行
+     *
+     * @return 是否为一条记录
+     */
+    private boolean parseLine(int start, int end) {
+        if (end > start && chunk[end - 1] == '\r') {
+            end--;
+        }
+        if (end == start || chunk[start] == '#') {
+            return false;
+        }
+        chunkView.limit(end).position(start);
+        line.clear();
+        decoder.reset();
+        decoder.decode(chunkView, line, true);
+        decoder.flush(line);
+        line.flip();
+
+        record.clear();
+        int length = line.remaining();
+        int fieldStart = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || line.get(i) == '\t') {
+                parseField(fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        recordCount++;
+        return true;
+    }
+
+    private void parseField(int start, int end) {
+        int eq = -1;
+        for (int i = start; i < end; i++) {
+            if (line.get(i) == '=') {
+                eq = i;
+                break;
+            }
+        }
+        if (eq <= start) {
+            return;
+        }
+        int valueStart = eq + 1;
+        if (keyEquals(start, eq, "step")) {
+            record.step = parseInt(valueStart, end);
+        } else if (keyEquals(start, eq, "progress")) {
+            record.progress = Math.min(100, parseInt(valueStart, end));
+        } else if (keyEquals(start, eq, "protocol")) {
+            record.protocol = parseInt(valueStart, end);
+        } else if (keyEquals(start, eq, "action")) {
+            append(record.action, valueStart, end);
+        } else if (keyEquals(start, eq, "ts")) {
+            append(record.timestamp, valueStart, end);
+        } else if (keyEquals(start, eq, "status")) {
+            append(record.state, valueStart, end);
+        } else if (keyEquals(start, eq, "id")) {
+            append(record.commandId, valueStart, end);
+        }
+    }
+
+    private boolean keyEquals(int start, int end, String key) {
+        if (end - start != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (line.get(start + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 非负整数，无效时为 -1
+     */
+    private int parseInt(int start, int end) {
+        if (start == end) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.get(i);
+            if (c < '0' || c > '9' || value > (Integer.MAX_VALUE - 9) / 10) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private void append(StringBuilder target, int start, int end) {
+        for (int i = start; i < end; i++) {
+            target.append(line.get(i));
+        }
+    }
+
+    /**
+     * 把记录渲染为状态文本，协议字段写在 TASK 之前
+     */
+    private String renderRecord() {
+        render.setLength(0);
+        render.append("STATUS: ").append(record.state.length() > 0 ? record.state : AgentStatus.PROCESSING);
+        if (record.commandId.length() > 0) {
+            render.append("\nID: ").append(record.commandId);
+        }
+        if (record.protocol > 0) {
+            render.append("\nPROTOCOL: ").append(record.protocol);
+        }
+        if (record.step >= 0) {
+            render.append("\nSTEP: ").append(record.step);
+        }
+        if (record.progress >= 0) {
+            render.append("\nPROGRESS: ").append(record.progress);
+        }
+        if (record.timestamp.length() > 0) {
+            render.append("\nTIMESTAMP: ").append(record.timestamp);
+        }
+        render.append("\nTASK: ");
+        if (record.step >= 0) {
+            render.append("第 ").append(record.step).append(" 步 ");
+        }
+        render.append(record.action);
+        if (record.progress >= 0) {
+            render.append("（").append(record.progress).append("%）");
+        }
+        return render.toString();
+    }
+
+    /**
+     * 快照格式：整体读取，内容与上次不同时才生成新的状态文本
+     */
+    private void readSnapshot(RandomAccessFile raf, long length) throws IOException {
+        int size = (int) Math.min(length, MAX_SNAPSHOT_SIZE);
+        if (snapshotScratch == null || snapshotScratch.length < size) {
+            snapshotScratch = new byte[Math.max(size, 256)];
+        }
+        int n = readFully(raf, 0, snapshotScratch, size);
+        if (n == snapshotSize && rangeEquals(snapshotScratch, snapshot, n)) {
+            return;
+        }
+        byte[] previous = snapshot;
+        snapshot = snapshotScratch;
+        snapshotScratch = previous;
+        snapshotSize = n;
+        text = new String(snapshot, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 从 position 读取最多 length 字节，直到读满或到达文件末尾
+     */
+    private static int readFully(RandomAccessFile raf, long position, byte[] buffer, int length) throws IOException {
+        raf.seek(position);
+        int total = 0;
+        while (total < length) {
+            int n = raf.read(buffer, total, length - total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private static boolean rangeEquals(byte[] a, byte[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] data, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
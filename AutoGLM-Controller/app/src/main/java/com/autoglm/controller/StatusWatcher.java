@@ -0,0 +1,256 @@
+package com.autoglm.controller;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.util.Log;
+
+import java.io.File;
+
+/**
+ * 状态文件监听器
+ * <p>
+ * 优先使用 FileObserver(inotify) 监听通信目录，状态文件写入完成后立即回调，空闲时不做任何工作；
+ * 对于不投递文件事件的存储后端，自动退回定时轮询：开启校验（{@link #setVerifying}）时定时检查文件是否在没有事件的情况下
+ * 被修改，第一次发现漏掉的事件即切换为轮询。校验本身也会唤醒服务，因此只在命令执行中、确实等待 agent 写入状态时开启。
+ * 文件检查与回调都在传入的 handler 线程执行，建议使用 {@link IoThread}。
+ */
+public class StatusWatcher {
+    private static final String TAG = "StatusWatcher";
+
+    // 监听的事件：写入关闭、重命名移入（原子替换）、新建、删除
+    private static final int WATCH_MASK = FileObserver.CLOSE_WRITE
+            | FileObserver.MOVED_TO
+            | FileObserver.CREATE
+            | FileObserver.DELETE;
+
+    // 开启校验时的间隔：检查文件是否在没有事件的情况下被修改
+    private static final long VERIFY_INTERVAL = 5 * 1000;
+
+    public enum Mode {
+        WATCH, // 文件事件驱动
+        POLL   // 定时轮询
+    }
+
+    public interface OnStatusChangedListener {
+        void onStatusChanged();
+    }
+
+    /**
+     * 监听器被唤醒（文件事件或定时检查），用于统计唤醒次数
+     */
+    public interface OnWakeupListener {
+        void onWakeup();
+    }
+
+    private final Handler handler;
+    private final String basePath;
+    private final String fileName;
+    private final long pollInterval;
+
+    private volatile Mode mode;
+    private boolean verifying = false;
+    private volatile boolean running = false;
+    private FileObserver fileObserver;
+    private OnStatusChangedListener listener;
+    private OnWakeupListener wakeupListener;
+
+    // 上次观察到的文件状态，用于校验事件是否丢失
+    private long lastModified = -1;
+    private long lastLength = -1;
+
+    private final Runnable dispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dispatchPending = false;
+            onWakeup();
+            notifyChanged();
+        }
+    };
+    private volatile boolean dispatchPending = false;
+
+    private final Runnable pollRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!running) {
+                return;
+            }
+            onWakeup();
+            if (mode == Mode.POLL) {
+                notifyChanged();
+                handler.postDelayed(this, pollInterval);
+            } else {
+                verifyEventDelivery();
+                if (mode == Mode.WATCH && verifying) {
+                    handler.postDelayed(this, VERIFY_INTERVAL);
+                }
+            }
+        }
+    };
+
+    /**
+     * @param handler      回调所在线程的 Handler
+     * @param basePath     通信目录
+     * @param fileName     状态文件名
+     * @param pollInterval 轮询模式下的间隔
+     */
+    public StatusWatcher(Handler handler, String basePath, String fileName, long pollInterval) {
+        this.handler = handler;
+        this.basePath = basePath;
+        this.fileName = fileName;
+        this.pollInterval = pollInterval;
+        this.mode = Mode.WATCH;
+    }
+
+    public void setOnStatusChangedListener(OnStatusChangedListener listener) {
+        this.listener = listener;
+    }
+
+    public void setOnWakeupListener(OnWakeupListener wakeupListener) {
+        this.wakeupListener = wakeupListener;
+    }
+
+    /**
+     * 监听模式下是否定时校验事件是否送达，需在 {@link #start} 之前设置
+     */
+    public void setVerifying(boolean verifying) {
+        this.verifying = verifying;
+    }
+
+    /**
+     * 当前模式；监听中发现事件未送达后为 {@link Mode#POLL}
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 开始监听，会立即回调一次以刷新初始状态
+     */
+    public void start() {
+        start(Mode.WATCH);
+    }
+
+    /**
+     * 以指定模式开始监听
+     */
+    public void start(Mode preferredMode) {
+        if (running) {
+            return;
+        }
+        running = true;
+        mode = preferredMode;
+        // 目录检查与文件状态读取都是磁盘访问，放到 handler 线程执行
+        handler.post(() -> {
+            if (!running) {
+                return;
+            }
+            if (mode == Mode.WATCH && !startObserver()) {
+                mode = Mode.POLL;
+            }
+            Log.d(TAG, "状态监听启动，模式: " + mode);
+
+            notifyChanged();
+            if (mode == Mode.POLL) {
+                handler.postDelayed(pollRunnable, pollInterval);
+            } else if (verifying) {
+                handler.postDelayed(pollRunnable, VERIFY_INTERVAL);
+            }
+        });
+    }
+
+    /**
+     * 停止监听
+     */
+    public void stop() {
+        running = false;
+        handler.removeCallbacks(pollRunnable);
+        handler.removeCallbacks(dispatchRunnable);
+        handler.post(() -> {
+            stopObserver();
+            dispatchPending = false;
+        });
+    }
+
+    private boolean startObserver() {
+        File dir = new File(basePath);
+        if (!dir.isDirectory()) {
+            Log.w(TAG, "通信目录不存在，无法监听: " + basePath);
+            return false;
+        }
+        try {
+            // FileObserver(File, int) 需要 API 29，这里沿用路径构造以兼容 minSdk
+            fileObserver = new FileObserver(dir.getAbsolutePath(), WATCH_MASK) {
+                @Override
+                public void onEvent(int event, String path) {
+                    if (fileName.equals(path)) {
+                        onFileEvent();
+                    }
+                }
+            };
+            fileObserver.startWatching();
+            return true;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "启动文件监听失败，退回轮询", e);
+            fileObserver = null;
+            return false;
+        }
+    }
+
+    private void stopObserver() {
+        if (fileObserver != null) {
+            fileObserver.stopWatching();
+            fileObserver = null;
+        }
+    }
+
+    /**
+     * FileObserver 回调线程：合并连续事件，只投递一次
+     */
+    private void onFileEvent() {
+        if (!running || dispatchPending) {
+            return;
+        }
+        dispatchPending = true;
+        handler.post(dispatchRunnable);
+    }
+
+    private void onWakeup() {
+        if (wakeupListener != null) {
+            wakeupListener.onWakeup();
+        }
+    }
+
+    private void notifyChanged() {
+        if (!running) {
+            return;
+        }
+        recordFileState();
+        if (listener != null) {
+            listener.onStatusChanged();
+        }
+    }
+
+    /**
+     * 校验监听是否生效：文件变化但没有收到事件，说明存储后端不投递事件，切换为轮询
+     */
+    private void verifyEventDelivery() {
+        if (dispatchPending) {
+            // 事件已到达，等待分发
+            return;
+        }
+        File file = new File(basePath, fileName);
+        if (file.lastModified() != lastModified || file.length() != lastLength) {
+            Log.w(TAG, "状态文件已变化但未收到文件事件，切换为轮询模式");
+            stopObserver();
+            mode = Mode.POLL;
+            handler.removeCallbacks(pollRunnable);
+            handler.post(pollRunnable);
+        }
+    }
+
+    private void recordFileState() {
+        File file = new File(basePath, fileName);
+        lastModified = file.lastModified();
+        lastLength = file.length();
+    }
+}
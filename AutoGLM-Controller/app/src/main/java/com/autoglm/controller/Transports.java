@@ -0,0 +1,176 @@
+package com.autoglm.controller;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 当前使用的传输通道，默认基于共享文件；以及按配置创建的附加 agent 通道
+ */
+public final class Transports {
+    private static final String TAG = "Transports";
+
+    private static CommandTransport current;
+    private static CommandTransport.OnStatusPushListener statusPushListener;
+
+    // 附加通道的配置与实例（不含默认通道）
+    private static String channelSpec = "";
+    private static List<AgentChannel> extraChannels = new ArrayList<>();
+    private static volatile AgentChannel.OnStatusPushListener channelStatusListener;
+
+    private Transports() {
+    }
+
+    /**
+     * 当前传输通道
+     */
+    public static synchronized CommandTransport get() {
+        if (current == null) {
+            current = new FileTransport();
+        }
+        return current;
+    }
+
+    /**
+     * 设置状态推送回调，切换通道后自动应用到新通道
+     */
+    public static synchronized void setOnStatusPushListener(CommandTransport.OnStatusPushListener listener) {
+        statusPushListener = listener;
+        get().setOnStatusPushListener(listener);
+    }
+
+    /**
+     * 按名称切换传输通道，创建失败时退回文件通道。需在 I/O 线程调用。
+     * 内存映射通道（mmap）agent 不读取，不作为运行配置，按文件通道处理。
+     */
+    public static synchronized CommandTransport select(String name) {
+        return select(name, SocketTransport.DEFAULT_PORT);
+    }
+
+    /**
+     * 按名称切换传输通道，socketPort 仅对 socket 通道有效
+     */
+    public static synchronized CommandTransport select(String name, int socketPort) {
+        if (MappedRingTransport.NAME.equals(name)) {
+            Log.w(TAG, "agent 不读取 command.ring，内存映射通道只用于测试与基准，使用文件通道");
+            name = FileTransport.NAME;
+        }
+        if (current != null && current.getName().equals(name)) {
+            return current;
+        }
+        CommandTransport transport;
+        try {
+            transport = create(name, socketPort);
+        } catch (IOException e) {
+            Log.e(TAG, "创建传输通道失败，使用文件通道: " + name, e);
+            transport = new FileTransport();
+        }
+        if (current != null) {
+            current.close();
+        }
+        current = transport;
+        current.setOnStatusPushListener(statusPushListener);
+        Log.d(TAG, "使用传输通道: " + current.getName());
+        return current;
+    }
+
+    private static CommandTransport create(String name, int socketPort) throws IOException {
+        if (SocketTransport.NAME.equals(name)) {
+            return new SocketTransport(SocketTransport.DEFAULT_HOST, socketPort,
+                    new File(FileUtils.getBasePath(), SocketTransport.TOKEN_FILE_NAME), new FileTransport());
+        }
+        return new FileTransport();
+    }
+
+    /**
+     * 设置附加通道的状态推送回调
+     */
+    public static void setOnChannelStatusListener(AgentChannel.OnStatusPushListener listener) {
+        channelStatusListener = listener;
+    }
+
+    /**
+     * 按配置创建附加通道，与默认通道一起交给 {@link ChannelRouter}。配置未变化时不重建。需在 I/O 线程调用。
+     * <p>
+     * 配置以逗号分隔，每项为 name 或 name=target：
+     * <ul>
+     * <li>name：文件通道，目录为 &lt;通信目录&gt;/channels/&lt;name&gt;</li>
+     * <li>name=/path：文件通道，指定目录</li>
+     * <li>name=socket:port：socket 通道，令牌在 channels/&lt;name&gt; 下，未连接时走该目录下的文件</li>
+     * </ul>
+     * 例如 "w2,tablet=socket:18766"。无法创建的通道被跳过；内存映射通道（mmap）agent 不读取，同样跳过。
+     *
+     * @return 所有通道，默认通道在前
+     */
+    public static synchronized List<AgentChannel> selectChannels(String spec) {
+        ChannelRouter router = ChannelRouter.get();
+        spec = spec != null ? spec.trim() : "";
+        if (spec.equals(channelSpec)) {
+            return router.getChannels();
+        }
+        for (AgentChannel channel : extraChannels) {
+            channel.close();
+        }
+        extraChannels = new ArrayList<>();
+        List<AgentChannel> channels = new ArrayList<>();
+        channels.add(router.getDefaultChannel());
+        for (String item : spec.split(",")) {
+            item = item.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            int eq = item.indexOf('=');
+            String name = (eq < 0 ? item : item.substring(0, eq)).trim();
+            String target = eq < 0 ? "" : item.substring(eq + 1).trim();
+            if (name.isEmpty() || ChannelRouter.MAIN_CHANNEL.equalsIgnoreCase(name)) {
+                Log.w(TAG, "忽略无效的通道名: " + item);
+                continue;
+            }
+            try {
+                AgentChannel channel = createChannel(name, target);
+                extraChannels.add(channel);
+                channels.add(channel);
+            } catch (IOException | NumberFormatException e) {
+                Log.e(TAG, "创建通道失败: " + item, e);
+            }
+        }
+        channelSpec = spec;
+        router.setChannels(channels);
+        Log.d(TAG, "agent 通道: " + channels);
+        return channels;
+    }
+
+    private static AgentChannel createChannel(String name, String target) throws IOException {
+        File dir = new File(FileUtils.getBasePath(), "channels/" + name);
+        CommandTransport transport;
+        if (target.startsWith(SocketTransport.NAME + ":")) {
+            int port = Integer.parseInt(target.substring(SocketTransport.NAME.length() + 1).trim());
+            CommandFiles files = new CommandFiles(dir);
+            files.initDirectory();
+            transport = new SocketTransport(SocketTransport.DEFAULT_HOST, port,
+                    new File(dir, SocketTransport.TOKEN_FILE_NAME), new FileTransport(files));
+            AgentChannel channel = new AgentChannel(name, files, transport);
+            transport.setOnStatusPushListener(status -> {
+                AgentChannel.OnStatusPushListener listener = channelStatusListener;
+                if (listener != null) {
+                    listener.onStatusPushed(channel, status);
+                }
+            });
+            return channel;
+        }
+        if (target.equals(MappedRingTransport.NAME) || target.startsWith(MappedRingTransport.NAME + ":")) {
+            throw new IOException("agent 不读取 command.ring，内存映射通道只用于测试与基准");
+        }
+        if (!target.isEmpty()) {
+            dir = new File(target);
+        }
+        CommandFiles files = new CommandFiles(dir);
+        if (!files.initDirectory()) {
+            throw new IOException("目录不可用: " + dir);
+        }
+        return new AgentChannel(name, files, new FileTransport(files));
+    }
+}
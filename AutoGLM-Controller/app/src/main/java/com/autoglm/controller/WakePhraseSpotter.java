@@ -0,0 +1,490 @@
+package com.autoglm.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 轻量唤醒词检测：能量分段 + MFCC + DTW 模板匹配
+ * <p>
+ * 用户事先录入几遍唤醒词作为模板。平时每 10ms 只计算一次帧能量、跟踪噪声基线；能量明显高于基线时
+ * 开始一个语音段，静音持续 {@link #HANGOVER_FRAMES} 帧后结束。只有长度合适的语音段才计算 MFCC，
+ * 并与各模板做带约束的 DTW，最小距离低于阈值即判定为唤醒词。安静时几乎不做计算，
+ * 说话时每段也只在结束时计算一次。
+ * <p>
+ * 与说话人和录音环境相关，不依赖网络与额外模型。所有缓冲在构造时分配；非线程安全，由采集线程独占使用。
+ */
+public class WakePhraseSpotter {
+    public static final int SAMPLE_RATE = 16000;
+    // 帧移 10ms，帧长 25ms
+    static final int HOP = 160;
+    private static final int WINDOW = 400;
+    private static final int FFT_SIZE = 512;
+    private static final int MEL_BANDS = 24;
+    static final int CEPSTRA = 12;
+    private static final float MEL_LOW_HZ = 80f;
+    private static final float MEL_HIGH_HZ = 7600f;
+    private static final float PRE_EMPHASIS = 0.97f;
+    // 频带能量的动态范围，30dB（自然对数）
+    private static final float DYNAMIC_RANGE = (float) Math.log(1000);
+
+    // 语音段：起点前保留 100ms，结束后保留 50ms；有效语音 0.3~2 秒
+    private static final int PRE_FRAMES = 10;
+    private static final int TAIL_FRAMES = 5;
+    private static final int MIN_SEGMENT_FRAMES = 30;
+    static final int MAX_SEGMENT_FRAMES = 200;
+    static final int HANGOVER_FRAMES = 25;
+    private static final int MAX_FEATURE_FRAMES = PRE_FRAMES + MAX_SEGMENT_FRAMES + TAIL_FRAMES;
+    // 相对噪声基线的起点/语音门限（dB）
+    private static final float ONSET_DB = 8f;
+    private static final float VOICED_DB = 5f;
+
+    // DTW：两段长度比超过该值直接判为不匹配；Sakoe-Chiba 带宽占较长一段的比例
+    private static final float MAX_LENGTH_RATIO = 1.6f;
+    private static final float BAND_RATIO = 0.25f;
+    // 在合成语料（见 WakePhraseSpotterTest）上标定：唤醒词距离不超过 6.0，最接近的干扰项约 6.5
+    public static final float DEFAULT_THRESHOLD = 6.2f;
+
+    /**
+     * 处理结果
+     */
+    public enum Event {
+        NONE,
+        SEGMENT,   // 一个语音段结束，但不是唤醒词
+        DETECTED   // 检测到唤醒词
+    }
+
+    // 共享的常量表
+    private static final float[] HAMMING = new float[WINDOW];
+    private static final float[] COS_TABLE = new float[FFT_SIZE / 2];
+    private static final float[] SIN_TABLE = new float[FFT_SIZE / 2];
+    private static final int[] BIT_REVERSE = new int[FFT_SIZE];
+    private static final int[] MEL_START = new int[MEL_BANDS];
+    private static final float[][] MEL_WEIGHTS = new float[MEL_BANDS][];
+    private static final float[][] DCT = new float[CEPSTRA][MEL_BANDS];
+
+    static {
+        for (int i = 0; i < WINDOW; i++) {
+            HAMMING[i] = (float) (0.54 - 0.46 * Math.cos(2 * Math.PI * i / (WINDOW - 1)));
+        }
+        for (int i = 0; i < FFT_SIZE / 2; i++) {
+            COS_TABLE[i] = (float) Math.cos(-2 * Math.PI * i / FFT_SIZE);
+            SIN_TABLE[i] = (float) Math.sin(-2 * Math.PI * i / FFT_SIZE);
+        }
+        int bits = Integer.numberOfTrailingZeros(FFT_SIZE);
+        for (int i = 0; i < FFT_SIZE; i++) {
+            BIT_REVERSE[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        // 三角形 mel 滤波器，按 FFT 频点存储非零权重
+        double melLow = hzToMel(MEL_LOW_HZ);
+        double melHigh = hzToMel(MEL_HIGH_HZ);
+        double[] edges = new double[MEL_BANDS + 2];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = melToHz(melLow + (melHigh - melLow) * i / (MEL_BANDS + 1)) * FFT_SIZE / SAMPLE_RATE;
+        }
+        for (int b = 0; b < MEL_BANDS; b++) {
+            int start = (int) Math.ceil(edges[b]);
+            int end = (int) Math.floor(edges[b + 2]);
+            MEL_START[b] = start;
+            MEL_WEIGHTS[b] = new float[Math.max(0, end - start + 1)];
+            for (int k = start; k <= end; k++) {
+                double w = k <= edges[b + 1]
+                        ? (k - edges[b]) / (edges[b + 1] - edges[b])
+                        : (edges[b + 2] - k) / (edges[b + 2] - edges[b + 1]);
+                MEL_WEIGHTS[b][k - start] = (float) Math.max(0, w);
+            }
+        }
+        // DCT-II，去掉 c0（整体能量）
+        for (int j = 0; j < CEPSTRA; j++) {
+            for (int b = 0; b < MEL_BANDS; b++) {
+                DCT[j][b] = (float) Math.cos(Math.PI * (j + 1) * (b + 0.5) / MEL_BANDS);
+            }
+        }
+    }
+
+    private static double hzToMel(double hz) {
+        return 2595 * Math.log10(1 + hz / 700);
+    }
+
+    private static double melToHz(double mel) {
+        return 700 * (Math.pow(10, mel / 2595) - 1);
+    }
+
+    /**
+     * 一个模板或语音段的特征，按帧连续存放
+     */
+    private static final class Features {
+        final float[] values;
+        int frames;
+
+        Features(int maxFrames) {
+            values = new float[maxFrames * CEPSTRA];
+        }
+    }
+
+    private final List<Features> templates = new ArrayList<>();
+    private float threshold = DEFAULT_THRESHOLD;
+
+    // 分帧
+    private final short[] frame = new short[HOP];
+    private int frameFill = 0;
+
+    // 起点前的环形缓冲
+    private final short[] pre = new short[PRE_FRAMES * HOP];
+    private int preHead = 0;
+    private int preFrames = 0;
+
+    // 当前语音段
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_SEGMENT = 1;
+    private static final int STATE_SKIPPING = 2;
+    private int state = STATE_IDLE;
+    private final short[] segment = new short[(MAX_FEATURE_FRAMES + HANGOVER_FRAMES) * HOP + WINDOW];
+    private int segmentLength;
+    private int voicedEnd;
+    private int voicedFrames;
+    private int silentFrames;
+    private float noiseFloor = Float.NaN;
+
+    // 最近一个完成的语音段
+    private int lastSegmentLength;
+    private float lastDistance = Float.POSITIVE_INFINITY;
+
+    // 特征与 DTW 的工作缓冲
+    private final Features live = new Features(MAX_FEATURE_FRAMES);
+    private final float[] re = new float[FFT_SIZE];
+    private final float[] im = new float[FFT_SIZE];
+    private final float[] logMel = new float[MEL_BANDS];
+    private final float[] dtwPrev = new float[MAX_FEATURE_FRAMES + 1];
+    private final float[] dtwCur = new float[MAX_FEATURE_FRAMES + 1];
+
+    /**
+     * 判定阈值，越大越容易唤醒（误唤醒也越多）
+     */
+    public void setThreshold(float threshold) {
+        this.threshold = threshold;
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 录入一个模板
+     *
+     * @return 片段中没有找到语音时返回 false
+     */
+    public boolean addTemplate(short[] pcm, int length) {
+        // 用同样的分段规则截取，使模板与实时语音段的边界一致
+        WakePhraseSpotter extractor = new WakePhraseSpotter();
+        boolean found = extractor.process(pcm, 0, length) != Event.NONE;
+        if (!found) {
+            short[] silence = new short[HANGOVER_FRAMES * HOP];
+            found = extractor.process(silence, 0, silence.length) != Event.NONE;
+        }
+        if (!found) {
+            return false;
+        }
+        Features template = new Features(extractor.live.frames);
+        System.arraycopy(extractor.live.values, 0, template.values, 0, extractor.live.frames * CEPSTRA);
+        template.frames = extractor.live.frames;
+        templates.add(template);
+        return true;
+    }
+
+    public void clearTemplates() {
+        templates.clear();
+    }
+
+    public int getTemplateCount() {
+        return templates.size();
+    }
+
+    /**
+     * 重新开始（如麦克风重新打开后），噪声基线重新估计
+     */
+    public void reset() {
+        frameFill = 0;
+        preHead = 0;
+        preFrames = 0;
+        state = STATE_IDLE;
+        noiseFloor = Float.NaN;
+    }
+
+    /**
+     * 当前是否处于语音段中，调用方可据此推迟停止采集
+     */
+    public boolean isInSegment() {
+        return state != STATE_IDLE;
+    }
+
+    /**
+     * 最近一个语音段与模板的最小距离，没有模板或长度不匹配时为正无穷
+     */
+    public float getLastDistance() {
+        return lastDistance;
+    }
+
+    /**
+     * 复制最近一个语音段的音频（含起点前后的少量静音），用于录入模板
+     */
+    public short[] copyLastSegment() {
+        short[] copy = new short[lastSegmentLength];
+        System.arraycopy(segment, 0, copy, 0, lastSegmentLength);
+        return copy;
+    }
+
+    /**
+     * 输入音频，任意长度
+     *
+     * @return 本次输入中最重要的事件
+     */
+    public Event process(short[] pcm, int offset, int length) {
+        Event result = Event.NONE;
+        int end = offset + length;
+        while (offset < end) {
+            int n = Math.min(HOP - frameFill, end - offset);
+            System.arraycopy(pcm, offset, frame, frameFill, n);
+            frameFill += n;
+            offset += n;
+            if (frameFill == HOP) {
+                frameFill = 0;
+                Event event = onFrame();
+                if (event.ordinal() > result.ordinal()) {
+                    result = event;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Event onFrame() {
+        float energy = energyDb(frame);
+        if (Float.isNaN(noiseFloor)) {
+            // 以第一帧为初值；一开始就在说话时，之后的静音会让基线很快降下来
+            noiseFloor = energy;
+        }
+        switch (state) {
+            case STATE_IDLE:
+                if (energy > noiseFloor + ONSET_DB) {
+                    startSegment();
+                    return Event.NONE;
+                }
+                // 基线快速下降、缓慢上升
+                noiseFloor += (energy - noiseFloor) * (energy < noiseFloor ? 0.3f : 0.02f);
+                pushPre();
+                return Event.NONE;
+            case STATE_SEGMENT:
+                appendFrame();
+                if (energy > noiseFloor + VOICED_DB) {
+                    voicedEnd = segmentLength;
+                    voicedFrames++;
+                    silentFrames = 0;
+                } else {
+                    silentFrames++;
+                }
+                if (voicedEnd / HOP - PRE_FRAMES > MAX_SEGMENT_FRAMES) {
+                    // 太长，不是唤醒词；等待静音后再检测
+                    state = STATE_SKIPPING;
+                    silentFrames = 0;
+                    return Event.NONE;
+                }
+                if (silentFrames >= HANGOVER_FRAMES) {
+                    state = STATE_IDLE;
+                    preFrames = 0;
+                    return voicedFrames >= MIN_SEGMENT_FRAMES ? finishSegment() : Event.NONE;
+                }
+                return Event.NONE;
+            default:
+                silentFrames = energy > noiseFloor + VOICED_DB ? 0 : silentFrames + 1;
+                if (silentFrames >= HANGOVER_FRAMES) {
+                    state = STATE_IDLE;
+                    preFrames = 0;
+                }
+                return Event.NONE;
+        }
+    }
+
+    private void startSegment() {
+        state = STATE_SEGMENT;
+        // 起点前的音频按时间顺序放在段首，不足时补零
+        int missing = (PRE_FRAMES - preFrames) * HOP;
+        Arrays.fill(segment, 0, missing, (short) 0);
+        int start = (preHead - preFrames + PRE_FRAMES) % PRE_FRAMES;
+        for (int i = 0; i < preFrames; i++) {
+            int from = ((start + i) % PRE_FRAMES) * HOP;
+            System.arraycopy(pre, from, segment, missing + i * HOP, HOP);
+        }
+        segmentLength = PRE_FRAMES * HOP;
+        appendFrame();
+        voicedEnd = segmentLength;
+        voicedFrames = 1;
+        silentFrames = 0;
+    }
+
+    private void appendFrame() {
+        if (segmentLength + HOP <= segment.length) {
+            System.arraycopy(frame, 0, segment, segmentLength, HOP);
+            segmentLength += HOP;
+        }
+    }
+
+    private void pushPre() {
+        System.arraycopy(frame, 0, pre, preHead * HOP, HOP);
+        preHead = (preHead + 1) % PRE_FRAMES;
+        preFrames = Math.min(PRE_FRAMES, preFrames + 1);
+    }
+
+    private Event finishSegment() {
+        lastSegmentLength = Math.min(segmentLength, voicedEnd + TAIL_FRAMES * HOP);
+        extractFeatures(segment, PRE_FRAMES * HOP, voicedEnd, live);
+        lastDistance = Float.POSITIVE_INFINITY;
+        for (Features template : templates) {
+            lastDistance = Math.min(lastDistance, dtw(live, template));
+        }
+        return lastDistance < threshold ? Event.DETECTED : Event.SEGMENT;
+    }
+
+    private static float energyDb(short[] samples) {
+        long sum = 0;
+        for (short s : samples) {
+            sum += s * s;
+        }
+        return (float) (10 * Math.log10((double) sum / samples.length + 1));
+    }
+
+    /**
+     * 计算 MFCC（c1~c12），并减去段内均值以消除信道差异
+     */
+    private void extractFeatures(short[] pcm, int from, int to, Features out) {
+        int length = to - from;
+        int frames = length >= WINDOW ? Math.min(MAX_FEATURE_FRAMES, 1 + (length - WINDOW) / HOP) : 0;
+        out.frames = frames;
+        float[] values = out.values;
+        for (int f = 0; f < frames; f++) {
+            int start = from + f * HOP;
+            float previous = start > 0 ? pcm[start - 1] : 0;
+            for (int i = 0; i < WINDOW; i++) {
+                float sample = pcm[start + i];
+                re[i] = (sample - PRE_EMPHASIS * previous) / 32768f * HAMMING[i];
+                previous = sample;
+            }
+            Arrays.fill(re, WINDOW, FFT_SIZE, 0f);
+            Arrays.fill(im, 0f);
+            fft(re, im);
+            float peak = Float.NEGATIVE_INFINITY;
+            for (int b = 0; b < MEL_BANDS; b++) {
+                float[] weights = MEL_WEIGHTS[b];
+                int k0 = MEL_START[b];
+                float energy = 0;
+                for (int k = 0; k < weights.length; k++) {
+                    int bin = k0 + k;
+                    energy += weights[k] * (re[bin] * re[bin] + im[bin] * im[bin]);
+                }
+                logMel[b] = (float) Math.log(energy + 1e-8f);
+                peak = Math.max(peak, logMel[b]);
+            }
+            // 压缩动态范围：低于峰值 DYNAMIC_RANGE 的频带按噪声处理，减小背景噪声对频谱谷的影响
+            for (int b = 0; b < MEL_BANDS; b++) {
+                logMel[b] = Math.max(logMel[b], peak - DYNAMIC_RANGE);
+            }
+            int base = f * CEPSTRA;
+            for (int j = 0; j < CEPSTRA; j++) {
+                float c = 0;
+                float[] row = DCT[j];
+                for (int b = 0; b < MEL_BANDS; b++) {
+                    c += row[b] * logMel[b];
+                }
+                values[base + j] = c;
+            }
+        }
+        for (int j = 0; j < CEPSTRA && frames > 0; j++) {
+            float mean = 0;
+            for (int f = 0; f < frames; f++) {
+                mean += values[f * CEPSTRA + j];
+            }
+            mean /= frames;
+            for (int f = 0; f < frames; f++) {
+                values[f * CEPSTRA + j] -= mean;
+            }
+        }
+    }
+
+    /**
+     * 原位基 2 FFT
+     */
+    private static void fft(float[] re, float[] im) {
+        int n = FFT_SIZE;
+        for (int i = 0; i < n; i++) {
+            int j = BIT_REVERSE[i];
+            if (j > i) {
+                float t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >> 1;
+            int step = n / size;
+            for (int i = 0; i < n; i += size) {
+                for (int k = 0; k < half; k++) {
+                    float wr = COS_TABLE[k * step];
+                    float wi = SIN_TABLE[k * step];
+                    int a = i + k;
+                    int b = a + half;
+                    float tr = re[b] * wr - im[b] * wi;
+                    float ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+    /**
+     * 带 Sakoe-Chiba 约束的 DTW，返回按路径长度归一化的平均帧距离
+     */
+    private float dtw(Features a, Features b) {
+        int n = a.frames;
+        int m = b.frames;
+        if (n == 0 || m == 0 || Math.max(n, m) > MAX_LENGTH_RATIO * Math.min(n, m)) {
+            return Float.POSITIVE_INFINITY;
+        }
+        int band = Math.max(Math.abs(n - m), (int) Math.ceil(BAND_RATIO * Math.max(n, m)));
+        float[] prev = dtwPrev;
+        float[] cur = dtwCur;
+        Arrays.fill(prev, 0, m + 1, Float.POSITIVE_INFINITY);
+        prev[0] = 0;
+        for (int i = 1; i <= n; i++) {
+            Arrays.fill(cur, 0, m + 1, Float.POSITIVE_INFINITY);
+            // 按长度比例对齐的对角线附近
+            int center = (int) ((long) i * m / n);
+            int from = Math.max(1, center - band);
+            int to = Math.min(m, center + band);
+            for (int j = from; j <= to; j++) {
+                float best = Math.min(prev[j - 1], Math.min(prev[j], cur[j - 1]));
+                if (best != Float.POSITIVE_INFINITY) {
+                    cur[j] = best + distance(a.values, (i - 1) * CEPSTRA, b.values, (j - 1) * CEPSTRA);
+                }
+            }
+            float[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[m] / (n + m);
+    }
+
+    private static float distance(float[] a, int ai, float[] b, int bi) {
+        float sum = 0;
+        for (int k = 0; k < CEPSTRA; k++) {
+            float d = a[ai + k] - b[bi + k];
+            sum += d * d;
+        }
+        return (float) Math.sqrt(sum);
+    }
+}
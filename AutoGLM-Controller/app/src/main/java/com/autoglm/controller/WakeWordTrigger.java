@@ -0,0 +1,292 @@
+package com.autoglm.controller;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.function.Supplier;
+
+/**
+ * 免按唤醒：后台线程持续运行 {@link WakePhraseSpotter}，检测到唤醒词后回调，由调用方开始识别
+ * <p>
+ * CPU 预算的统计：采集线程每读完一块音频检查一次，满 {@link #BUDGET_WINDOW_MILLIS}（elapsedRealtime，含深度休眠）
+ * 即以本线程的 CPU 时间（currentThreadTimeMillis）除以窗口时长，得到平均占用（单核比例，见 {@link #getCpuLoad()}）。
+ * 只统计本线程的检测计算，不含音频 HAL 与系统录音服务的开销，也不含麦克风本身的功耗。
+ * 本类不持有唤醒锁，没有唤醒锁时长可统计：采集期间由音频 HAL 保持 CPU 运行，等待时只在锁上阻塞。
+ * <p>
+ * 各状态下的预算执行：
+ * <ul>
+ * <li>亮屏：麦克风持续采集、持续检测。占用超过 {@link #CPU_BUDGET} 时改为与息屏相同的轮换，
+ * 之后每个超预算窗口休眠加倍（最长 {@link #MAX_SLEEP_MILLIS}），回落到预算一半以下后逐步缩短，回到
+ * {@link #SCREEN_OFF_SLEEP_MILLIS} 时恢复持续采集。未超预算时亮屏期间麦克风一直打开。</li>
+ * <li>息屏：始终按 {@link #SCREEN_OFF_LISTEN_MILLIS} 监听、{@link #SCREEN_OFF_SLEEP_MILLIS} 休眠轮换，
+ * 休眠期间关闭麦克风；超预算时同样加长休眠。休眠时间计入统计窗口，得到的是整个轮换周期的平均占用；
+ * 设备在休眠段进入深度休眠时窗口随之延长。正在说话（处于语音段中）时推迟进入休眠。</li>
+ * <li>暂停（识别器占用麦克风）：麦克风关闭，线程阻塞，不消耗 CPU；暂停时长不计入统计窗口，
+ * 以免长时间识别稀释恢复后的占用。</li>
+ * </ul>
+ * 识别期间麦克风让给识别器：检测到唤醒词后先关闭麦克风并自动暂停，再回调 {@link Listener#onWake()}；
+ * 长按录音时调用方在按下时 {@link #pause()}，识别结束后 {@link #resume()}。回调在采集线程执行。
+ */
+public class WakeWordTrigger {
+    private static final String TAG = "WakeWordTrigger";
+    private static final String THREAD_NAME = "AutoGLM-Wake";
+
+    // 每次读取 100ms，减少线程唤醒次数
+    private static final int READ_MILLIS = 100;
+    static final long SCREEN_OFF_LISTEN_MILLIS = 2000;
+    static final long SCREEN_OFF_SLEEP_MILLIS = 4000;
+    static final long MAX_SLEEP_MILLIS = 30000;
+    // 平均 CPU 占用预算（单核比例）与统计窗口
+    static final float CPU_BUDGET = 0.02f;
+    static final long BUDGET_WINDOW_MILLIS = 10000;
+    // 麦克风打开失败后的重试间隔
+    private static final long RETRY_MILLIS = 5000;
+
+    public interface Listener {
+        /**
+         * 检测到唤醒词，此时已暂停监听
+         */
+        void onWake();
+
+        /**
+         * 录入模板时捕获到一个语音段
+         */
+        void onEnrolled(short[] pcm);
+    }
+
+    private final Supplier<AudioSource> sourceFactory;
+    private final WakePhraseSpotter spotter;
+    private final Listener listener;
+
+    private final Object lock = new Object();
+    // 当前的采集线程；停止后置空，旧线程发现自己不再是当前线程即退出
+    private Thread thread;
+    private boolean paused = false;
+    private boolean screenOn = true;
+    private boolean enrolling = false;
+    // 轮换监听：超过预算时即使亮屏也轮换
+    private boolean throttled = false;
+    private long sleepMillis = SCREEN_OFF_SLEEP_MILLIS;
+    private volatile float cpuLoad;
+
+    public WakeWordTrigger(Supplier<AudioSource> sourceFactory, WakePhraseSpotter spotter, Listener listener) {
+        this.sourceFactory = sourceFactory;
+        this.spotter = spotter;
+        this.listener = listener;
+    }
+
+    public WakePhraseSpotter getSpotter() {
+        return spotter;
+    }
+
+    /**
+     * 启动后台线程
+     */
+    public void start() {
+        synchronized (lock) {
+            if (thread != null) {
+                return;
+            }
+            thread = new Thread(this::run, THREAD_NAME);
+            thread.start();
+        }
+    }
+
+    /**
+     * 停止后台线程并关闭麦克风
+     */
+    public void stop() {
+        synchronized (lock) {
+            thread = null;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 暂停监听并关闭麦克风（如识别器需要使用麦克风）
+     */
+    public void pause() {
+        synchronized (lock) {
+            paused = true;
+            lock.notifyAll();
+        }
+    }
+
+    public void resume() {
+        synchronized (lock) {
+            paused = false;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 屏幕状态变化：息屏后轮换监听
+     */
+    public void setScreenOn(boolean screenOn) {
+        synchronized (lock) {
+            this.screenOn = screenOn;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 下一个语音段作为模板录入，通过 {@link Listener#onEnrolled(short[])} 返回，不触发唤醒
+     */
+    public void enrollNext() {
+        synchronized (lock) {
+            enrolling = true;
+        }
+    }
+
+    /**
+     * 最近一个统计窗口的平均 CPU 占用（单核比例）
+     */
+    public float getCpuLoad() {
+        return cpuLoad;
+    }
+
+    private void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        int sampleRate = WakePhraseSpotter.SAMPLE_RATE;
+        byte[] buffer = new byte[sampleRate * 2 * READ_MILLIS / 1000];
+        short[] samples = new short[buffer.length / 2];
+        AudioSource source = null;
+        long listenUntil = Long.MAX_VALUE;
+        long windowStart = SystemClock.elapsedRealtime();
+        long windowCpu = SystemClock.currentThreadTimeMillis();
+
+        while (true) {
+            long now = SystemClock.elapsedRealtime();
+            long waitMillis = 0;
+            boolean enroll;
+            synchronized (lock) {
+                if (!isCurrentLocked()) {
+                    break;
+                }
+                boolean cycling = !screenOn || throttled;
+                if (!cycling) {
+                    listenUntil = Long.MAX_VALUE;
+                } else if (listenUntil == Long.MAX_VALUE) {
+                    listenUntil = now + SCREEN_OFF_LISTEN_MILLIS;
+                }
+                if (paused) {
+                    waitMillis = -1;
+                } else if (now >= listenUntil && !spotter.isInSegment()) {
+                    waitMillis = sleepMillis;
+                }
+                enroll = enrolling;
+            }
+            if (waitMillis != 0) {
+                // 暂停或休眠：关闭麦克风后等待
+                source = closeSource(source);
+                synchronized (lock) {
+                    if (isCurrentLocked()) {
+                        try {
+                            if (waitMillis < 0) {
+                                lock.wait();
+                            } else {
+                                lock.wait(waitMillis);
+                            }
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                }
+                listenUntil = Long.MAX_VALUE;
+                if (waitMillis < 0) {
+                    // 暂停期间不计入统计窗口
+                    windowStart = SystemClock.elapsedRealtime();
+                    windowCpu = SystemClock.currentThreadTimeMillis();
+                }
+                continue;
+            }
+
+            if (source == null) {
+                source = sourceFactory.get();
+                if (!source.start()) {
+                    Log.w(TAG, "麦克风不可用，稍后重试");
+                    source = closeSource(source);
+                    sleepLocked(RETRY_MILLIS);
+                    continue;
+                }
+                spotter.reset();
+            }
+            int n = source.read(buffer, 0, buffer.length);
+            if (n < 0) {
+                source = closeSource(source);
+                sleepLocked(RETRY_MILLIS);
+                continue;
+            }
+            int count = PcmFiles.toSamples(buffer, 0, n, samples);
+            WakePhraseSpotter.Event event = spotter.process(samples, 0, count);
+            if (enroll && event != WakePhraseSpotter.Event.NONE) {
+                synchronized (lock) {
+                    enrolling = false;
+                }
+                listener.onEnrolled(spotter.copyLastSegment());
+            } else if (event == WakePhraseSpotter.Event.DETECTED) {
+                Log.d(TAG, "检测到唤醒词，距离 " + spotter.getLastDistance());
+                synchronized (lock) {
+                    paused = true;
+                }
+                // 先释放麦克风，再通知调用方开始识别
+                source = closeSource(source);
+                listener.onWake();
+            }
+
+            now = SystemClock.elapsedRealtime();
+            if (now - windowStart >= BUDGET_WINDOW_MILLIS) {
+                long cpu = SystemClock.currentThreadTimeMillis();
+                onBudgetWindow((float) (cpu - windowCpu) / (now - windowStart));
+                windowStart = now;
+                windowCpu = cpu;
+            }
+        }
+        closeSource(source);
+    }
+
+    /**
+     * 按上一窗口的 CPU 占用调整轮换
+     */
+    private void onBudgetWindow(float load) {
+        cpuLoad = load;
+        synchronized (lock) {
+            if (load > CPU_BUDGET) {
+                if (throttled) {
+                    sleepMillis = Math.min(MAX_SLEEP_MILLIS, sleepMillis * 2);
+                }
+                throttled = true;
+                Log.w(TAG, String.format("CPU 占用 %.2f%% 超出预算，休眠 %dms", load * 100, sleepMillis));
+            } else if (throttled && load < CPU_BUDGET / 2) {
+                sleepMillis = Math.max(SCREEN_OFF_SLEEP_MILLIS, sleepMillis / 2);
+                if (sleepMillis == SCREEN_OFF_SLEEP_MILLIS) {
+                    throttled = false;
+                }
+            }
+        }
+    }
+
+    private void sleepLocked(long millis) {
+        synchronized (lock) {
+            if (isCurrentLocked()) {
+                try {
+                    lock.wait(millis);
+                } catch (InterruptedException ignored) {
+                    thread = null;
+                }
+            }
+        }
+    }
+
+    private boolean isCurrentLocked() {
+        return thread == Thread.currentThread();
+    }
+
+    private static AudioSource closeSource(AudioSource source) {
+        if (source != null) {
+            source.stop();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,134 @@
+package com.autoglm.controller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ActivitySchedulerTest {
+    private static final long HOUR = ActivityScheduler.HOUR_MILLIS;
+
+    private long now = 0;
+    private final List<String> events = new ArrayList<>();
+    private Runnable scheduled;
+    private long scheduledAt;
+
+    private final ActivityScheduler scheduler = new ActivityScheduler(new CommandDispatcher.Scheduler() {
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            scheduled = task;
+            scheduledAt = now + delayMillis;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            scheduled = null;
+        }
+    }, () -> now);
+
+    {
+        scheduler.setListener((level, previous) -> events.add(level.name()));
+    }
+
+    private void status(String state) {
+        scheduler.onAgentStatus(AgentStatus.parse("STATUS: " + state));
+    }
+
+    private void advanceTo(long time) {
+        now = time;
+        if (scheduled != null && scheduledAt <= now) {
+            Runnable task = scheduled;
+            scheduled = null;
+            task.run();
+        }
+    }
+
+    @Test
+    public void armedOnlyWhileScreenOnAndOverlayVisible() {
+        assertEquals(ActivityScheduler.Level.IDLE, scheduler.getLevel());
+        scheduler.setOverlayVisible(true);
+        assertEquals(ActivityScheduler.Level.ARMED, scheduler.getLevel());
+
+        scheduler.setScreenOn(false);
+        assertEquals(ActivityScheduler.Level.IDLE, scheduler.getLevel());
+        scheduler.setScreenOn(true);
+        assertEquals(ActivityScheduler.Level.ARMED, scheduler.getLevel());
+
+        scheduler.setOverlayVisible(false);
+        assertEquals(ActivityScheduler.Level.IDLE, scheduler.getLevel());
+        assertNull("空闲时不安排任何检查", scheduled);
+        assertEquals("[ARMED, IDLE, ARMED, IDLE]", events.toString());
+    }
+
+    @Test
+    public void goesIdleAfterLongInactivityAndRearmsOnTouch() {
+        scheduler.setOverlayVisible(true);
+        advanceTo(ActivityScheduler.ARMED_TIMEOUT_MILLIS - 1);
+        assertEquals(ActivityScheduler.Level.ARMED, scheduler.getLevel());
+        advanceTo(ActivityScheduler.ARMED_TIMEOUT_MILLIS);
+        assertEquals(ActivityScheduler.Level.IDLE, scheduler.getLevel());
+        assertNull(scheduled);
+
+        scheduler.onUserActivity();
+        assertEquals(ActivityScheduler.Level.ARMED, scheduler.getLevel());
+        assertEquals(now + ActivityScheduler.ARMED_TIMEOUT_MILLIS, scheduledAt);
+    }
+
+    @Test
+    public void inFlightUntilAgentFinishesEvenWithScreenOff() {
+        scheduler.setOverlayVisible(true);
+        scheduler.onCommandDispatched();
+        assertEquals(ActivityScheduler.Level.IN_FLIGHT, scheduler.getLevel());
+
+        scheduler.setScreenOn(false);
+        assertEquals(ActivityScheduler.Level.IN_FLIGHT, scheduler.getLevel());
+        status(AgentStatus.PROCESSING);
+        assertEquals(ActivityScheduler.Level.IN_FLIGHT, scheduler.getLevel());
+
+        status(AgentStatus.SUCCESS);
+        assertEquals(ActivityScheduler.Level.IDLE, scheduler.getLevel());
+        assertEquals("[ARMED, IN_FLIGHT, IDLE]", events.toString());
+    }
+
+    @Test
+    public void inFlightTimesOutWithoutAgentUpdates() {
+        scheduler.setOverlayVisible(true);
+        scheduler.onCommandDispatched();
+        advanceTo(ActivityScheduler.IN_FLIGHT_TIMEOUT_MILLIS / 2);
+        status(AgentStatus.PROCESSING);
+        // 状态更新延长了执行中状态，到期检查时重新安排
+        advanceTo(ActivityScheduler.IN_FLIGHT_TIMEOUT_MILLIS);
+        assertEquals(ActivityScheduler.Level.IN_FLIGHT, scheduler.getLevel());
+
+        advanceTo(ActivityScheduler.IN_FLIGHT_TIMEOUT_MILLIS * 3 / 2);
+        assertEquals(ActivityScheduler.Level.ARMED, scheduler.getLevel());
+    }
+
+    @Test
+    public void countsWakeupsPerHour() {
+        for (int i = 0; i < 5; i++) {
+            scheduler.recordWakeup();
+        }
+        now = HOUR + 10;
+        assertEquals(5, scheduler.getWakeupsLastHour());
+        scheduler.recordWakeup();
+        scheduler.recordWakeup();
+
+        // 跳过一个没有唤醒的小时
+        now = 3 * HOUR;
+        int[] hourly = scheduler.getHourlyWakeups();
+        assertEquals(ActivityScheduler.HOURS_KEPT, hourly.length);
+        assertEquals(5, hourly[hourly.length - 3]);
+        assertEquals(2, hourly[hourly.length - 2]);
+        assertEquals(0, hourly[hourly.length - 1]);
+        assertEquals(0, scheduler.getWakeupsLastHour());
+
+        // 超过保留时长的统计被清零
+        now = 40 * HOUR;
+        for (int count : scheduler.getHourlyWakeups()) {
+            assertEquals(0, count);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.autoglm.controller;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 自适应尾端点的离线评估：在音量轨迹上比较提前结束的时间与固定 VAD_EOS
+ */
+public class AdaptiveEndpointerTest {
+    // 与 IflytekSpeechEngine 中的 VAD_EOS 一致
+    private static final long VAD_EOS = 1000;
+    private static final float[] SENSITIVITIES = {0f, 0.25f, 0.5f, 0.75f, 1f};
+
+    /**
+     * 一条音量轨迹
+     */
+    private static final class Trace {
+        long speechEnd;
+        final List<long[]> frames = new ArrayList<>();
+    }
+
+    /**
+     * 一种灵敏度下的评估结果
+     */
+    private static final class Summary {
+        int premature;
+        int missed;
+        long totalSaved;
+    }
+
+    @Test
+    public void defaultSensitivityEndsEarlyWithoutCuttingSpeech() throws IOException {
+        List<Trace> traces = loadTraces();
+        assertTrue(traces.size() >= 10);
+
+        Summary summary = evaluate(traces, AdaptiveEndpointer.DEFAULT_SENSITIVITY);
+        assertEquals("提前截断了语音", 0, summary.premature);
+        assertEquals("未能判定结束", 0, summary.missed);
+        assertTrue("平均节省 " + summary.totalSaved / traces.size() + "ms",
+                summary.totalSaved / traces.size() >= 300);
+    }
+
+    @Test
+    public void higherSensitivityEndsEarlier() throws IOException {
+        List<Trace> traces = loadTraces();
+        long previous = -1;
+        for (float sensitivity : SENSITIVITIES) {
+            Summary summary = evaluate(traces, sensitivity);
+            long saved = summary.totalSaved / traces.size();
+            assertTrue("灵敏度 " + sensitivity + " 平均节省 " + saved + "ms，低于 " + previous + "ms", saved >= previous);
+            if (sensitivity <= AdaptiveEndpointer.DEFAULT_SENSITIVITY) {
+                assertEquals("灵敏度 " + sensitivity + " 提前截断了语音", 0, summary.premature);
+            }
+            previous = saved;
+        }
+    }
+
+    @Test
+    public void endpointIsReportedOnceAndResetStartsOver() {
+        AdaptiveEndpointer endpointer = new AdaptiveEndpointer();
+        int endpoints = 0;
+        long t = 0;
+        for (int i = 0; i < 10; i++, t += 50) {
+            endpointer.onVolume(2, t);
+        }
+        for (int i = 0; i < 10; i++, t += 50) {
+            endpointer.onVolume(18, t);
+        }
+        for (int i = 0; i < 40; i++, t += 50) {
+            if (endpointer.onVolume(2, t)) {
+                endpoints++;
+            }
+        }
+        assertEquals(1, endpoints);
+        assertTrue(endpointer.isEndpointed());
+
+        endpointer.reset();
+        assertFalse(endpointer.isEndpointed());
+        // 只有噪声、没有语音时不判定结束，交给固定 VAD 处理
+        for (int i = 0; i < 100; i++, t += 50) {
+            assertFalse(endpointer.onVolume(2, t));
+        }
+    }
+
+    private static Summary evaluate(List<Trace> traces, float sensitivity) {
+        Summary summary = new Summary();
+        AdaptiveEndpointer endpointer = new AdaptiveEndpointer();
+        endpointer.setSensitivity(sensitivity);
+        for (Trace trace : traces) {
+            endpointer.reset();
+            long detected = -1;
+            for (long[] frame : trace.frames) {
+                if (endpointer.onVolume((int) frame[1], frame[0])) {
+                    detected = frame[0];
+                    break;
+                }
+            }
+            long fixed = trace.speechEnd + VAD_EOS;
+            if (detected < 0) {
+                summary.missed++;
+            } else if (detected < trace.speechEnd) {
+                summary.premature++;
+            } else {
+                summary.totalSaved += Math.max(0, fixed - detected);
+            }
+        }
+        return summary;
+    }
+
+    private static List<Trace> loadTraces() throws IOException {
+        List<Trace> traces = new ArrayList<>();
+        for (String name : readLines("endpoint/index.txt")) {
+            Trace trace = new Trace();
+            for (String line : readLines("endpoint/" + name + ".txt")) {
+                int comma = line.indexOf(',');
+                trace.frames.add(new long[]{
+                        Long.parseLong(line.substring(0, comma).trim()),
+                        Long.parseLong(line.substring(comma + 1).trim())});
+            }
+            trace.speechEnd = readSpeechEnd("endpoint/" + name + ".txt");
+            traces.add(trace);
+        }
+        return traces;
+    }
+
+    private static long readSpeechEnd(String resource) throws IOException {
+        BufferedReader reader = open(resource);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("# speech_end=")) {
+                    return Long.parseLong(line.substring("# speech_end=".length()).trim());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        throw new IOException("缺少 speech_end: " + resource);
+    }
+
+    /**
+     * 读取资源文件中非空、非注释的行
+     */
+    private static List<String> readLines(String resource) throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = open(resource);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                    lines.add(line.trim());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private static BufferedReader open(String resource) throws IOException {
+        InputStream in = AdaptiveEndpointerTest.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("缺少资源: " + resource);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,167 @@
+package com.autoglm.controller;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class AudioPreRollTest {
+    private static final int SAMPLE_RATE = 8000;
+    private static final int PRE_ROLL_MILLIS = 500;
+    // 20ms 一块
+    private static final int CHUNK = SAMPLE_RATE * 2 * 20 / 1000;
+    private static final int RING = SAMPLE_RATE * 2 * PRE_ROLL_MILLIS / 1000;
+
+    /**
+     * 从 PCM 数据读取，每块需测试放行，便于控制采集进度
+     */
+    private static class GatedSource implements AudioSource {
+        private final PcmStreamAudioSource delegate;
+        private final Semaphore permits = new Semaphore(0);
+        private final AtomicInteger reads = new AtomicInteger();
+        private final CountDownLatch stopped = new CountDownLatch(1);
+        private int fed = 0;
+
+        GatedSource(byte[] pcm) {
+            delegate = new PcmStreamAudioSource(new ByteArrayInputStream(pcm), SAMPLE_RATE, false);
+        }
+
+        @Override
+        public boolean start() {
+            return delegate.start();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            reads.incrementAndGet();
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                return -1;
+            }
+            return delegate.read(buffer, offset, length);
+        }
+
+        @Override
+        public void stop() {
+            delegate.stop();
+            stopped.countDown();
+        }
+
+        @Override
+        public int getSampleRate() {
+            return SAMPLE_RATE;
+        }
+
+        /**
+         * 放行 n 块并等待采集线程处理完、阻塞在下一次读取上
+         */
+        void feed(int n) throws InterruptedException {
+            fed += n;
+            int target = fed + 1;
+            permits.release(n);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (reads.get() < target && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(target, reads.get());
+        }
+    }
+
+    private static byte[] pcm(int bytes) {
+        byte[] data = new byte[bytes];
+        for (int i = 0; i < bytes; i++) {
+            data[i] = (byte) (i * 31 + i / 256);
+        }
+        return data;
+    }
+
+    private static AudioPreRoll preRoll(GatedSource source, AtomicLong clock) {
+        return new AudioPreRoll(() -> source, SAMPLE_RATE, PRE_ROLL_MILLIS,
+                task -> new Thread(task).start(), clock::get);
+    }
+
+    @Test
+    public void ringKeepsMostRecentBytesInOrder() {
+        PcmRingBuffer ring = new PcmRingBuffer(8);
+        ring.write(new byte[]{0, 1, 2, 3, 4, 5}, 0, 6);
+        ring.write(new byte[]{6, 7, 8, 9, 10, 11}, 0, 6);
+        assertEquals(8, ring.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(8, ring.drainTo(out::write));
+        assertArrayEquals(new byte[]{4, 5, 6, 7, 8, 9, 10, 11}, out.toByteArray());
+        assertEquals(0, ring.size());
+
+        ring.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, 0, 10);
+        out.reset();
+        ring.drainTo(out::write);
+        assertArrayEquals(new byte[]{3, 4, 5, 6, 7, 8, 9, 10}, out.toByteArray());
+    }
+
+    @Test
+    public void streamsPreRollThenLiveAudioWithoutGaps() throws Exception {
+        byte[] data = pcm(CHUNK * 150);
+        GatedSource source = new GatedSource(data);
+        AudioPreRoll preRoll = preRoll(source, new AtomicLong());
+
+        preRoll.arm();
+        // 识别开始前采集 2 秒，远超预缓冲长度；采集线程此时阻塞在第 101 次读取
+        source.feed(100);
+        assertTrue(preRoll.isCapturing());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CountDownLatch ended = new CountDownLatch(1);
+        assertTrue(preRoll.startStreaming(new AudioPreRoll.Sink() {
+            @Override
+            public void onAudio(byte[] chunk, int offset, int length) {
+                out.write(chunk, offset, length);
+            }
+
+            @Override
+            public void onEnd() {
+                ended.countDown();
+            }
+        }));
+        source.permits.release(Integer.MAX_VALUE / 2);
+        assertTrue(ended.await(5, TimeUnit.SECONDS));
+
+        // 第 101 块读取时接收方尚未设置，进入缓冲后随预录音送出
+        int from = 101 * CHUNK - RING;
+        assertEquals(RING, preRoll.getLastPreRollBytes());
+        assertArrayEquals(Arrays.copyOfRange(data, from, data.length), out.toByteArray());
+        assertFalse(preRoll.isCapturing());
+    }
+
+    @Test
+    public void stopsCapturingWhenNotStreamedBeforeTimeout() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        GatedSource source = new GatedSource(pcm(CHUNK * 10));
+        AudioPreRoll preRoll = preRoll(source, clock);
+
+        preRoll.arm();
+        source.feed(1);
+        clock.set(AudioPreRoll.ARM_TIMEOUT_MILLIS + 1);
+        source.permits.release();
+
+        assertTrue(source.stopped.await(5, TimeUnit.SECONDS));
+        assertFalse(preRoll.isCapturing());
+        assertFalse(preRoll.startStreaming(new AudioPreRoll.Sink() {
+            @Override
+            public void onAudio(byte[] data, int offset, int length) {
+                fail("超时后不应送出音频");
+            }
+
+            @Override
+            public void onEnd() {
+            }
+        }));
+    }
+}
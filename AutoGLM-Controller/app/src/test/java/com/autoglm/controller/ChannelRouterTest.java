@@ -0,0 +1,126 @@
+package com.autoglm.controller;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ChannelRouterTest {
+    private static AgentChannel channel(String name) {
+        return new AgentChannel(name, new CommandFiles(new File("channels", name)), new CommandTransport() {
+            @Override
+            public String getName() {
+                return "fake";
+            }
+
+            @Override
+            public boolean sendCommand(String command) {
+                return true;
+            }
+
+            @Override
+            public String readStatus() {
+                return null;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    private final AgentChannel main = channel(ChannelRouter.MAIN_CHANNEL);
+    private final AgentChannel w2 = channel("w2");
+    private final AgentChannel tablet = channel("平板");
+    private final ChannelRouter router = new ChannelRouter(Arrays.asList(main, w2, tablet));
+
+    @Test
+    public void spreadsCommandsToLeastLoadedChannel() {
+        assertSame(main, router.route("打开微信").channel);
+        assertSame(w2, router.route("打开设置").channel);
+        assertSame(tablet, router.route("返回桌面").channel);
+        assertEquals(3, router.getInFlight());
+
+        // w2 先完成，下一条发往 w2
+        router.onStatus(w2, "STATUS: PROCESSING\nTASK: 打开设置");
+        router.onStatus(w2, "STATUS: SUCCESS\nTASK: 打开设置");
+        assertSame(w2, router.route("查看天气").channel);
+
+        // 同一结束状态重复读到只计一次；IDLE 清零
+        router.onStatus(main, "STATUS: SUCCESS\nID: a-1\nTASK: 打开微信");
+        router.onStatus(main, "STATUS: SUCCESS\nID: a-1\nTASK: 打开微信\nRESULT: 完成");
+        assertEquals(0, main.inFlight);
+        router.onStatus(tablet, "STATUS: IDLE");
+        assertEquals(0, tablet.inFlight);
+        assertEquals(1, router.getInFlight());
+    }
+
+    @Test
+    public void routesByChannelNamePrefix() {
+        ChannelRouter.Route route = router.route("平板，打开微信");
+        assertSame(tablet, route.channel);
+        assertEquals("打开微信", route.command);
+
+        route = router.route("@W2 打开设置");
+        assertSame(w2, route.channel);
+        assertEquals("打开设置", route.command);
+
+        // 不是通道名的开头原样发送
+        route = router.route("好的，打开相机");
+        assertSame(main, route.channel);
+        assertEquals("好的，打开相机", route.command);
+    }
+
+    @Test
+    public void skipsUnavailableChannelsAndMergesStatus() {
+        router.onStatus(main, "未检测到状态文件");
+        router.onStatus(w2, "STATUS: IDLE");
+        assertSame(w2, router.route("打开微信").channel);
+        assertSame(tablet, router.route("打开设置").channel);
+        assertSame("负载相同时轮流分配", w2, router.route("返回桌面").channel);
+
+        AgentStatus latest = AgentStatus.parse("STATUS: SUCCESS");
+        assertEquals(AgentStatus.PROCESSING, router.getDispatchStatus(latest).getState());
+        assertEquals(AgentStatus.PROCESSING, router.getActivityStatus(latest).getState());
+        router.onStatus(tablet, "STATUS: SUCCESS");
+        assertEquals("有空闲通道即可继续发送", AgentStatus.IDLE, router.getDispatchStatus(latest).getState());
+        assertEquals(AgentStatus.PROCESSING, router.getActivityStatus(latest).getState());
+        assertEquals("main: 未连接  |  w2: IDLE（进行中 2）  |  平板: SUCCESS", router.summarize());
+
+        router.onSendFailed(w2);
+        router.onStatus(w2, "STATUS: SUCCESS");
+        assertEquals(AgentStatus.IDLE, router.getActivityStatus(latest).getState());
+    }
+
+    @Test
+    public void repeatedPlainCommandIsReportedAndNotCounted() {
+        ChannelRouter single = new ChannelRouter(Arrays.asList(main));
+        single.route("打开微信");
+        assertFalse(single.onSent(main, "打开微信", true));
+        // 旧版 agent 忽略与上一条相同的纯文本命令，不会有状态更新
+        single.route("打开微信 ");
+        assertTrue(single.onSent(main, "打开微信 ", true));
+        assertEquals(1, single.getInFlight());
+        // 带 ID 的命令可以重复
+        single.route("打开微信");
+        assertFalse(single.onSent(main, "打开微信", false));
+        single.route("返回桌面");
+        assertFalse(single.onSent(main, "返回桌面", true));
+        assertEquals(3, single.getInFlight());
+    }
+
+    @Test
+    public void singleChannelPassesStatusThrough() {
+        ChannelRouter single = new ChannelRouter(Arrays.asList(main));
+        ChannelRouter.Route route = single.route("平板，打开微信");
+        assertSame(main, route.channel);
+        assertEquals("平板，打开微信", route.command);
+        AgentStatus latest = AgentStatus.parse("STATUS: SUCCESS");
+        assertSame(latest, single.getDispatchStatus(latest));
+        assertSame(latest, single.getActivityStatus(latest));
+        single.onStatus(main, "STATUS: PROCESSING\nTASK: 打开微信");
+        assertEquals("STATUS: PROCESSING\nTASK: 打开微信", single.summarize());
+    }
+}
@@ -0,0 +1,195 @@
+package com.autoglm.controller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CommandDispatcherTest {
+    private long now = 0;
+    private final List<String> events = new ArrayList<>();
+    private Runnable scheduled;
+    private long scheduledAt;
+    private CommandDispatcher.Command lastSent;
+
+    private final CommandDispatcher dispatcher = new CommandDispatcher(new CommandDispatcher.Listener() {
+        @Override
+        public void onSend(CommandDispatcher.Command command) {
+            lastSent = command;
+            events.add("send:" + command.getText());
+        }
+
+        @Override
+        public void onQueued(CommandDispatcher.Command command, int queueSize) {
+            events.add("queued:" + command.getText());
+        }
+
+        @Override
+        public void onDropped(CommandDispatcher.Command command) {
+            events.add("dropped:" + command.getText());
+        }
+    }, new CommandDispatcher.Scheduler() {
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            scheduled = task;
+            scheduledAt = now + delayMillis;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            scheduled = null;
+        }
+    }, () -> now, 2);
+
+    private void status(String state) {
+        dispatcher.onAgentStatus(AgentStatus.parse("STATUS: " + state));
+    }
+
+    private void advanceTo(long time) {
+        now = time;
+        if (scheduled != null && scheduledAt <= now) {
+            Runnable task = scheduled;
+            scheduled = null;
+            task.run();
+        }
+    }
+
+    @Test
+    public void passesThroughUntilAgentStatusIsKnown() {
+        dispatcher.submit("打开微信", 0);
+        dispatcher.submit("打开设置", 0);
+        assertEquals(Arrays.asList("send:打开微信", "send:打开设置"), events);
+    }
+
+    @Test
+    public void failedSendDoesNotLeaveAgentBusy() {
+        status(AgentStatus.IDLE);
+        dispatcher.submit("打开微信", 0);
+        CommandDispatcher.Command failed = lastSent;
+        dispatcher.submit("打开设置", 0);
+        assertEquals(Arrays.asList("send:打开微信", "queued:打开设置"), events);
+
+        // 没有发出的命令不会有 agent 状态，下一条直接发送
+        events.clear();
+        dispatcher.onSendFailed(failed);
+        assertEquals(Arrays.asList("send:打开设置"), events);
+        assertFalse(dispatcher.isIdle());
+
+        // agent 确实在忙时，紧急命令发送失败不改变忙碌状态
+        status(AgentStatus.PROCESSING);
+        dispatcher.submit("返回", 0);
+        dispatcher.onSendFailed(lastSent);
+        assertFalse(dispatcher.isIdle());
+    }
+
+    @Test
+    public void queuesWhileBusyAndSendsWhenIdle() {
+        status(AgentStatus.IDLE);
+        dispatcher.submit("打开微信", 0);
+        dispatcher.submit("打开设置", 0);
+        status(AgentStatus.PROCESSING);
+        dispatcher.submit("打开相机", 0);
+        assertEquals(Arrays.asList("send:打开微信", "queued:打开设置", "queued:打开相机"), events);
+
+        events.clear();
+        status(AgentStatus.SUCCESS);
+        assertEquals(Arrays.asList("send:打开设置"), events);
+        // 发出后在 agent 报告结果前视为忙
+        status(AgentStatus.IDLE);
+        assertEquals(Arrays.asList("send:打开设置", "send:打开相机"), events);
+        assertEquals(0, dispatcher.size());
+    }
+
+    @Test
+    public void boundedQueueDropsOldest() {
+        status(AgentStatus.PROCESSING);
+        dispatcher.submit("一", 0);
+        dispatcher.submit("二", 0);
+        dispatcher.submit("三", 0);
+        assertEquals(Arrays.asList("queued:一", "queued:二", "dropped:一", "queued:三"), events);
+        assertEquals(2, dispatcher.size());
+    }
+
+    @Test
+    public void urgentCommandsJumpTheLine() {
+        status(AgentStatus.PROCESSING);
+        dispatcher.submit("打开微信", 0);
+        dispatcher.submit("返回。", 0);
+        assertEquals(Arrays.asList("queued:打开微信", "send:返回。"), events);
+        assertEquals(1, dispatcher.size());
+
+        // 停止类命令同时清空排队
+        events.clear();
+        dispatcher.submit("Stop", 0);
+        assertEquals(Arrays.asList("dropped:打开微信", "send:Stop"), events);
+        assertEquals(0, dispatcher.size());
+
+        assertSame(CommandDispatcher.Priority.NORMAL, CommandDispatcher.classify("返回桌面后打开微信"));
+    }
+
+    @Test
+    public void mergesCommandsWithinWindow() {
+        dispatcher.setMergeWindowMillis(1000);
+        status(AgentStatus.IDLE);
+        dispatcher.submit("打开微信", 1);
+        advanceTo(600);
+        dispatcher.submit("找到张三", 2);
+        advanceTo(1200);
+        assertTrue(events.isEmpty());
+        advanceTo(1600);
+        assertEquals(Arrays.asList("send:打开微信" + CommandDispatcher.MERGE_SEPARATOR + "找到张三"), events);
+
+        // 窗口之外的命令不合并
+        events.clear();
+        status(AgentStatus.SUCCESS);
+        dispatcher.submit("发消息", 3);
+        advanceTo(2700);
+        assertEquals(Arrays.asList("send:发消息"), events);
+    }
+
+    @Test
+    public void mergedCommandKeepsAllTraceIds() {
+        List<Integer> traceIds = new ArrayList<>();
+        CommandDispatcher merging = new CommandDispatcher(new CommandDispatcher.Listener() {
+            @Override
+            public void onSend(CommandDispatcher.Command command) {
+                traceIds.addAll(command.getTraceIds());
+            }
+
+            @Override
+            public void onQueued(CommandDispatcher.Command command, int queueSize) {
+            }
+
+            @Override
+            public void onDropped(CommandDispatcher.Command command) {
+            }
+        }, new CommandDispatcher.Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMillis) {
+                scheduled = task;
+                scheduledAt = now + delayMillis;
+            }
+
+            @Override
+            public void removeCallbacks(Runnable task) {
+                scheduled = null;
+            }
+        }, () -> now, 2);
+        merging.setMergeWindowMillis(1000);
+        merging.submit("打开微信", 7);
+        advanceTo(900);
+        merging.submit("找到张三", 0);
+        advanceTo(1800);
+        merging.submit("发消息", 9);
+        advanceTo(2700);
+        merging.submit("说你好", 0);
+        // 连续合并的等待不超过三个窗口
+        advanceTo(2999);
+        assertTrue(traceIds.isEmpty());
+        advanceTo(3000);
+        assertEquals(Arrays.asList(7, 9), traceIds);
+    }
+}
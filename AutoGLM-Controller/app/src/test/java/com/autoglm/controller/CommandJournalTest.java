@@ -0,0 +1,94 @@
+package com.autoglm.controller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * 命令日志的排队、恢复与压缩测试
+ */
+public class CommandJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void burstIsQueuedInOrder() throws Exception {
+        CommandJournal journal = new CommandJournal(folder.getRoot());
+        journal.append("打开微信");
+        journal.append("返回桌面");
+
+        CommandJournal.Record first = journal.next("agent");
+        assertEquals("打开微信", first.command);
+        journal.commit("agent", first.seq);
+
+        CommandJournal.Record second = journal.next("agent");
+        assertEquals("返回桌面", second.command);
+        journal.commit("agent", second.seq);
+
+        assertNull(journal.next("agent"));
+        journal.close();
+    }
+
+    @Test
+    public void reopenKeepsPendingCommandsAndOffsets() throws Exception {
+        CommandJournal journal = new CommandJournal(folder.getRoot());
+        long seq = journal.append("a");
+        journal.append("b");
+        journal.commit("agent", seq);
+        journal.close();
+
+        CommandJournal reopened = new CommandJournal(folder.getRoot());
+        assertEquals(1, reopened.pendingCount("agent"));
+        assertEquals("b", reopened.next("agent").command);
+        assertEquals(seq + 2, reopened.append("c"));
+        reopened.close();
+    }
+
+    @Test
+    public void tornTailIsDiscardedOnRecovery() throws Exception {
+        CommandJournal journal = new CommandJournal(folder.getRoot());
+        journal.append("完整的命令");
+        journal.append("写了一半的命令");
+        journal.close();
+
+        File file = new File(folder.getRoot(), CommandJournal.JOURNAL_FILE_NAME);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 5);
+        raf.close();
+
+        CommandJournal recovered = new CommandJournal(folder.getRoot());
+        assertEquals(1, recovered.size());
+        assertEquals("完整的命令", recovered.next("agent").command);
+
+        // 截断后可以继续正常追加
+        recovered.append("新命令");
+        recovered.close();
+        CommandJournal again = new CommandJournal(folder.getRoot());
+        assertEquals(2, again.size());
+        again.close();
+    }
+
+    @Test
+    public void consumedRecordsAreCompacted() throws Exception {
+        CommandJournal journal = new CommandJournal(folder.getRoot());
+        long last = 0;
+        for (int i = 0; i < 40; i++) {
+            last = journal.append("命令" + i);
+        }
+        journal.commit("agent", last - 1);
+
+        assertEquals(1, journal.size());
+        assertEquals("命令39", journal.next("agent").command);
+        journal.close();
+
+        CommandJournal reopened = new CommandJournal(folder.getRoot());
+        assertEquals(1, reopened.size());
+        assertEquals(last + 1, reopened.append("继续"));
+        reopened.close();
+    }
+}
@@ -0,0 +1,94 @@
+package com.autoglm.controller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CommandTrackerTest {
+    private long now = 0;
+    private final CommandTracker tracker = new CommandTracker(() -> now, "t");
+
+    private static AgentStatus status(String state, String id) {
+        return AgentStatus.parse("STATUS: " + state + "\nID: " + id + "\nPROTOCOL: 2\nTASK: 打开微信\nTIMESTAMP: x");
+    }
+
+    @Test
+    public void sendsPlainTextUntilAgentAnnouncesProtocol() {
+        assertEquals("打开微信", tracker.prepare("打开微信"));
+        assertTrue(tracker.getPending().isEmpty());
+
+        // 旧版 agent 的状态不启用 ID
+        tracker.onStatus(AgentStatus.parse("STATUS: IDLE\nTIMESTAMP: x"));
+        assertFalse(tracker.isIdEnabled());
+
+        tracker.onStatus(AgentStatus.parse("STATUS: IDLE\nPROTOCOL: 2\nTIMESTAMP: x"));
+        assertTrue(tracker.isIdEnabled());
+        assertEquals("ID: t-1\n打开微信", tracker.prepare("打开微信"));
+
+        tracker.setMode(CommandTracker.MODE_PLAIN);
+        assertEquals("打开微信", tracker.prepare("打开微信"));
+    }
+
+    @Test
+    public void tracksStatesAndLatencies() {
+        tracker.setMode(CommandTracker.MODE_ID);
+        String payload = tracker.prepare("打开微信");
+        String id = CommandTracker.idOf(payload);
+        assertEquals("t-1", id);
+        now = 20;
+        tracker.onSent(payload);
+
+        now = 520;
+        assertSame(CommandTracker.State.ACCEPTED, tracker.onStatus(status("ACCEPTED", id)).getState());
+        now = 600;
+        assertSame(CommandTracker.State.RUNNING, tracker.onStatus(status("PROCESSING", id)).getState());
+        // 重复的状态不算变化
+        assertNull(tracker.onStatus(status("PROCESSING", id)));
+        now = 8600;
+        CommandTracker.Command command = tracker.onStatus(status("SUCCESS", id));
+
+        assertSame(CommandTracker.State.FINISHED, command.getState());
+        assertTrue(command.isSuccess());
+        assertEquals(500, command.getQueueMillis());
+        assertEquals(580, command.getStartMillis());
+        assertEquals(8000, command.getCompletionMillis());
+        assertEquals(8580, command.getTotalMillis());
+        assertTrue(tracker.getPending().isEmpty());
+    }
+
+    @Test
+    public void ignoresStatusOfOtherCommands() {
+        tracker.setMode(CommandTracker.MODE_ID);
+        String first = CommandTracker.idOf(tracker.prepare("打开微信"));
+        String second = CommandTracker.idOf(tracker.prepare("返回桌面"));
+
+        assertNull(tracker.onStatus(status("PROCESSING", "other-1")));
+        assertNull(tracker.onStatus(AgentStatus.parse("STATUS: IDLE\nPROTOCOL: 2")));
+        // agent 跳过 ACCEPTED 直接报告失败
+        now = 100;
+        CommandTracker.Command command = tracker.onStatus(status("ERROR", first));
+        assertFalse(command.isSuccess());
+        assertEquals(100, command.getQueueMillis());
+        assertEquals(100, command.getStartMillis());
+        assertEquals(0, command.getCompletionMillis());
+
+        assertEquals(1, tracker.getPending().size());
+        assertEquals(second, tracker.getPending().get(0).getId());
+        tracker.onSendFailed(CommandTracker.encode(second, "返回桌面"));
+        assertNull(tracker.getCommand(second));
+    }
+
+    @Test
+    public void parsesStatusFieldsBeforeFreeText() {
+        AgentStatus status = AgentStatus.parse("STATUS: SUCCESS\nID: a-3\nPROTOCOL: 2\n"
+                + "TASK: 打开微信\nRESULT: 完成\nID: b-9\nTIMESTAMP: x");
+        assertEquals(AgentStatus.SUCCESS, status.getState());
+        assertEquals("a-3", status.getCommandId());
+        assertEquals(2, status.getProtocol());
+
+        AgentStatus legacy = AgentStatus.parse("STATUS: PROCESSING\nTASK: ID: x\nTIMESTAMP: x");
+        assertNull(legacy.getCommandId());
+        assertEquals(1, legacy.getProtocol());
+        assertNull(AgentStatus.parse("未检测到状态文件").getState());
+    }
+}
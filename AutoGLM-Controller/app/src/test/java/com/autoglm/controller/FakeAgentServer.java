@@ -0,0 +1,157 @@
+package com.autoglm.controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试用的本地 agent 替身：监听回环端口，按令牌认证客户端，记录收到的命令，可主动推送状态
+ */
+class FakeAgentServer implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final byte[] token;
+    private final BlockingQueue<String> commands = new LinkedBlockingQueue<>();
+    private final Thread acceptThread;
+    private volatile boolean closed;
+    private volatile Socket client;
+    private volatile DataOutputStream output;
+    private volatile int rejected;
+
+    FakeAgentServer(int port, String token) throws IOException {
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        // 在同一端口重启时，上一个实例的监听 socket 可能还未真正释放，稍后重试
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            try {
+                serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                break;
+            } catch (BindException e) {
+                if (port == 0 || System.currentTimeMillis() > deadline) {
+                    serverSocket.close();
+                    throw e;
+                }
+                sleepQuietly(20);
+            }
+        }
+        acceptThread = new Thread(this::acceptLoop, "FakeAgentServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 等待下一条命令
+     */
+    String takeCommand(long timeoutMillis) throws InterruptedException {
+        return commands.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 等待客户端连接
+     */
+    boolean awaitClient(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (output == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return output != null;
+    }
+
+    /**
+     * 认证失败的连接数
+     */
+    int getRejected() {
+        return rejected;
+    }
+
+    void pushStatus(String status) throws IOException {
+        synchronized (this) {
+            SocketTransport.writeFrame(output, SocketTransport.TYPE_STATUS, status);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        Socket s = client;
+        if (s != null) {
+            s.close();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptLoop() {
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket s = serverSocket.accept();
+                client = s;
+                if (closed) {
+                    // close() 与 accept 并发时，由这里关闭刚接受的连接
+                    s.close();
+                    break;
+                }
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                DataInputStream input = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                try {
+                    if (!handshake(input, out)) {
+                        rejected++;
+                        s.close();
+                        continue;
+                    }
+                    output = out;
+                    while (true) {
+                        SocketTransport.Frame frame = SocketTransport.readFrame(input);
+                        if (frame.type == SocketTransport.TYPE_COMMAND) {
+                            commands.add(frame.payload);
+                        }
+                    }
+                } catch (IOException e) {
+                    output = null;
+                    s.close();
+                }
+            }
+        } catch (IOException ignored) {
+            // 服务端关闭
+        }
+    }
+
+    /**
+     * agent 一侧的认证，与 main.py 相同
+     */
+    private boolean handshake(DataInputStream in, DataOutputStream out) throws IOException {
+        SocketTransport.Frame hello = SocketTransport.readFrame(in);
+        if (hello.type != SocketTransport.TYPE_HELLO) {
+            return false;
+        }
+        String nonce = Long.toHexString(System.nanoTime());
+        SocketTransport.writeFrame(out, SocketTransport.TYPE_HELLO,
+                nonce + " " + SocketTransport.sign(token, "agent:" + hello.payload + ":" + nonce));
+        SocketTransport.Frame proof = SocketTransport.readFrame(in);
+        return proof.type == SocketTransport.TYPE_HELLO && SocketTransport.macEquals(proof.payload,
+                SocketTransport.sign(token, "controller:" + nonce + ":" + hello.payload));
+    }
+}
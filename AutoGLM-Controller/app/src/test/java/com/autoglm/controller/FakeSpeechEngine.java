@@ -0,0 +1,95 @@
+package com.autoglm.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 测试用的识别引擎：由测试代码驱动回调
+ */
+class FakeSpeechEngine implements SpeechEngine {
+    private final String name;
+    private Listener listener;
+    private boolean available = true;
+    private boolean streamingEnabled;
+    private boolean listening;
+    final List<String> calls = new ArrayList<>();
+
+    FakeSpeechEngine(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+
+    boolean isStreamingEnabled() {
+        return streamingEnabled;
+    }
+
+    void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return available;
+    }
+
+    @Override
+    public void startListening() {
+        calls.add("start");
+        listening = true;
+    }
+
+    @Override
+    public void stopListening() {
+        calls.add("stop");
+    }
+
+    @Override
+    public void destroy() {
+        calls.add("destroy");
+        listening = false;
+    }
+
+    @Override
+    public void prewarm() {
+        calls.add("prewarm");
+    }
+
+    boolean isListening() {
+        return listening;
+    }
+
+    /**
+     * 模拟一次完整的识别：开始录音、中间结果、结束录音
+     */
+    void speak(String... partials) {
+        listener.onRecordingStart();
+        for (String partial : partials) {
+            listener.onPartialResult(partial);
+        }
+        listener.onRecordingEnd();
+    }
+
+    void emitResult(String text) {
+        listening = false;
+        listener.onResult(text);
+    }
+
+    void emitError(String message, boolean engineFault) {
+        listening = false;
+        listener.onError(message, engineFault);
+    }
+}
@@ -0,0 +1,117 @@
+package com.autoglm.controller;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 听写结果解析器测试：对录制的结果样本，输出须与原先基于 org.json 的实现一致
+ */
+public class IatResultParserTest {
+
+    @Test
+    public void corpusMatchesOrgJsonReference() throws Exception {
+        List<String> corpus = loadCorpus();
+        assertTrue(corpus.size() > 20);
+
+        IatResultParser parser = new IatResultParser();
+        for (String json : corpus) {
+            parser.parse(json);
+            assertEquals(json, referenceText(json), parser.getText());
+        }
+    }
+
+    @Test
+    public void readsStreamingFields() {
+        IatResultParser parser = new IatResultParser();
+        assertTrue(parser.parse("{\"sn\":3,\"ls\":true,\"pgs\":\"rpl\",\"rg\":[1,2],"
+                + "\"ws\":[{\"cw\":[{\"w\":\"打开\"}]},{\"cw\":[{\"w\":\"淘宝\"}]}]}"));
+        assertEquals("打开淘宝", parser.getText());
+        assertEquals(3, parser.getSn());
+        assertTrue(parser.isLast());
+        assertTrue(parser.isReplace());
+        assertEquals(1, parser.getRgStart());
+        assertEquals(2, parser.getRgEnd());
+
+        // 复用同一实例时字段被重置
+        assertTrue(parser.parse("{\"sn\":4,\"pgs\":\"apd\",\"ws\":[{\"cw\":[{\"w\":\"。\"}]}]}"));
+        assertEquals("。", parser.getText());
+        assertFalse(parser.isLast());
+        assertFalse(parser.isReplace());
+        assertEquals(-1, parser.getRgEnd());
+    }
+
+    @Test
+    public void malformedInputIsReportedWithOffset() {
+        IatResultParser parser = new IatResultParser();
+
+        String truncated = "{\"ws\":[{\"cw\":[{\"w\":\"打开\"}]}";
+        assertFalse(parser.parse(truncated));
+        assertEquals(IatResultParser.Error.UNEXPECTED_END, parser.getError());
+        assertEquals(truncated.length(), parser.getErrorOffset());
+        assertEquals("", parser.getText());
+
+        assertFalse(parser.parse("{\"ws\":[{\"cw\":[{\"w\":\"a\\qb\"}]}]}"));
+        assertEquals(IatResultParser.Error.BAD_ESCAPE, parser.getError());
+        assertEquals(22, parser.getErrorOffset());
+
+        assertFalse(parser.parse("{\"ws\":[{\"cw\":[{\"w\":\"打开\"}]},{\"bg\":0}]}"));
+        assertEquals(IatResultParser.Error.BAD_SCHEMA, parser.getError());
+        assertEquals("打开", parser.getText());
+
+        assertTrue(parser.parse("{\"ws\":[]}"));
+        assertEquals(IatResultParser.Error.NONE, parser.getError());
+        assertEquals(-1, parser.getErrorOffset());
+    }
+
+    private static List<String> loadCorpus() throws IOException {
+        InputStream in = IatResultParserTest.class.getClassLoader().getResourceAsStream("iat/corpus.txt");
+        assertNotNull("缺少样本文件 iat/corpus.txt", in);
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /**
+     * 原 SpeechRecognizerHelper.parseIatResult 的实现，作为比对基准
+     */
+    private static String referenceText(String json) {
+        StringBuffer ret = new StringBuffer();
+        try {
+            JSONTokener tokener = new JSONTokener(json);
+            JSONObject joResult = new JSONObject(tokener);
+
+            JSONArray words = joResult.getJSONArray("ws");
+            for (int i = 0; i < words.length(); i++) {
+                JSONArray items = words.getJSONObject(i).getJSONArray("cw");
+                JSONObject obj = items.getJSONObject(0);
+                ret.append(obj.getString("w"));
+            }
+        } catch (JSONException e) {
+            // 与原实现一样返回已拼接的部分
+        }
+        return ret.toString();
+    }
+}
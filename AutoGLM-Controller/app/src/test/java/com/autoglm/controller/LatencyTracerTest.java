@@ -0,0 +1,151 @@
+package com.autoglm.controller;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LatencyTracerTest {
+    private static final long MS = 1000000;
+
+    private long now = 0;
+    private final LatencyTracer tracer = new LatencyTracer(3, () -> now);
+
+    @Test
+    public void recordsAllStagesUntilAgentUpdatesStatus() {
+        int id = tracer.begin();
+        now += 300 * MS;
+        tracer.mark(LatencyTracer.Stage.SPEECH_BEGIN);
+        now += 1500 * MS;
+        tracer.mark(LatencyTracer.Stage.SPEECH_END);
+        now += 400 * MS;
+        tracer.mark(LatencyTracer.Stage.RESULT);
+        now += 20 * MS;
+        tracer.mark(id, LatencyTracer.Stage.COMMAND_WRITTEN);
+        assertTrue(tracer.getFinished().isEmpty());
+        assertEquals(0, tracer.getCurrentId());
+
+        now += 250 * MS;
+        tracer.onStatusChanged();
+
+        List<LatencyTracer.Record> finished = tracer.getFinished();
+        assertEquals(1, finished.size());
+        LatencyTracer.Record record = finished.get(0);
+        assertEquals(LatencyTracer.OUTCOME_ACKED, record.getOutcome());
+        assertEquals(400, record.getMillis(LatencyTracer.Stage.SPEECH_END, LatencyTracer.Stage.RESULT));
+        assertEquals(250, record.getMillis(LatencyTracer.Stage.COMMAND_WRITTEN, LatencyTracer.Stage.STATUS_CHANGED));
+        assertEquals(2470, record.getMillis(LatencyTracer.Stage.LONG_PRESS, LatencyTracer.Stage.STATUS_CHANGED));
+    }
+
+    @Test
+    public void statusChangeBeforeCommandIsSentIsIgnored() {
+        tracer.begin();
+        tracer.mark(LatencyTracer.Stage.RESULT);
+        tracer.onStatusChanged();
+        assertTrue(tracer.getFinished().isEmpty());
+
+        // 早于已记录阶段的调用被忽略
+        now += 10 * MS;
+        tracer.mark(LatencyTracer.Stage.SPEECH_END);
+        assertNotEquals(0, tracer.getCurrentId());
+    }
+
+    @Test
+    public void unfinishedCommandsEndWithOutcome() {
+        tracer.begin();
+        int second = tracer.begin();
+        tracer.fail(second, LatencyTracer.OUTCOME_ERROR);
+
+        int third = tracer.begin();
+        tracer.mark(third, LatencyTracer.Stage.COMMAND_WRITTEN);
+        now += LatencyTracer.ACK_TIMEOUT_MILLIS * MS;
+        tracer.onStatusChanged();
+
+        List<LatencyTracer.Record> finished = tracer.getFinished();
+        assertEquals(3, finished.size());
+        assertEquals(LatencyTracer.OUTCOME_ABANDONED, finished.get(0).getOutcome());
+        assertEquals(LatencyTracer.OUTCOME_ERROR, finished.get(1).getOutcome());
+        assertEquals(LatencyTracer.OUTCOME_NO_ACK, finished.get(2).getOutcome());
+        assertEquals(-1, finished.get(2).getTime(LatencyTracer.Stage.STATUS_CHANGED));
+    }
+
+    @Test
+    public void keepsOnlyMostRecentTraces() {
+        for (int i = 0; i < 5; i++) {
+            tracer.begin();
+            tracer.fail(LatencyTracer.OUTCOME_ERROR);
+        }
+        List<LatencyTracer.Record> finished = tracer.getFinished();
+        assertEquals(3, finished.size());
+        assertEquals(3, finished.get(0).getId());
+        assertEquals(5, finished.get(2).getId());
+    }
+
+    @Test
+    public void exportsChromeTraceEvents() {
+        now = 5000 * MS;
+        int id = tracer.begin();
+        now += 100 * MS;
+        tracer.mark(LatencyTracer.Stage.SPEECH_BEGIN);
+        now += 100 * MS;
+        tracer.mark(id, LatencyTracer.Stage.COMMAND_WRITTEN);
+        now += 100 * MS;
+        tracer.onStatusChanged();
+
+        JSONObject json = new JSONObject(tracer.toChromeJson());
+        JSONArray events = json.getJSONArray("traceEvents");
+        // 行名称 + 3 个阶段区间 + 整体区间
+        assertEquals(5, events.length());
+        assertEquals("M", events.getJSONObject(0).getString("ph"));
+
+        JSONObject speech = events.getJSONObject(2);
+        assertEquals("speech", speech.getString("name"));
+        assertEquals("X", speech.getString("ph"));
+        assertEquals(id, speech.getInt("tid"));
+        assertEquals(5100 * 1000, speech.getLong("ts"));
+        assertEquals(100 * 1000, speech.getLong("dur"));
+
+        JSONObject command = events.getJSONObject(4);
+        assertEquals("command", command.getString("name"));
+        assertEquals(300 * 1000, command.getLong("dur"));
+        assertEquals(LatencyTracer.OUTCOME_ACKED, command.getJSONObject("args").getString("outcome"));
+    }
+
+    @Test
+    public void queuedCommandSurvivesNextLongPress() {
+        tracer.begin();
+        int queued = tracer.detach();
+        int next = tracer.begin();
+        assertNotEquals(queued, next);
+        assertTrue(tracer.getFinished().isEmpty());
+
+        now += 500 * MS;
+        tracer.mark(queued, LatencyTracer.Stage.COMMAND_WRITTEN);
+        tracer.onStatusChanged();
+        LatencyTracer.Record record = tracer.getFinished().get(0);
+        assertEquals(queued, record.getId());
+        assertEquals(500, record.getMillis(LatencyTracer.Stage.LONG_PRESS, LatencyTracer.Stage.COMMAND_WRITTEN));
+        assertEquals(next, tracer.getCurrentId());
+    }
+
+    @Test
+    public void replayedCommandIsTracedFromDispatch() {
+        int speaking = tracer.begin();
+        now += 100 * MS;
+        int replay = tracer.beginDispatch();
+        assertEquals("不影响正在识别的命令", speaking, tracer.getCurrentId());
+
+        now += 30 * MS;
+        tracer.mark(replay, LatencyTracer.Stage.COMMAND_WRITTEN);
+        now += 200 * MS;
+        tracer.onStatusChanged();
+        LatencyTracer.Record record = tracer.getFinished().get(0);
+        assertEquals(replay, record.getId());
+        assertEquals(LatencyTracer.OUTCOME_ACKED, record.getOutcome());
+        assertEquals(-1, record.getTime(LatencyTracer.Stage.LONG_PRESS));
+        assertEquals(230, record.getMillis(LatencyTracer.Stage.RESULT, LatencyTracer.Stage.STATUS_CHANGED));
+    }
+}
@@ -0,0 +1,112 @@
+package com.autoglm.controller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * 内存映射环形缓冲区测试，在普通 JVM 上运行
+ */
+public class MappedRingBufferTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void messagesArriveInOrder() throws Exception {
+        MappedRingBuffer ring = new MappedRingBuffer(folder.newFile("ring"), 1024);
+        assertTrue(ring.offer(bytes("打开微信")));
+        assertTrue(ring.offer(bytes("返回桌面")));
+
+        assertEquals("打开微信", ring.pollString());
+        assertEquals("返回桌面", ring.pollString());
+        assertNull(ring.pollString());
+        assertEquals(2, ring.getReadCount());
+        ring.close();
+    }
+
+    @Test
+    public void offerFailsWhenFullAndRecoversAfterPoll() throws Exception {
+        MappedRingBuffer ring = new MappedRingBuffer(folder.newFile("ring"), 64);
+        byte[] payload = new byte[20]; // 每条记录 36 字节
+        assertTrue(ring.offer(payload));
+        assertFalse(ring.offer(payload));
+        assertNotNull(ring.poll());
+        assertTrue(ring.offer(payload));
+        ring.close();
+    }
+
+    @Test
+    public void recordsWrapAroundTheEnd() throws Exception {
+        MappedRingBuffer ring = new MappedRingBuffer(folder.newFile("ring"), 64);
+        for (int i = 0; i < 100; i++) {
+            String message = "消息-" + i;
+            assertTrue(ring.offer(bytes(message)));
+            assertEquals(message, ring.pollString());
+        }
+        assertEquals(0, ring.available());
+        ring.close();
+    }
+
+    @Test
+    public void separateMappingsShareMessages() throws Exception {
+        File file = folder.newFile("ring");
+        MappedRingBuffer producer = new MappedRingBuffer(file, 4096);
+        MappedRingBuffer consumer = new MappedRingBuffer(file, 4096);
+
+        producer.offer(bytes("STATUS: PROCESSING"));
+        assertEquals("STATUS: PROCESSING", consumer.pollString());
+        assertNull(consumer.pollString());
+
+        producer.close();
+        consumer.close();
+
+        // 重新打开后保留读写进度
+        MappedRingBuffer reopened = new MappedRingBuffer(file, 4096);
+        assertEquals(1, reopened.getWriteCount());
+        assertEquals(1, reopened.getReadCount());
+        reopened.close();
+    }
+
+    @Test
+    public void concurrentProducerAndConsumer() throws Exception {
+        File file = folder.newFile("ring");
+        final MappedRingBuffer producer = new MappedRingBuffer(file, 1024);
+        MappedRingBuffer consumer = new MappedRingBuffer(file, 1024);
+        final int count = 20000;
+
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                byte[] payload = bytes(Integer.toString(i));
+                while (!producer.offer(payload)) {
+                    Thread.yield();
+                }
+            }
+        });
+        thread.start();
+
+        int expected = 0;
+        long deadline = System.currentTimeMillis() + 30000;
+        while (expected < count && System.currentTimeMillis() < deadline) {
+            String message = consumer.pollString();
+            if (message == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(Integer.toString(expected), message);
+            expected++;
+        }
+        thread.join();
+        assertEquals(count, expected);
+        producer.close();
+        consumer.close();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,107 @@
+package com.autoglm.controller;
+
+import android.view.Choreographer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OverlayPositionUpdaterTest {
+    private static final long FRAME_NANOS = 8333333; // 120Hz
+
+    private final List<int[]> applied = new ArrayList<>();
+    private Choreographer.FrameCallback pending;
+    private long frameTime = 0;
+
+    private final OverlayPositionUpdater updater = new OverlayPositionUpdater(
+            (x, y) -> applied.add(new int[]{x, y}),
+            new OverlayPositionUpdater.FrameScheduler() {
+                @Override
+                public void postFrameCallback(Choreographer.FrameCallback callback) {
+                    assertNull("同一帧重复注册", pending);
+                    pending = callback;
+                }
+
+                @Override
+                public void removeFrameCallback(Choreographer.FrameCallback callback) {
+                    pending = null;
+                }
+            },
+            OverlayPositionUpdater.DEFAULT_STIFFNESS, OverlayPositionUpdater.DEFAULT_DAMPING_RATIO);
+
+    private void frame() {
+        frameTime += FRAME_NANOS;
+        Choreographer.FrameCallback callback = pending;
+        pending = null;
+        if (callback != null) {
+            callback.doFrame(frameTime);
+        }
+    }
+
+    @Test
+    public void coalescesTouchEventsIntoOneUpdatePerFrame() {
+        // 240Hz 触摸采样、120Hz 刷新：每帧两个事件
+        updater.beginDrag(0, 100, 0);
+        for (int i = 1; i <= 20; i++) {
+            updater.moveTo(i * 10, 100, i * 4L);
+            if (i % 2 == 0) {
+                frame();
+            }
+        }
+        updater.endDrag(200, 80);
+        updater.cancel();
+
+        assertEquals(21, updater.getLastDragEvents());
+        assertEquals(10, updater.getLastDragUpdates());
+        assertEquals(10, applied.size());
+        assertArrayEquals(new int[]{200, 100}, applied.get(applied.size() - 1));
+    }
+
+    @Test
+    public void unchangedPositionIsNotApplied() {
+        updater.beginDrag(50, 50, 0);
+        frame();
+        updater.moveTo(50, 50, 10);
+        frame();
+        assertEquals(1, applied.size());
+    }
+
+    @Test
+    public void springSettlesOnEdge() {
+        updater.beginDrag(300, 400, 0);
+        frame();
+        updater.endDrag(0, 1000);
+        assertTrue(updater.isAnimating());
+
+        int frames = 0;
+        while (pending != null && frames < 200) {
+            frame();
+            frames++;
+        }
+        assertFalse(updater.isAnimating());
+        // 约 0.5 秒内停稳
+        assertTrue("帧数 " + frames, frames < 70);
+        int[] last = applied.get(applied.size() - 1);
+        assertArrayEquals(new int[]{0, 400}, last);
+        // 轻微回弹，不会越过边缘太多
+        for (int[] position : applied) {
+            assertTrue(position[0] > -40);
+        }
+    }
+
+    @Test
+    public void flingVelocityCarriesIntoSpring() {
+        updater.beginDrag(100, 0, 0);
+        updater.moveTo(200, 0, 10);
+        frame();
+        // 向右甩动后吸附到左边缘：先继续向右再返回
+        updater.endDrag(0, 20);
+        frame();
+        frame();
+        frame();
+        assertTrue(applied.get(applied.size() - 1)[0] > 200);
+    }
+}
@@ -0,0 +1,107 @@
+package com.autoglm.controller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PhraseCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> texts(List<PhraseCache.Phrase> phrases) {
+        List<String> result = new ArrayList<>();
+        for (PhraseCache.Phrase phrase : phrases) {
+            result.add(phrase.getText());
+        }
+        return result;
+    }
+
+    @Test
+    public void mergesNormalizedTextAndRanksByUse() {
+        PhraseCache cache = new PhraseCache(8);
+        cache.record("打开微信");
+        cache.record("打开 微信。");
+        cache.record("返回桌面");
+        cache.record("打开微信");
+        assertNull(cache.record("。"));
+
+        assertEquals(2, cache.size());
+        List<PhraseCache.Phrase> top = cache.top(5);
+        assertEquals("打开微信", top.get(0).getText());
+        assertEquals(3, top.get(0).getCount());
+        assertEquals("返回桌面", top.get(1).getText());
+    }
+
+    @Test
+    public void prefixLookupUsesIndex() {
+        PhraseCache cache = new PhraseCache(8);
+        cache.record("打开微信");
+        cache.record("打开设置");
+        cache.record("打开设置");
+        cache.record("关闭蓝牙");
+        cache.record("Open Camera");
+
+        assertEquals("[打开设置, 打开微信]", texts(cache.lookup("打开", 5)).toString());
+        assertEquals("[打开设置]", texts(cache.lookup("打开", 1)).toString());
+        assertEquals("[Open Camera]", texts(cache.lookup("open c", 5)).toString());
+        assertTrue(cache.lookup("播放", 5).isEmpty());
+        assertEquals(4, cache.lookup("", 10).size());
+    }
+
+    @Test
+    public void evictsLowestScoreWhenFull() {
+        PhraseCache cache = new PhraseCache(3);
+        for (int i = 0; i < 5; i++) {
+            cache.record("打开微信");
+        }
+        cache.record("返回桌面");
+        cache.record("查看天气");
+        // 满了：只用过一次且较早的"返回桌面"被淘汰，常用的保留
+        cache.record("关闭闪光灯");
+        assertEquals(3, cache.size());
+        assertTrue(cache.lookup("返回", 5).isEmpty());
+        assertEquals(1, cache.lookup("打开微信", 5).size());
+
+        // 很久不用的常用命令逐渐让位
+        PhraseCache aging = new PhraseCache(2);
+        aging.record("打开微信");
+        aging.record("打开微信");
+        for (int i = 0; i < PhraseCache.HALF_LIFE * 2; i++) {
+            aging.record("返回桌面");
+        }
+        aging.record("查看天气");
+        assertTrue(aging.lookup("打开微信", 5).isEmpty());
+    }
+
+    @Test
+    public void persistsAcrossRestarts() {
+        PhraseCache cache = new PhraseCache(8);
+        cache.record("打开微信");
+        cache.record("打开微信");
+        cache.record("返回桌面");
+        File file = new File(folder.getRoot(), PhraseCache.FILE_NAME);
+        assertTrue(cache.writeTo(file));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        PhraseCache restored = new PhraseCache(8);
+        assertTrue(restored.readFrom(file));
+        assertEquals(texts(cache.top(8)), texts(restored.top(8)));
+        assertEquals(2, restored.top(1).get(0).getCount());
+        // 恢复后继续计数与淘汰
+        restored.record("返回桌面");
+        restored.record("返回桌面");
+        assertEquals("返回桌面", restored.top(1).get(0).getText());
+
+        // 文件不存在时保留当前内容
+        assertTrue(restored.readFrom(new File(folder.getRoot(), "missing.bin")));
+        assertEquals(2, restored.size());
+        // 每条只存原文、次数与距今的使用次数
+        assertTrue(file.length() < 64);
+    }
+}
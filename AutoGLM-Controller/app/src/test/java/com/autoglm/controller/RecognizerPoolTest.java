@@ -0,0 +1,129 @@
+package com.autoglm.controller;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+/**
+ * 识别器预热、等待、释放流程测试；后台线程用手动执行的队列模拟
+ */
+public class RecognizerPoolTest {
+    private final Queue<Runnable> background = new ArrayDeque<>();
+    private final List<RecognizerPool.InitCallback> pendingInits = new ArrayList<>();
+    private final List<String> destroyed = new ArrayList<>();
+    private int created = 0;
+    private RecognizerPool<String> pool;
+
+    @Before
+    public void setUp() {
+        pool = new RecognizerPool<>(new RecognizerPool.Factory<String>() {
+            @Override
+            public String create(RecognizerPool.InitCallback callback) {
+                pendingInits.add(callback);
+                return "recognizer-" + (++created);
+            }
+
+            @Override
+            public void destroy(String recognizer) {
+                destroyed.add(recognizer);
+            }
+        }, background::add, Runnable::run);
+    }
+
+    @Test
+    public void acquireWaitsForWarmUpThenReusesWarmInstance() {
+        List<String> acquired = new ArrayList<>();
+        pool.acquire(acquired::add);
+        assertTrue(acquired.isEmpty());
+
+        runBackground();
+        assertTrue(acquired.isEmpty());
+        completeInits(true);
+        assertEquals("[recognizer-1]", acquired.toString());
+        assertEquals(1, pool.getWaitCount());
+        assertTrue(pool.getLastInitMillis() >= 0);
+
+        pool.recycle();
+        pool.acquire(acquired::add);
+        assertEquals("[recognizer-1, recognizer-1]", acquired.toString());
+        assertEquals(1, created);
+        assertEquals(1, pool.getWaitCount());
+    }
+
+    @Test
+    public void trimMemoryReleasesAndTouchDownRewarms() {
+        pool.setVisible(true);
+        runBackground();
+        completeInits(true);
+        assertTrue(pool.isReady());
+
+        // 轻度内存压力不释放
+        assertFalse(pool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+        assertTrue(pool.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+        runBackground();
+        assertFalse(pool.isReady());
+        assertEquals("[recognizer-1]", destroyed.toString());
+
+        pool.onTouchDown();
+        runBackground();
+        completeInits(true);
+        assertTrue(pool.isReady());
+        assertEquals(2, pool.getWarmUpCount());
+    }
+
+    @Test
+    public void releaseIsDeferredWhileInUse() {
+        pool.warmUp();
+        runBackground();
+        completeInits(true);
+
+        List<String> acquired = new ArrayList<>();
+        pool.acquire(acquired::add);
+        pool.setVisible(false);
+        runBackground();
+        assertTrue(destroyed.isEmpty());
+
+        pool.recycle();
+        runBackground();
+        assertEquals("[recognizer-1]", destroyed.toString());
+        assertNull(pool.peek());
+    }
+
+    @Test
+    public void failedInitIsReportedAndDestroyed() {
+        List<String> acquired = new ArrayList<>();
+        pool.acquire(acquired::add);
+        runBackground();
+        completeInits(false);
+        runBackground();
+
+        assertEquals(1, acquired.size());
+        assertNull(acquired.get(0));
+        assertEquals(1, pool.getFailureCount());
+        assertEquals("[recognizer-1]", destroyed.toString());
+        assertFalse(pool.isReady());
+    }
+
+    private void runBackground() {
+        Runnable task;
+        while ((task = background.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void completeInits(boolean success) {
+        List<RecognizerPool.InitCallback> callbacks = new ArrayList<>(pendingInits);
+        pendingInits.clear();
+        for (RecognizerPool.InitCallback callback : callbacks) {
+            callback.onInitComplete(success);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.autoglm.controller;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * 离线回放：把录音语料逐条送入识别流程，测量首个结果时间、最终结果时间与文本准确率
+ * <p>
+ * 语料目录中 index.txt 每行为 {@code <名称>\t<参考文本>}，对应 <名称>.wav 或 <名称>.pcm（16kHz 裸 PCM）
+ * 与 <名称>.script（{@link ReplayScript}）。开启会话录制后 sessions 目录即为此格式。
+ * <p>
+ * 每条语料经 {@link PcmStreamAudioSource} 输入 {@link ReplaySpeechEngine}，再经 {@link SpeechRecognizerHelper}
+ * 与 {@link SpeculativeDispatcher}，与悬浮窗中的流程相同。所有时间为虚拟时钟，从开始录音算起，
+ * 不依赖麦克风，也不需要实时等待。
+ */
+class ReplayHarness {
+    static final int DEFAULT_SAMPLE_RATE = 16000;
+    // 单条语料的步数上限，防止脚本异常时死循环
+    private static final int MAX_STEPS = 100000;
+
+    /**
+     * 一条语料
+     */
+    static final class Clip {
+        final String name;
+        final String reference;
+        final byte[] pcm;
+        final int sampleRate;
+        final ReplayScript script;
+
+        Clip(String name, String reference, byte[] pcm, int sampleRate, ReplayScript script) {
+            this.name = name;
+            this.reference = reference;
+            this.pcm = pcm;
+            this.sampleRate = sampleRate;
+            this.script = script;
+        }
+    }
+
+    /**
+     * 一条语料的回放结果，时间单位毫秒，未发生时为 -1
+     */
+    static final class ClipResult {
+        final String name;
+        final String reference;
+        String text = "";
+        String error;
+        // 首个识别结果（中间或最终）
+        long firstResultMillis = -1;
+        // 录音结束
+        long endpointMillis = -1;
+        // 最终结果
+        long finalMillis = -1;
+        // 最终文本交给 agent：预发送且被确认时为预发送的时间（agent 由此开始准备，确认后才操作设备）
+        long dispatchMillis = -1;
+        int truncatedResults;
+        int edits;
+
+        ClipResult(String name, String reference) {
+            this.name = name;
+            this.reference = reference;
+        }
+    }
+
+    /**
+     * 整个语料的回放结果
+     */
+    static final class Report {
+        final List<ClipResult> results = new ArrayList<>();
+
+        int errors() {
+            int count = 0;
+            for (ClipResult result : results) {
+                if (result.error != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        int truncated() {
+            int count = 0;
+            for (ClipResult result : results) {
+                if (result.truncatedResults > 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * 字错误率：编辑距离之和除以参考文本字数之和
+         */
+        double charErrorRate() {
+            long edits = 0;
+            long chars = 0;
+            for (ClipResult result : results) {
+                edits += result.edits;
+                chars += normalize(result.reference).length();
+            }
+            return chars == 0 ? 0 : (double) edits / chars;
+        }
+
+        long meanFirstResult() {
+            return mean(collect(r -> r.firstResultMillis));
+        }
+
+        long meanFinal() {
+            return mean(collect(r -> r.finalMillis));
+        }
+
+        long meanDispatch() {
+            return mean(collect(r -> r.dispatchMillis));
+        }
+
+        long percentileFinal(int percent) {
+            return percentile(collect(r -> r.finalMillis), percent);
+        }
+
+        long meanEndpoint() {
+            return mean(collect(r -> r.endpointMillis));
+        }
+
+        /**
+         * 各条语料中已发生的时间
+         */
+        private long[] collect(ToLongFunction<ClipResult> field) {
+            long[] values = new long[results.size()];
+            int n = 0;
+            for (ClipResult result : results) {
+                long value = field.applyAsLong(result);
+                if (value >= 0) {
+                    values[n++] = value;
+                }
+            }
+            return Arrays.copyOf(values, n);
+        }
+
+        void print(PrintStream out) {
+            out.println("名称                首结果  录音结束  最终结果  交付    字错误  截断  文本");
+            for (ClipResult r : results) {
+                out.printf("%-18s  %6d  %8d  %8d  %6d  %6d  %4d  %s%n", r.name, r.firstResultMillis,
+                        r.endpointMillis, r.finalMillis, r.dispatchMillis, r.edits, r.truncatedResults,
+                        r.error != null ? "错误: " + r.error : r.text);
+            }
+            out.printf("共 %d 条，出错 %d，截断 %d；平均首结果 %dms，平均录音结束 %dms，"
+                            + "最终结果 平均 %dms / P50 %dms / P90 %dms，平均交付 %dms，字错误率 %.2f%%%n",
+                    results.size(), errors(), truncated(), meanFirstResult(), meanEndpoint(),
+                    meanFinal(), percentileFinal(50), percentileFinal(90), meanDispatch(),
+                    charErrorRate() * 100);
+        }
+    }
+
+    private boolean streaming = true;
+    private boolean adaptiveEndpoint = false;
+    private float endpointSensitivity = AdaptiveEndpointer.DEFAULT_SENSITIVITY;
+    private boolean speculativeDispatch = false;
+
+    void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    void setAdaptiveEndpoint(boolean enabled, float sensitivity) {
+        this.adaptiveEndpoint = enabled;
+        this.endpointSensitivity = sensitivity;
+    }
+
+    /**
+     * 预发送需要流式识别
+     */
+    void setSpeculativeDispatch(boolean speculativeDispatch) {
+        this.speculativeDispatch = speculativeDispatch;
+    }
+
+    Report run(List<Clip> clips) {
+        Report report = new Report();
+        for (Clip clip : clips) {
+            report.results.add(run(clip));
+        }
+        return report;
+    }
+
+    ClipResult run(Clip clip) {
+        ClipResult result = new ClipResult(clip.name, clip.reference);
+        ReplaySpeechEngine engine = new ReplaySpeechEngine();
+        SpeechRecognizerHelper helper = new SpeechRecognizerHelper(engine);
+        helper.setClock(engine::getTime);
+        helper.setFallbackEnabled(false);
+        helper.setStreamingEnabled(streaming);
+        helper.setAdaptiveEndpoint(adaptiveEndpoint, endpointSensitivity);
+
+        SpeculativeDispatcher dispatcher = new SpeculativeDispatcher(new SpeculativeDispatcher.Listener() {
+            @Override
+            public boolean canSpeculate() {
+                return true;
+            }
+
+            @Override
+            public void onDispatch(String text, boolean speculative) {
+                result.dispatchMillis = engine.getTime();
+            }
+
+            @Override
+            public void onConfirm(String text) {
+            }
+
+            @Override
+            public void onCancel(String dispatched) {
+            }
+        });
+        helper.setOnPartialResultListener(hypothesis -> {
+            if (result.firstResultMillis < 0) {
+                result.firstResultMillis = engine.getTime();
+            }
+            if (speculativeDispatch) {
+                dispatcher.onPartial(hypothesis);
+            }
+        });
+        helper.setOnRecognizeResultListener(new SpeechRecognizerHelper.OnRecognizeResultListener() {
+            @Override
+            public void onResult(String text) {
+                result.text = text;
+                result.finalMillis = engine.getTime();
+                if (result.firstResultMillis < 0) {
+                    result.firstResultMillis = result.finalMillis;
+                }
+                dispatcher.onFinal(text);
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                result.error = errorMsg;
+            }
+
+            @Override
+            public void onRecordingStart() {
+                dispatcher.reset();
+            }
+
+            @Override
+            public void onRecordingEnd() {
+                result.endpointMillis = engine.getTime();
+                if (speculativeDispatch) {
+                    dispatcher.onEndOfSpeech();
+                }
+            }
+        });
+
+        engine.load(new PcmStreamAudioSource(new ByteArrayInputStream(clip.pcm), clip.sampleRate, false),
+                clip.script);
+        helper.startListening();
+        int steps = 0;
+        while (engine.advance()) {
+            if (++steps > MAX_STEPS) {
+                engine.destroy();
+                result.error = "回放未结束";
+                break;
+            }
+        }
+        result.truncatedResults = engine.getTruncatedResults();
+        result.edits = editDistance(normalize(result.text), normalize(clip.reference));
+        return result;
+    }
+
+    /**
+     * 读取语料目录
+     */
+    static List<Clip> loadCorpus(File dir) throws IOException {
+        List<Clip> clips = new ArrayList<>();
+        File index = new File(dir, "index.txt");
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(index), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                String name = tab < 0 ? line.trim() : line.substring(0, tab).trim();
+                String reference = tab < 0 ? "" : line.substring(tab + 1).trim();
+                File audio = new File(dir, name + ".wav");
+                if (!audio.exists()) {
+                    audio = new File(dir, name + ".pcm");
+                }
+                PcmFiles.Clip pcm = PcmFiles.read(audio, DEFAULT_SAMPLE_RATE);
+                ReplayScript script = ReplayScript.read(new File(dir, name + ReplayScript.EXTENSION));
+                clips.add(new Clip(name, reference, PcmFiles.toBytes(pcm.samples, pcm.samples.length),
+                        pcm.sampleRate, script));
+            }
+        }
+        return clips;
+    }
+
+    /**
+     * 只保留字母、数字与汉字，标点和空白不计入准确率
+     */
+    static String normalize(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 字级编辑距离（替换、插入、删除各计 1）
+     */
+    static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static long mean(long[] values) {
+        if (values.length == 0) {
+            return -1;
+        }
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static long percentile(long[] values, int percent) {
+        if (values.length == 0) {
+            return -1;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percent / 100.0) - 1);
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,230 @@
+package com.autoglm.controller;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 识别流程的离线回放
+ * <p>
+ * 默认使用合成语料：噪声中的浊音段模拟逐词说出的命令，脚本为按词追加的流式结果、
+ * 说完后对整句的一次修正（文本不变）与录音结束后到达的最终结果。
+ * 设置系统属性 replay.corpus 或环境变量 REPLAY_CORPUS 指向语料目录（如会话录制的 sessions 目录）时，
+ * 额外回放真实录音并打印结果，要求每种配置下没有回放错误、字错误率不高于 {@link #MAX_RECORDED_CHAR_ERROR_RATE}。
+ */
+public class ReplayHarnessTest {
+    private static final int RATE = ReplayHarness.DEFAULT_SAMPLE_RATE;
+    // 每个字的发音时长、词间间隔与结果延迟（毫秒）
+    private static final int CHAR_MILLIS = 180;
+    private static final int WORD_GAP_MILLIS = 60;
+    private static final int PARTIAL_DELAY_MILLIS = 250;
+    private static final int REVISION_DELAY_MILLIS = 400;
+    private static final int FINAL_DELAY_MILLIS = 400;
+    // 真实录音回放的最高字错误率
+    private static final double MAX_RECORDED_CHAR_ERROR_RATE = 0.15;
+
+    // 每条命令按词切分；识别文本与参考文本不同时写在 | 之后
+    private static final String[] COMMANDS = {
+            "打开 微信",
+            "给 张三 发 消息 说 我 到了|给 张山 发 消息 说 我 到了",
+            "打开 设置 里的 蓝牙",
+            "返回 桌面",
+            "搜索 附近的 咖啡店",
+            "播放 周杰伦 的 歌",
+            "把 音量 调大 一点",
+            "打开 支付宝 付款码",
+            "查看 今天的 天气",
+            "关闭 闪光灯",
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysCorpusAndMeasuresLatencyAndAccuracy() throws IOException {
+        List<ReplayHarness.Clip> clips = ReplayHarness.loadCorpus(writeCorpus(folder.getRoot()));
+        assertEquals(COMMANDS.length, clips.size());
+
+        ReplayHarness harness = new ReplayHarness();
+        ReplayHarness.Report report = harness.run(clips);
+
+        assertEquals(0, report.errors());
+        assertEquals(0, report.truncated());
+        for (ReplayHarness.ClipResult result : report.results) {
+            assertTrue(result.name, result.firstResultMillis > 0);
+            assertTrue(result.name, result.firstResultMillis < result.endpointMillis);
+            // 固定 VAD_EOS：最终结果在录音结束后按脚本延迟到达
+            assertEquals(result.name, result.endpointMillis + FINAL_DELAY_MILLIS, result.finalMillis);
+        }
+        // 只有"张三"被识别成"张山"
+        int chars = 0;
+        for (ReplayHarness.Clip clip : clips) {
+            chars += ReplayHarness.normalize(clip.reference).length();
+        }
+        assertEquals(1.0 / chars, report.charErrorRate(), 1e-9);
+        assertEquals("给张山发消息说我到了。", report.results.get(1).text);
+    }
+
+    @Test
+    public void adaptiveEndpointAndSpeculativeDispatchShortenTimeToFinal() throws IOException {
+        List<ReplayHarness.Clip> clips = ReplayHarness.loadCorpus(writeCorpus(folder.getRoot()));
+
+        ReplayHarness harness = new ReplayHarness();
+        ReplayHarness.Report fixed = harness.run(clips);
+        harness.setAdaptiveEndpoint(true, AdaptiveEndpointer.DEFAULT_SENSITIVITY);
+        ReplayHarness.Report adaptive = harness.run(clips);
+        harness.setSpeculativeDispatch(true);
+        ReplayHarness.Report speculative = harness.run(clips);
+
+        assertEquals(0, adaptive.truncated());
+        assertEquals(fixed.charErrorRate(), adaptive.charErrorRate(), 1e-9);
+        assertEquals(fixed.charErrorRate(), speculative.charErrorRate(), 1e-9);
+        assertTrue("自适应尾端点提前结束录音", adaptive.meanEndpoint() < fixed.meanEndpoint());
+        assertTrue("最终结果 " + fixed.meanFinal() + "ms -> " + adaptive.meanFinal() + "ms",
+                fixed.meanFinal() - adaptive.meanFinal() >= 300);
+        // 结果在录音结束前已稳定，预发送在录音结束时即交付
+        assertEquals(speculative.meanEndpoint(), speculative.meanDispatch());
+        assertTrue(speculative.meanDispatch() < adaptive.meanDispatch());
+    }
+
+    @Test
+    public void scriptRoundTripsAndEditDistanceCountsCharacters() throws IOException {
+        ReplayScript script = new ReplayScript();
+        script.setStreaming(true);
+        script.add(420, false, false, segment(1, "打开", false));
+        script.add(380, true, true, segment(2, "。", true));
+        File file = folder.newFile("a" + ReplayScript.EXTENSION);
+        script.writeTo(file);
+
+        ReplayScript read = ReplayScript.read(file);
+        assertTrue(read.isStreaming());
+        assertEquals(2, read.getEntries().size());
+        assertEquals(420, read.getEntries().get(0).millis);
+        assertFalse(read.getEntries().get(0).afterEnd);
+        assertTrue(read.getEntries().get(1).afterEnd);
+        assertTrue(read.getEntries().get(1).last);
+        assertEquals(segment(2, "。", true), read.getEntries().get(1).json);
+
+        assertEquals(0, ReplayHarness.editDistance("打开微信", "打开微信"));
+        assertEquals(1, ReplayHarness.editDistance("打开微", "打开微信"));
+        assertEquals(2, ReplayHarness.editDistance("打开威信吧", "打开微信"));
+        assertEquals("打开微信", ReplayHarness.normalize("打开 微信。"));
+    }
+
+    @Test
+    public void recordedCorpusWhenProvided() throws IOException {
+        String path = System.getProperty("replay.corpus", System.getenv("REPLAY_CORPUS"));
+        Assume.assumeNotNull(path);
+        List<ReplayHarness.Clip> clips = ReplayHarness.loadCorpus(new File(path));
+        assertFalse("语料为空: " + path, clips.isEmpty());
+        ReplayHarness harness = new ReplayHarness();
+        checkRecorded("固定 VAD", harness.run(clips));
+        harness.setAdaptiveEndpoint(true, AdaptiveEndpointer.DEFAULT_SENSITIVITY);
+        checkRecorded("自适应尾端点", harness.run(clips));
+        harness.setSpeculativeDispatch(true);
+        checkRecorded("自适应尾端点 + 预发送", harness.run(clips));
+    }
+
+    private static void checkRecorded(String name, ReplayHarness.Report report) {
+        System.out.println(name + "：");
+        report.print(System.out);
+        assertEquals(name + " 回放错误", 0, report.errors());
+        assertTrue(name + " 字错误率 " + report.charErrorRate(),
+                report.charErrorRate() <= MAX_RECORDED_CHAR_ERROR_RATE);
+    }
+
+    /**
+     * 写出合成语料：每条命令一段音频与一份脚本
+     */
+    private static File writeCorpus(File dir) throws IOException {
+        Random rnd = new Random(20);
+        StringBuilder index = new StringBuilder();
+        for (int i = 0; i < COMMANDS.length; i++) {
+            String[] variants = COMMANDS[i].split("\\|");
+            String[] words = variants[0].split(" ");
+            String[] recognized = variants[variants.length - 1].split(" ");
+            String name = String.format("cmd%02d", i);
+            index.append(name).append('\t').append(String.join("", words)).append('\n');
+
+            int lead = 300 + rnd.nextInt(300);
+            // 一半命令在句中有一次犹豫
+            int pauseAfter = i % 2 == 0 ? (words.length - 1) / 2 : -1;
+            short[] pcm = new short[RATE * 5];
+            int t = lead;
+            ReplayScript script = new ReplayScript();
+            script.setStreaming(true);
+            for (int w = 0; w < words.length; w++) {
+                int millis = words[w].length() * CHAR_MILLIS;
+                voice(pcm, t, millis, 140 + rnd.nextInt(80), rnd);
+                t += millis;
+                script.add(t + PARTIAL_DELAY_MILLIS, false, false, segment(w + 1, recognized[w], false));
+                t += w == pauseAfter ? 300 : WORD_GAP_MILLIS;
+            }
+            noise(pcm, rnd);
+            script.add(t + REVISION_DELAY_MILLIS, false, false,
+                    revision(words.length + 1, words.length, String.join("", recognized)));
+            script.add(FINAL_DELAY_MILLIS, true, true, segment(words.length + 2, "。", true));
+
+            PcmFiles.writePcm(new File(dir, name + ".pcm"), pcm, pcm.length);
+            script.writeTo(new File(dir, name + ReplayScript.EXTENSION));
+        }
+        try (Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(dir, "index.txt")), StandardCharsets.UTF_8)) {
+            writer.write(index.toString());
+        }
+        return dir;
+    }
+
+    /**
+     * 流式（apd）分段结果
+     */
+    private static String segment(int sn, String word, boolean last) {
+        return "{\"sn\":" + sn + ",\"ls\":" + last + ",\"bg\":0,\"ed\":0,\"pgs\":\"apd\","
+                + "\"ws\":[{\"bg\":0,\"cw\":[{\"sc\":0.00,\"w\":\"" + word + "\"}]}]}";
+    }
+
+    /**
+     * 替换 1~rgEnd 分段的整句修正（rpl）
+     */
+    private static String revision(int sn, int rgEnd, String text) {
+        return "{\"sn\":" + sn + ",\"ls\":false,\"bg\":0,\"ed\":0,\"pgs\":\"rpl\",\"rg\":[1," + rgEnd + "],"
+                + "\"ws\":[{\"bg\":0,\"cw\":[{\"sc\":0.00,\"w\":\"" + text + "\"}]}]}";
+    }
+
+    /**
+     * 在 start 毫秒处叠加一段带谐波的浊音
+     */
+    private static void voice(short[] pcm, int startMillis, int millis, float f0, Random rnd) {
+        int from = startMillis * RATE / 1000;
+        int length = millis * RATE / 1000;
+        float amplitude = 3000 + rnd.nextInt(3000);
+        for (int i = 0; i < length && from + i < pcm.length; i++) {
+            double phase = 2 * Math.PI * f0 * i / RATE;
+            double envelope = Math.min(1, Math.min(i, length - i) / (RATE * 0.02));
+            double value = Math.sin(phase) + 0.5 * Math.sin(2 * phase) + 0.25 * Math.sin(3 * phase);
+            pcm[from + i] = (short) (amplitude * envelope * value / 1.75);
+        }
+    }
+
+    /**
+     * 叠加背景噪声（约 40dB）
+     */
+    private static void noise(short[] pcm, Random rnd) {
+        for (int i = 0; i < pcm.length; i++) {
+            int value = pcm[i] + (int) (rnd.nextGaussian() * 100);
+            pcm[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+        }
+    }
+}
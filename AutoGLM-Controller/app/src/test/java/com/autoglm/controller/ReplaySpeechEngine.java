@@ -0,0 +1,271 @@
+package com.autoglm.controller;
+
+/**
+ * 回放用的识别引擎：从外部音频来源读取录音，按脚本返回识别结果
+ * <p>
+ * 以虚拟时钟运行：每次 {@link #advance()} 读入一帧音频，时间前进一帧的时长，录音结束后时间直接跳到下一条结果。
+ * 音量按讯飞的 0~30 刻度计算，自适应尾端点与 {@link IflytekSpeechEngine} 一样据此提前停止录音；
+ * 未开启时按固定 VAD_BOS/VAD_EOS 结束。结果 JSON 经 {@link IatResultParser} 与 {@link IatResultAccumulator}
+ * 解析，回调顺序与真实引擎一致。
+ */
+class ReplaySpeechEngine implements SpeechEngine {
+    static final String NAME = "replay";
+
+    // 与 IflytekSpeechEngine 中的参数一致
+    static final long VAD_BOS = 4000;
+    static final long VAD_EOS = 1000;
+    private static final int MAX_VOLUME = 30;
+    // 音量回调间隔
+    static final int FRAME_MILLIS = 40;
+    // 固定 VAD 的语音门限：高于最低音量的幅度
+    private static final int VAD_MARGIN = 4;
+    // 音量刻度：30dB 以下为 0，75dB 为满量程
+    private static final double MIN_DB = 30;
+    private static final double MAX_DB = 75;
+
+    private enum State {
+        IDLE,
+        RECORDING,
+        WAITING
+    }
+
+    private Listener listener;
+    private boolean streamingEnabled;
+    private boolean adaptiveEndpointEnabled;
+    private final AdaptiveEndpointer endpointer = new AdaptiveEndpointer();
+    private final IatResultParser parser = new IatResultParser();
+    private final IatResultAccumulator accumulator = new IatResultAccumulator();
+
+    private AudioSource source;
+    private ReplayScript script;
+    private State state = State.IDLE;
+    private long now;
+    private long endMillis;
+    private int nextEntry;
+    private byte[] frame;
+    private int minVolume;
+    private boolean speechSeen;
+    private long lastSpeechMillis;
+    // 录音结束时尚未到达的录音中结果数，说明录音在说完之前被截断
+    private int truncatedResults;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+
+    @Override
+    public void setAdaptiveEndpoint(boolean enabled, float sensitivity) {
+        this.adaptiveEndpointEnabled = enabled;
+        endpointer.setSensitivity(sensitivity);
+    }
+
+    /**
+     * 设置下一次识别的音频与脚本
+     */
+    void load(AudioSource source, ReplayScript script) {
+        this.source = source;
+        this.script = script;
+    }
+
+    /**
+     * 虚拟时钟，从开始录音算起的毫秒数
+     */
+    long getTime() {
+        return now;
+    }
+
+    /**
+     * 录音结束的时间，尚未结束时为 -1
+     */
+    long getEndTime() {
+        return state == State.RECORDING ? -1 : endMillis;
+    }
+
+    int getTruncatedResults() {
+        return truncatedResults;
+    }
+
+    boolean isActive() {
+        return state != State.IDLE;
+    }
+
+    @Override
+    public void startListening() {
+        if (state != State.IDLE || source == null) {
+            return;
+        }
+        now = 0;
+        endMillis = -1;
+        nextEntry = 0;
+        minVolume = Integer.MAX_VALUE;
+        speechSeen = false;
+        truncatedResults = 0;
+        accumulator.reset();
+        endpointer.reset();
+        frame = new byte[source.getSampleRate() * 2 * FRAME_MILLIS / 1000];
+        if (!source.start()) {
+            finish();
+            listener.onError("音频来源打开失败", true);
+            return;
+        }
+        state = State.RECORDING;
+        listener.onRecordingStart();
+    }
+
+    @Override
+    public void stopListening() {
+        if (state == State.RECORDING) {
+            endRecording();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (source != null && state == State.RECORDING) {
+            source.stop();
+        }
+        finish();
+    }
+
+    /**
+     * 处理一帧音频或一条录音结束后的结果
+     *
+     * @return 本次识别是否仍在进行
+     */
+    boolean advance() {
+        if (state == State.RECORDING) {
+            readFrame();
+        } else if (state == State.WAITING) {
+            deliverNextAfterEnd();
+        }
+        return state != State.IDLE;
+    }
+
+    private void readFrame() {
+        int n = source.read(frame, 0, frame.length);
+        if (n < 0) {
+            // 录音读完
+            endRecording();
+            return;
+        }
+        now += n * 1000L / (source.getSampleRate() * 2L);
+        int volume = toVolume(frame, n);
+        listener.onVolumeChanged(volume / (float) MAX_VOLUME);
+        while (state == State.RECORDING && nextEntry < script.getEntries().size()) {
+            ReplayScript.Entry entry = script.getEntries().get(nextEntry);
+            if (entry.afterEnd || entry.millis > now) {
+                break;
+            }
+            nextEntry++;
+            deliver(entry);
+        }
+        if (state != State.RECORDING) {
+            return;
+        }
+        if (adaptiveEndpointEnabled && endpointer.onVolume(volume, now)) {
+            stopListening();
+            return;
+        }
+        // 固定 VAD：最低音量之上一定幅度视为语音
+        minVolume = Math.min(minVolume, volume);
+        if (volume >= minVolume + VAD_MARGIN) {
+            speechSeen = true;
+            lastSpeechMillis = now;
+        }
+        if (speechSeen && now - lastSpeechMillis >= VAD_EOS) {
+            endRecording();
+        } else if (!speechSeen && now >= VAD_BOS) {
+            source.stop();
+            finish();
+            listener.onError("未检测到语音", false);
+        }
+    }
+
+    private void endRecording() {
+        source.stop();
+        endMillis = now;
+        state = State.WAITING;
+        listener.onRecordingEnd();
+        // 云端已收到录音结束前的音频，尚未返回的录音中结果在结束时到达
+        while (state == State.WAITING && nextEntry < script.getEntries().size()
+                && !script.getEntries().get(nextEntry).afterEnd) {
+            truncatedResults++;
+            deliver(script.getEntries().get(nextEntry++));
+        }
+    }
+
+    private void deliverNextAfterEnd() {
+        if (nextEntry >= script.getEntries().size()) {
+            finish();
+            listener.onError("脚本没有最终结果", true);
+            return;
+        }
+        ReplayScript.Entry entry = script.getEntries().get(nextEntry++);
+        now = Math.max(now, endMillis + entry.millis);
+        deliver(entry);
+    }
+
+    /**
+     * 与 IflytekSpeechEngine 的 onResult 相同的处理
+     */
+    private void deliver(ReplayScript.Entry entry) {
+        String text;
+        if (script.isStreaming()) {
+            parser.parse(entry.json);
+            if (parser.getError() == IatResultParser.Error.NONE
+                    || parser.getError() == IatResultParser.Error.BAD_SCHEMA) {
+                accumulator.apply(parser.getSn(), parser.getText(), parser.isReplace(),
+                        parser.getRgStart(), parser.getRgEnd());
+            }
+            text = accumulator.getText();
+        } else {
+            parser.parse(entry.json);
+            text = parser.getText();
+        }
+        if (entry.last) {
+            if (state == State.RECORDING) {
+                source.stop();
+                endMillis = now;
+                listener.onRecordingEnd();
+            }
+            finish();
+            listener.onResult(text);
+        } else if (streamingEnabled && script.isStreaming()) {
+            listener.onPartialResult(text);
+        }
+    }
+
+    private void finish() {
+        state = State.IDLE;
+        source = null;
+    }
+
+    /**
+     * 一帧 PCM 的音量，讯飞刻度 0~30
+     */
+    static int toVolume(byte[] pcm, int length) {
+        int count = length / 2;
+        if (count == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            int sample = (short) ((pcm[i * 2] & 0xff) | (pcm[i * 2 + 1] << 8));
+            sum += (double) sample * sample;
+        }
+        double db = 10 * Math.log10(sum / count + 1e-9);
+        double level = (db - MIN_DB) / (MAX_DB - MIN_DB) * MAX_VOLUME;
+        return (int) Math.round(Math.max(0, Math.min(MAX_VOLUME, level)));
+    }
+}
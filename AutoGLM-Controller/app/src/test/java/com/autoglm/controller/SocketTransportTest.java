@@ -0,0 +1,325 @@
+package com.autoglm.controller;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * socket 通道测试：使用本地 agent 替身，不依赖设备
+ */
+public class SocketTransportTest {
+    private static final String TOKEN = "0123456789abcdef";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File tokenFile;
+
+    @Before
+    public void writeToken() throws IOException {
+        tokenFile = new File(folder.getRoot(), SocketTransport.TOKEN_FILE_NAME);
+        writeFile(tokenFile, TOKEN + "\n");
+    }
+
+    @Test
+    public void commandsGoToAgentAndStatusIsPushed() throws Exception {
+        FakeAgentServer server = new FakeAgentServer(0, TOKEN);
+        RecordingTransport fallback = new RecordingTransport();
+        SocketTransport transport = new SocketTransport("127.0.0.1", server.getPort(), tokenFile, fallback);
+        try {
+            assertTrue(server.awaitClient(5000));
+            waitConnected(transport);
+
+            assertTrue(transport.sendCommand("打开微信"));
+            assertEquals("打开微信", server.takeCommand(5000));
+            assertTrue(fallback.commands.isEmpty());
+
+            final CountDownLatch pushed = new CountDownLatch(1);
+            transport.setOnStatusPushListener(status -> pushed.countDown());
+            server.pushStatus("STATUS: PROCESSING");
+            assertTrue(pushed.await(5, TimeUnit.SECONDS));
+            assertEquals("STATUS: PROCESSING", transport.readStatus());
+            // 纯文本命令以新推送的 PROCESSING 确认
+            assertEquals(0, transport.getUnacknowledgedCount());
+        } finally {
+            transport.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void fallsBackWhenNoAgentIsListening() throws Exception {
+        // 先占用再释放一个端口，保证无人监听
+        FakeAgentServer probe = new FakeAgentServer(0, TOKEN);
+        int port = probe.getPort();
+        probe.close();
+
+        RecordingTransport fallback = new RecordingTransport();
+        SocketTransport transport = new SocketTransport("127.0.0.1", port, tokenFile, fallback);
+        try {
+            assertFalse(transport.isConnected());
+            assertTrue(transport.sendCommand("返回桌面"));
+            assertEquals(1, fallback.commands.size());
+            assertEquals("文件状态", transport.readStatus());
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void reconnectsAfterAgentRestarts() throws Exception {
+        FakeAgentServer server = new FakeAgentServer(0, TOKEN);
+        int port = server.getPort();
+        SocketTransport transport = new SocketTransport("127.0.0.1", port, tokenFile, new RecordingTransport());
+        try {
+            waitConnected(transport);
+            server.close();
+
+            server = new FakeAgentServer(port, TOKEN);
+            assertTrue(server.awaitClient(10000));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (transport.getConnectCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, transport.getConnectCount());
+            waitConnected(transport);
+
+            assertTrue(transport.sendCommand("继续"));
+            assertEquals("继续", server.takeCommand(5000));
+        } finally {
+            transport.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void unacknowledgedCommandsAreResentAfterReconnect() throws Exception {
+        FakeAgentServer server = new FakeAgentServer(0, TOKEN);
+        int port = server.getPort();
+        RecordingTransport fallback = new RecordingTransport();
+        SocketTransport transport = new SocketTransport("127.0.0.1", port, tokenFile, fallback);
+        try {
+            waitConnected(transport);
+            assertTrue(transport.sendCommand("ID: a\n打开微信"));
+            assertEquals("ID: a\n打开微信", server.takeCommand(5000));
+
+            // agent 确认前断开：重连后重发
+            server.close();
+            server = new FakeAgentServer(port, TOKEN);
+            assertTrue(server.awaitClient(10000));
+            assertEquals("ID: a\n打开微信", server.takeCommand(5000));
+            assertTrue(fallback.commands.isEmpty());
+
+            // 确认后不再重发
+            server.pushStatus("STATUS: ACCEPTED\nID: a");
+            waitAcknowledged(transport);
+            server.close();
+            server = new FakeAgentServer(port, TOKEN);
+            assertTrue(server.awaitClient(10000));
+            assertNull(server.takeCommand(200));
+        } finally {
+            transport.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void unacknowledgedCommandsSurviveRestart() throws Exception {
+        FakeAgentServer server = new FakeAgentServer(0, TOKEN);
+        SocketTransport transport = new SocketTransport("127.0.0.1", server.getPort(), tokenFile,
+                new RecordingTransport());
+        try {
+            waitConnected(transport);
+            assertTrue(transport.sendCommand("ID: a\n打开微信"));
+            assertTrue(transport.sendCommand("ID: b\n打开设置"));
+            assertEquals("ID: a\n打开微信", server.takeCommand(5000));
+            assertEquals("ID: b\n打开设置", server.takeCommand(5000));
+            // 确认 b 也确认了它之前的 a
+            server.pushStatus("STATUS: SUCCESS\nID: a");
+            server.pushStatus("STATUS: PROCESSING\nID: b");
+            waitAcknowledged(transport);
+            assertTrue(transport.sendCommand("ID: c\n打开相机"));
+            assertEquals("ID: c\n打开相机", server.takeCommand(5000));
+        } finally {
+            transport.close();
+        }
+
+        // 控制器进程重启后，未确认的命令仍在日志中，连接后重发
+        transport = new SocketTransport("127.0.0.1", server.getPort(), tokenFile, new RecordingTransport());
+        try {
+            assertEquals(1, transport.getUnacknowledgedCount());
+            assertEquals("ID: c\n打开相机", server.takeCommand(10000));
+        } finally {
+            transport.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void unacknowledgedCommandsMoveToFallbackWhenAgentStopsListening() throws Exception {
+        FakeAgentServer server = new FakeAgentServer(0, TOKEN);
+        RecordingTransport fallback = new RecordingTransport();
+        SocketTransport transport = new SocketTransport("127.0.0.1", server.getPort(), tokenFile, fallback, 10);
+        try {
+            waitConnected(transport);
+            assertTrue(transport.sendCommand("ID: a\n打开微信"));
+            assertEquals("ID: a\n打开微信", server.takeCommand(5000));
+            server.close();
+
+            waitParked(transport);
+            assertEquals(Collections.singletonList("ID: a\n打开微信"), fallback.commands);
+            assertEquals(0, transport.getUnacknowledgedCount());
+        } finally {
+            transport.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void agentWithWrongTokenIsNotTrusted() throws Exception {
+        FakeAgentServer server = new FakeAgentServer(0, "another-token");
+        RecordingTransport fallback = new RecordingTransport();
+        SocketTransport transport = new SocketTransport("127.0.0.1", server.getPort(), tokenFile, fallback, 10);
+        try {
+            waitParked(transport);
+            assertEquals(0, transport.getConnectCount());
+            assertTrue(transport.sendCommand("打开微信"));
+            assertEquals(1, fallback.commands.size());
+            assertNull(server.takeCommand(100));
+        } finally {
+            transport.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void controllerWithWrongTokenIsRejected() throws Exception {
+        FakeAgentServer server = new FakeAgentServer(0, TOKEN);
+        // 伪造的客户端：认证 agent 时跳过校验，用错误的令牌应答
+        try (Socket s = new Socket("127.0.0.1", server.getPort())) {
+            DataOutputStream out = new DataOutputStream(s.getOutputStream());
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            SocketTransport.writeFrame(out, SocketTransport.TYPE_HELLO, "c");
+            String agentNonce = SocketTransport.readFrame(in).payload.split(" ")[0];
+            SocketTransport.writeFrame(out, SocketTransport.TYPE_HELLO, SocketTransport.sign(
+                    "guess".getBytes(StandardCharsets.UTF_8), "controller:" + agentNonce + ":c"));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getRejected() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, server.getRejected());
+            assertFalse(server.awaitClient(50));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void stopsRetryingUntilAgentAdvertisesListener() throws Exception {
+        FakeAgentServer probe = new FakeAgentServer(0, TOKEN);
+        int port = probe.getPort();
+        probe.close();
+
+        RecordingTransport fallback = new RecordingTransport();
+        SocketTransport transport = new SocketTransport("127.0.0.1", port, tokenFile, fallback, 10);
+        FakeAgentServer server = null;
+        try {
+            waitParked(transport);
+            assertFalse(transport.isConnected());
+
+            server = new FakeAgentServer(port, TOKEN);
+            // 状态未变化或未声明本端口时不恢复
+            transport.readStatus();
+            fallback.status = "STATUS: IDLE\nPROTOCOL: 3\nSOCKET: " + (port + 1);
+            transport.readStatus();
+            assertFalse(server.awaitClient(200));
+            assertTrue(transport.isParked());
+
+            fallback.status = "STATUS: IDLE\nPROTOCOL: 3\nSOCKET: " + port;
+            transport.readStatus();
+            assertTrue(server.awaitClient(5000));
+            waitConnected(transport);
+            assertTrue(transport.sendCommand("返回桌面"));
+            assertEquals("返回桌面", server.takeCommand(5000));
+        } finally {
+            transport.close();
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static void waitParked(SocketTransport transport) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!transport.isParked() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(transport.isParked());
+    }
+
+    private static void writeFile(File file, String content) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void waitAcknowledged(SocketTransport transport) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transport.getUnacknowledgedCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, transport.getUnacknowledgedCount());
+    }
+
+    private static void waitConnected(SocketTransport transport) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!transport.isConnected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(transport.isConnected());
+    }
+
+    /**
+     * 记录调用的备用通道
+     */
+    private static class RecordingTransport implements CommandTransport {
+        final List<String> commands = new ArrayList<>();
+        volatile String status = "文件状态";
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public boolean sendCommand(String command) {
+            commands.add(command);
+            return true;
+        }
+
+        @Override
+        public String readStatus() {
+            return status;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
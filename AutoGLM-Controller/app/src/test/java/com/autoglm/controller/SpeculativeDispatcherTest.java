@@ -0,0 +1,188 @@
+package com.autoglm.controller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 预发送的确认与修正逻辑测试
+ */
+public class SpeculativeDispatcherTest {
+
+    private final List<String> events = new ArrayList<>();
+    private boolean holdSupported = true;
+    private final SpeculativeDispatcher dispatcher = new SpeculativeDispatcher(new SpeculativeDispatcher.Listener() {
+        @Override
+        public boolean canSpeculate() {
+            return holdSupported;
+        }
+
+        @Override
+        public void onDispatch(String text, boolean speculative) {
+            events.add((speculative ? "speculative:" : "dispatch:") + text);
+        }
+
+        @Override
+        public void onConfirm(String text) {
+            events.add("confirm:" + text);
+        }
+
+        @Override
+        public void onCancel(String dispatched) {
+            events.add("cancel:" + dispatched);
+        }
+    });
+
+    @Test
+    public void stableHypothesisIsSentAtEndOfSpeechAndConfirmed() {
+        dispatcher.onPartial("打开");
+        dispatcher.onPartial("打开微信");
+        dispatcher.onPartial("打开微信");
+        dispatcher.onEndOfSpeech();
+        dispatcher.onFinal("打开微信。");
+
+        assertEquals(2, events.size());
+        assertEquals("speculative:打开微信", events.get(0));
+        assertEquals("confirm:打开微信。", events.get(1));
+    }
+
+    @Test
+    public void growingHypothesisWaitsForFinalResult() {
+        dispatcher.onPartial("打开");
+        dispatcher.onPartial("打开微信");
+        dispatcher.onEndOfSpeech();
+        assertTrue(events.isEmpty());
+
+        dispatcher.onFinal("打开微信");
+        assertEquals("dispatch:打开微信", events.get(0));
+    }
+
+    @Test
+    public void lateStablePartialIsSentAfterEndOfSpeech() {
+        dispatcher.onPartial("返回");
+        dispatcher.onEndOfSpeech();
+        dispatcher.onPartial("返回桌面");
+        dispatcher.onPartial("返回桌面");
+        assertEquals("speculative:返回桌面", events.get(0));
+    }
+
+    @Test
+    public void differentFinalResultCancelsAndSendsFinal() {
+        dispatcher.onPartial("打开微信");
+        dispatcher.onPartial("打开微信");
+        dispatcher.onEndOfSpeech();
+        dispatcher.onFinal("打开微博");
+
+        assertEquals("[speculative:打开微信, cancel:打开微信, dispatch:打开微博]", events.toString());
+    }
+
+    @Test
+    public void noSpeculationWithoutHoldSupportAndAbandonCancels() {
+        holdSupported = false;
+        dispatcher.onPartial("打开微信");
+        dispatcher.onPartial("打开微信");
+        dispatcher.onEndOfSpeech();
+        assertTrue(events.isEmpty());
+        dispatcher.onFinal("打开微信");
+        assertEquals("[dispatch:打开微信]", events.toString());
+
+        // 识别失败：取消尚未确认的预发送命令
+        events.clear();
+        holdSupported = true;
+        dispatcher.onPartial("返回桌面");
+        dispatcher.onPartial("返回桌面");
+        dispatcher.onEndOfSpeech();
+        dispatcher.abandon();
+        dispatcher.abandon();
+        assertEquals("[speculative:返回桌面, cancel:返回桌面]", events.toString());
+    }
+
+    @Test
+    public void revisionDoesNotExecuteBothCommands() {
+        CommandTracker tracker = new CommandTracker(() -> 0, "s");
+        tracker.onStatus(AgentStatus.parse("STATUS: IDLE\nPROTOCOL: 3"));
+        assertTrue(tracker.isHoldEnabled());
+        HoldAgent agent = new HoldAgent();
+        String[] held = new String[1];
+        SpeculativeDispatcher wired = new SpeculativeDispatcher(new SpeculativeDispatcher.Listener() {
+            @Override
+            public boolean canSpeculate() {
+                return tracker.isHoldEnabled();
+            }
+
+            @Override
+            public void onDispatch(String text, boolean speculative) {
+                String payload = speculative ? tracker.prepareHeld(text) : tracker.prepare(text);
+                if (speculative) {
+                    held[0] = CommandTracker.idOf(payload);
+                }
+                agent.receive(payload);
+            }
+
+            @Override
+            public void onConfirm(String text) {
+                agent.receive(CommandTracker.encodeConfirm(held[0]));
+            }
+
+            @Override
+            public void onCancel(String dispatched) {
+                agent.receive(CommandTracker.encodeCancel(held[0]));
+            }
+        });
+
+        wired.onPartial("打开微信");
+        wired.onPartial("打开微信");
+        wired.onEndOfSpeech();
+        assertEquals("预发送的命令在确认前不执行", 0, agent.executed.size());
+        wired.onFinal("打开微博");
+        assertEquals("[打开微博]", agent.executed.toString());
+
+        wired.onPartial("返回桌面");
+        wired.onPartial("返回桌面");
+        wired.onEndOfSpeech();
+        wired.onFinal("返回桌面。");
+        assertEquals("[打开微博, 返回桌面]", agent.executed.toString());
+
+        // 旧版 agent（协议版本 2）不预发送
+        CommandTracker old = new CommandTracker(() -> 0, "o");
+        old.onStatus(AgentStatus.parse("STATUS: IDLE\nPROTOCOL: 2"));
+        assertTrue(old.isIdEnabled());
+        assertFalse(old.isHoldEnabled());
+    }
+
+    /**
+     * 按 main.py 的协议版本 3 处理命令：暂缓执行的命令收到 CONFIRM 才执行，
+     * 收到 CANCEL 或其他命令时丢弃
+     */
+    private static final class HoldAgent {
+        final List<String> executed = new ArrayList<>();
+        private String heldId;
+        private String heldText;
+
+        void receive(String payload) {
+            if (payload.startsWith(CommandTracker.CONFIRM_HEADER)) {
+                if (payload.substring(CommandTracker.CONFIRM_HEADER.length()).equals(heldId)) {
+                    executed.add(heldText);
+                }
+                heldId = null;
+                return;
+            }
+            if (payload.startsWith(CommandTracker.CANCEL_HEADER)) {
+                heldId = null;
+                return;
+            }
+            heldId = null;
+            String id = CommandTracker.idOf(payload);
+            String text = payload.substring(payload.indexOf('\n') + 1);
+            if (text.startsWith(CommandTracker.HOLD_HEADER)) {
+                heldId = id;
+                heldText = text.substring(text.indexOf('\n') + 1);
+            } else {
+                executed.add(text);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.autoglm.controller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 识别引擎选择与自动降级测试
+ */
+public class SpeechRecognizerHelperTest {
+    private final FakeSpeechEngine cloud = new FakeSpeechEngine("iflytek");
+    private final FakeSpeechEngine local = new FakeSpeechEngine("local");
+    private final List<String> events = new ArrayList<>();
+    private long now = 1000;
+    private SpeechRecognizerHelper helper;
+
+    @Before
+    public void setUp() {
+        helper = new SpeechRecognizerHelper(cloud, local);
+        helper.setClock(() -> now);
+        helper.setFallbackThresholds(3000, 2);
+        helper.setOnRecognizeResultListener(new SpeechRecognizerHelper.OnRecognizeResultListener() {
+            @Override
+            public void onResult(String result) {
+                events.add("result:" + result);
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                events.add("error:" + errorMsg);
+            }
+
+            @Override
+            public void onRecordingStart() {
+                events.add("start");
+            }
+
+            @Override
+            public void onRecordingEnd() {
+                events.add("end");
+            }
+        });
+        helper.setOnPartialResultListener(hypothesis -> events.add("partial:" + hypothesis));
+    }
+
+    @Test
+    public void forwardsCallbacksOfActiveEngine() {
+        helper.startListening();
+        cloud.speak("打开");
+        cloud.emitResult("打开微信");
+
+        assertEquals("[start, partial:打开, end, result:打开微信]", events.toString());
+        assertTrue(local.calls.isEmpty());
+    }
+
+    @Test
+    public void fallsBackAfterConsecutiveEngineFaults() {
+        failOnce(cloud, true);
+        assertEquals("iflytek", helper.getCurrentEngineName());
+        // 没有检测到语音不算故障
+        failOnce(cloud, false);
+        assertEquals("iflytek", helper.getCurrentEngineName());
+        failOnce(cloud, true);
+        assertEquals("local", helper.getCurrentEngineName());
+
+        helper.startListening();
+        assertTrue(local.isListening());
+        local.speak();
+        local.emitResult("返回桌面");
+        assertTrue(events.contains("result:返回桌面"));
+        assertEquals("local", helper.getCurrentEngineName());
+    }
+
+    @Test
+    public void fallsBackOnSlowResultsAndRetriesPrimaryLater() {
+        slowResult(cloud, 4000);
+        assertEquals("iflytek", helper.getCurrentEngineName());
+        slowResult(cloud, 4000);
+        assertEquals("local", helper.getCurrentEngineName());
+
+        // 冷却期过后重新尝试首选引擎，恢复正常后不再降级
+        now += EngineFallbackPolicy.DEFAULT_RETRY_AFTER_MILLIS;
+        assertEquals("iflytek", helper.getCurrentEngineName());
+        slowResult(cloud, 500);
+        assertEquals("iflytek", helper.getCurrentEngineName());
+        assertFalse(helper.getFallbackPolicy().isFallbackActive());
+    }
+
+    @Test
+    public void staleCallbacksAreIgnoredAndManualSelectionWins() {
+        assertTrue(helper.setEngine("local"));
+        assertFalse(helper.setEngine("unknown"));
+        helper.startListening();
+        assertTrue(local.isListening());
+
+        cloud.emitResult("过期的结果");
+        assertTrue(events.isEmpty());
+
+        local.setAvailable(false);
+        local.emitError("本机识别服务不可用", true);
+        assertEquals("iflytek", helper.getCurrentEngineName());
+    }
+
+    @Test
+    public void disabledFallbackKeepsPrimary() {
+        helper.setFallbackEnabled(false);
+        failOnce(cloud, true);
+        failOnce(cloud, true);
+        assertEquals("iflytek", helper.getCurrentEngineName());
+    }
+
+    private void failOnce(FakeSpeechEngine engine, boolean engineFault) {
+        helper.startListening();
+        engine.speak();
+        engine.emitError("网络错误", engineFault);
+    }
+
+    private void slowResult(FakeSpeechEngine engine, long latency) {
+        helper.startListening();
+        engine.speak();
+        now += latency;
+        engine.emitResult("打开微信");
+    }
+}
@@ -0,0 +1,71 @@
+package com.autoglm.controller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StartupTraceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private long now = 1000;
+    private final StartupTrace trace = new StartupTrace(() -> now);
+
+    @Test
+    public void recordsStagesRelativeToProcessStart() {
+        int[] completed = {0};
+        trace.setOnCompleteListener(t -> completed[0]++);
+        trace.begin(700, "foreground", "overlay", "storage");
+        assertTrue(trace.isColdStart());
+
+        trace.run("foreground", () -> now += 40);
+        long storageStart = trace.now();
+        trace.run("overlay", () -> now += 60);
+        now += 30;
+        trace.record("storage", storageStart);
+        assertTrue(trace.isComplete());
+        assertEquals(1, completed[0]);
+
+        List<StartupTrace.Stage> stages = trace.getStages();
+        assertEquals(StartupTrace.STAGE_PROCESS, stages.get(0).getName());
+        assertEquals(300, stages.get(0).getDurationMillis());
+        assertEquals(300, stages.get(1).getStartMillis());
+        assertEquals(40, stages.get(1).getDurationMillis());
+        assertEquals("storage", stages.get(3).getName());
+        assertEquals(90, stages.get(3).getDurationMillis());
+        assertEquals(430, trace.getTotalMillis());
+        assertTrue(trace.format(), trace.format().startsWith("cold 430ms  process@0+300  foreground@300+40["));
+
+        // 启动结束后的记录被忽略
+        trace.run("transport", () -> now += 10);
+        assertEquals(4, trace.getStages().size());
+        assertEquals(1, completed[0]);
+    }
+
+    @Test
+    public void warmStartBeginsAtServiceCreation() throws IOException {
+        trace.begin(-1, "overlay");
+        assertFalse(trace.isColdStart());
+        String value = trace.call("overlay", () -> {
+            now += 25;
+            return "ok";
+        });
+        assertEquals("ok", value);
+        assertEquals(25, trace.getTotalMillis());
+
+        File log = new File(folder.getRoot(), StartupTrace.LOG_FILE_NAME);
+        assertTrue(trace.appendTo(log));
+        assertTrue(trace.appendTo(log));
+        List<String> lines = Files.readAllLines(log.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0), lines.get(0).contains("\twarm 25ms  overlay@0+25["));
+    }
+}
@@ -0,0 +1,159 @@
+package com.autoglm.controller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class StatusTailReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String record(int step, String action, int progress) {
+        return "step=" + step + "\taction=" + action + "\tprogress=" + progress + "\tts=" + (1000 + step) + "\n";
+    }
+
+    private static void write(File file, String text, boolean append) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file, append)) {
+            fos.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void readsOnlyAppendedCompleteLines() throws IOException {
+        File file = new File(folder.getRoot(), CommandFiles.STATUS_FILE_NAME);
+        StatusTailReader reader = new StatusTailReader(file);
+        assertNull(reader.read());
+
+        write(file, StatusTailReader.LOG_HEADER + " 1 s1\n" + record(1, "打开 微信", 10), false);
+        String text = reader.read();
+        assertTrue(reader.isLog());
+        AgentStatus status = AgentStatus.parse(text);
+        assertEquals(AgentStatus.PROCESSING, status.getState());
+        assertTrue(text, text.contains("TASK: 第 1 步 打开 微信（10%）"));
+
+        // 未写完的行留到下次
+        write(file, "step=2\taction=点击 搜索", true);
+        assertSame(text, reader.read());
+        long offset = reader.getOffset();
+        write(file, "\tprogress=30\tstatus=PROCESSING\tid=k3x9a-12\tprotocol=2\n", true);
+        status = AgentStatus.parse(reader.read());
+        assertEquals("k3x9a-12", status.getCommandId());
+        assertEquals(2, reader.getRecord().getStep());
+        assertEquals(30, reader.getRecord().getProgress());
+        assertEquals("点击 搜索", reader.getRecord().getAction().toString());
+        assertTrue(reader.getOffset() > offset);
+        assertEquals(2, reader.getRecordCount());
+
+        write(file, "step=3\taction=完成\tprogress=100\tstatus=SUCCESS\n", true);
+        assertEquals(AgentStatus.SUCCESS, AgentStatus.parse(reader.read()).getState());
+        assertEquals(3, reader.getRecordCount());
+        assertEquals(0, reader.getResetCount());
+    }
+
+    @Test
+    public void restartsOnTruncationAndRotation() throws IOException {
+        File file = new File(folder.getRoot(), CommandFiles.STATUS_FILE_NAME);
+        StatusTailReader reader = new StatusTailReader(file);
+        StringBuilder log = new StringBuilder(StatusTailReader.LOG_HEADER + " 1 s1\n");
+        for (int i = 1; i <= 5; i++) {
+            log.append(record(i, "步骤" + i, i * 20));
+        }
+        write(file, log.toString(), false);
+        reader.read();
+        assertEquals(5, reader.getRecord().getStep());
+
+        // 截断后重新写入
+        write(file, StatusTailReader.LOG_HEADER + " 1 s1\n" + record(1, "重新开始", 5), false);
+        assertTrue(reader.read().contains("重新开始"));
+        assertEquals(1, reader.getResetCount());
+
+        // 换成新会话的文件，且比之前更长
+        StringBuilder rotated = new StringBuilder(StatusTailReader.LOG_HEADER + " 1 s2\n");
+        for (int i = 1; i <= 8; i++) {
+            rotated.append(record(i, "新任务" + i, i * 10));
+        }
+        write(file, rotated.toString(), false);
+        assertTrue(reader.read().contains("新任务8"));
+        assertEquals(2, reader.getResetCount());
+
+        file.delete();
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void legacySnapshotIsReadWhole() throws IOException {
+        File file = new File(folder.getRoot(), CommandFiles.STATUS_FILE_NAME);
+        StatusTailReader reader = new StatusTailReader(file);
+        write(file, "STATUS: PROCESSING\nID: a-1\nTASK: 打开微信\n", false);
+        String text = reader.read();
+        assertFalse(reader.isLog());
+        assertEquals("a-1", AgentStatus.parse(text).getCommandId());
+        assertSame("文件未变化时不重新读取", text, reader.read());
+
+        write(file, "STATUS: SUCCESS\nID: a-1\nTASK: 打开微信\nRESULT: 完成\n", false);
+        assertEquals(AgentStatus.SUCCESS, AgentStatus.parse(reader.read()).getState());
+
+        // 同一秒内等长的重写（修改时间不变），变化在开头指纹之后
+        String padding = "RESULT: 完成，共 3 步，已返回桌面，等待下一条命令\n";
+        write(file, "STATUS: SUCCESS\nID: a-1\nTASK: 打开微信\n" + padding + "STEP: 1\n", false);
+        long modified = file.lastModified();
+        assertTrue(reader.read().endsWith("STEP: 1\n"));
+        write(file, "STATUS: SUCCESS\nID: a-1\nTASK: 打开微信\n" + padding + "STEP: 2\n", false);
+        assertTrue(file.setLastModified(modified));
+        assertTrue("内容变化即重新生成", reader.read().endsWith("STEP: 2\n"));
+
+        // 超长行不影响之后的记录
+        StringBuilder longLine = new StringBuilder("step=1\taction=");
+        for (int i = 0; i < StatusTailReader.CHUNK_SIZE; i++) {
+            longLine.append('x');
+        }
+        write(file, StatusTailReader.LOG_HEADER + "\n" + longLine + "\n" + record(2, "继续", 50), false);
+        reader.read();
+        assertTrue(reader.isLog());
+        assertEquals(2, reader.getRecord().getStep());
+    }
+
+    @Test
+    public void allocationPerUpdateDoesNotGrowWithFileSize() throws IOException {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long small = allocationPerUpdate(bean, 10);
+        long large = allocationPerUpdate(bean, 20000);
+        assertTrue("每次更新分配：10 条记录后 " + small + " 字节，20000 条记录后 " + large + " 字节",
+                large < small * 2 + 4096);
+    }
+
+    /**
+     * 先写入 records 条记录，再测量追加一条记录后读取的平均分配量（不含写入本身）
+     */
+    private long allocationPerUpdate(com.sun.management.ThreadMXBean bean, int records) throws IOException {
+        File file = folder.newFile("status-" + records + ".txt");
+        StringBuilder log = new StringBuilder(StatusTailReader.LOG_HEADER + " 1 s\n");
+        for (int i = 1; i <= records; i++) {
+            log.append(record(i, "点击 按钮" + i, i % 100));
+        }
+        write(file, log.toString(), false);
+        StatusTailReader reader = new StatusTailReader(file);
+        reader.read();
+
+        long thread = Thread.currentThread().getId();
+        int updates = 50;
+        long total = 0;
+        for (int i = 0; i < updates; i++) {
+            write(file, record(records + i + 1, "点击 按钮", 50), true);
+            long before = bean.getThreadAllocatedBytes(thread);
+            reader.read();
+            total += bean.getThreadAllocatedBytes(thread) - before;
+        }
+        assertEquals(records + updates, reader.getRecordCount());
+        return total / updates;
+    }
+}
@@ -0,0 +1,305 @@
+package com.autoglm.controller;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 唤醒词检测的离线评估：准确率与 CPU 占用
+ * <p>
+ * 默认使用合成语料：以元音共振峰合成的多音节"短语"，唤醒词为固定的元音序列，
+ * 每次发音随机改变语速、基频、共振峰、音量与噪声；干扰项为其他元音序列、顺序打乱的序列与噪声。
+ * 设置系统属性 wake.clips 或环境变量 WAKE_CLIPS 指向录音目录时，额外评估真实录音：
+ * template* 为录入的模板，wake* 为唤醒词，其余为干扰项（16kHz 16 位单声道 .pcm 或 .wav）。打印各阈值下的结果，
+ * 并要求默认阈值下检出率不低于 {@link #MIN_RECORDED_DETECTION_RATE}、误唤醒率不高于 {@link #MAX_RECORDED_FALSE_ACCEPT_RATE}。
+ */
+public class WakePhraseSpotterTest {
+    private static final int RATE = WakePhraseSpotter.SAMPLE_RATE;
+    private static final float[] THRESHOLD_SCALES = {0.7f, 0.85f, 1f, 1.15f, 1.3f};
+    // 真实录音在默认阈值下的最低检出率与最高误唤醒率
+    private static final float MIN_RECORDED_DETECTION_RATE = 0.9f;
+    private static final float MAX_RECORDED_FALSE_ACCEPT_RATE = 0.05f;
+
+    // 元音共振峰 F1/F2/F3（Hz）
+    private static final float[][] VOWELS = {
+            {730, 1090, 2440},  // a
+            {270, 2290, 3010},  // i
+            {300, 870, 2240},   // u
+            {530, 1840, 2480},  // e
+            {570, 840, 2410},   // o
+    };
+    static final int[] WAKE = {0, 1, 4};
+
+    /**
+     * 合成一次发音：前后各有一段只有噪声的静音
+     */
+    static short[] utterance(Random rnd, int[] vowels, float stretch, float f0,
+                                     float snrDb, float gainDb) {
+        int lead = RATE * 3 / 10;
+        int syllable = (int) (RATE * 0.18f * stretch);
+        int transition = (int) (RATE * 0.04f * stretch);
+        int voiced = vowels.length * syllable + (vowels.length - 1) * transition;
+        int total = lead + voiced + RATE * 4 / 10;
+        float[] formantScale = new float[3];
+        for (int i = 0; i < 3; i++) {
+            formantScale[i] = 1f + (float) rnd.nextGaussian() * 0.04f;
+        }
+
+        double[] speech = new double[total];
+        double[] phase = new double[64];
+        double power = 0;
+        for (int n = 0; n < voiced; n++) {
+            // 当前所在音节与相邻音节之间的共振峰插值（协同发音）
+            int unit = syllable + transition;
+            int index = Math.min(n / unit, vowels.length - 1);
+            int within = n - index * unit;
+            float mix = within > syllable && index + 1 < vowels.length
+                    ? (float) (within - syllable) / transition : 0f;
+            float[] from = VOWELS[vowels[index]];
+            float[] to = VOWELS[vowels[Math.min(index + 1, vowels.length - 1)]];
+            // 基频随时间缓慢下降
+            double pitch = f0 * (1 - 0.12 * n / voiced);
+            double envelope = Math.min(1, Math.min(n, voiced - n) / (0.02 * RATE));
+            double sample = 0;
+            for (int k = 1; k < phase.length && k * pitch < 5000; k++) {
+                double freq = k * pitch;
+                double amplitude = 0;
+                for (int f = 0; f < 3; f++) {
+                    double formant = (from[f] * (1 - mix) + to[f] * mix) * formantScale[f];
+                    double bandwidth = 60 + formant * 0.05;
+                    double d = (freq - formant) / bandwidth;
+                    amplitude += 1 / (1 + d * d);
+                }
+                phase[k] += 2 * Math.PI * freq / RATE;
+                sample += amplitude / k * Math.sin(phase[k]);
+            }
+            speech[lead + n] = sample * envelope;
+            power += speech[lead + n] * speech[lead + n];
+        }
+        double rms = Math.sqrt(power / voiced);
+        double gain = 8000 / rms * Math.pow(10, gainDb / 20);
+        double noise = 8000 * Math.pow(10, (gainDb - snrDb) / 20);
+        short[] pcm = new short[total];
+        for (int n = 0; n < total; n++) {
+            double v = speech[n] * gain + rnd.nextGaussian() * noise;
+            pcm[n] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+        }
+        return pcm;
+    }
+
+    /**
+     * 以唤醒词开头的序列（如唤醒词后接着说话）本就应当唤醒，不作为干扰项
+     */
+    private static boolean startsWith(int[] vowels, int[] prefix) {
+        return vowels.length >= prefix.length
+                && Arrays.equals(Arrays.copyOf(vowels, prefix.length), prefix);
+    }
+
+    private static short[] noiseBurst(Random rnd, int millis) {
+        int lead = RATE * 3 / 10;
+        short[] pcm = new short[lead + RATE * millis / 1000 + RATE * 4 / 10];
+        for (int n = 0; n < pcm.length; n++) {
+            double level = n >= lead && n < pcm.length - RATE * 4 / 10 ? 6000 : 60;
+            pcm[n] = (short) (rnd.nextGaussian() * level);
+        }
+        return pcm;
+    }
+
+    private static short[] randomWake(Random rnd) {
+        return utterance(rnd, WAKE, 0.8f + rnd.nextFloat() * 0.45f, 100 + rnd.nextFloat() * 140,
+                10 + rnd.nextFloat() * 20, -12 + rnd.nextFloat() * 18);
+    }
+
+    /**
+     * 合成语料：模板、唤醒词与干扰项
+     */
+    private static final class Corpus {
+        final List<short[]> templates = new ArrayList<>();
+        final List<short[]> positives = new ArrayList<>();
+        final List<short[]> negatives = new ArrayList<>();
+    }
+
+    private static Corpus syntheticCorpus() {
+        Random rnd = new Random(42);
+        Corpus corpus = new Corpus();
+        for (int i = 0; i < 3; i++) {
+            corpus.templates.add(utterance(rnd, WAKE, 0.95f + rnd.nextFloat() * 0.1f, 150, 30, 0));
+        }
+        for (int i = 0; i < 40; i++) {
+            corpus.positives.add(randomWake(rnd));
+        }
+        int[][] confusable = {{1, 0, 4}, {4, 1, 0}, {0, 4, 1}, {0, 1}, {1, 4}, {0, 1, 3}, {3, 1, 4}, {0, 2, 4}};
+        for (int[] vowels : confusable) {
+            for (int i = 0; i < 4; i++) {
+                corpus.negatives.add(utterance(rnd, vowels, 0.85f + rnd.nextFloat() * 0.3f,
+                        100 + rnd.nextFloat() * 140, 15 + rnd.nextFloat() * 15, -6 + rnd.nextFloat() * 6));
+            }
+        }
+        for (int i = 0; i < 20; i++) {
+            int[] vowels = new int[2 + rnd.nextInt(3)];
+            do {
+                for (int v = 0; v < vowels.length; v++) {
+                    vowels[v] = rnd.nextInt(VOWELS.length);
+                }
+            } while (startsWith(vowels, WAKE));
+            corpus.negatives.add(utterance(rnd, vowels, 0.85f + rnd.nextFloat() * 0.3f,
+                    100 + rnd.nextFloat() * 140, 15 + rnd.nextFloat() * 15, -6 + rnd.nextFloat() * 6));
+        }
+        for (int i = 0; i < 8; i++) {
+            corpus.negatives.add(noiseBurst(rnd, 300 + rnd.nextInt(900)));
+        }
+        return corpus;
+    }
+
+    private static WakePhraseSpotter spotter(List<short[]> templates, float threshold) {
+        WakePhraseSpotter spotter = new WakePhraseSpotter();
+        for (short[] template : templates) {
+            assertTrue(spotter.addTemplate(template, template.length));
+        }
+        spotter.setThreshold(threshold);
+        return spotter;
+    }
+
+    /**
+     * 逐片段检测，模拟采集线程每次送入 100ms
+     */
+    private static int countDetections(WakePhraseSpotter spotter, List<short[]> clips) {
+        int detections = 0;
+        for (short[] clip : clips) {
+            spotter.reset();
+            boolean detected = false;
+            for (int offset = 0; offset < clip.length; offset += RATE / 10) {
+                int length = Math.min(RATE / 10, clip.length - offset);
+                detected |= spotter.process(clip, offset, length) == WakePhraseSpotter.Event.DETECTED;
+            }
+            if (detected) {
+                detections++;
+            }
+        }
+        return detections;
+    }
+
+    @Test
+    public void defaultThresholdDetectsWakePhraseAndRejectsOthers() {
+        Corpus corpus = syntheticCorpus();
+        WakePhraseSpotter spotter = spotter(corpus.templates, WakePhraseSpotter.DEFAULT_THRESHOLD);
+        int hits = countDetections(spotter, corpus.positives);
+        int falseAccepts = countDetections(spotter, corpus.negatives);
+        assertTrue("检出 " + hits + "/" + corpus.positives.size(), hits >= corpus.positives.size() * 0.9);
+        assertTrue("误唤醒 " + falseAccepts + "/" + corpus.negatives.size(), falseAccepts <= 1);
+    }
+
+    @Test
+    public void higherThresholdTradesFalseAcceptsForRecall() {
+        Corpus corpus = syntheticCorpus();
+        int previousHits = -1;
+        int previousFalseAccepts = -1;
+        for (float scale : THRESHOLD_SCALES) {
+            float threshold = WakePhraseSpotter.DEFAULT_THRESHOLD * scale;
+            WakePhraseSpotter spotter = spotter(corpus.templates, threshold);
+            int hits = countDetections(spotter, corpus.positives);
+            int falseAccepts = countDetections(spotter, corpus.negatives);
+            assertTrue("阈值 " + threshold + " 检出 " + hits + "，少于 " + previousHits, hits >= previousHits);
+            assertTrue("阈值 " + threshold + " 误唤醒 " + falseAccepts + "，少于 " + previousFalseAccepts,
+                    falseAccepts >= previousFalseAccepts);
+            previousHits = hits;
+            previousFalseAccepts = falseAccepts;
+        }
+    }
+
+    @Test
+    public void cpuStaysWellBelowRealTime() {
+        Corpus corpus = syntheticCorpus();
+        WakePhraseSpotter spotter = spotter(corpus.templates, WakePhraseSpotter.DEFAULT_THRESHOLD);
+        Random rnd = new Random(7);
+
+        // 60 秒：安静背景中每隔几秒出现一次语音
+        short[] stream = new short[RATE * 60];
+        for (int n = 0; n < stream.length; n++) {
+            stream[n] = (short) (rnd.nextGaussian() * 60);
+        }
+        int speechSamples = 0;
+        for (int offset = RATE; offset < stream.length - RATE * 3; offset += RATE * 4) {
+            short[] clip = rnd.nextBoolean() ? randomWake(rnd)
+                    : corpus.negatives.get(rnd.nextInt(corpus.negatives.size()));
+            System.arraycopy(clip, 0, stream, offset, clip.length);
+            speechSamples += clip.length;
+        }
+        short[] silence = new short[RATE * 60];
+        for (int n = 0; n < silence.length; n++) {
+            silence[n] = (short) (rnd.nextGaussian() * 60);
+        }
+
+        // 预热 JIT
+        run(spotter, stream);
+        double busy = run(spotter, stream) / (stream.length * 1e9 / RATE);
+        double idle = run(spotter, silence) / (silence.length * 1e9 / RATE);
+        // 桌面 JVM 上的宽松上限；手机上约慢一个数量级，仍在 1% 量级
+        assertTrue(String.format("含语音（占 %d%%）时 CPU %.3f%%", speechSamples * 100 / stream.length, busy * 100),
+                busy < 0.01);
+        assertTrue(String.format("安静时 CPU %.4f%%", idle * 100), idle < 0.002);
+    }
+
+    /**
+     * @return 处理耗费的线程 CPU 时间（纳秒）
+     */
+    private static long run(WakePhraseSpotter spotter, short[] stream) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        spotter.reset();
+        long start = bean.getCurrentThreadCpuTime();
+        for (int offset = 0; offset < stream.length; offset += RATE / 10) {
+            spotter.process(stream, offset, Math.min(RATE / 10, stream.length - offset));
+        }
+        return bean.getCurrentThreadCpuTime() - start;
+    }
+
+    @Test
+    public void recordedClipsWhenProvided() throws IOException {
+        String path = System.getProperty("wake.clips", System.getenv("WAKE_CLIPS"));
+        Assume.assumeNotNull(path);
+        File[] files = new File(path).listFiles();
+        assertNotNull("目录不存在: " + path, files);
+        List<short[]> templates = new ArrayList<>();
+        List<short[]> positives = new ArrayList<>();
+        List<short[]> negatives = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName().toLowerCase();
+            if (!name.endsWith(".pcm") && !name.endsWith(".wav")) {
+                continue;
+            }
+            PcmFiles.Clip clip = PcmFiles.read(file, RATE);
+            assertEquals(file.getName(), RATE, clip.sampleRate);
+            (name.startsWith("template") ? templates : name.startsWith("wake") ? positives : negatives)
+                    .add(clip.samples);
+        }
+        assertFalse("没有模板", templates.isEmpty());
+        assertFalse("没有唤醒词录音", positives.isEmpty());
+        assertFalse("没有干扰项录音", negatives.isEmpty());
+        System.out.println("录音：模板 " + templates.size() + "，唤醒词 " + positives.size() + "，干扰项 " + negatives.size());
+        System.out.println("阈值    检出率  误唤醒");
+        for (float scale : THRESHOLD_SCALES) {
+            float threshold = WakePhraseSpotter.DEFAULT_THRESHOLD * scale;
+            WakePhraseSpotter spotter = spotter(templates, threshold);
+            int hits = countDetections(spotter, positives);
+            int falseAccepts = countDetections(spotter, negatives);
+            System.out.printf("%.2f    %.2f    %d/%d%n", threshold, (float) hits / positives.size(),
+                    falseAccepts, negatives.size());
+        }
+
+        WakePhraseSpotter spotter = spotter(templates, WakePhraseSpotter.DEFAULT_THRESHOLD);
+        float detectionRate = (float) countDetections(spotter, positives) / positives.size();
+        float falseAcceptRate = (float) countDetections(spotter, negatives) / negatives.size();
+        assertTrue("默认阈值检出率 " + detectionRate, detectionRate >= MIN_RECORDED_DETECTION_RATE);
+        assertTrue("默认阈值误唤醒率 " + falseAcceptRate, falseAcceptRate <= MAX_RECORDED_FALSE_ACCEPT_RATE);
+    }
+}
@@ -0,0 +1,188 @@
+package com.autoglm.controller;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * 唤醒触发的麦克风交接测试：亮屏持续采集、检测到唤醒词后先释放麦克风，
+ * 长按录音时暂停与恢复，息屏轮换。音频来自脚本，不依赖麦克风。
+ */
+public class WakeWordTriggerTest {
+    private static final int RATE = WakePhraseSpotter.SAMPLE_RATE;
+
+    private final List<ScriptedSource> sources = new CopyOnWriteArrayList<>();
+    private WakeWordTrigger trigger;
+
+    @After
+    public void stopTrigger() {
+        if (trigger != null) {
+            trigger.stop();
+        }
+    }
+
+    @Test
+    public void screenOnListensContinuouslyAndReleasesMicBeforeWake() throws Exception {
+        short[] template = WakePhraseSpotterTest.utterance(new Random(1), WakePhraseSpotterTest.WAKE, 1f, 150, 30, 0);
+        short[] spoken = WakePhraseSpotterTest.utterance(new Random(2), WakePhraseSpotterTest.WAKE, 1f, 150, 30, 0);
+        WakePhraseSpotter spotter = new WakePhraseSpotter();
+        assertTrue(spotter.addTemplate(template, template.length));
+
+        // 先有 3 秒背景噪声（重复唤醒词录音开头的噪声段，电平一致），再说唤醒词
+        int lead = RATE * 3 / 10;
+        short[] script = new short[RATE * 3 + spoken.length];
+        for (int i = 0; i < RATE * 3; i++) {
+            script[i] = spoken[i % lead];
+        }
+        System.arraycopy(spoken, 0, script, RATE * 3, spoken.length);
+        CountDownLatch woke = new CountDownLatch(1);
+        boolean[] micReleased = new boolean[1];
+        trigger = new WakeWordTrigger(() -> newSource(sources.isEmpty() ? script : new short[0]), spotter,
+                new WakeWordTrigger.Listener() {
+                    @Override
+                    public void onWake() {
+                        micReleased[0] = sources.get(0).stopped;
+                        woke.countDown();
+                    }
+
+                    @Override
+                    public void onEnrolled(short[] pcm) {
+                    }
+                });
+        trigger.setScreenOn(true);
+        trigger.start();
+
+        assertTrue(woke.await(10, TimeUnit.SECONDS));
+        assertEquals("亮屏时一直用同一次采集，中途不关闭麦克风", 1, sources.size());
+        assertTrue(sources.get(0).samplesRead >= RATE * 3);
+        assertTrue("回调前已释放麦克风", micReleased[0]);
+
+        // 检测后自动暂停，识别结束前不重新打开麦克风
+        Thread.sleep(200);
+        assertEquals(1, sources.size());
+        trigger.resume();
+        await(() -> sources.size() == 2 && sources.get(1).samplesRead > 0);
+        assertFalse(sources.get(1).stopped);
+    }
+
+    @Test
+    public void longPressPausesAndResumesCapture() throws Exception {
+        trigger = new WakeWordTrigger(() -> newSource(new short[0]), new WakePhraseSpotter(), new NoopListener());
+        // 识别进行中才开启唤醒词：暂停状态下启动，不打开麦克风
+        trigger.pause();
+        trigger.start();
+        Thread.sleep(100);
+        assertTrue(sources.isEmpty());
+
+        trigger.resume();
+        await(() -> sources.size() == 1 && sources.get(0).samplesRead > RATE);
+        assertFalse(sources.get(0).stopped);
+
+        // 按下悬浮窗：麦克风让给识别器
+        trigger.pause();
+        await(() -> sources.get(0).stopped);
+        Thread.sleep(100);
+        assertEquals(1, sources.size());
+
+        // 识别结束：重新打开麦克风继续监听
+        trigger.resume();
+        await(() -> sources.size() == 2 && sources.get(1).samplesRead > 0);
+        assertFalse(sources.get(1).stopped);
+    }
+
+    @Test
+    public void screenOffCyclesMicAndScreenOnResumesAtOnce() throws Exception {
+        trigger = new WakeWordTrigger(() -> newSource(new short[0]), new WakePhraseSpotter(), new NoopListener());
+        trigger.setScreenOn(false);
+        trigger.start();
+        await(() -> sources.size() == 1 && sources.get(0).stopped);
+        // 休眠段内不打开麦克风
+        Thread.sleep(200);
+        assertEquals(1, sources.size());
+
+        trigger.setScreenOn(true);
+        await(() -> sources.size() == 2 && sources.get(1).samplesRead > 0);
+        Thread.sleep(WakeWordTrigger.SCREEN_OFF_LISTEN_MILLIS + 200);
+        assertFalse("亮屏后持续采集", sources.get(1).stopped);
+        assertEquals(2, sources.size());
+    }
+
+    private ScriptedSource newSource(short[] script) {
+        ScriptedSource source = new ScriptedSource(script);
+        sources.add(source);
+        return source;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * 先播放脚本再输出背景噪声；每次读取稍作停顿，远快于实时
+     */
+    private static final class ScriptedSource implements AudioSource {
+        private final short[] script;
+        private final Random noise = new Random(4);
+        volatile int samplesRead;
+        volatile boolean stopped;
+
+        ScriptedSource(short[] script) {
+            this.script = script;
+        }
+
+        @Override
+        public boolean start() {
+            return true;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int samples = length / 2;
+            for (int i = 0; i < samples; i++) {
+                int index = samplesRead + i;
+                short value = index < script.length ? script[index] : (short) (noise.nextGaussian() * 30);
+                buffer[offset + 2 * i] = (byte) value;
+                buffer[offset + 2 * i + 1] = (byte) (value >> 8);
+            }
+            samplesRead += samples;
+            return samples * 2;
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return RATE;
+        }
+    }
+
+    private static final class NoopListener implements WakeWordTrigger.Listener {
+        @Override
+        public void onWake() {
+        }
+
+        @Override
+        public void onEnrolled(short[] pcm) {
+        }
+    }
+}
@@ -0,0 +1,56 @@
+// 控制器热点路径的 JMH 基准测试
+// 只编译 app 中不依赖 Android API 的类，在普通 JVM 上运行：
+//   ./gradlew :benchmark:jmh
+//   python3 benchmark/compare.py benchmark/baseline/results.json benchmark/build/results/jmh/results.json
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            // CommandFiles 读取状态依赖 StatusTailReader 与 AgentStatus，二者同样不能引入 Android API
+            include(
+                "com/autoglm/controller/AgentStatus.java",
+                "com/autoglm/controller/CommandFiles.java",
+                "com/autoglm/controller/CommandJournal.java",
+                "com/autoglm/controller/IatResultAccumulator.java",
+                "com/autoglm/controller/IatResultParser.java",
+                "com/autoglm/controller/MappedRingBuffer.java",
+                "com/autoglm/controller/StatusTailReader.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    // 与原先 org.json 解析方式对比
+    jmh("org.json:json:20231013")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    // 可用 -Pjmh.includes=IatParse 只运行部分基准
+    val filter = project.findProperty("jmh.includes") as String?
+    if (filter != null) {
+        includes.set(listOf(filter))
+    }
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    timeOnIteration.set("1s")
+    warmup.set("1s")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
@@ -0,0 +1,118 @@
+#!/usr/bin/env python3
+"""比较两次 JMH 结果（-rf json），列出每个基准的变化，出现回退时以非零状态退出。
+
+用法:
+    python3 compare.py baseline/results.json build/results/jmh/results.json [--threshold 10] [--max-error 50]
+
+耗时类模式(avgt/sample/ss)分数越低越好，吞吐模式(thrpt)越高越好。
+只有变化超过阈值百分比、且超出两次结果误差区间之和时才判为回退或提升，避免把噪声当成回退。
+任一次结果的误差区间超过分数的 --max-error 百分比时，该项测量本身不可信，标为不可比较，不参与回退判定。
+"""
+
+import argparse
+import json
+import sys
+
+
+def load(path):
+    with open(path, encoding="utf-8") as f:
+        results = {}
+        for entry in json.load(f):
+            results[key_of(entry)] = entry
+            # 分组基准的各线程角色单独比较
+            for name, metric in entry.get("secondaryMetrics", {}).items():
+                if metric.get("scoreUnit") == entry["primaryMetric"]["scoreUnit"]:
+                    sub = dict(entry, primaryMetric=metric)
+                    results[key_of(entry) + ":" + name] = sub
+        return results
+
+
+def key_of(entry):
+    key = entry["benchmark"].rsplit(".", 2)
+    name = ".".join(key[-2:])
+    params = entry.get("params")
+    if params:
+        name += "[" + ",".join("%s=%s" % kv for kv in sorted(params.items())) + "]"
+    return name
+
+
+def error_of(metric):
+    error = metric.get("scoreError")
+    try:
+        error = float(error)
+    except (TypeError, ValueError):
+        return 0.0
+    return 0.0 if error != error else error  # NaN
+
+
+def relative_error(metric):
+    score = metric["score"]
+    return error_of(metric) / abs(score) * 100 if score else float("inf")
+
+
+def compare(base, current, threshold, max_error):
+    regressions = 0
+    noisy = 0
+    rows = []
+    for name in sorted(set(base) | set(current)):
+        if name not in base:
+            rows.append((name, "-", fmt(current[name]), "", "新增"))
+            continue
+        if name not in current:
+            rows.append((name, fmt(base[name]), "-", "", "缺失"))
+            continue
+        old = base[name]["primaryMetric"]
+        new = current[name]["primaryMetric"]
+        if old["scoreUnit"] != new["scoreUnit"]:
+            rows.append((name, fmt(base[name]), fmt(current[name]), "", "单位不同"))
+            continue
+        higher_is_better = base[name]["mode"] == "thrpt"
+        delta = (new["score"] - old["score"]) / old["score"] * 100 if old["score"] else 0.0
+        if relative_error(old) > max_error or relative_error(new) > max_error:
+            noisy += 1
+            rows.append((name, fmt(base[name]), fmt(current[name]), "%+.1f%%" % delta, "不可比较"))
+            continue
+        worse = delta < 0 if higher_is_better else delta > 0
+        significant = (abs(delta) > threshold
+                       and abs(new["score"] - old["score"]) > error_of(old) + error_of(new))
+        verdict = ""
+        if significant:
+            verdict = "回退" if worse else "提升"
+            if worse:
+                regressions += 1
+        rows.append((name, fmt(base[name]), fmt(current[name]), "%+.1f%%" % delta, verdict))
+
+    widths = [max(len(row[i]) for row in rows + [HEADER]) for i in range(len(HEADER))]
+    for row in [HEADER] + rows:
+        print("  ".join(cell.ljust(widths[i]) for i, cell in enumerate(row)).rstrip())
+    return regressions, noisy
+
+
+HEADER = ("基准", "基线", "本次", "变化", "结论")
+
+
+def fmt(entry):
+    metric = entry["primaryMetric"]
+    return "%.3f ± %.3f %s" % (metric["score"], error_of(metric), metric["scoreUnit"])
+
+
+def main():
+    parser = argparse.ArgumentParser(description="比较两次 JMH 结果")
+    parser.add_argument("baseline")
+    parser.add_argument("current")
+    parser.add_argument("--threshold", type=float, default=10.0, help="判定回退的百分比阈值，默认 10")
+    parser.add_argument("--max-error", type=float, default=50.0,
+                        help="误差区间占分数的百分比超过该值时不可比较，默认 50")
+    args = parser.parse_args()
+
+    regressions, noisy = compare(load(args.baseline), load(args.current), args.threshold, args.max_error)
+    if noisy:
+        print("\n%d 项基准误差超过分数的 %.0f%%，不可比较，需要在更安静的环境重新测量" % (noisy, args.max_error))
+    if regressions:
+        print("\n%d 项基准回退超过 %.0f%%" % (regressions, args.threshold))
+        return 1
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -0,0 +1,106 @@
+package com.autoglm.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件协议：命令写入（日志 + fsync + 原子投递）与状态读取，单独及并发时的耗时。
+ * 写入后由基准线程模拟 agent 清空 command.txt，使每条命令都走完整投递路径。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommandFilesBenchmark {
+    private static final String STATUS = "STATUS: PROCESSING\nTASK: 打开微信给张三发消息\n"
+            + "RESULT: 正在执行第 3 步\nTIMESTAMP: 2025-12-15 21:25:19\n";
+
+    /**
+     * 临时通信目录，预先写好状态文件
+     */
+    public abstract static class Env {
+        File dir;
+        CommandFiles files;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dir = File.createTempFile("autoglm-bench", "");
+            dir.delete();
+            files = new CommandFiles(dir);
+            files.initDirectory();
+            FileOutputStream fos = new FileOutputStream(files.getStatusFile());
+            fos.write(STATUS.getBytes(StandardCharsets.UTF_8));
+            fos.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            files.close();
+            File[] children = dir.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    child.delete();
+                }
+            }
+            dir.delete();
+        }
+
+        boolean writeAndConsume() throws IOException {
+            boolean ok = files.writeCommand("打开微信");
+            // 模拟 agent 读取后清空 command.txt
+            RandomAccessFile raf = new RandomAccessFile(files.getCommandFile(), "rw");
+            try {
+                raf.setLength(0);
+            } finally {
+                raf.close();
+            }
+            return ok;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadEnv extends Env {
+    }
+
+    @State(Scope.Group)
+    public static class GroupEnv extends Env {
+    }
+
+    @Benchmark
+    public boolean writeCommand(ThreadEnv env) throws IOException {
+        return env.writeAndConsume();
+    }
+
+    @Benchmark
+    public String readStatus(ThreadEnv env) {
+        return env.files.readStatus();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public boolean contendedWrite(GroupEnv env) throws IOException {
+        return env.writeAndConsume();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public String contendedRead(GroupEnv env) {
+        return env.files.readStatus();
+    }
+}
@@ -0,0 +1,93 @@
+package com.autoglm.controller;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 听写结果解析：原 org.json 实现与单遍解析器对比
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IatParseBenchmark {
+
+    // 短句：流式模式下的单个分段；长句：一次性返回的完整命令
+    @Param({"short", "long"})
+    public String payload;
+
+    private String json;
+    private final IatResultParser parser = new IatResultParser();
+
+    @Setup
+    public void setup() {
+        String[] words = "short".equals(payload)
+                ? new String[]{"打开", "微信"}
+                : new String[]{"帮我", "给", "妈妈", "发", "消息", "，", "说", "晚上", "七点", "回家", "吃饭",
+                "，", "顺便", "在", "美团", "上", "点", "一份", "水果", "。"};
+        StringBuilder sb = new StringBuilder("{\"sn\":2,\"ls\":false,\"bg\":0,\"ed\":0,\"pgs\":\"rpl\",\"rg\":[1,1],\"ws\":[");
+        for (int i = 0; i < words.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"bg\":").append(i * 20).append(",\"cw\":[{\"sc\":0.00,\"w\":\"")
+                    .append(words[i]).append("\"}]}");
+        }
+        json = sb.append("]}").toString();
+    }
+
+    @Benchmark
+    public String orgJson() {
+        StringBuffer ret = new StringBuffer();
+        try {
+            JSONObject joResult = new JSONObject(new JSONTokener(json));
+            JSONArray words = joResult.getJSONArray("ws");
+            for (int i = 0; i < words.length(); i++) {
+                JSONArray items = words.getJSONObject(i).getJSONArray("cw");
+                JSONObject obj = items.getJSONObject(0);
+                ret.append(obj.getString("w"));
+            }
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return ret.toString();
+    }
+
+    @Benchmark
+    public String singlePass() {
+        parser.parse(json);
+        return parser.getText();
+    }
+
+    /**
+     * 流式模式下每个分段的完整处理：解析 + 拼接
+     */
+    @Benchmark
+    public String singlePassAccumulate(AccumulatorState state) {
+        parser.parse(json);
+        state.accumulator.apply(parser.getSn(), parser.getText(), parser.isReplace(),
+                parser.getRgStart(), parser.getRgEnd());
+        return state.accumulator.getText();
+    }
+
+    @State(Scope.Thread)
+    public static class AccumulatorState {
+        final IatResultAccumulator accumulator = new IatResultAccumulator();
+
+        @Setup
+        public void setup() {
+            accumulator.apply(1, "打开", false, 0, -1);
+        }
+    }
+}
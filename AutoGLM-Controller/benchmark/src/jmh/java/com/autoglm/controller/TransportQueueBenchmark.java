@@ -0,0 +1,129 @@
+package com.autoglm.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 传输与排队结构：内存映射环形缓冲区和命令日志
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransportQueueBenchmark {
+    private static final byte[] COMMAND = "打开微信给张三发消息说晚上回家吃饭".getBytes(StandardCharsets.UTF_8);
+
+    @State(Scope.Thread)
+    public static class RingState {
+        File file;
+        MappedRingBuffer ring;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            file = File.createTempFile("autoglm-ring", ".ring");
+            ring = new MappedRingBuffer(file, 64 * 1024);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            ring.close();
+            file.delete();
+        }
+    }
+
+    /**
+     * 同一线程写入并读出一条消息
+     */
+    @Benchmark
+    public String ringRoundTrip(RingState state) {
+        state.ring.offer(COMMAND);
+        return state.ring.pollString();
+    }
+
+    @State(Scope.Group)
+    public static class SharedRingState {
+        File file;
+        MappedRingBuffer producer;
+        MappedRingBuffer consumer;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            file = File.createTempFile("autoglm-ring", ".ring");
+            producer = new MappedRingBuffer(file, 64 * 1024);
+            consumer = new MappedRingBuffer(file, 64 * 1024);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            producer.close();
+            consumer.close();
+            file.delete();
+        }
+    }
+
+    /**
+     * 两个映射、两个线程的生产者/消费者；缓冲区满或为空时本次调用直接返回
+     */
+    @Benchmark
+    @Group("ringSpsc")
+    @GroupThreads(1)
+    public boolean ringOffer(SharedRingState state) {
+        return state.producer.offer(COMMAND);
+    }
+
+    @Benchmark
+    @Group("ringSpsc")
+    @GroupThreads(1)
+    public byte[] ringPoll(SharedRingState state) {
+        return state.consumer.poll();
+    }
+
+    @State(Scope.Thread)
+    public static class JournalState {
+        File dir;
+        CommandJournal journal;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            dir = File.createTempFile("autoglm-journal", "");
+            dir.delete();
+            dir.mkdirs();
+            journal = new CommandJournal(dir);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            journal.close();
+            File[] children = dir.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    child.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * 追加一条命令（含 fsync）并提交消费进度，包含周期性的压缩开销
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long journalAppendCommit(JournalState state) throws IOException {
+        long seq = state.journal.append("打开微信");
+        state.journal.commit("agent", seq);
+        return seq;
+    }
+}
@@ -15,3 +15,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "controller"
 include(":app")
+include(":benchmark")